@@ -2,11 +2,13 @@ package com.example.demotrade;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 流程编排微服务应用程序入口
  */
 @SpringBootApplication
+@EnableScheduling
 public class DemoTradeApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,184 @@
+package com.example.demotrade.archive;
+
+import com.example.demotrade.codec.EncodedPayload;
+import com.example.demotrade.codec.PayloadCodec;
+import com.example.demotrade.entity.ProcessInstanceEntity;
+import com.example.demotrade.model.InstanceStatus;
+import com.example.demotrade.repository.ProcessInstanceHistoryRepository;
+import com.example.demotrade.repository.ProcessInstanceRepository;
+import com.example.demotrade.repository.ProcessVariableRepository;
+import com.example.demotrade.service.ProcessVariableService;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流程实例归档任务
+ * 定期将结束超过指定时长的已完成、已终止流程实例连同其流程变量分批移入process_instance_history，
+ * 并删除超过保留期的历史月分区
+ * <p>
+ * 多个服务实例之间通过Redisson锁保证同一时刻只有一个实例执行归档
+ */
+@Component
+@ConditionalOnProperty(prefix = "demo-trade.archive", name = "enabled", havingValue = "true")
+public class ProcessInstanceArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessInstanceArchiver.class);
+
+    private static final String LOCK_NAME = "demo-trade:process-instance:archive";
+
+    @Autowired
+    private ProcessInstanceRepository processInstanceRepository;
+
+    @Autowired
+    private ProcessVariableRepository processVariableRepository;
+
+    @Autowired
+    private ProcessVariableService processVariableService;
+
+    @Autowired
+    private ProcessInstanceHistoryRepository historyRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private PayloadCodec payloadCodec;
+
+    @Value("${demo-trade.archive.min-age:P30D}")
+    private Duration minAge;
+
+    @Value("${demo-trade.archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${demo-trade.archive.max-batches-per-run:100}")
+    private int maxBatchesPerRun;
+
+    @Value("${demo-trade.archive.retention-months:12}")
+    private int retentionMonths;
+
+    /**
+     * 执行一轮归档和历史清理
+     */
+    @Scheduled(initialDelayString = "${demo-trade.archive.initial-delay:PT1M}",
+            fixedDelayString = "${demo-trade.archive.interval:PT10M}")
+    public void run() {
+        RLock lock = redissonClient.getLock(LOCK_NAME);
+        if (!lock.tryLock()) {
+            logger.debug("其它实例正在执行流程实例归档，跳过本轮");
+            return;
+        }
+        try {
+            YearMonth currentMonth = YearMonth.now();
+            ensurePartitions(currentMonth);
+            int archived = archive(LocalDateTime.now().minus(minAge));
+            int dropped = purge(currentMonth);
+            logger.info("流程实例归档完成, archived={}, droppedPartitions={}", archived, dropped);
+        } catch (RuntimeException e) {
+            logger.error("流程实例归档失败", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 分批归档结束时间早于cutoff的终态实例，每批在独立事务中执行
+     *
+     * @param cutoff 结束时间上限
+     * @return 归档的实例数
+     */
+    public int archive(LocalDateTime cutoff) {
+        int total = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            Integer archived = transactionTemplate.execute(status -> archiveBatch(cutoff));
+            total += archived != null ? archived : 0;
+            if (archived == null || archived < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<String> ids = processInstanceRepository.findArchivableIds(InstanceStatus.TERMINAL, cutoff,
+                Limit.of(batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        // 将process_variable中的变量合并进初始变量，归档后历史表自包含
+        List<ProcessInstanceEntity> entities = processInstanceRepository.findDetachedByIds(ids);
+        Map<String, Map<String, Object>> variables = processVariableService.getVariables(ids);
+        for (ProcessInstanceEntity entity : entities) {
+            Map<String, Object> stored = variables.get(entity.getId());
+            if (stored != null) {
+                mergeVariables(entity, stored);
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        historyRepository.batchInsert(entities, now);
+        processVariableRepository.deleteByProcessInstanceIds(ids);
+        int deleted = processInstanceRepository.deleteByIdsAndStatuses(ids, InstanceStatus.TERMINAL);
+        if (deleted != entities.size()) {
+            // 终态实例不会再变化，数量不一致说明存在并发删除，回滚本批
+            throw new IllegalStateException("Archived " + entities.size() + " process instances but deleted " + deleted);
+        }
+        return deleted;
+    }
+
+    private void mergeVariables(ProcessInstanceEntity entity, Map<String, Object> stored) {
+        Map<String, Object> merged = payloadCodec.decodeVariables(entity.getVariablesData(), entity.getVariablesJson());
+        merged.putAll(stored);
+        EncodedPayload payload = payloadCodec.encodeVariables(merged);
+        entity.setVariablesJson(payload.json());
+        entity.setVariablesData(payload.data());
+    }
+
+    /**
+     * 保证从最早需要保留的月份到下个月都有对应的分区
+     */
+    private void ensurePartitions(YearMonth currentMonth) {
+        List<YearMonth> existing = historyRepository.findPartitionMonths();
+        YearMonth next = existing.isEmpty()
+                ? currentMonth.minusMonths(retentionMonths)
+                : existing.get(existing.size() - 1).plusMonths(1);
+        for (YearMonth month = next; !month.isAfter(currentMonth.plusMonths(1)); month = month.plusMonths(1)) {
+            historyRepository.addMonthlyPartition(month);
+        }
+    }
+
+    /**
+     * 删除超过保留期的月分区
+     *
+     * @return 删除的分区数
+     */
+    private int purge(YearMonth currentMonth) {
+        YearMonth oldestRetained = currentMonth.minusMonths(retentionMonths);
+        int dropped = 0;
+        for (YearMonth month : historyRepository.findPartitionMonths()) {
+            if (month.isBefore(oldestRetained)) {
+                historyRepository.dropMonthlyPartition(month);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.demotrade.cache;
+
+import com.example.demotrade.model.ProcessDefinition;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 流程定义本地缓存
+ * 按(流程定义ID, 版本号)缓存已反序列化的流程定义，并维护"最新已发布版本"指针；
+ * 定义发布、废弃或保存时通过Redis发布订阅通知集群内所有节点失效本地缓存
+ * <p>
+ * 返回的流程定义已冻结，调用方共享同一个实例，调用setter或修改其中的集合会抛出UnsupportedOperationException；
+ * 需要修改时先调用{@link ProcessDefinition#copy()}
+ */
+@Component
+public class ProcessDefinitionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessDefinitionCache.class);
+
+    /**
+     * 失效消息中ID与版本号的分隔符
+     */
+    private static final char KEY_SEPARATOR = ':';
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${demo-trade.definition-cache.maximum-size:1000}")
+    private long maximumSize;
+
+    @Value("${demo-trade.definition-cache.invalidation-topic:demo-trade:process-definition:invalidation}")
+    private String invalidationTopic;
+
+    /**
+     * (ID, 版本号) -> 已冻结的流程定义
+     */
+    private Cache<DefinitionKey, ProcessDefinition> definitions;
+
+    /**
+     * 流程定义ID -> 最新已发布版本号
+     */
+    private Cache<String, Integer> latestVersions;
+
+    private RTopic topic;
+
+    private int listenerId = -1;
+
+    @PostConstruct
+    public void init() {
+        definitions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        latestVersions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, definitions, "processDefinition");
+        CaffeineCacheMetrics.monitor(meterRegistry, latestVersions, "processDefinitionLatest");
+
+        topic = redissonClient.getTopic(invalidationTopic, StringCodec.INSTANCE);
+        listenerId = topic.addListener(String.class, (channel, message) -> invalidateLocal(message));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (topic != null && listenerId != -1) {
+            topic.removeListener(listenerId);
+        }
+    }
+
+    /**
+     * 获取指定ID和版本的流程定义，未命中时通过loader加载并缓存
+     *
+     * @param processDefinitionId 流程定义ID
+     * @param version 版本号
+     * @param loader 缓存未命中时的加载函数，返回null表示不存在且不缓存
+     * @return 已冻结的流程定义，不存在时返回null
+     */
+    public ProcessDefinition get(String processDefinitionId, Integer version,
+                                 Supplier<ProcessDefinition> loader) {
+        if (processDefinitionId == null || version == null) {
+            return loader.get();
+        }
+        return definitions.get(new DefinitionKey(processDefinitionId, version), key -> freeze(loader.get()));
+    }
+
+    /**
+     * 获取指定ID的最新已发布流程定义，未命中时通过loader加载并缓存
+     *
+     * @param processDefinitionId 流程定义ID
+     * @param loader 缓存未命中时的加载函数，返回null表示不存在且不缓存
+     * @param versionLoader 按版本加载流程定义的函数，用于指针命中但定义已被淘汰的情况
+     * @return 已冻结的流程定义，不存在时返回null
+     */
+    public ProcessDefinition getLatest(String processDefinitionId,
+                                       Supplier<ProcessDefinition> loader,
+                                       Function<Integer, ProcessDefinition> versionLoader) {
+        Integer version = latestVersions.getIfPresent(processDefinitionId);
+        if (version != null) {
+            ProcessDefinition definition = get(processDefinitionId, version, () -> versionLoader.apply(version));
+            if (definition != null) {
+                return definition;
+            }
+        }
+
+        ProcessDefinition definition = freeze(loader.get());
+        if (definition != null && definition.getVersion() != null) {
+            definitions.put(new DefinitionKey(processDefinitionId, definition.getVersion()), definition);
+            latestVersions.put(processDefinitionId, definition.getVersion());
+        }
+        return definition;
+    }
+
+    /**
+     * 失效指定流程定义，并通知集群内其他节点
+     *
+     * @param processDefinitionId 流程定义ID
+     * @param version 版本号，为null时仅失效最新版本指针
+     */
+    public void invalidate(String processDefinitionId, Integer version) {
+        String message = version == null ? processDefinitionId : processDefinitionId + KEY_SEPARATOR + version;
+        invalidateLocal(message);
+        try {
+            topic.publish(message);
+        } catch (RuntimeException e) {
+            // 广播失败不影响本地操作，其他节点依赖缓存淘汰策略最终收敛
+            logger.warn("广播流程定义缓存失效消息失败: {}", message, e);
+        }
+    }
+
+    /**
+     * 处理失效消息，消息格式为"ID"或"ID:版本号"
+     */
+    private void invalidateLocal(String message) {
+        int separatorIndex = message.lastIndexOf(KEY_SEPARATOR);
+        if (separatorIndex > 0) {
+            String processDefinitionId = message.substring(0, separatorIndex);
+            try {
+                int version = Integer.parseInt(message.substring(separatorIndex + 1));
+                definitions.invalidate(new DefinitionKey(processDefinitionId, version));
+                latestVersions.invalidate(processDefinitionId);
+                return;
+            } catch (NumberFormatException ignored) {
+                // ID本身包含分隔符，按不带版本号处理
+            }
+        }
+        latestVersions.invalidate(message);
+    }
+
+    /**
+     * 冻结流程定义，缓存的定义在多个线程间共享，调用方修改时抛出UnsupportedOperationException
+     */
+    private static ProcessDefinition freeze(ProcessDefinition definition) {
+        if (definition != null) {
+            definition.freeze();
+        }
+        return definition;
+    }
+
+    /**
+     * 缓存键
+     */
+    private record DefinitionKey(String processDefinitionId, int version) {
+    }
+}
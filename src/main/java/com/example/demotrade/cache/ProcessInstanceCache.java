@@ -0,0 +1,347 @@
+package com.example.demotrade.cache;
+
+import com.example.demotrade.cluster.InstanceOwnership;
+import com.example.demotrade.model.ProcessInstance;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.redisson.api.RBucket;
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * 流程实例两级缓存
+ * L1为本地Caffeine缓存，L2为Redis缓存，按ID读取时依次查询L1、L2和数据库；
+ * 修改后写入新状态并通过Redis发布订阅通知其它节点失效L1；两级缓存都只在没有更高版本时写入。
+ * 提交后无法写入新状态时按版本失效，在L2中留下失效记录，失效前开始的读取加载的旧状态不会再写入缓存
+ * <p>
+ * 开启集群分区时，归属于当前节点的实例在L1中保留更长时间；归属变化后淘汰不再归属的实例。
+ * 缓存中保存实例的副本，读取时再复制一份，调用方修改返回的实例不影响缓存
+ */
+@Component
+@ConditionalOnProperty(prefix = "demo-trade.instance-cache", name = "enabled", havingValue = "true",
+        matchIfMissing = true)
+public class ProcessInstanceCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessInstanceCache.class);
+
+    private static final String KEY_PREFIX = "demo-trade:process-instance:";
+
+    /**
+     * L2中已有更高版本时不写入，比较和写入在Redis中原子执行
+     */
+    private static final String WRITE_IF_NEWER_SCRIPT = """
+            local current = redis.call('GET', KEYS[1])
+            if current then
+                local ok, cached = pcall(cjson.decode, current)
+                if ok and type(cached) == 'table' and type(cached.version) == 'number'
+                        and cached.version > tonumber(ARGV[2]) then
+                    return 0
+                end
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[3])
+            return 1
+            """;
+
+    /**
+     * 按版本失效时写入L2的记录，读取时视为未命中，版本更低的加载结果不能再写入
+     */
+    private static final String TOMBSTONE_PREFIX = "{\"evicted\":true,\"version\":";
+
+    /**
+     * 失效消息中发送节点与实例ID的分隔符
+     */
+    private static final char ORIGIN_SEPARATOR = '|';
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 只在开启集群分区时存在
+     */
+    @Autowired(required = false)
+    private InstanceOwnership instanceOwnership;
+
+    @Value("${demo-trade.instance-cache.l1.maximum-size:100000}")
+    private long l1MaximumSize;
+
+    @Value("${demo-trade.instance-cache.l1.ttl:PT5S}")
+    private Duration l1Ttl;
+
+    @Value("${demo-trade.instance-cache.l1.owned-ttl:PT10M}")
+    private Duration ownedTtl;
+
+    @Value("${demo-trade.instance-cache.l2.ttl:PT10M}")
+    private Duration l2Ttl;
+
+    @Value("${demo-trade.instance-cache.invalidation-topic:demo-trade:process-instance:invalidation}")
+    private String invalidationTopic;
+
+    /**
+     * 当前节点的标识，忽略自己发出的失效消息
+     */
+    private final String origin = UUID.randomUUID().toString();
+
+    private Cache<String, ProcessInstance> l1;
+
+    private Counter l2Hits;
+
+    private Counter l2Misses;
+
+    private RTopic topic;
+
+    private int listenerId = -1;
+
+    @PostConstruct
+    public void init() {
+        // 其它节点的修改依赖失效消息，L1的过期时间兜底消息丢失的情况
+        l1 = Caffeine.newBuilder()
+                .maximumSize(l1MaximumSize)
+                .expireAfter(new Expiry<String, ProcessInstance>() {
+                    @Override
+                    public long expireAfterCreate(String id, ProcessInstance instance, long currentTime) {
+                        return ttlFor(id).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String id, ProcessInstance instance, long currentTime,
+                                                  long currentDuration) {
+                        return ttlFor(id).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String id, ProcessInstance instance, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, l1, "processInstance");
+
+        l2Hits = Counter.builder("demo-trade.instance-cache.l2.requests")
+                .tag("result", "hit")
+                .description("流程实例L2缓存命中次数")
+                .register(meterRegistry);
+        l2Misses = Counter.builder("demo-trade.instance-cache.l2.requests")
+                .tag("result", "miss")
+                .description("流程实例L2缓存未命中次数")
+                .register(meterRegistry);
+        Gauge.builder("demo-trade.instance-cache.l2.hit.ratio", this, cache -> cache.hitRatio(
+                        cache.l2Hits.count(), cache.l2Misses.count()))
+                .description("流程实例L2缓存命中率")
+                .register(meterRegistry);
+        Gauge.builder("demo-trade.instance-cache.l1.hit.ratio", l1, cache -> cache.stats().hitRate())
+                .description("流程实例L1缓存命中率")
+                .register(meterRegistry);
+
+        if (instanceOwnership != null) {
+            instanceOwnership.addListener((previous, current) ->
+                    l1.asMap().keySet().removeIf(id -> !instanceOwnership.isLocallyOwned(id)));
+        }
+
+        topic = redissonClient.getTopic(invalidationTopic, StringCodec.INSTANCE);
+        listenerId = topic.addListener(String.class, (channel, message) -> {
+            int separatorIndex = message.indexOf(ORIGIN_SEPARATOR);
+            if (separatorIndex > 0 && !origin.equals(message.substring(0, separatorIndex))) {
+                l1.invalidate(message.substring(separatorIndex + 1));
+            }
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (topic != null && listenerId != -1) {
+            topic.removeListener(listenerId);
+        }
+    }
+
+    /**
+     * 获取流程实例，依次查询L1、L2，都未命中时通过loader加载并写入两级缓存
+     * 加载在实例锁之外进行，不覆盖期间提交的修改写入的更高版本
+     *
+     * @param processInstanceId 流程实例ID
+     * @param loader 从数据库加载实例，返回null表示不存在且不缓存
+     * @return 实例副本，不存在时返回null
+     */
+    public ProcessInstance get(String processInstanceId, Supplier<ProcessInstance> loader) {
+        ProcessInstance cached = l1.getIfPresent(processInstanceId);
+        if (cached != null) {
+            return view(cached);
+        }
+
+        ProcessInstance remote = readL2(processInstanceId);
+        if (remote != null) {
+            putL1(remote);
+            return view(remote);
+        }
+
+        ProcessInstance loaded = loader.get();
+        if (loaded != null) {
+            ProcessInstance copy = loaded.copy();
+            // L2中已有更高版本或失效记录时加载的状态已经过期，也不写入L1
+            if (writeL2(copy)) {
+                putL1(copy);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 修改提交后写入实例的新状态，并通知其它节点失效L1
+     *
+     * @param processInstance 修改后的流程实例
+     */
+    public void put(ProcessInstance processInstance) {
+        ProcessInstance copy = processInstance.copy();
+        putL1(copy);
+        writeL2(copy);
+        publish(processInstance.getId());
+    }
+
+    /**
+     * 按版本失效两级缓存，L2中留下失效记录，之后只接受不低于该版本的状态，并通知其它节点失效L1
+     *
+     * @param processInstanceId 流程实例ID
+     * @param version 已提交的版本号
+     */
+    public void evict(String processInstanceId, long version) {
+        l1.invalidate(processInstanceId);
+        writeIfNewer(processInstanceId, TOMBSTONE_PREFIX + version + "}", version);
+        publish(processInstanceId);
+    }
+
+    /**
+     * 失效两级缓存，并通知其它节点失效L1
+     *
+     * @param processInstanceId 流程实例ID
+     */
+    public void evict(String processInstanceId) {
+        l1.invalidate(processInstanceId);
+        try {
+            bucket(processInstanceId).delete();
+        } catch (RuntimeException e) {
+            logger.warn("删除流程实例L2缓存失败: {}", processInstanceId, e);
+        }
+        publish(processInstanceId);
+    }
+
+    /**
+     * 已缓存更高版本时不覆盖，避免并发读取把旧状态写回L1
+     */
+    private void putL1(ProcessInstance instance) {
+        l1.asMap().merge(instance.getId(), instance, (existing, incoming) ->
+                existing.getVersion() != null && incoming.getVersion() != null
+                        && existing.getVersion() > incoming.getVersion() ? existing : incoming);
+    }
+
+    private ProcessInstance readL2(String processInstanceId) {
+        String json;
+        try {
+            json = bucket(processInstanceId).get();
+        } catch (RuntimeException e) {
+            // Redis不可用时退化为直接查询数据库
+            logger.warn("读取流程实例L2缓存失败: {}", processInstanceId, e);
+            return null;
+        }
+        if (json == null || json.startsWith(TOMBSTONE_PREFIX)) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        try {
+            return objectMapper.readValue(json, ProcessInstance.class);
+        } catch (JsonProcessingException e) {
+            logger.warn("流程实例L2缓存无法反序列化: {}", processInstanceId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 已缓存更高版本时不覆盖；读取时加载的状态和锁外写入的状态都可能晚于更新的状态到达
+     *
+     * @return 是否写入，L2中已有更高版本或失效记录时返回false；写入失败时返回true，不影响L1
+     */
+    private boolean writeL2(ProcessInstance instance) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(instance);
+        } catch (JsonProcessingException e) {
+            logger.warn("流程实例无法序列化: {}", instance.getId(), e);
+            return true;
+        }
+        return writeIfNewer(instance.getId(), json, instance.getVersion() != null ? instance.getVersion() : 0L);
+    }
+
+    private boolean writeIfNewer(String processInstanceId, String json, long version) {
+        String key = KEY_PREFIX + processInstanceId;
+        try {
+            Long written = redissonClient.getScript(StringCodec.INSTANCE).eval(key, RScript.Mode.READ_WRITE,
+                    WRITE_IF_NEWER_SCRIPT, RScript.ReturnType.INTEGER, List.of(key),
+                    json, String.valueOf(version), String.valueOf(l2Ttl.toMillis()));
+            return written == null || written != 0;
+        } catch (RuntimeException e) {
+            logger.warn("写入流程实例L2缓存失败: {}", processInstanceId, e);
+            return true;
+        }
+    }
+
+    private void publish(String processInstanceId) {
+        try {
+            topic.publish(origin + ORIGIN_SEPARATOR + processInstanceId);
+        } catch (RuntimeException e) {
+            // 广播失败不影响本地操作，其他节点依赖L1过期时间最终收敛
+            logger.warn("广播流程实例缓存失效消息失败: {}", processInstanceId, e);
+        }
+    }
+
+    private RBucket<String> bucket(String processInstanceId) {
+        return redissonClient.getBucket(KEY_PREFIX + processInstanceId, StringCodec.INSTANCE);
+    }
+
+    private Duration ttlFor(String processInstanceId) {
+        return instanceOwnership != null && instanceOwnership.isLocallyOwned(processInstanceId) ? ownedTtl : l1Ttl;
+    }
+
+    /**
+     * 返回给调用方的副本，以当前变量作为加载时的快照
+     */
+    private static ProcessInstance view(ProcessInstance cached) {
+        ProcessInstance view = cached.copy();
+        view.setPersistedVariables(new HashMap<>(view.getVariables()));
+        return view;
+    }
+
+    private double hitRatio(double hits, double misses) {
+        double total = hits + misses;
+        return total == 0 ? 0 : hits / total;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.demotrade.cluster;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * 集群分区配置
+ * membership为discovery时从注册中心读取成员，为static时使用static-members配置的成员
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "demo-trade.cluster", name = "enabled", havingValue = "true")
+public class ClusterConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "demo-trade.cluster", name = "membership", havingValue = "discovery",
+            matchIfMissing = true)
+    public ClusterMembership discoveryClusterMembership(DiscoveryClient discoveryClient, Registration registration) {
+        return new DiscoveryClusterMembership(discoveryClient, registration);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "demo-trade.cluster", name = "membership", havingValue = "static")
+    public ClusterMembership staticClusterMembership(
+            @Value("${demo-trade.cluster.local-member}") String localMember,
+            @Value("${demo-trade.cluster.static-members:}") List<String> members) {
+        return new StaticClusterMembership(localMember, members);
+    }
+
+    @Bean
+    public InstanceOwnership instanceOwnership(ClusterMembership membership,
+                                               @Value("${demo-trade.cluster.virtual-nodes:160}") int virtualNodes) {
+        return new InstanceOwnership(membership, virtualNodes);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demotrade.cluster;
+
+import java.util.List;
+
+/**
+ * 集群成员来源
+ */
+public interface ClusterMembership {
+
+    /**
+     * 当前节点的成员ID
+     */
+    String getLocalMember();
+
+    /**
+     * 当前存活的成员ID，包含当前节点
+     */
+    List<String> getMembers();
+}
@@ -0,0 +1,76 @@
+package com.example.demotrade.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 一致性哈希环
+ * 每个成员在环上放置若干虚拟节点，键归属于顺时针方向遇到的第一个虚拟节点的成员；
+ * 成员加入或离开时只有相邻区间的键改变归属
+ * <p>
+ * 环创建后不可变，成员变化时整体替换
+ */
+public final class ConsistentHashRing {
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    private final List<String> members;
+
+    /**
+     * @param members 成员ID
+     * @param virtualNodes 每个成员的虚拟节点数
+     */
+    public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        // 排序去重，保证各节点由相同成员列表构建出相同的环
+        this.members = List.copyOf(new TreeSet<>(members));
+        for (String member : this.members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * 查询键所属的成员
+     *
+     * @param key 键，如流程实例ID
+     * @return 成员ID，环为空时返回null
+     */
+    public String ownerOf(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    /**
+     * 64位FNV-1a哈希，再经过MurmurHash3的finalizer打散，相近的ID也能均匀分布
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demotrade.cluster;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于服务发现的集群成员，成员为注册中心中同名服务的全部实例，ID格式为host:port
+ */
+public class DiscoveryClusterMembership implements ClusterMembership {
+
+    private final DiscoveryClient discoveryClient;
+
+    private final Registration registration;
+
+    public DiscoveryClusterMembership(DiscoveryClient discoveryClient, Registration registration) {
+        this.discoveryClient = discoveryClient;
+        this.registration = registration;
+    }
+
+    @Override
+    public String getLocalMember() {
+        return memberId(registration);
+    }
+
+    @Override
+    public List<String> getMembers() {
+        List<String> members = new ArrayList<>();
+        for (ServiceInstance instance : discoveryClient.getInstances(registration.getServiceId())) {
+            members.add(memberId(instance));
+        }
+        // 当前节点尚未出现在注册中心的列表中时，仍然参与分区
+        String localMember = getLocalMember();
+        if (!members.contains(localMember)) {
+            members.add(localMember);
+        }
+        return members;
+    }
+
+    private static String memberId(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+}
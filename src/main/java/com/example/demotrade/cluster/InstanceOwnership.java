@@ -0,0 +1,110 @@
+package com.example.demotrade.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 流程实例归属
+ * 以集群成员构建一致性哈希环，每个流程实例ID归属于一个节点；成员变化时重建哈希环并通知监听器
+ * <p>
+ * 各节点刷新成员列表的时间不同，重新分区的短暂窗口内可能有两个节点同时认为自己拥有某个实例，
+ * 因此归属只用于减少锁和数据库读取，写入的正确性仍由版本号和状态条件更新保证
+ */
+public class InstanceOwnership {
+
+    private static final Logger logger = LoggerFactory.getLogger(InstanceOwnership.class);
+
+    private final ClusterMembership membership;
+
+    private final int virtualNodes;
+
+    private final List<OwnershipListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile ConsistentHashRing ring;
+
+    public InstanceOwnership(ClusterMembership membership, int virtualNodes) {
+        this.membership = membership;
+        this.virtualNodes = virtualNodes;
+        this.ring = new ConsistentHashRing(List.of(membership.getLocalMember()), virtualNodes);
+        refresh();
+    }
+
+    /**
+     * 重新读取成员列表，成员变化时重建哈希环
+     * 定期执行，注册中心推送服务列表变化时也会立即执行
+     */
+    @Scheduled(fixedDelayString = "${demo-trade.cluster.refresh-interval:PT10S}")
+    @EventListener(HeartbeatEvent.class)
+    public synchronized void refresh() {
+        List<String> members;
+        try {
+            members = membership.getMembers();
+        } catch (RuntimeException e) {
+            // 注册中心不可用时保持原有分区
+            logger.warn("读取集群成员失败，保持当前分区", e);
+            return;
+        }
+        ConsistentHashRing current = new ConsistentHashRing(members, virtualNodes);
+        ConsistentHashRing previous = ring;
+        if (current.getMembers().equals(previous.getMembers())) {
+            return;
+        }
+
+        ring = current;
+        logger.info("集群成员变化, previous={}, current={}", previous.getMembers(), current.getMembers());
+        for (OwnershipListener listener : listeners) {
+            try {
+                listener.onRebalance(previous, current);
+            } catch (RuntimeException e) {
+                logger.error("处理实例归属变化失败", e);
+            }
+        }
+    }
+
+    /**
+     * 流程实例是否归属于当前节点
+     */
+    public boolean isLocallyOwned(String processInstanceId) {
+        return membership.getLocalMember().equals(ring.ownerOf(processInstanceId));
+    }
+
+    /**
+     * 流程实例归属的节点
+     */
+    public String ownerOf(String processInstanceId) {
+        return ring.ownerOf(processInstanceId);
+    }
+
+    public String getLocalMember() {
+        return membership.getLocalMember();
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    public void addListener(OwnershipListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 实例归属变化监听器
+     */
+    @FunctionalInterface
+    public interface OwnershipListener {
+
+        /**
+         * 成员变化后调用，此时新的哈希环已生效
+         *
+         * @param previous 变化前的哈希环
+         * @param current 变化后的哈希环
+         */
+        void onRebalance(ConsistentHashRing previous, ConsistentHashRing current);
+    }
+}
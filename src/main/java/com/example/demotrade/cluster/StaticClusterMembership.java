@@ -0,0 +1,33 @@
+package com.example.demotrade.cluster;
+
+import java.util.List;
+
+/**
+ * 静态配置的集群成员
+ * 用于没有注册中心的本地环境和测试，可以通过setMembers模拟成员加入和离开
+ */
+public class StaticClusterMembership implements ClusterMembership {
+
+    private final String localMember;
+
+    private volatile List<String> members;
+
+    public StaticClusterMembership(String localMember, List<String> members) {
+        this.localMember = localMember;
+        this.members = List.copyOf(members);
+    }
+
+    @Override
+    public String getLocalMember() {
+        return localMember;
+    }
+
+    @Override
+    public List<String> getMembers() {
+        return members;
+    }
+
+    public void setMembers(List<String> members) {
+        this.members = List.copyOf(members);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.demotrade.codec;
+
+/**
+ * 编码后的载荷，json与data最多一个不为null，分别写入文本列和二进制列
+ *
+ * @param json 文本JSON
+ * @param data 带格式头的二进制数据
+ */
+public record EncodedPayload(String json, byte[] data) {
+
+    static final EncodedPayload EMPTY = new EncodedPayload(null, null);
+}
@@ -0,0 +1,207 @@
+package com.example.demotrade.codec;
+
+import com.example.demotrade.model.ProcessNode;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流程变量和流程节点的编解码器
+ * <p>
+ * 二进制数据的第一个字节为格式头：低7位为格式编号，最高位表示LZ4压缩；
+ * 压缩时格式头之后是4字节的原始长度，再之后是LZ4块。
+ * 读取时优先解码二进制列，为null时解析文本列，迁移前写入的文本行仍可读取
+ * <p>
+ * 所有ObjectReader/ObjectWriter在创建时构建，线程安全，编解码时不再解析类型
+ */
+@Component
+public class PayloadCodec {
+
+    private static final byte SMILE_FORMAT = 1;
+
+    private static final int LZ4_FLAG = 0x80;
+
+    private static final int FORMAT_MASK = 0x7F;
+
+    private final PayloadFormat format;
+
+    private final boolean lz4Enabled;
+
+    private final int lz4MinSize;
+
+    private final ObjectReader jsonVariablesReader;
+
+    private final ObjectReader jsonNodesReader;
+
+    private final ObjectWriter jsonWriter;
+
+    private final ObjectReader smileVariablesReader;
+
+    private final ObjectReader smileNodesReader;
+
+    private final ObjectWriter smileWriter;
+
+    private final LZ4Compressor compressor;
+
+    private final LZ4SafeDecompressor decompressor;
+
+    public PayloadCodec(ObjectMapper objectMapper,
+                        @Value("${demo-trade.codec.format:SMILE}") PayloadFormat format,
+                        @Value("${demo-trade.codec.lz4.enabled:true}") boolean lz4Enabled,
+                        @Value("${demo-trade.codec.lz4.min-size:512}") int lz4MinSize) {
+        this.format = format;
+        this.lz4Enabled = lz4Enabled;
+        this.lz4MinSize = lz4MinSize;
+
+        TypeReference<Map<String, Object>> variablesType = new TypeReference<>() {};
+        TypeReference<List<ProcessNode>> nodesType = new TypeReference<>() {};
+        this.jsonVariablesReader = objectMapper.readerFor(variablesType);
+        this.jsonNodesReader = objectMapper.readerFor(nodesType);
+        this.jsonWriter = objectMapper.writer();
+
+        // 复制应用ObjectMapper的模块和配置，只替换底层格式
+        ObjectMapper smileMapper = objectMapper.copyWith(new SmileFactory());
+        this.smileVariablesReader = smileMapper.readerFor(variablesType);
+        this.smileNodesReader = smileMapper.readerFor(nodesType);
+        this.smileWriter = smileMapper.writer();
+
+        LZ4Factory lz4 = LZ4Factory.fastestInstance();
+        this.compressor = lz4.fastCompressor();
+        this.decompressor = lz4.safeDecompressor();
+    }
+
+    /**
+     * @return 写入时使用的格式
+     */
+    public PayloadFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * 编码流程变量
+     *
+     * @param variables 变量映射，为空时不写入
+     * @return 编码结果
+     */
+    public EncodedPayload encodeVariables(Map<String, Object> variables) {
+        if (variables == null || variables.isEmpty()) {
+            return EncodedPayload.EMPTY;
+        }
+        return encode(variables);
+    }
+
+    /**
+     * 编码流程节点列表
+     *
+     * @param nodes 节点列表
+     * @return 编码结果
+     */
+    public EncodedPayload encodeNodes(List<ProcessNode> nodes) {
+        return encode(nodes);
+    }
+
+    /**
+     * 解码流程变量
+     *
+     * @param data 二进制列
+     * @param json 文本列，二进制列为null时使用
+     * @return 可修改的变量映射，两列都为空时返回空映射
+     */
+    public Map<String, Object> decodeVariables(byte[] data, String json) {
+        Map<String, Object> variables = decode(data, json, smileVariablesReader, jsonVariablesReader);
+        return variables != null ? variables : new HashMap<>();
+    }
+
+    /**
+     * 解码流程节点列表
+     *
+     * @param data 二进制列
+     * @param json 文本列，二进制列为null时使用
+     * @return 可修改的节点列表，两列都为空时返回空列表
+     */
+    public List<ProcessNode> decodeNodes(byte[] data, String json) {
+        List<ProcessNode> nodes = decode(data, json, smileNodesReader, jsonNodesReader);
+        return nodes != null ? nodes : new ArrayList<>();
+    }
+
+    /**
+     * 将文本JSON转换为当前格式的二进制数据，供后台迁移使用
+     *
+     * @param json 文本列
+     * @param nodes true表示流程节点列表，false表示流程变量
+     * @return 二进制数据
+     */
+    public byte[] transcode(String json, boolean nodes) {
+        try {
+            Object value = (nodes ? jsonNodesReader : jsonVariablesReader).readValue(json);
+            return encodeBinary(value);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to transcode payload", e);
+        }
+    }
+
+    private EncodedPayload encode(Object value) {
+        try {
+            if (format == PayloadFormat.JSON) {
+                return new EncodedPayload(jsonWriter.writeValueAsString(value), null);
+            }
+            return new EncodedPayload(null, encodeBinary(value));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode payload", e);
+        }
+    }
+
+    private byte[] encodeBinary(Object value) throws IOException {
+        byte[] raw = smileWriter.writeValueAsBytes(value);
+        if (!lz4Enabled || raw.length < lz4MinSize) {
+            byte[] data = new byte[raw.length + 1];
+            data[0] = SMILE_FORMAT;
+            System.arraycopy(raw, 0, data, 1, raw.length);
+            return data;
+        }
+        byte[] data = new byte[5 + compressor.maxCompressedLength(raw.length)];
+        data[0] = (byte) (SMILE_FORMAT | LZ4_FLAG);
+        ByteBuffer.wrap(data, 1, 4).putInt(raw.length);
+        int compressedLength = compressor.compress(raw, 0, raw.length, data, 5, data.length - 5);
+        return Arrays.copyOf(data, 5 + compressedLength);
+    }
+
+    private <T> T decode(byte[] data, String json, ObjectReader binaryReader, ObjectReader textReader) {
+        try {
+            if (data != null && data.length > 0) {
+                int header = data[0] & 0xFF;
+                if ((header & FORMAT_MASK) != SMILE_FORMAT) {
+                    throw new IllegalStateException("Unknown payload format: " + (header & FORMAT_MASK));
+                }
+                if ((header & LZ4_FLAG) == 0) {
+                    return binaryReader.readValue(data, 1, data.length - 1);
+                }
+                int length = ByteBuffer.wrap(data, 1, 4).getInt();
+                byte[] raw = new byte[length];
+                decompressor.decompress(data, 5, data.length - 5, raw, 0, length);
+                return binaryReader.readValue(raw);
+            }
+            if (json != null && !json.isEmpty()) {
+                return textReader.readValue(json);
+            }
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode payload", e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.demotrade.codec;
+
+/**
+ * 流程变量和流程节点的存储格式
+ */
+public enum PayloadFormat {
+
+    /**
+     * 文本JSON，写入*_json列，与旧版本兼容
+     */
+    JSON,
+
+    /**
+     * Smile二进制JSON，写入*_data列，可选LZ4压缩
+     */
+    SMILE
+}
@@ -0,0 +1,111 @@
+package com.example.demotrade.codec;
+
+import com.example.demotrade.repository.PayloadMigrationRepository;
+import com.example.demotrade.repository.PayloadMigrationRepository.PayloadColumn;
+import com.example.demotrade.repository.PayloadMigrationRepository.TextRow;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文本JSON列后台迁移任务
+ * 定期将variables_json、nodes_json中的文本JSON分批转换为二进制列并清空文本列
+ * <p>
+ * 迁移后的行只能由支持二进制列的版本读取，所有节点升级后再开启；
+ * 多个服务实例之间通过Redisson锁保证同一时刻只有一个实例执行迁移
+ */
+@Component
+@ConditionalOnProperty(prefix = "demo-trade.codec.migration", name = "enabled", havingValue = "true")
+public class PayloadMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayloadMigrator.class);
+
+    private static final String LOCK_NAME = "demo-trade:payload-migration";
+
+    @Autowired
+    private PayloadMigrationRepository migrationRepository;
+
+    @Autowired
+    private PayloadCodec payloadCodec;
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Value("${demo-trade.codec.migration.batch-size:500}")
+    private int batchSize;
+
+    @Value("${demo-trade.codec.migration.max-batches-per-run:100}")
+    private int maxBatchesPerRun;
+
+    /**
+     * 执行一轮迁移
+     */
+    @Scheduled(initialDelayString = "${demo-trade.codec.migration.initial-delay:PT1M}",
+            fixedDelayString = "${demo-trade.codec.migration.interval:PT1M}")
+    public void run() {
+        if (payloadCodec.getFormat() != PayloadFormat.SMILE) {
+            logger.debug("当前存储格式为{}，跳过文本列迁移", payloadCodec.getFormat());
+            return;
+        }
+        RLock lock = redissonClient.getLock(LOCK_NAME);
+        if (!lock.tryLock()) {
+            logger.debug("其它实例正在执行文本列迁移，跳过本轮");
+            return;
+        }
+        try {
+            for (PayloadColumn column : PayloadColumn.values()) {
+                int migrated = migrate(column);
+                if (migrated > 0) {
+                    logger.info("文本列迁移完成, column={}, migrated={}", column, migrated);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("文本列迁移失败", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按ID顺序分批迁移一列，无法解析的行记录日志后跳过
+     *
+     * @return 迁移的行数
+     */
+    public int migrate(PayloadColumn column) {
+        int total = 0;
+        String afterId = null;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<TextRow> rows = migrationRepository.findTextRows(column, afterId, batchSize);
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<String> ids = new ArrayList<>(rows.size());
+            List<byte[]> data = new ArrayList<>(rows.size());
+            for (TextRow row : rows) {
+                try {
+                    data.add(payloadCodec.transcode(row.json(), column.isNodes()));
+                    ids.add(row.id());
+                } catch (RuntimeException e) {
+                    logger.warn("文本列无法解析，跳过迁移, column={}, id={}", column, row.id(), e);
+                }
+            }
+            if (!ids.isEmpty()) {
+                total += migrationRepository.replaceWithData(column, ids, data);
+            }
+            afterId = rows.get(rows.size() - 1).id();
+            if (rows.size() < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demotrade.config;
+
+import com.example.demotrade.util.ExecutorUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 流程引擎配置类
+ */
+@Configuration
+public class ProcessEngineConfig {
+
+    /**
+     * 调用任务节点下游服务使用的RestTemplate
+     */
+    @Bean
+    public RestTemplate restTemplate() {
+        return new RestTemplate();
+    }
+
+    /**
+     * 执行流程节点的线程池
+     * 任务节点的阻塞调用运行在虚拟线程上，不占用Tomcat工作线程
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService processEngineExecutor(
+            @Value("${demo-trade.engine.fallback-threads:200}") int fallbackThreads) {
+        return ExecutorUtil.newVirtualThreadExecutor("process-engine", fallbackThreads);
+    }
+
+    /**
+     * 执行并行网关分支的线程池
+     * 分叉节点在processEngineExecutor上阻塞等待分支，分支不能与之共用线程池，否则平台线程池中
+     * 所有线程都在等待分支时分支任务无法执行；分支内不再等待其它任务，单独的线程池不会被占满
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService parallelBranchExecutor(
+            @Value("${demo-trade.engine.branch-fallback-threads:200}") int fallbackThreads) {
+        return ExecutorUtil.newVirtualThreadExecutor("parallel-branch", fallbackThreads);
+    }
+}
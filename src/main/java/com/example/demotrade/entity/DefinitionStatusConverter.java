@@ -0,0 +1,22 @@
+package com.example.demotrade.entity;
+
+import com.example.demotrade.model.DefinitionStatus;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * 流程定义状态与TINYINT编码的转换，JPQL中与状态比较的参数同样按编码绑定
+ */
+@Converter
+public class DefinitionStatusConverter implements AttributeConverter<DefinitionStatus, Byte> {
+
+    @Override
+    public Byte convertToDatabaseColumn(DefinitionStatus status) {
+        return status != null ? status.code() : null;
+    }
+
+    @Override
+    public DefinitionStatus convertToEntityAttribute(Byte code) {
+        return code != null ? DefinitionStatus.fromCode(code) : null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.demotrade.entity;
+
+import com.example.demotrade.model.InstanceStatus;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * 流程实例状态与TINYINT编码的转换，JPQL中与状态比较的参数同样按编码绑定
+ */
+@Converter
+public class InstanceStatusConverter implements AttributeConverter<InstanceStatus, Byte> {
+
+    @Override
+    public Byte convertToDatabaseColumn(InstanceStatus status) {
+        return status != null ? status.code() : null;
+    }
+
+    @Override
+    public InstanceStatus convertToEntityAttribute(Byte code) {
+        return code != null ? InstanceStatus.fromCode(code) : null;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demotrade.entity;
 
+import com.example.demotrade.model.DefinitionStatus;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -28,11 +29,34 @@ public class ProcessDefinitionEntity {
     @Column(name = "update_time")
     private LocalDateTime updateTime;
     
-    private String status;
+    /**
+     * 流程定义状态，以TINYINT编码保存
+     */
+    @Convert(converter = DefinitionStatusConverter.class)
+    @Column(columnDefinition = "TINYINT")
+    private DefinitionStatus status;
     
     @Column(columnDefinition = "TEXT")
     private String nodesJson;
     
+    /**
+     * 二进制编码的节点列表，格式见PayloadCodec；不为null时优先于nodesJson
+     */
+    @Column(name = "nodes_data", columnDefinition = "LONGBLOB")
+    private byte[] nodesData;
+    
+    /**
+     * 变量声明的JSON，没有声明变量时为null
+     */
+    @Column(name = "variables_json", columnDefinition = "TEXT")
+    private String variablesJson;
+    
+    /**
+     * 发布时编译的执行计划，格式见ExecutionPlan.toBytes；为null时执行时编译
+     */
+    @Column(name = "execution_plan", columnDefinition = "BLOB")
+    private byte[] executionPlan;
+    
     public String getId() {
         return id;
     }
@@ -81,11 +105,11 @@ public class ProcessDefinitionEntity {
         this.updateTime = updateTime;
     }
 
-    public String getStatus() {
+    public DefinitionStatus getStatus() {
         return status;
     }
 
-    public void setStatus(String status) {
+    public void setStatus(DefinitionStatus status) {
         this.status = status;
     }
 
@@ -96,4 +120,28 @@ public class ProcessDefinitionEntity {
     public void setNodesJson(String nodesJson) {
         this.nodesJson = nodesJson;
     }
-}
\ No newline at end of file
+
+    public byte[] getNodesData() {
+        return nodesData;
+    }
+
+    public void setNodesData(byte[] nodesData) {
+        this.nodesData = nodesData;
+    }
+
+    public String getVariablesJson() {
+        return variablesJson;
+    }
+
+    public void setVariablesJson(String variablesJson) {
+        this.variablesJson = variablesJson;
+    }
+
+    public byte[] getExecutionPlan() {
+        return executionPlan;
+    }
+
+    public void setExecutionPlan(byte[] executionPlan) {
+        this.executionPlan = executionPlan;
+    }
+}
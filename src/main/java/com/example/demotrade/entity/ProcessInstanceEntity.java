@@ -1,5 +1,6 @@
 package com.example.demotrade.entity;
 
+import com.example.demotrade.model.InstanceStatus;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
@@ -8,7 +9,11 @@ import java.time.LocalDateTime;
  * 用于将流程实例信息持久化到数据库
  */
 @Entity
-@Table(name = "process_instance")
+@Table(name = "process_instance", indexes = {
+        @Index(name = "idx_instance_status_create", columnList = "status, create_time, id"),
+        @Index(name = "idx_instance_business_create", columnList = "business_id, create_time, id"),
+        @Index(name = "idx_instance_definition_business_create", columnList = "process_definition_id, business_id, create_time")
+})
 public class ProcessInstanceEntity {
 
     @Id
@@ -26,11 +31,28 @@ public class ProcessInstanceEntity {
     @Column(name = "current_node_id")
     private String currentNodeId;
     
-    private String status;
+    /**
+     * 流程实例状态，以TINYINT编码保存
+     */
+    @Convert(converter = InstanceStatusConverter.class)
+    @Column(columnDefinition = "TINYINT")
+    private InstanceStatus status;
     
-    @Column(columnDefinition = "TEXT")
+    /**
+     * 创建实例时的初始变量，之后的变量变更写入process_variable表，更新实例时不再改写该列
+     */
+    @Column(columnDefinition = "TEXT", updatable = false)
     private String variablesJson;
     
+    /**
+     * 二进制编码的初始变量，格式见PayloadCodec；不为null时优先于variablesJson
+     */
+    @Column(name = "variables_data", columnDefinition = "LONGBLOB", updatable = false)
+    private byte[] variablesData;
+    
+    @Column(name = "tokens_json", columnDefinition = "TEXT")
+    private String tokensJson;
+    
     @Column(name = "start_time")
     private LocalDateTime startTime;
     
@@ -45,6 +67,19 @@ public class ProcessInstanceEntity {
     
     @Column(name = "error_message", columnDefinition = "TEXT")
     private String errorMessage;
+    
+    /**
+     * 乐观锁版本号，每次更新加1
+     */
+    @Version
+    @Column(nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+    
+    /**
+     * 最近一次写入时持有的分布式锁fencing token，只允许递增
+     */
+    @Column(name = "fencing_token", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long fencingToken = 0L;
 
     public String getId() {
         return id;
@@ -86,11 +121,11 @@ public class ProcessInstanceEntity {
         this.currentNodeId = currentNodeId;
     }
 
-    public String getStatus() {
+    public InstanceStatus getStatus() {
         return status;
     }
 
-    public void setStatus(String status) {
+    public void setStatus(InstanceStatus status) {
         this.status = status;
     }
 
@@ -102,6 +137,22 @@ public class ProcessInstanceEntity {
         this.variablesJson = variablesJson;
     }
 
+    public byte[] getVariablesData() {
+        return variablesData;
+    }
+
+    public void setVariablesData(byte[] variablesData) {
+        this.variablesData = variablesData;
+    }
+
+    public String getTokensJson() {
+        return tokensJson;
+    }
+
+    public void setTokensJson(String tokensJson) {
+        this.tokensJson = tokensJson;
+    }
+
     public LocalDateTime getStartTime() {
         return startTime;
     }
@@ -141,4 +192,20 @@ public class ProcessInstanceEntity {
     public void setErrorMessage(String errorMessage) {
         this.errorMessage = errorMessage;
     }
-}
\ No newline at end of file
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getFencingToken() {
+        return fencingToken;
+    }
+
+    public void setFencingToken(Long fencingToken) {
+        this.fencingToken = fencingToken;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demotrade.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 流程节点定时器实体类
+ * 未触发的节点超时和延迟重试，重启后按到期时间重新加载
+ */
+@Entity
+@Table(name = "process_timer", indexes = {
+        @Index(name = "idx_timer_due", columnList = "due_time, id"),
+        @Index(name = "idx_timer_instance", columnList = "process_instance_id")
+})
+public class ProcessTimerEntity {
+
+    /**
+     * 流程实例ID:定时器类型
+     */
+    @Id
+    @Column(length = 128)
+    private String id;
+    
+    @Column(name = "process_instance_id", nullable = false, length = 64)
+    private String processInstanceId;
+    
+    @Column(name = "node_id")
+    private String nodeId;
+    
+    @Column(name = "timer_type", nullable = false, length = 16)
+    private String timerType;
+    
+    @Column(nullable = false)
+    private Integer attempt;
+    
+    @Column(name = "due_time", nullable = false)
+    private LocalDateTime dueTime;
+    
+    @Column(name = "create_time")
+    private LocalDateTime createTime;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getProcessInstanceId() {
+        return processInstanceId;
+    }
+
+    public void setProcessInstanceId(String processInstanceId) {
+        this.processInstanceId = processInstanceId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getTimerType() {
+        return timerType;
+    }
+
+    public void setTimerType(String timerType) {
+        this.timerType = timerType;
+    }
+
+    public Integer getAttempt() {
+        return attempt;
+    }
+
+    public void setAttempt(Integer attempt) {
+        this.attempt = attempt;
+    }
+
+    public LocalDateTime getDueTime() {
+        return dueTime;
+    }
+
+    public void setDueTime(LocalDateTime dueTime) {
+        this.dueTime = dueTime;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+}
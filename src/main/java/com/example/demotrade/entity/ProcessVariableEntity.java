@@ -0,0 +1,114 @@
+package com.example.demotrade.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 流程变量实体类
+ * 每个流程变量单独一行，更新变量时只写入发生变化的行
+ */
+@Entity
+@Table(name = "process_variable",
+        uniqueConstraints = @UniqueConstraint(name = "uk_instance_name", columnNames = {"process_instance_id", "variable_name"}))
+public class ProcessVariableEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "process_instance_id", nullable = false, length = 64)
+    private String processInstanceId;
+    
+    @Column(name = "variable_name", nullable = false, length = 64)
+    private String variableName;
+    
+    @Column(name = "variable_value", nullable = false, columnDefinition = "TEXT")
+    private String variableValue;
+    
+    @Column(name = "variable_type", nullable = false, length = 32)
+    private String variableType;
+    
+    @Column(nullable = false, length = 64)
+    private String creator;
+    
+    @Column(length = 64)
+    private String modifier;
+    
+    @Column(name = "gmt_create", nullable = false)
+    private LocalDateTime gmtCreate;
+    
+    @Column(name = "gmt_modified")
+    private LocalDateTime gmtModified;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getProcessInstanceId() {
+        return processInstanceId;
+    }
+
+    public void setProcessInstanceId(String processInstanceId) {
+        this.processInstanceId = processInstanceId;
+    }
+
+    public String getVariableName() {
+        return variableName;
+    }
+
+    public void setVariableName(String variableName) {
+        this.variableName = variableName;
+    }
+
+    public String getVariableValue() {
+        return variableValue;
+    }
+
+    public void setVariableValue(String variableValue) {
+        this.variableValue = variableValue;
+    }
+
+    public String getVariableType() {
+        return variableType;
+    }
+
+    public void setVariableType(String variableType) {
+        this.variableType = variableType;
+    }
+
+    public String getCreator() {
+        return creator;
+    }
+
+    public void setCreator(String creator) {
+        this.creator = creator;
+    }
+
+    public String getModifier() {
+        return modifier;
+    }
+
+    public void setModifier(String modifier) {
+        this.modifier = modifier;
+    }
+
+    public LocalDateTime getGmtCreate() {
+        return gmtCreate;
+    }
+
+    public void setGmtCreate(LocalDateTime gmtCreate) {
+        this.gmtCreate = gmtCreate;
+    }
+
+    public LocalDateTime getGmtModified() {
+        return gmtModified;
+    }
+
+    public void setGmtModified(LocalDateTime gmtModified) {
+        this.gmtModified = gmtModified;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.demotrade.eventlog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 事件日志段
+ * 固定大小的内存映射文件，记录格式为：长度(int) + CRC32(int) + 序号(long) + 数据；长度为0表示数据结束
+ * <p>
+ * 打开时从头校验记录，遇到CRC不符或序号不连续的记录视为未写完，从该位置继续追加
+ */
+final class EventLogSegment implements Closeable {
+
+    static final int HEADER_SIZE = 16;
+
+    private final Path path;
+
+    private final long firstSequence;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private long lastSequence;
+
+    private EventLogSegment(Path path, long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSequence = firstSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.lastSequence = firstSequence - 1;
+    }
+
+    /**
+     * 打开或创建日志段
+     *
+     * @param path 文件路径
+     * @param firstSequence 段内第一条记录的序号
+     * @param size 段大小，新建时按该大小映射
+     */
+    static EventLogSegment open(Path path, long firstSequence, int size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        int mappedSize = (int) Math.max(size, channel.size());
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize);
+        EventLogSegment segment = new EventLogSegment(path, firstSequence, channel, buffer);
+        segment.recover();
+        return segment;
+    }
+
+    private void recover() {
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            long sequence = buffer.getLong(position + 8);
+            if (sequence != lastSequence + 1 || checksum(position + HEADER_SIZE, length) != buffer.getInt(position + 4)) {
+                break;
+            }
+            lastSequence = sequence;
+            position += HEADER_SIZE + length;
+        }
+        // 清除未写完的记录头，避免之后被当作有效记录
+        if (position + 4 <= buffer.capacity()) {
+            buffer.putInt(position, 0);
+        }
+        buffer.position(position);
+    }
+
+    /**
+     * 追加一条记录，先写数据和校验，最后写长度
+     *
+     * @return 段内剩余空间不足时返回false
+     */
+    boolean append(long sequence, byte[] data) {
+        int position = buffer.position();
+        if (position + HEADER_SIZE + data.length > buffer.capacity()) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putLong(position + 8, sequence);
+        buffer.put(position + HEADER_SIZE, data);
+        buffer.putInt(position, data.length);
+        int end = position + HEADER_SIZE + data.length;
+        if (end + 4 <= buffer.capacity()) {
+            buffer.putInt(end, 0);
+        }
+        buffer.position(end);
+        lastSequence = sequence;
+        return true;
+    }
+
+    /**
+     * 按顺序读取序号大于afterSequence的记录
+     */
+    void forEach(long afterSequence, SegmentedEventLog.RecordConsumer consumer) {
+        int end = buffer.position();
+        int position = 0;
+        while (position < end) {
+            int length = buffer.getInt(position);
+            long sequence = buffer.getLong(position + 8);
+            if (sequence > afterSequence) {
+                byte[] data = new byte[length];
+                buffer.get(position + HEADER_SIZE, data);
+                consumer.accept(sequence, data);
+            }
+            position += HEADER_SIZE + length;
+        }
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    boolean isEmpty() {
+        return lastSequence < firstSequence;
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int checksum(int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer slice = buffer.slice(offset, length);
+        crc.update(slice);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.demotrade.eventlog;
+
+import com.example.demotrade.model.ExecutionToken;
+import com.example.demotrade.model.ProcessInstance;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流程实例事件
+ * 一次状态变更产生的多个事件写入同一条日志记录，回放时整体生效
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class InstanceEvent {
+
+    /**
+     * 事件类型
+     */
+    public enum Type {
+        /**
+         * 创建实例，instance为完整的初始状态
+         */
+        CREATED,
+        /**
+         * 进入节点
+         */
+        NODE_ENTERED,
+        /**
+         * 变量变化，variables只包含变化的变量，removedVariables为被删除的变量
+         */
+        VARIABLES_CHANGED,
+        /**
+         * 状态、错误信息或结束时间变化
+         */
+        STATUS_CHANGED,
+        /**
+         * 分支令牌变化
+         */
+        TOKENS_CHANGED
+    }
+
+    private Type type;
+
+    private String instanceId;
+
+    /**
+     * 应用事件后的实例版本号
+     */
+    private Long version;
+
+    private LocalDateTime timestamp;
+
+    private ProcessInstance instance;
+
+    private String nodeId;
+
+    private Map<String, Object> variables;
+
+    private List<String> removedVariables;
+
+    private String status;
+
+    private String errorMessage;
+
+    private LocalDateTime endTime;
+
+    private List<ExecutionToken> tokens;
+
+    public InstanceEvent() {
+    }
+
+    public InstanceEvent(Type type, String instanceId, Long version, LocalDateTime timestamp) {
+        this.type = type;
+        this.instanceId = instanceId;
+        this.version = version;
+        this.timestamp = timestamp;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public void setInstanceId(String instanceId) {
+        this.instanceId = instanceId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public ProcessInstance getInstance() {
+        return instance;
+    }
+
+    public void setInstance(ProcessInstance instance) {
+        this.instance = instance;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Map<String, Object> getVariables() {
+        return variables;
+    }
+
+    public void setVariables(Map<String, Object> variables) {
+        this.variables = variables;
+    }
+
+    public List<String> getRemovedVariables() {
+        return removedVariables;
+    }
+
+    public void setRemovedVariables(List<String> removedVariables) {
+        this.removedVariables = removedVariables;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+
+    public List<ExecutionToken> getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(List<ExecutionToken> tokens) {
+        this.tokens = tokens;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.demotrade.eventlog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 分段的追加写事件日志
+ * 记录顺序写入当前的内存映射日志段，段写满后新建下一个段；快照之后可以删除已被快照覆盖的旧段
+ * <p>
+ * 段文件名为segment-第一条记录序号.log，序号从1开始连续递增
+ */
+public class SegmentedEventLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final boolean forceOnAppend;
+
+    private final List<EventLogSegment> segments = new ArrayList<>();
+
+    private EventLogSegment active;
+
+    private long nextSequence;
+
+    private SegmentedEventLog(Path directory, int segmentSize, boolean forceOnAppend) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.forceOnAppend = forceOnAppend;
+    }
+
+    /**
+     * 打开日志目录，恢复已有的日志段
+     *
+     * @param directory 日志目录
+     * @param segmentSize 每个段的字节数
+     * @param forceOnAppend 是否在每次追加后刷盘
+     * @return 事件日志
+     */
+    public static SegmentedEventLog open(Path directory, int segmentSize, boolean forceOnAppend) throws IOException {
+        Files.createDirectories(directory);
+        SegmentedEventLog log = new SegmentedEventLog(directory, segmentSize, forceOnAppend);
+        List<Long> firstSequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .forEach(firstSequences::add);
+        }
+        for (Long firstSequence : firstSequences) {
+            log.segments.add(EventLogSegment.open(log.segmentPath(firstSequence), firstSequence, segmentSize));
+        }
+        if (log.segments.isEmpty()) {
+            log.segments.add(EventLogSegment.open(log.segmentPath(1), 1, segmentSize));
+        }
+        log.active = log.segments.get(log.segments.size() - 1);
+        log.nextSequence = log.active.getLastSequence() + 1;
+        return log;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param data 记录内容
+     * @return 记录序号
+     */
+    public synchronized long append(byte[] data) {
+        if (data.length + EventLogSegment.HEADER_SIZE > segmentSize) {
+            throw new IllegalArgumentException("Event record of " + data.length + " bytes exceeds segment size " + segmentSize);
+        }
+        long sequence = nextSequence;
+        if (!active.append(sequence, data)) {
+            roll(sequence);
+            active.append(sequence, data);
+        }
+        nextSequence++;
+        if (forceOnAppend) {
+            active.force();
+        }
+        return sequence;
+    }
+
+    /**
+     * 按顺序回放序号大于afterSequence的记录
+     */
+    public synchronized void replay(long afterSequence, RecordConsumer consumer) {
+        for (EventLogSegment segment : segments) {
+            if (segment.getLastSequence() > afterSequence) {
+                segment.forEach(afterSequence, consumer);
+            }
+        }
+    }
+
+    /**
+     * 删除全部记录的序号都不大于sequence的旧段，当前写入的段不会被删除
+     *
+     * @return 删除的段数
+     */
+    public synchronized int deleteSegmentsUpTo(long sequence) {
+        int deleted = 0;
+        Iterator<EventLogSegment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            EventLogSegment segment = iterator.next();
+            if (segment == active || segment.getLastSequence() > sequence) {
+                break;
+            }
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to delete event log segment", e);
+            }
+            iterator.remove();
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * 最后一条记录的序号，没有记录时为0
+     */
+    public synchronized long getLastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * 当前的段数
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized void force() {
+        active.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.force();
+        for (EventLogSegment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private void roll(long firstSequence) {
+        active.force();
+        try {
+            active = EventLogSegment.open(segmentPath(firstSequence), firstSequence, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create event log segment", e);
+        }
+        segments.add(active);
+    }
+
+    private Path segmentPath(long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * 记录回放回调
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+
+        void accept(long sequence, byte[] data);
+    }
+}
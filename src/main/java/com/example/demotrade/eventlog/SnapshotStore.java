@@ -0,0 +1,152 @@
+package com.example.demotrade.eventlog;
+
+import com.example.demotrade.model.ProcessInstance;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 流程实例快照存储
+ * 快照文件名为snapshot-最后一条已包含记录的序号.json，先写临时文件并刷盘，再原子重命名；
+ * 从内存中移出的已结束实例以同样的方式写入archive-序号-写入时间.json，归档文件不会被删除
+ */
+public class SnapshotStore {
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private static final String ARCHIVE_PREFIX = "archive-";
+
+    private static final String SNAPSHOT_SUFFIX = ".json";
+
+    private final Path directory;
+
+    private final ObjectMapper objectMapper;
+
+    public SnapshotStore(Path directory, ObjectMapper objectMapper) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 写入快照并删除更早的快照
+     *
+     * @param lastSequence 快照包含的最后一条日志记录序号
+     * @param instances 全部流程实例
+     */
+    public void write(long lastSequence, Collection<ProcessInstance> instances) throws IOException {
+        Path target = snapshotPath(lastSequence);
+        writeAtomically(target, new Snapshot(lastSequence, new ArrayList<>(instances)));
+
+        for (Path old : listSnapshots()) {
+            if (!old.equals(target)) {
+                Files.deleteIfExists(old);
+            }
+        }
+    }
+
+    /**
+     * 写入从内存中移出的实例，必须在不再包含这些实例的快照之前写入
+     * 快照写入失败时实例会被放回内存，下一次快照时重新归档，同一实例可能出现在多个归档文件中
+     *
+     * @param lastSequence 移出实例时的最后一条日志记录序号
+     * @param instances 移出的流程实例
+     */
+    public void archive(long lastSequence, Collection<ProcessInstance> instances) throws IOException {
+        // 没有新日志时两次快照的序号相同，文件名加上写入时间避免覆盖之前的归档
+        Path target = directory.resolve(String.format("%s%020d-%d%s", ARCHIVE_PREFIX, lastSequence,
+                System.currentTimeMillis(), SNAPSHOT_SUFFIX));
+        writeAtomically(target, new Snapshot(lastSequence, new ArrayList<>(instances)));
+    }
+
+    private void writeAtomically(Path target, Snapshot content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            objectMapper.writer()
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .writeValue(out, content);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * 读取最新的快照
+     */
+    public Optional<Snapshot> loadLatest() throws IOException {
+        List<Path> snapshots = listSnapshots();
+        if (snapshots.isEmpty()) {
+            return Optional.empty();
+        }
+        try (InputStream in = Files.newInputStream(snapshots.get(snapshots.size() - 1))) {
+            return Optional.of(objectMapper.readValue(in, Snapshot.class));
+        }
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path snapshotPath(long lastSequence) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, lastSequence, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * 快照内容
+     */
+    public static class Snapshot {
+
+        private long lastSequence;
+
+        private List<ProcessInstance> instances = new ArrayList<>();
+
+        public Snapshot() {
+        }
+
+        public Snapshot(long lastSequence, List<ProcessInstance> instances) {
+            this.lastSequence = lastSequence;
+            this.instances = instances;
+        }
+
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        public void setLastSequence(long lastSequence) {
+            this.lastSequence = lastSequence;
+        }
+
+        public List<ProcessInstance> getInstances() {
+            return instances;
+        }
+
+        public void setInstances(List<ProcessInstance> instances) {
+            this.instances = instances;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.demotrade.exception;
+
+import java.util.List;
+
+/**
+ * 流程定义结构校验异常
+ * 发布流程定义时编译执行计划失败抛出，包含发现的全部结构错误
+ */
+public class ProcessDefinitionValidationException extends RuntimeException {
+
+    private final String processDefinitionId;
+
+    private final List<String> errors;
+
+    public ProcessDefinitionValidationException(String processDefinitionId, List<String> errors) {
+        super("Invalid process definition " + processDefinitionId + ": " + String.join("; ", errors));
+        this.processDefinitionId = processDefinitionId;
+        this.errors = List.copyOf(errors);
+    }
+
+    public String getProcessDefinitionId() {
+        return processDefinitionId;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
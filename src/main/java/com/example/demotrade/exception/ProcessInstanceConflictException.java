@@ -0,0 +1,19 @@
+package com.example.demotrade.exception;
+
+/**
+ * 流程实例并发冲突异常
+ * 条件更新未命中时抛出：实例已被其它请求修改，或当前状态不允许该操作
+ */
+public class ProcessInstanceConflictException extends RuntimeException {
+
+    private final String processInstanceId;
+
+    public ProcessInstanceConflictException(String processInstanceId, String message) {
+        super(message);
+        this.processInstanceId = processInstanceId;
+    }
+
+    public String getProcessInstanceId() {
+        return processInstanceId;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demotrade.expression;
+
+import com.example.demotrade.model.ProcessDefinition;
+import com.example.demotrade.model.ProcessNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 网关条件求值器
+ * 每个流程定义版本中的每个条件表达式只编译一次，之后直接使用编译结果求值；
+ * 流程定义声明了变量时，表达式中的变量在编译时绑定槽位
+ */
+@Component
+public class ConditionEvaluator {
+
+    /**
+     * (流程定义ID, 版本号, 节点ID) -> 编译后的条件表达式
+     */
+    private final Cache<ConditionKey, ConditionExpression> compiledConditions;
+
+    public ConditionEvaluator(@Value("${demo-trade.condition-cache.maximum-size:10000}") long maximumSize) {
+        this.compiledConditions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /**
+     * 对网关节点的条件表达式求值
+     *
+     * @param definition 节点所属流程定义
+     * @param node 网关节点
+     * @param variables 流程变量
+     * @return 表达式结果
+     */
+    public Object evaluate(ProcessDefinition definition, ProcessNode node, Map<String, Object> variables) {
+        return getCompiledCondition(definition, node).evaluate(variables);
+    }
+
+    /**
+     * 获取节点编译后的条件表达式
+     *
+     * @param definition 节点所属流程定义
+     * @param node 网关节点
+     * @return 编译后的条件表达式
+     */
+    public ConditionExpression getCompiledCondition(ProcessDefinition definition, ProcessNode node) {
+        ConditionKey key = new ConditionKey(definition.getId(), definition.getVersion(), node.getId());
+        return compiledConditions.get(key, k -> ConditionExpressionCompiler.compile(node.getCondition(),
+                definition.getVariableSchema()));
+    }
+
+    /**
+     * 缓存键
+     */
+    private record ConditionKey(String processDefinitionId, Integer version, String nodeId) {
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.demotrade.expression;
+
+import java.util.Map;
+
+/**
+ * 编译后的条件表达式
+ * 由{@link ConditionExpressionCompiler}解析生成，求值时不再解析文本也不使用反射，可在多线程间共享
+ */
+public final class ConditionExpression {
+
+    private final String source;
+
+    private final ExpressionNode root;
+
+    ConditionExpression(String source, ExpressionNode root) {
+        this.source = source;
+        this.root = root;
+    }
+
+    /**
+     * 对流程变量求值
+     *
+     * @param variables 流程变量
+     * @return 表达式结果
+     */
+    public Object evaluate(Map<String, Object> variables) {
+        return root.evaluate(variables);
+    }
+
+    /**
+     * 以布尔值形式对流程变量求值
+     *
+     * @param variables 流程变量
+     * @return 表达式结果为true时返回true
+     */
+    public boolean test(Map<String, Object> variables) {
+        return root.evaluateBoolean(variables);
+    }
+
+    /**
+     * 获取表达式原文
+     */
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
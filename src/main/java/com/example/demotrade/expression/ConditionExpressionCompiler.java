@@ -0,0 +1,330 @@
+package com.example.demotrade.expression;
+
+import com.example.demotrade.expression.ExpressionNode.CompareOperator;
+import com.example.demotrade.model.VariableSchema;
+
+import java.math.BigDecimal;
+
+/**
+ * 条件表达式编译器
+ * 将网关节点的条件表达式文本解析为语法树，支持的语法：
+ * <ul>
+ *     <li>常量：数值、'字符串'或"字符串"、true、false、null</li>
+ *     <li>变量：amount、order.amount（访问嵌套Map）</li>
+ *     <li>运算：+ - * / %、== != &gt; &gt;= &lt; &lt;=、! &amp;&amp; ||（也可写作not and or）、条件 ? 值1 : 值2</li>
+ * </ul>
+ * 例如：{@code amount > 1000 && approved == true}、{@code approved == true ? 'task2' : 'task3'}
+ */
+public final class ConditionExpressionCompiler {
+
+    private final String source;
+
+    private final VariableSchema schema;
+
+    private int position;
+
+    private ConditionExpressionCompiler(String source, VariableSchema schema) {
+        this.source = source;
+        this.schema = schema;
+    }
+
+    /**
+     * 编译条件表达式
+     *
+     * @param source 表达式文本
+     * @return 编译后的表达式
+     * @throws IllegalArgumentException 表达式语法错误
+     */
+    public static ConditionExpression compile(String source) {
+        return compile(source, null);
+    }
+
+    /**
+     * 编译条件表达式，声明过的变量在编译时绑定槽位，求值时按槽位下标读取
+     *
+     * @param source 表达式文本
+     * @param schema 流程定义的变量槽位布局，为null时与{@link #compile(String)}相同
+     * @return 编译后的表达式
+     * @throws IllegalArgumentException 表达式语法错误
+     */
+    public static ConditionExpression compile(String source, VariableSchema schema) {
+        if (source == null || source.isBlank()) {
+            throw new IllegalArgumentException("Condition expression is empty");
+        }
+        ConditionExpressionCompiler compiler = new ConditionExpressionCompiler(source, schema);
+        ExpressionNode root = compiler.parseTernary();
+        compiler.skipWhitespace();
+        if (compiler.position < source.length()) {
+            throw compiler.error("Unexpected character '" + source.charAt(compiler.position) + "'");
+        }
+        return new ConditionExpression(source, root);
+    }
+
+    private ExpressionNode parseTernary() {
+        ExpressionNode condition = parseOr();
+        if (!match("?")) {
+            return condition;
+        }
+        ExpressionNode whenTrue = parseTernary();
+        expect(":");
+        ExpressionNode whenFalse = parseTernary();
+        return new ExpressionNode.Ternary(condition, whenTrue, whenFalse);
+    }
+
+    private ExpressionNode parseOr() {
+        ExpressionNode left = parseAnd();
+        while (match("||") || matchKeyword("or")) {
+            left = new ExpressionNode.Or(left, parseAnd());
+        }
+        return left;
+    }
+
+    private ExpressionNode parseAnd() {
+        ExpressionNode left = parseEquality();
+        while (match("&&") || matchKeyword("and")) {
+            left = new ExpressionNode.And(left, parseEquality());
+        }
+        return left;
+    }
+
+    private ExpressionNode parseEquality() {
+        ExpressionNode left = parseRelational();
+        while (true) {
+            if (match("==")) {
+                left = compare(CompareOperator.EQ, left, parseRelational());
+            } else if (match("!=")) {
+                left = compare(CompareOperator.NE, left, parseRelational());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private ExpressionNode parseRelational() {
+        ExpressionNode left = parseAdditive();
+        while (true) {
+            if (match(">=")) {
+                left = compare(CompareOperator.GE, left, parseAdditive());
+            } else if (match("<=")) {
+                left = compare(CompareOperator.LE, left, parseAdditive());
+            } else if (match(">")) {
+                left = compare(CompareOperator.GT, left, parseAdditive());
+            } else if (match("<")) {
+                left = compare(CompareOperator.LT, left, parseAdditive());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private ExpressionNode parseAdditive() {
+        ExpressionNode left = parseMultiplicative();
+        while (true) {
+            if (match("+")) {
+                ExpressionNode right = parseMultiplicative();
+                left = isStringLiteral(left) || isStringLiteral(right)
+                        ? new ExpressionNode.Concat(left, right)
+                        : new ExpressionNode.Arithmetic('+', left, right);
+            } else if (match("-")) {
+                left = new ExpressionNode.Arithmetic('-', left, parseMultiplicative());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private ExpressionNode parseMultiplicative() {
+        ExpressionNode left = parseUnary();
+        while (true) {
+            if (match("*")) {
+                left = new ExpressionNode.Arithmetic('*', left, parseUnary());
+            } else if (match("/")) {
+                left = new ExpressionNode.Arithmetic('/', left, parseUnary());
+            } else if (match("%")) {
+                left = new ExpressionNode.Arithmetic('%', left, parseUnary());
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private ExpressionNode parseUnary() {
+        if (peekSingle('!')) {
+            position++;
+            return new ExpressionNode.Not(parseUnary());
+        }
+        if (matchKeyword("not")) {
+            return new ExpressionNode.Not(parseUnary());
+        }
+        if (match("-")) {
+            ExpressionNode operand = parseUnary();
+            if (operand instanceof ExpressionNode.NumberLiteral literal) {
+                return literal.negate();
+            }
+            return new ExpressionNode.Negate(operand);
+        }
+        return parsePrimary();
+    }
+
+    private ExpressionNode parsePrimary() {
+        skipWhitespace();
+        if (position >= source.length()) {
+            throw error("Unexpected end of expression");
+        }
+        char c = source.charAt(position);
+        if (c == '(') {
+            position++;
+            ExpressionNode inner = parseTernary();
+            expect(")");
+            return inner;
+        }
+        if (c == '\'' || c == '"') {
+            return new ExpressionNode.Literal(parseString(c));
+        }
+        if (Character.isDigit(c) || (c == '.' && position + 1 < source.length()
+                && Character.isDigit(source.charAt(position + 1)))) {
+            return parseNumber();
+        }
+        if (Character.isJavaIdentifierStart(c)) {
+            String identifier = parseIdentifier();
+            switch (identifier) {
+                case "true":
+                    return new ExpressionNode.Literal(Boolean.TRUE);
+                case "false":
+                    return new ExpressionNode.Literal(Boolean.FALSE);
+                case "null":
+                    return new ExpressionNode.Literal(null);
+                default:
+                    return new ExpressionNode.Variable(identifier, schema);
+            }
+        }
+        throw error("Unexpected character '" + c + "'");
+    }
+
+    private String parseString(char quote) {
+        StringBuilder value = new StringBuilder();
+        position++;
+        while (position < source.length()) {
+            char c = source.charAt(position++);
+            if (c == quote) {
+                return value.toString();
+            }
+            if (c == '\\' && position < source.length()) {
+                c = source.charAt(position++);
+            }
+            value.append(c);
+        }
+        throw error("Unterminated string literal");
+    }
+
+    private ExpressionNode parseNumber() {
+        int start = position;
+        while (position < source.length()
+                && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+            position++;
+        }
+        // 兼容Java风格的长整型和浮点后缀
+        String text = source.substring(start, position);
+        boolean floating = text.indexOf('.') >= 0;
+        if (position < source.length() && "lLdDfF".indexOf(source.charAt(position)) >= 0) {
+            floating |= "dDfF".indexOf(source.charAt(position)) >= 0;
+            position++;
+        }
+        try {
+            if (floating) {
+                return new ExpressionNode.NumberLiteral(Double.parseDouble(text));
+            }
+            // 整数常量保持为long，与long变量精确比较
+            return new ExpressionNode.NumberLiteral(parseInteger(text));
+        } catch (NumberFormatException e) {
+            throw error("Invalid number '" + text + "'");
+        }
+    }
+
+    /**
+     * 超出long范围的整数常量保存为BigDecimal
+     */
+    private static Number parseInteger(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return new BigDecimal(text);
+        }
+    }
+
+    private String parseIdentifier() {
+        int start = position;
+        while (position < source.length()
+                && (Character.isJavaIdentifierPart(source.charAt(position)) || source.charAt(position) == '.')) {
+            position++;
+        }
+        return source.substring(start, position);
+    }
+
+    /**
+     * 任一操作数编译期已知为数值时生成数值比较，否则生成运行时判断类型的比较
+     */
+    private static ExpressionNode compare(CompareOperator operator, ExpressionNode left, ExpressionNode right) {
+        if (left.isNumeric() || right.isNumeric()) {
+            return new ExpressionNode.NumericCompare(operator, left, right);
+        }
+        return new ExpressionNode.DynamicCompare(operator, left, right);
+    }
+
+    private static boolean isStringLiteral(ExpressionNode node) {
+        return node instanceof ExpressionNode.Literal && node.evaluate(null) instanceof String;
+    }
+
+    private boolean match(String token) {
+        skipWhitespace();
+        if (!source.startsWith(token, position)) {
+            return false;
+        }
+        // 避免把 >= 中的 > 、!= 中的 ! 等当作单字符运算符
+        if (token.length() == 1 && position + 1 < source.length()) {
+            char next = source.charAt(position + 1);
+            char c = token.charAt(0);
+            if ((c == '>' || c == '<' || c == '=' || c == '!') && next == '=') {
+                return false;
+            }
+            if ((c == '&' && next == '&') || (c == '|' && next == '|')) {
+                return false;
+            }
+        }
+        position += token.length();
+        return true;
+    }
+
+    private boolean peekSingle(char c) {
+        skipWhitespace();
+        return position < source.length() && source.charAt(position) == c
+                && (position + 1 >= source.length() || source.charAt(position + 1) != '=');
+    }
+
+    private boolean matchKeyword(String keyword) {
+        skipWhitespace();
+        int end = position + keyword.length();
+        if (!source.startsWith(keyword, position)
+                || (end < source.length() && Character.isJavaIdentifierPart(source.charAt(end)))) {
+            return false;
+        }
+        position = end;
+        return true;
+    }
+
+    private void expect(String token) {
+        if (!match(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position + " in expression: " + source);
+    }
+}
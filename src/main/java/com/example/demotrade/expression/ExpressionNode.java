@@ -0,0 +1,542 @@
+package com.example.demotrade.expression;
+
+import com.example.demotrade.model.SlotVariables;
+import com.example.demotrade.model.VariableSchema;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 表达式语法树节点
+ * 数值节点重写{@link #evaluateDouble}，比较和算术运算直接在double上进行，避免装箱；
+ * 比较时double相等的两个数值再按原始类型精确比较，long之间和BigDecimal之间不受double精度影响
+ */
+abstract class ExpressionNode {
+
+    /**
+     * 求值
+     */
+    abstract Object evaluate(Map<String, Object> variables);
+
+    /**
+     * 以double求值，非数值结果返回NaN，NaN参与的比较结果均为false，包括!=
+     */
+    double evaluateDouble(Map<String, Object> variables) {
+        return toDouble(evaluate(variables));
+    }
+
+    /**
+     * 以布尔值求值，只有Boolean.TRUE视为true
+     */
+    boolean evaluateBoolean(Map<String, Object> variables) {
+        return Boolean.TRUE.equals(evaluate(variables));
+    }
+
+    /**
+     * 编译期是否已知结果为数值
+     */
+    boolean isNumeric() {
+        return false;
+    }
+
+    static double toDouble(Object value) {
+        return value instanceof Number number ? number.doubleValue() : Double.NaN;
+    }
+
+    /**
+     * 按原始类型比较两个数值：整数之间按long比较，浮点数之间按double比较，其余按BigDecimal比较
+     */
+    static boolean compare(CompareOperator operator, Number l, Number r) {
+        if (isIntegral(l) && isIntegral(r)) {
+            return operator.test(Long.compare(l.longValue(), r.longValue()));
+        }
+        // NaN和无穷大无法转换为BigDecimal
+        if (isFloating(l) && (isFloating(r) || !Double.isFinite(l.doubleValue()))
+                || isFloating(r) && !Double.isFinite(r.doubleValue())) {
+            return operator.test(l.doubleValue(), r.doubleValue());
+        }
+        return operator.test(toBigDecimal(l).compareTo(toBigDecimal(r)));
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short
+                || number instanceof Byte;
+    }
+
+    private static boolean isFloating(Number number) {
+        return number instanceof Double || number instanceof Float;
+    }
+
+    /**
+     * 浮点数按十进制字面量转换，0.1与BigDecimal的0.1相等
+     */
+    private static BigDecimal toBigDecimal(Number number) {
+        if (number instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (number instanceof BigInteger integer) {
+            return new BigDecimal(integer);
+        }
+        if (isIntegral(number)) {
+            return BigDecimal.valueOf(number.longValue());
+        }
+        return BigDecimal.valueOf(number.doubleValue());
+    }
+
+    /**
+     * 常量
+     */
+    static final class Literal extends ExpressionNode {
+
+        private final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            return value;
+        }
+    }
+
+    /**
+     * 数值常量，同时保存原始double值和装箱值
+     * 整数常量装箱为Long，超出long范围时为BigDecimal，带小数点或浮点后缀的常量为Double
+     */
+    static final class NumberLiteral extends ExpressionNode {
+
+        private final double value;
+
+        private final Number boxed;
+
+        NumberLiteral(Number boxed) {
+            this.value = boxed.doubleValue();
+            this.boxed = boxed;
+        }
+
+        /**
+         * 取负后的常量，保持原始类型
+         */
+        NumberLiteral negate() {
+            if (boxed instanceof Long number && number != Long.MIN_VALUE) {
+                return new NumberLiteral(-number);
+            }
+            if (boxed instanceof BigDecimal decimal) {
+                return new NumberLiteral(decimal.negate());
+            }
+            return new NumberLiteral(-value);
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            return boxed;
+        }
+
+        @Override
+        double evaluateDouble(Map<String, Object> variables) {
+            return value;
+        }
+
+        @Override
+        boolean isNumeric() {
+            return true;
+        }
+    }
+
+    /**
+     * 变量引用，支持以点号访问嵌套Map
+     * 编译时绑定了槽位布局的变量，对同一布局的{@link SlotVariables}按槽位下标读取
+     */
+    static final class Variable extends ExpressionNode {
+
+        private final String name;
+
+        private final String[] path;
+
+        private final VariableSchema schema;
+
+        private final int slot;
+
+        Variable(String name, VariableSchema schema) {
+            this.name = name;
+            this.path = name.indexOf('.') >= 0 ? name.split("\\.") : null;
+            int boundSlot = path == null && schema != null ? schema.slotOf(name) : -1;
+            this.schema = boundSlot >= 0 ? schema : null;
+            this.slot = boundSlot;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            SlotVariables slots = boundSlots(variables);
+            if (slots != null && slots.isSet(slot)) {
+                return slots.value(slot);
+            }
+            if (path == null) {
+                return variables.get(name);
+            }
+            Object current = variables;
+            for (String part : path) {
+                if (!(current instanceof Map<?, ?> map)) {
+                    return null;
+                }
+                current = map.get(part);
+            }
+            return current;
+        }
+
+        @Override
+        double evaluateDouble(Map<String, Object> variables) {
+            SlotVariables slots = boundSlots(variables);
+            if (slots != null && slots.isSet(slot)) {
+                return slots.getAsDouble(slot);
+            }
+            return toDouble(evaluate(variables));
+        }
+
+        @Override
+        boolean evaluateBoolean(Map<String, Object> variables) {
+            SlotVariables slots = boundSlots(variables);
+            if (slots != null && slots.isSet(slot)) {
+                return schema.type(slot) == VariableSchema.SlotType.BOOLEAN && slots.getBoolean(slot);
+            }
+            return Boolean.TRUE.equals(evaluate(variables));
+        }
+
+        /**
+         * 变量按编译时的布局保存时返回，槽位没有值的变量仍可能在溢出Map中
+         */
+        private SlotVariables boundSlots(Map<String, Object> variables) {
+            if (schema != null && variables instanceof SlotVariables slots
+                    && (slots.getSchema() == schema || slots.getSchema().equals(schema))) {
+                return slots;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 算术运算：+ - * / %
+     */
+    static final class Arithmetic extends ExpressionNode {
+
+        private final char operator;
+
+        private final ExpressionNode left;
+
+        private final ExpressionNode right;
+
+        Arithmetic(char operator, ExpressionNode left, ExpressionNode right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            return evaluateDouble(variables);
+        }
+
+        @Override
+        double evaluateDouble(Map<String, Object> variables) {
+            double l = left.evaluateDouble(variables);
+            double r = right.evaluateDouble(variables);
+            switch (operator) {
+                case '+':
+                    return l + r;
+                case '-':
+                    return l - r;
+                case '*':
+                    return l * r;
+                case '/':
+                    return l / r;
+                default:
+                    return l % r;
+            }
+        }
+
+        @Override
+        boolean isNumeric() {
+            return true;
+        }
+    }
+
+    /**
+     * 字符串拼接，任一操作数为字符串常量时的+运算
+     */
+    static final class Concat extends ExpressionNode {
+
+        private final ExpressionNode left;
+
+        private final ExpressionNode right;
+
+        Concat(ExpressionNode left, ExpressionNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            return String.valueOf(left.evaluate(variables)) + right.evaluate(variables);
+        }
+    }
+
+    /**
+     * 取负
+     */
+    static final class Negate extends ExpressionNode {
+
+        private final ExpressionNode operand;
+
+        Negate(ExpressionNode operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            return evaluateDouble(variables);
+        }
+
+        @Override
+        double evaluateDouble(Map<String, Object> variables) {
+            return -operand.evaluateDouble(variables);
+        }
+
+        @Override
+        boolean isNumeric() {
+            return true;
+        }
+    }
+
+    /**
+     * 返回布尔值的节点基类，Boolean.valueOf使用缓存实例，不产生分配
+     */
+    abstract static class BooleanNode extends ExpressionNode {
+
+        @Override
+        final Object evaluate(Map<String, Object> variables) {
+            return Boolean.valueOf(evaluateBoolean(variables));
+        }
+
+        @Override
+        abstract boolean evaluateBoolean(Map<String, Object> variables);
+    }
+
+    /**
+     * 逻辑非
+     */
+    static final class Not extends BooleanNode {
+
+        private final ExpressionNode operand;
+
+        Not(ExpressionNode operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean evaluateBoolean(Map<String, Object> variables) {
+            return !operand.evaluateBoolean(variables);
+        }
+    }
+
+    /**
+     * 短路逻辑与
+     */
+    static final class And extends BooleanNode {
+
+        private final ExpressionNode left;
+
+        private final ExpressionNode right;
+
+        And(ExpressionNode left, ExpressionNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evaluateBoolean(Map<String, Object> variables) {
+            return left.evaluateBoolean(variables) && right.evaluateBoolean(variables);
+        }
+    }
+
+    /**
+     * 短路逻辑或
+     */
+    static final class Or extends BooleanNode {
+
+        private final ExpressionNode left;
+
+        private final ExpressionNode right;
+
+        Or(ExpressionNode left, ExpressionNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evaluateBoolean(Map<String, Object> variables) {
+            return left.evaluateBoolean(variables) || right.evaluateBoolean(variables);
+        }
+    }
+
+    /**
+     * 数值比较，编译期已知一侧为数值时使用，两侧先以double比较，相等时再按原始类型精确比较
+     */
+    static final class NumericCompare extends BooleanNode {
+
+        private final CompareOperator operator;
+
+        private final ExpressionNode left;
+
+        private final ExpressionNode right;
+
+        NumericCompare(CompareOperator operator, ExpressionNode left, ExpressionNode right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean evaluateBoolean(Map<String, Object> variables) {
+            double l = left.evaluateDouble(variables);
+            double r = right.evaluateDouble(variables);
+            if (l != r) {
+                // 舍入不改变大小关系，double不相等时结果与精确比较一致
+                return operator.test(l, r);
+            }
+            // double相等时两侧可能是相差不到精度的long或BigDecimal
+            return left.evaluate(variables) instanceof Number ln && right.evaluate(variables) instanceof Number rn
+                    ? compare(operator, ln, rn)
+                    : operator.test(l, r);
+        }
+    }
+
+    /**
+     * 动态比较，运行时根据操作数类型选择数值比较、字符串比较或相等判断
+     */
+    static final class DynamicCompare extends BooleanNode {
+
+        private final CompareOperator operator;
+
+        private final ExpressionNode left;
+
+        private final ExpressionNode right;
+
+        DynamicCompare(CompareOperator operator, ExpressionNode left, ExpressionNode right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        boolean evaluateBoolean(Map<String, Object> variables) {
+            Object l = left.evaluate(variables);
+            Object r = right.evaluate(variables);
+            if (l instanceof Number ln && r instanceof Number rn) {
+                return compare(operator, ln, rn);
+            }
+            if (operator == CompareOperator.EQ) {
+                return Objects.equals(l, r);
+            }
+            if (operator == CompareOperator.NE) {
+                return !Objects.equals(l, r);
+            }
+            if (l instanceof Comparable comparable && r != null && l.getClass() == r.getClass()) {
+                return operator.test(comparable.compareTo(r));
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 三元条件
+     */
+    static final class Ternary extends ExpressionNode {
+
+        private final ExpressionNode condition;
+
+        private final ExpressionNode whenTrue;
+
+        private final ExpressionNode whenFalse;
+
+        Ternary(ExpressionNode condition, ExpressionNode whenTrue, ExpressionNode whenFalse) {
+            this.condition = condition;
+            this.whenTrue = whenTrue;
+            this.whenFalse = whenFalse;
+        }
+
+        @Override
+        Object evaluate(Map<String, Object> variables) {
+            return condition.evaluateBoolean(variables) ? whenTrue.evaluate(variables) : whenFalse.evaluate(variables);
+        }
+
+        @Override
+        double evaluateDouble(Map<String, Object> variables) {
+            return condition.evaluateBoolean(variables)
+                    ? whenTrue.evaluateDouble(variables)
+                    : whenFalse.evaluateDouble(variables);
+        }
+
+        @Override
+        boolean evaluateBoolean(Map<String, Object> variables) {
+            return condition.evaluateBoolean(variables)
+                    ? whenTrue.evaluateBoolean(variables)
+                    : whenFalse.evaluateBoolean(variables);
+        }
+
+        @Override
+        boolean isNumeric() {
+            return whenTrue.isNumeric() && whenFalse.isNumeric();
+        }
+    }
+
+    /**
+     * 比较运算符
+     */
+    enum CompareOperator {
+        EQ, NE, GT, GE, LT, LE;
+
+        /**
+         * 任一侧为NaN时所有运算符均返回false
+         */
+        boolean test(double l, double r) {
+            switch (this) {
+                case EQ:
+                    return l == r;
+                case NE:
+                    return l != r && !Double.isNaN(l) && !Double.isNaN(r);
+                case GT:
+                    return l > r;
+                case GE:
+                    return l >= r;
+                case LT:
+                    return l < r;
+                default:
+                    return l <= r;
+            }
+        }
+
+        /**
+         * @param comparison compareTo的结果
+         */
+        boolean test(int comparison) {
+            switch (this) {
+                case EQ:
+                    return comparison == 0;
+                case NE:
+                    return comparison != 0;
+                case GT:
+                    return comparison > 0;
+                case GE:
+                    return comparison >= 0;
+                case LT:
+                    return comparison < 0;
+                default:
+                    return comparison <= 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.demotrade.lock;
+
+import com.example.demotrade.cluster.InstanceOwnership;
+import com.example.demotrade.exception.ProcessInstanceConflictException;
+import jakarta.annotation.PostConstruct;
+import org.redisson.api.RFencedLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 流程实例锁
+ * 先获取按实例ID分段的本地锁，同一JVM内的并发修改在本地排队，不产生网络开销；
+ * 只有开启分布式锁时才继续获取Redisson的RFencedLock，同一实例同一时刻只有一个请求访问Redis；
+ * 开启集群分区后，归属于当前节点的实例只使用本地锁
+ * <p>
+ * 分布式锁返回单调递增的fencing token，写入时需要以条件更新校验，
+ * 持有者因GC停顿等原因在租期过后才写入时，会因为token已被新的持有者推进而失败
+ */
+@Component
+public class InstanceLockManager {
+
+    private static final String LOCK_PREFIX = "demo-trade:process-instance:lock:";
+
+    @Autowired(required = false)
+    private RedissonClient redissonClient;
+
+    @Autowired(required = false)
+    private InstanceOwnership instanceOwnership;
+
+    @Value("${demo-trade.instance-lock.stripes:1024}")
+    private int stripeCount;
+
+    @Value("${demo-trade.instance-lock.wait-time:PT10S}")
+    private Duration waitTime;
+
+    @Value("${demo-trade.instance-lock.lease-time:PT30S}")
+    private Duration leaseTime;
+
+    @Value("${demo-trade.instance-lock.distributed:false}")
+    private boolean distributed;
+
+    private ReentrantLock[] stripes;
+
+    @PostConstruct
+    public void init() {
+        // 分段数取2的幂，用位运算定位分段
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 持有实例锁执行操作
+     *
+     * @param processInstanceId 流程实例ID
+     * @param operation 参数为fencing token，只获取了本地锁时为null
+     * @return 操作的返回值
+     */
+    public <T> T execute(String processInstanceId, Function<Long, T> operation) {
+        ReentrantLock local = stripes[spread(processInstanceId.hashCode()) & (stripes.length - 1)];
+        long deadline = System.nanoTime() + waitTime.toNanos();
+        try {
+            if (!local.tryLock(waitTime.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new ProcessInstanceConflictException(processInstanceId,
+                        "Timed out waiting for process instance lock");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for process instance lock: " + processInstanceId, e);
+        }
+
+        try {
+            if (!requiresDistributedLock(processInstanceId)) {
+                return operation.apply(null);
+            }
+            
+            RFencedLock lock = redissonClient.getFencedLock(LOCK_PREFIX + processInstanceId);
+            long remaining = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+            Long token = lock.tryLockAndGetToken(remaining, leaseTime.toMillis(), TimeUnit.MILLISECONDS);
+            if (token == null) {
+                throw new ProcessInstanceConflictException(processInstanceId,
+                        "Timed out waiting for distributed process instance lock");
+            }
+            try {
+                return operation.apply(token);
+            } finally {
+                // 租期已过时锁可能已被其它节点获取，此时不能再释放
+                if (lock.isHeldByCurrentThread()) {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            local.unlock();
+        }
+    }
+
+    /**
+     * 持有实例锁执行没有返回值的操作
+     *
+     * @param processInstanceId 流程实例ID
+     * @param operation 参数为fencing token，只获取了本地锁时为null
+     */
+    public void executeWithoutResult(String processInstanceId, Consumer<Long> operation) {
+        execute(processInstanceId, token -> {
+            operation.accept(token);
+            return null;
+        });
+    }
+
+    /**
+     * 是否需要在本地锁之外再获取分布式锁
+     */
+    boolean requiresDistributedLock(String processInstanceId) {
+        return distributed && (instanceOwnership == null || !instanceOwnership.isLocallyOwned(processInstanceId));
+    }
+
+    /**
+     * 打散哈希值的高位，避免只有高位不同的ID落在同一分段
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.demotrade.model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 流程定义状态及状态转换表
+ * 数据库中以TINYINT编码保存，编码一经使用不得修改
+ */
+public enum DefinitionStatus {
+
+    DRAFT(1),
+    PUBLISHED(2),
+    DEPRECATED(3);
+
+    private static final DefinitionStatus[] BY_CODE = new DefinitionStatus[4];
+
+    /**
+     * 状态 -> 允许转换到的状态，已废弃的版本可以重新发布
+     */
+    private static final Map<DefinitionStatus, Set<DefinitionStatus>> TRANSITIONS =
+            new EnumMap<>(DefinitionStatus.class);
+
+    static {
+        TRANSITIONS.put(DRAFT, Collections.unmodifiableSet(EnumSet.of(PUBLISHED, DEPRECATED)));
+        TRANSITIONS.put(PUBLISHED, Collections.unmodifiableSet(EnumSet.of(DEPRECATED)));
+        TRANSITIONS.put(DEPRECATED, Collections.unmodifiableSet(EnumSet.of(PUBLISHED)));
+        for (DefinitionStatus status : values()) {
+            BY_CODE[status.code] = status;
+        }
+    }
+
+    private final byte code;
+
+    DefinitionStatus(int code) {
+        this.code = (byte) code;
+    }
+
+    /**
+     * 数据库中保存的编码
+     */
+    public byte code() {
+        return code;
+    }
+
+    /**
+     * 是否允许转换到目标状态，状态不变不视为转换
+     */
+    public boolean canTransitionTo(DefinitionStatus target) {
+        return TRANSITIONS.get(this).contains(target);
+    }
+
+    /**
+     * 检查状态转换，不允许时抛出异常
+     *
+     * @param processDefinitionId 流程定义ID，用于异常信息
+     * @param target 目标状态
+     * @throws IllegalStateException 不允许从当前状态转换到目标状态
+     */
+    public void checkTransition(String processDefinitionId, DefinitionStatus target) {
+        if (!canTransitionTo(target)) {
+            throw new IllegalStateException("Cannot change process definition " + processDefinitionId
+                    + " from " + this + " to " + target);
+        }
+    }
+
+    /**
+     * 按编码获取状态
+     *
+     * @throws IllegalArgumentException 编码未定义
+     */
+    public static DefinitionStatus fromCode(int code) {
+        DefinitionStatus status = code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        if (status == null) {
+            throw new IllegalArgumentException("Unknown process definition status code: " + code);
+        }
+        return status;
+    }
+
+    /**
+     * 按名称获取状态，流程定义模型和接口中的状态仍为字符串
+     *
+     * @return 状态，name为null时返回null
+     * @throws IllegalArgumentException 名称未定义
+     */
+    public static DefinitionStatus of(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown process definition status: " + name, e);
+        }
+    }
+}
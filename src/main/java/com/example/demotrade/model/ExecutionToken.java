@@ -0,0 +1,100 @@
+package com.example.demotrade.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 执行令牌模型
+ * 并行网关分叉时为每个分支创建一个令牌，用于跟踪分支的执行位置和状态
+ */
+public class ExecutionToken {
+
+    /**
+     * 令牌ID
+     */
+    private String id;
+    
+    /**
+     * 产生该令牌的分叉网关节点ID
+     */
+    private String forkNodeId;
+    
+    /**
+     * 令牌当前所在节点ID
+     */
+    private String currentNodeId;
+    
+    /**
+     * 令牌状态：ACTIVE-执行中, JOINED-已到达汇聚网关, FAILED-执行失败
+     */
+    private String status;
+
+    /**
+     * 分支内任务节点产生的变量，分支到达汇聚网关时保存，其它分支失败后重试时不再执行已汇聚的分支；
+     * 所有分支汇聚、变量合并到实例后清空
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Object> outputs;
+
+    public ExecutionToken() {
+    }
+
+    public ExecutionToken(String id, String forkNodeId, String currentNodeId, String status) {
+        this.id = id;
+        this.forkNodeId = forkNodeId;
+        this.currentNodeId = currentNodeId;
+        this.status = status;
+    }
+
+    /**
+     * 复制令牌，分支结果另建一份
+     */
+    public ExecutionToken copy() {
+        ExecutionToken copy = new ExecutionToken(id, forkNodeId, currentNodeId, status);
+        copy.setOutputs(outputs != null ? new HashMap<>(outputs) : null);
+        return copy;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getForkNodeId() {
+        return forkNodeId;
+    }
+
+    public void setForkNodeId(String forkNodeId) {
+        this.forkNodeId = forkNodeId;
+    }
+
+    public String getCurrentNodeId() {
+        return currentNodeId;
+    }
+
+    public void setCurrentNodeId(String currentNodeId) {
+        this.currentNodeId = currentNodeId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Map<String, Object> getOutputs() {
+        return outputs;
+    }
+
+    public void setOutputs(Map<String, Object> outputs) {
+        this.outputs = outputs;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.demotrade.model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 流程实例状态及状态转换表
+ * 数据库中以TINYINT编码保存，编码一经使用不得修改；状态集合使用EnumSet，内部为位向量
+ */
+public enum InstanceStatus {
+
+    RUNNING(1),
+    SUSPENDED(2),
+    COMPLETED(3),
+    TERMINATED(4),
+    FAILED(5);
+
+    /**
+     * 未结束的状态：RUNNING继续执行，SUSPENDED可以恢复，FAILED可以人工重试回到RUNNING，都可以被终止
+     */
+    public static final Set<InstanceStatus> NON_TERMINAL =
+            Collections.unmodifiableSet(EnumSet.of(RUNNING, SUSPENDED, FAILED));
+
+    /**
+     * 已结束的状态，不能再转换，结束超过保留期后归档
+     */
+    public static final Set<InstanceStatus> TERMINAL = Collections.unmodifiableSet(EnumSet.of(COMPLETED, TERMINATED));
+
+    private static final InstanceStatus[] BY_CODE = new InstanceStatus[6];
+
+    /**
+     * 状态 -> 允许转换到的状态
+     */
+    private static final Map<InstanceStatus, Set<InstanceStatus>> TRANSITIONS = new EnumMap<>(InstanceStatus.class);
+
+    /**
+     * 状态 -> 允许从哪些状态转换而来，用于条件更新的WHERE status IN (...)
+     */
+    private static final Map<InstanceStatus, Set<InstanceStatus>> SOURCES = new EnumMap<>(InstanceStatus.class);
+
+    static {
+        allow(RUNNING, SUSPENDED, COMPLETED, TERMINATED, FAILED);
+        allow(SUSPENDED, RUNNING, TERMINATED);
+        allow(FAILED, RUNNING, TERMINATED);
+        allow(COMPLETED);
+        allow(TERMINATED);
+        for (InstanceStatus status : values()) {
+            BY_CODE[status.code] = status;
+            SOURCES.put(status, EnumSet.noneOf(InstanceStatus.class));
+        }
+        TRANSITIONS.forEach((from, targets) -> targets.forEach(to -> SOURCES.get(to).add(from)));
+        SOURCES.replaceAll((status, sources) -> Collections.unmodifiableSet(sources));
+    }
+
+    private final byte code;
+
+    InstanceStatus(int code) {
+        this.code = (byte) code;
+    }
+
+    private static void allow(InstanceStatus from, InstanceStatus... targets) {
+        Set<InstanceStatus> allowed = EnumSet.noneOf(InstanceStatus.class);
+        Collections.addAll(allowed, targets);
+        TRANSITIONS.put(from, Collections.unmodifiableSet(allowed));
+    }
+
+    /**
+     * 数据库中保存的编码
+     */
+    public byte code() {
+        return code;
+    }
+
+    public boolean isTerminal() {
+        return TERMINAL.contains(this);
+    }
+
+    /**
+     * 是否允许转换到目标状态，状态不变不视为转换
+     */
+    public boolean canTransitionTo(InstanceStatus target) {
+        return TRANSITIONS.get(this).contains(target);
+    }
+
+    /**
+     * 允许转换到目标状态的当前状态
+     *
+     * @param target 目标状态
+     * @return 只读的状态集合
+     */
+    public static Set<InstanceStatus> sourcesOf(InstanceStatus target) {
+        return SOURCES.get(target);
+    }
+
+    /**
+     * 按编码获取状态
+     *
+     * @throws IllegalArgumentException 编码未定义
+     */
+    public static InstanceStatus fromCode(int code) {
+        InstanceStatus status = code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        if (status == null) {
+            throw new IllegalArgumentException("Unknown process instance status code: " + code);
+        }
+        return status;
+    }
+
+    /**
+     * 按名称获取状态，流程实例模型和接口中的状态仍为字符串
+     *
+     * @return 状态，name为null时返回null
+     * @throws IllegalArgumentException 名称未定义
+     */
+    public static InstanceStatus of(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown process instance status: " + name, e);
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package com.example.demotrade.model;
 
+import com.example.demotrade.plan.ExecutionPlan;
+import com.example.demotrade.plan.ExecutionPlanCompiler;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -35,6 +40,23 @@ public class ProcessDefinition {
      */
     private List<ProcessNode> nodes = new ArrayList<>();
     
+    /**
+     * 变量声明，可选；声明的变量在流程实例中按槽位保存，见{@link SlotVariables}
+     */
+    private List<VariableDeclaration> variables = new ArrayList<>();
+    
+    /**
+     * 由变量声明生成的槽位布局，首次使用时生成
+     */
+    @JsonIgnore
+    private volatile VariableSchema variableSchema;
+    
+    /**
+     * 执行计划，发布时编译并与流程定义一起保存；没有保存的计划时首次使用时编译
+     */
+    @JsonIgnore
+    private volatile ExecutionPlan executionPlan;
+    
     /**
      * 创建时间
      */
@@ -50,12 +72,77 @@ public class ProcessDefinition {
      */
     private String status;
 
+    /**
+     * 冻结后不可修改，见{@link #freeze()}
+     */
+    private boolean frozen;
+
+    /**
+     * 冻结流程定义及其节点和变量声明，之后调用setter抛出UnsupportedOperationException，集合变为只读
+     * 缓存中的流程定义在多个线程间共享，放入缓存前冻结；需要修改时通过{@link #copy()}复制
+     */
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+        List<ProcessNode> frozenNodes = new ArrayList<>();
+        if (nodes != null) {
+            for (ProcessNode node : nodes) {
+                node.freeze();
+                frozenNodes.add(node);
+            }
+        }
+        nodes = Collections.unmodifiableList(frozenNodes);
+        List<VariableDeclaration> frozenVariables = new ArrayList<>();
+        if (variables != null) {
+            for (VariableDeclaration variable : variables) {
+                variable.freeze();
+                frozenVariables.add(variable);
+            }
+        }
+        variables = Collections.unmodifiableList(frozenVariables);
+        frozen = true;
+    }
+
+    /**
+     * 复制流程定义，副本未冻结，节点和变量声明都复制为新的对象
+     */
+    public ProcessDefinition copy() {
+        ProcessDefinition copy = new ProcessDefinition();
+        copy.id = id;
+        copy.name = name;
+        copy.description = description;
+        copy.version = version;
+        copy.status = status;
+        copy.createTime = createTime;
+        copy.updateTime = updateTime;
+        copy.executionPlan = executionPlan;
+        if (nodes != null) {
+            for (ProcessNode node : nodes) {
+                copy.nodes.add(node.copy());
+            }
+        }
+        if (variables != null) {
+            for (VariableDeclaration variable : variables) {
+                copy.variables.add(new VariableDeclaration(variable.getName(), variable.getType()));
+            }
+        }
+        return copy;
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Process definition is frozen: " + id + ":" + version);
+        }
+    }
+
     // Getters and Setters
     public String getId() {
         return id;
     }
 
     public void setId(String id) {
+        checkMutable();
         this.id = id;
     }
 
@@ -64,6 +151,7 @@ public class ProcessDefinition {
     }
 
     public void setName(String name) {
+        checkMutable();
         this.name = name;
     }
 
@@ -72,6 +160,7 @@ public class ProcessDefinition {
     }
 
     public void setDescription(String description) {
+        checkMutable();
         this.description = description;
     }
 
@@ -80,6 +169,7 @@ public class ProcessDefinition {
     }
 
     public void setVersion(Integer version) {
+        checkMutable();
         this.version = version;
     }
 
@@ -88,14 +178,62 @@ public class ProcessDefinition {
     }
 
     public void setNodes(List<ProcessNode> nodes) {
+        checkMutable();
         this.nodes = nodes;
     }
 
+    public List<VariableDeclaration> getVariables() {
+        return variables;
+    }
+
+    public void setVariables(List<VariableDeclaration> variables) {
+        checkMutable();
+        this.variables = variables;
+        this.variableSchema = null;
+    }
+
+    /**
+     * 获取变量槽位布局，条件表达式编译和流程实例变量共用同一个布局
+     *
+     * @return 槽位布局，没有声明变量时返回null
+     */
+    @JsonIgnore
+    public VariableSchema getVariableSchema() {
+        VariableSchema schema = variableSchema;
+        if (schema == null && variables != null && !variables.isEmpty()) {
+            schema = VariableSchema.of(variables);
+            variableSchema = schema;
+        }
+        return schema;
+    }
+
+    /**
+     * 获取执行计划，计划中的节点下标与{@link #getNodes()}的顺序一致
+     * 发布前或执行计划引入前发布的流程定义没有保存的计划，首次使用时编译，不拒绝结构错误
+     *
+     * @return 执行计划
+     */
+    @JsonIgnore
+    public ExecutionPlan getExecutionPlan() {
+        ExecutionPlan plan = executionPlan;
+        if (plan == null) {
+            plan = ExecutionPlanCompiler.compileUnchecked(this);
+            executionPlan = plan;
+        }
+        return plan;
+    }
+
+    public void setExecutionPlan(ExecutionPlan executionPlan) {
+        checkMutable();
+        this.executionPlan = executionPlan;
+    }
+
     public LocalDateTime getCreateTime() {
         return createTime;
     }
 
     public void setCreateTime(LocalDateTime createTime) {
+        checkMutable();
         this.createTime = createTime;
     }
 
@@ -104,6 +242,7 @@ public class ProcessDefinition {
     }
 
     public void setUpdateTime(LocalDateTime updateTime) {
+        checkMutable();
         this.updateTime = updateTime;
     }
 
@@ -112,6 +251,7 @@ public class ProcessDefinition {
     }
 
     public void setStatus(String status) {
+        checkMutable();
         this.status = status;
     }
 }
\ No newline at end of file
@@ -1,7 +1,11 @@
 package com.example.demotrade.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -41,10 +45,22 @@ public class ProcessInstance {
     private String status;
     
     /**
-     * 流程变量
+     * 流程变量，流程定义声明了变量时为{@link SlotVariables}
      */
     private Map<String, Object> variables = new HashMap<>();
     
+    /**
+     * 从存储加载时的变量快照，更新实例时与当前变量比较，只写入发生变化的变量
+     * 为null表示实例并非从存储加载，更新时写入全部变量
+     */
+    @JsonIgnore
+    private Map<String, Object> persistedVariables;
+    
+    /**
+     * 最近一次并行网关分叉产生的分支令牌
+     */
+    private List<ExecutionToken> tokens = new ArrayList<>();
+    
     /**
      * 开始时间
      */
@@ -69,6 +85,11 @@ public class ProcessInstance {
      * 错误信息
      */
     private String errorMessage;
+    
+    /**
+     * 版本号，更新实例时用于检测并发修改
+     */
+    private Long version;
 
     // Getters and Setters
     public String getId() {
@@ -127,6 +148,22 @@ public class ProcessInstance {
         this.variables = variables;
     }
 
+    public Map<String, Object> getPersistedVariables() {
+        return persistedVariables;
+    }
+
+    public void setPersistedVariables(Map<String, Object> persistedVariables) {
+        this.persistedVariables = persistedVariables;
+    }
+
+    public List<ExecutionToken> getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(List<ExecutionToken> tokens) {
+        this.tokens = tokens;
+    }
+
     public LocalDateTime getStartTime() {
         return startTime;
     }
@@ -166,4 +203,45 @@ public class ProcessInstance {
     public void setErrorMessage(String errorMessage) {
         this.errorMessage = errorMessage;
     }
-}
\ No newline at end of file
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    /**
+     * 复制流程实例，变量、加载时的变量快照和分支令牌都复制为新的集合
+     */
+    public ProcessInstance copy() {
+        ProcessInstance copy = new ProcessInstance();
+        copy.setId(id);
+        copy.setProcessDefinitionId(processDefinitionId);
+        copy.setProcessDefinitionVersion(processDefinitionVersion);
+        copy.setBusinessId(businessId);
+        copy.setCurrentNodeId(currentNodeId);
+        copy.setStatus(status);
+        if (variables instanceof SlotVariables slots) {
+            copy.setVariables(slots.copy());
+        } else {
+            copy.setVariables(variables != null ? new HashMap<>(variables) : new HashMap<>());
+        }
+        copy.setPersistedVariables(persistedVariables != null ? new HashMap<>(persistedVariables) : null);
+        List<ExecutionToken> tokenCopies = new ArrayList<>();
+        if (tokens != null) {
+            for (ExecutionToken token : tokens) {
+                tokenCopies.add(token.copy());
+            }
+        }
+        copy.setTokens(tokenCopies);
+        copy.setStartTime(startTime);
+        copy.setEndTime(endTime);
+        copy.setCreateTime(createTime);
+        copy.setUpdateTime(updateTime);
+        copy.setErrorMessage(errorMessage);
+        copy.setVersion(version);
+        return copy;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demotrade.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -56,6 +57,12 @@ public class ProcessNode {
      */
     private String condition;
     
+    /**
+     * 网关类型（对于网关节点）：EXCLUSIVE-排他网关（默认）, PARALLEL-并行网关
+     * 并行网关有多个后续节点时并发执行所有分支，分支到达下一个并行网关时汇聚
+     */
+    private String gatewayType;
+    
     /**
      * 超时时间（毫秒）
      */
@@ -71,12 +78,58 @@ public class ProcessNode {
      */
     private Long retryInterval;
 
+    /**
+     * 冻结后不可修改，见{@link #freeze()}
+     */
+    private boolean frozen;
+
+    /**
+     * 冻结节点，之后调用setter抛出UnsupportedOperationException，nextNodes和parameters变为只读；
+     * parameters中嵌套的集合不复制，由调用方保证不修改
+     */
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+        nextNodes = nextNodes == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(nextNodes));
+        parameters = parameters == null ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(parameters));
+        frozen = true;
+    }
+
+    /**
+     * 复制节点，副本未冻结，nextNodes和parameters复制为新的集合
+     */
+    public ProcessNode copy() {
+        ProcessNode copy = new ProcessNode();
+        copy.id = id;
+        copy.name = name;
+        copy.type = type;
+        copy.description = description;
+        copy.serviceName = serviceName;
+        copy.operationName = operationName;
+        copy.parameters = parameters != null ? new HashMap<>(parameters) : new HashMap<>();
+        copy.nextNodes = nextNodes != null ? new ArrayList<>(nextNodes) : new ArrayList<>();
+        copy.condition = condition;
+        copy.gatewayType = gatewayType;
+        copy.timeout = timeout;
+        copy.retryCount = retryCount;
+        copy.retryInterval = retryInterval;
+        return copy;
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Process node is frozen: " + id);
+        }
+    }
+
     // Getters and Setters
     public String getId() {
         return id;
     }
 
     public void setId(String id) {
+        checkMutable();
         this.id = id;
     }
 
@@ -85,6 +138,7 @@ public class ProcessNode {
     }
 
     public void setName(String name) {
+        checkMutable();
         this.name = name;
     }
 
@@ -93,6 +147,7 @@ public class ProcessNode {
     }
 
     public void setType(String type) {
+        checkMutable();
         this.type = type;
     }
 
@@ -101,6 +156,7 @@ public class ProcessNode {
     }
 
     public void setDescription(String description) {
+        checkMutable();
         this.description = description;
     }
 
@@ -109,6 +165,7 @@ public class ProcessNode {
     }
 
     public void setServiceName(String serviceName) {
+        checkMutable();
         this.serviceName = serviceName;
     }
 
@@ -117,6 +174,7 @@ public class ProcessNode {
     }
 
     public void setOperationName(String operationName) {
+        checkMutable();
         this.operationName = operationName;
     }
 
@@ -125,6 +183,7 @@ public class ProcessNode {
     }
 
     public void setParameters(Map<String, Object> parameters) {
+        checkMutable();
         this.parameters = parameters;
     }
 
@@ -133,6 +192,7 @@ public class ProcessNode {
     }
 
     public void setNextNodes(List<String> nextNodes) {
+        checkMutable();
         this.nextNodes = nextNodes;
     }
 
@@ -141,14 +201,25 @@ public class ProcessNode {
     }
 
     public void setCondition(String condition) {
+        checkMutable();
         this.condition = condition;
     }
 
+    public String getGatewayType() {
+        return gatewayType;
+    }
+
+    public void setGatewayType(String gatewayType) {
+        checkMutable();
+        this.gatewayType = gatewayType;
+    }
+
     public Long getTimeout() {
         return timeout;
     }
 
     public void setTimeout(Long timeout) {
+        checkMutable();
         this.timeout = timeout;
     }
 
@@ -157,6 +228,7 @@ public class ProcessNode {
     }
 
     public void setRetryCount(Integer retryCount) {
+        checkMutable();
         this.retryCount = retryCount;
     }
 
@@ -165,6 +237,7 @@ public class ProcessNode {
     }
 
     public void setRetryInterval(Long retryInterval) {
+        checkMutable();
         this.retryInterval = retryInterval;
     }
 }
\ No newline at end of file
@@ -0,0 +1,387 @@
+package com.example.demotrade.model;
+
+import com.example.demotrade.model.VariableSchema.SlotType;
+import com.example.demotrade.model.VariableSchema.Storage;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 按槽位保存的流程变量
+ * 流程定义中声明的变量按{@link VariableSchema}分配的槽位保存在基本类型数组中，不装箱也不计算哈希；
+ * 数值按声明类型保存，读取时装箱为声明类型，如LONG变量写入Integer后读取为Long；
+ * 未声明的变量，以及声明类型不接受或为null的值保存在溢出Map中，读取时类型不变。
+ * 条件表达式和引擎通过槽位下标直接读取，其它调用方仍按Map使用。非线程安全
+ */
+public final class SlotVariables extends AbstractMap<String, Object> {
+
+    private static final long[] NO_LONGS = new long[0];
+
+    private static final double[] NO_DOUBLES = new double[0];
+
+    private static final boolean[] NO_BOOLEANS = new boolean[0];
+
+    private static final Object[] NO_OBJECTS = new Object[0];
+
+    private final VariableSchema schema;
+
+    private final long[] longs;
+
+    private final double[] doubles;
+
+    private final boolean[] booleans;
+
+    private final Object[] objects;
+
+    /**
+     * 槽位是否有值
+     */
+    private final boolean[] present;
+
+    private int presentCount;
+
+    private final Map<String, Object> overflow;
+
+    public SlotVariables(VariableSchema schema) {
+        this.schema = schema;
+        int longSize = schema.storageSize(Storage.LONG);
+        int doubleSize = schema.storageSize(Storage.DOUBLE);
+        int booleanSize = schema.storageSize(Storage.BOOLEAN);
+        int objectSize = schema.storageSize(Storage.OBJECT);
+        this.longs = longSize > 0 ? new long[longSize] : NO_LONGS;
+        this.doubles = doubleSize > 0 ? new double[doubleSize] : NO_DOUBLES;
+        this.booleans = booleanSize > 0 ? new boolean[booleanSize] : NO_BOOLEANS;
+        this.objects = objectSize > 0 ? new Object[objectSize] : NO_OBJECTS;
+        this.present = new boolean[schema.size()];
+        this.overflow = new HashMap<>();
+    }
+
+    /**
+     * 按槽位布局复制已有变量
+     */
+    public SlotVariables(VariableSchema schema, Map<String, Object> variables) {
+        this(schema);
+        if (variables != null) {
+            putAll(variables);
+        }
+    }
+
+    private SlotVariables(SlotVariables source) {
+        this.schema = source.schema;
+        this.longs = source.longs.length > 0 ? source.longs.clone() : NO_LONGS;
+        this.doubles = source.doubles.length > 0 ? source.doubles.clone() : NO_DOUBLES;
+        this.booleans = source.booleans.length > 0 ? source.booleans.clone() : NO_BOOLEANS;
+        this.objects = source.objects.length > 0 ? source.objects.clone() : NO_OBJECTS;
+        this.present = source.present.clone();
+        this.presentCount = source.presentCount;
+        this.overflow = new HashMap<>(source.overflow);
+    }
+
+    /**
+     * 已是同一布局的SlotVariables时直接返回，否则按布局复制
+     *
+     * @param schema 槽位布局，为null时返回原变量
+     * @param variables 流程变量
+     * @return 按槽位保存的变量
+     */
+    public static Map<String, Object> wrap(VariableSchema schema, Map<String, Object> variables) {
+        if (schema == null || variables instanceof SlotVariables slots && slots.schema.equals(schema)) {
+            return variables;
+        }
+        return new SlotVariables(schema, variables);
+    }
+
+    /**
+     * 复制变量，数组和溢出Map都复制为新的实例
+     */
+    public SlotVariables copy() {
+        return new SlotVariables(this);
+    }
+
+    public VariableSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * 槽位是否有值，没有值时变量可能为null、未设置或保存在溢出Map中
+     */
+    public boolean isSet(int slot) {
+        return present[slot];
+    }
+
+    /**
+     * 读取INT或LONG槽位，调用前应通过{@link #isSet}确认有值
+     */
+    public long getLong(int slot) {
+        return longs[schema.storageIndex(slot)];
+    }
+
+    /**
+     * 读取DOUBLE槽位，调用前应通过{@link #isSet}确认有值
+     */
+    public double getDouble(int slot) {
+        return doubles[schema.storageIndex(slot)];
+    }
+
+    /**
+     * 读取BOOLEAN槽位，调用前应通过{@link #isSet}确认有值
+     */
+    public boolean getBoolean(int slot) {
+        return booleans[schema.storageIndex(slot)];
+    }
+
+    /**
+     * 以数值读取槽位，INT、LONG、DOUBLE槽位有值时返回对应数值，否则返回NaN
+     */
+    public double getAsDouble(int slot) {
+        if (!present[slot]) {
+            return Double.NaN;
+        }
+        switch (schema.type(slot).storage()) {
+            case LONG:
+                return longs[schema.storageIndex(slot)];
+            case DOUBLE:
+                return doubles[schema.storageIndex(slot)];
+            default:
+                return Double.NaN;
+        }
+    }
+
+    /**
+     * 按声明类型装箱读取槽位的值
+     *
+     * @return 槽位的值，没有值时返回null
+     */
+    public Object value(int slot) {
+        if (!present[slot]) {
+            return null;
+        }
+        int index = schema.storageIndex(slot);
+        switch (schema.type(slot)) {
+            case INT:
+                return (int) longs[index];
+            case LONG:
+                return longs[index];
+            case DOUBLE:
+                return doubles[index];
+            case BOOLEAN:
+                return booleans[index];
+            default:
+                return objects[index];
+        }
+    }
+
+    /**
+     * 写入LONG槽位，不装箱
+     */
+    public void setLong(int slot, long value) {
+        checkType(slot, SlotType.LONG);
+        overflow.remove(schema.name(slot));
+        longs[schema.storageIndex(slot)] = value;
+        markPresent(slot);
+    }
+
+    /**
+     * 写入DOUBLE槽位，不装箱
+     */
+    public void setDouble(int slot, double value) {
+        checkType(slot, SlotType.DOUBLE);
+        overflow.remove(schema.name(slot));
+        doubles[schema.storageIndex(slot)] = value;
+        markPresent(slot);
+    }
+
+    /**
+     * 写入BOOLEAN槽位
+     */
+    public void setBoolean(int slot, boolean value) {
+        checkType(slot, SlotType.BOOLEAN);
+        overflow.remove(schema.name(slot));
+        booleans[schema.storageIndex(slot)] = value;
+        markPresent(slot);
+    }
+
+    @Override
+    public Object get(Object key) {
+        int slot = slotOf(key);
+        if (slot >= 0 && present[slot]) {
+            return value(slot);
+        }
+        return overflow.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int slot = slotOf(key);
+        return slot >= 0 && present[slot] || overflow.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return overflow.put(key, value);
+        }
+        SlotType type = schema.type(slot);
+        if (!type.accepts(value)) {
+            Object previous = clearSlot(slot);
+            Object overflowed = overflow.put(key, value);
+            return previous != null ? previous : overflowed;
+        }
+        Object previous = present[slot] ? value(slot) : overflow.remove(key);
+        int index = schema.storageIndex(slot);
+        switch (type) {
+            case INT:
+            case LONG:
+                longs[index] = ((Number) value).longValue();
+                break;
+            case DOUBLE:
+                doubles[index] = ((Number) value).doubleValue();
+                break;
+            case BOOLEAN:
+                booleans[index] = (Boolean) value;
+                break;
+            default:
+                objects[index] = value;
+        }
+        markPresent(slot);
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int slot = slotOf(key);
+        if (slot >= 0 && present[slot]) {
+            return clearSlot(slot);
+        }
+        return overflow.remove(key);
+    }
+
+    @Override
+    public int size() {
+        return presentCount + overflow.size();
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(present, false);
+        Arrays.fill(objects, null);
+        presentCount = 0;
+        overflow.clear();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return SlotVariables.this.size();
+            }
+        };
+    }
+
+    private int slotOf(Object key) {
+        return key instanceof String name ? schema.slotOf(name) : -1;
+    }
+
+    private void markPresent(int slot) {
+        if (!present[slot]) {
+            present[slot] = true;
+            presentCount++;
+        }
+    }
+
+    private Object clearSlot(int slot) {
+        if (!present[slot]) {
+            return null;
+        }
+        Object previous = value(slot);
+        present[slot] = false;
+        presentCount--;
+        if (schema.type(slot) == SlotType.STRING) {
+            objects[schema.storageIndex(slot)] = null;
+        }
+        return previous;
+    }
+
+    private void checkType(int slot, SlotType expected) {
+        if (schema.type(slot) != expected) {
+            throw new IllegalArgumentException("Variable " + schema.name(slot) + " is declared as "
+                    + schema.type(slot) + ", not " + expected);
+        }
+    }
+
+    /**
+     * 先遍历有值的槽位，再遍历溢出Map
+     */
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private int nextSlot = nextPresent(0);
+
+        private int lastSlot = -1;
+
+        private Iterator<Entry<String, Object>> overflowIterator;
+
+        private boolean lastFromOverflow;
+
+        @Override
+        public boolean hasNext() {
+            return nextSlot < present.length || overflow().hasNext();
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (nextSlot < present.length) {
+                lastSlot = nextSlot;
+                lastFromOverflow = false;
+                nextSlot = nextPresent(nextSlot + 1);
+                return new SimpleImmutableEntry<>(schema.name(lastSlot), value(lastSlot));
+            }
+            if (!overflow().hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastSlot = -1;
+            lastFromOverflow = true;
+            return overflowIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (lastFromOverflow) {
+                overflowIterator.remove();
+                lastFromOverflow = false;
+            } else if (lastSlot >= 0) {
+                clearSlot(lastSlot);
+                lastSlot = -1;
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+
+        private Iterator<Entry<String, Object>> overflow() {
+            if (overflowIterator == null) {
+                overflowIterator = overflow.entrySet().iterator();
+            }
+            return overflowIterator;
+        }
+
+        private int nextPresent(int from) {
+            int slot = from;
+            while (slot < present.length && !present[slot]) {
+                slot++;
+            }
+            return slot;
+        }
+    }
+}
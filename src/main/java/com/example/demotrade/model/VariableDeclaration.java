@@ -0,0 +1,63 @@
+package com.example.demotrade.model;
+
+/**
+ * 流程变量声明
+ * 流程定义中声明的变量在实例中占用固定槽位，数值和布尔值以基本类型保存
+ */
+public class VariableDeclaration {
+
+    /**
+     * 变量名称，不能包含点号
+     */
+    private String name;
+
+    /**
+     * 变量类型：INT-Integer, LONG-Long, DOUBLE-Double, BOOLEAN-Boolean, STRING-String
+     */
+    private String type;
+
+    /**
+     * 冻结后不可修改，见{@link #freeze()}
+     */
+    private boolean frozen;
+
+    public VariableDeclaration() {
+    }
+
+    public VariableDeclaration(String name, String type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * 冻结变量声明，之后调用setter抛出UnsupportedOperationException
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Variable declaration is frozen: " + name);
+        }
+    }
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        checkMutable();
+        this.name = name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        checkMutable();
+        this.type = type;
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.demotrade.model;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流程变量槽位布局
+ * 由流程定义中声明的变量生成，每个变量按声明顺序分配一个槽位，
+ * 同一存储类型的槽位在{@link SlotVariables}中共用一个基本类型数组，数组下标在这里预先计算
+ */
+public final class VariableSchema {
+
+    /**
+     * 槽位类型，INT和LONG共用long数组，取值时按声明类型装箱
+     * 数值槽位接受其它数值类型的值并按声明类型保存：Jackson读取时把较小的整数读为Integer，
+     * 客户端也常以整数传入DOUBLE变量
+     */
+    public enum SlotType {
+        INT(Storage.LONG),
+        LONG(Storage.LONG),
+        DOUBLE(Storage.DOUBLE),
+        BOOLEAN(Storage.BOOLEAN),
+        STRING(Storage.OBJECT);
+
+        private final Storage storage;
+
+        SlotType(Storage storage) {
+            this.storage = storage;
+        }
+
+        /**
+         * INT和LONG接受取值在范围内的整数，DOUBLE接受任意数值，BOOLEAN和STRING只接受对应类型；
+         * 不接受的值（包括null、小数和超出范围的整数）保存在溢出Map中，读取时类型不变
+         */
+        public boolean accepts(Object value) {
+            switch (this) {
+                case INT:
+                    return isIntegral(value) && fitsInLong(value)
+                            && ((Number) value).longValue() == ((Number) value).intValue();
+                case LONG:
+                    return isIntegral(value) && fitsInLong(value);
+                case DOUBLE:
+                    return value instanceof Number;
+                case BOOLEAN:
+                    return value instanceof Boolean;
+                default:
+                    return value instanceof String;
+            }
+        }
+
+        public boolean isNumeric() {
+            return storage == Storage.LONG || storage == Storage.DOUBLE;
+        }
+
+        Storage storage() {
+            return storage;
+        }
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte || value instanceof BigInteger;
+    }
+
+    private static boolean fitsInLong(Object value) {
+        return !(value instanceof BigInteger bigInteger) || bigInteger.bitLength() < Long.SIZE;
+    }
+
+    enum Storage {
+        LONG, DOUBLE, BOOLEAN, OBJECT
+    }
+
+    private final String[] names;
+
+    private final SlotType[] types;
+
+    /**
+     * 槽位在对应存储类型数组中的下标
+     */
+    private final int[] storageIndexes;
+
+    private final int[] storageSizes = new int[Storage.values().length];
+
+    private final Map<String, Integer> slots;
+
+    private VariableSchema(List<VariableDeclaration> declarations) {
+        int size = declarations.size();
+        this.names = new String[size];
+        this.types = new SlotType[size];
+        this.storageIndexes = new int[size];
+        this.slots = new HashMap<>(size * 2);
+        for (int slot = 0; slot < size; slot++) {
+            VariableDeclaration declaration = declarations.get(slot);
+            String name = declaration.getName();
+            if (name == null || name.isEmpty() || name.indexOf('.') >= 0) {
+                throw new IllegalArgumentException("Invalid variable name: " + name);
+            }
+            if (slots.putIfAbsent(name, slot) != null) {
+                throw new IllegalArgumentException("Duplicate variable declaration: " + name);
+            }
+            SlotType type;
+            try {
+                type = SlotType.valueOf(String.valueOf(declaration.getType()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported type " + declaration.getType()
+                        + " of variable: " + name, e);
+            }
+            names[slot] = name;
+            types[slot] = type;
+            storageIndexes[slot] = storageSizes[type.storage().ordinal()]++;
+        }
+    }
+
+    /**
+     * 根据变量声明生成槽位布局
+     *
+     * @param declarations 变量声明
+     * @return 槽位布局，没有声明时返回null
+     * @throws IllegalArgumentException 变量名称重复、包含点号或类型不支持
+     */
+    public static VariableSchema of(List<VariableDeclaration> declarations) {
+        if (declarations == null || declarations.isEmpty()) {
+            return null;
+        }
+        return new VariableSchema(declarations);
+    }
+
+    /**
+     * 获取变量的槽位
+     *
+     * @param name 变量名称
+     * @return 槽位，未声明时返回-1
+     */
+    public int slotOf(String name) {
+        Integer slot = slots.get(name);
+        return slot != null ? slot : -1;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String name(int slot) {
+        return names[slot];
+    }
+
+    public SlotType type(int slot) {
+        return types[slot];
+    }
+
+    int storageIndex(int slot) {
+        return storageIndexes[slot];
+    }
+
+    int storageSize(Storage storage) {
+        return storageSizes[storage.ordinal()];
+    }
+
+    /**
+     * 变量名称和类型都相同的布局相等，同一流程定义重新加载后生成的布局可以互相替代
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof VariableSchema other && Arrays.equals(names, other.names)
+                && Arrays.equals(types, other.types);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(names) + Arrays.hashCode(types);
+    }
+}
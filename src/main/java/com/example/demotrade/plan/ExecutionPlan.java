@@ -0,0 +1,241 @@
+package com.example.demotrade.plan;
+
+import com.example.demotrade.model.ProcessNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流程定义的执行计划
+ * 节点按流程定义中的顺序编号，后续节点、节点类型、分叉网关对应的汇聚网关和汇聚网关等待的分支数都预先计算为数组，
+ * 执行时节点间的流转只需按下标读取数组。计划创建后不可修改，可在多线程间共享
+ * <p>
+ * 由{@link ExecutionPlanCompiler}在发布时编译，按{@link #toBytes()}的格式与流程定义保存在同一行
+ */
+public final class ExecutionPlan {
+
+    /**
+     * 序列化格式版本
+     */
+    private static final byte FORMAT_VERSION = 1;
+
+    private final ProcessNode[] nodes;
+
+    private final NodeKind[] kinds;
+
+    /**
+     * 节点下标 -> 后续节点下标，后续节点不存在时为-1（只出现在未经校验编译的计划中）
+     */
+    private final int[][] successors;
+
+    /**
+     * 分叉网关下标 -> 汇聚网关下标，其它节点为-1
+     */
+    private final int[] joins;
+
+    /**
+     * 汇聚网关下标 -> 等待的分支数，其它节点为0
+     */
+    private final int[] joinCounts;
+
+    private final int startIndex;
+
+    private final Map<String, Integer> indexes;
+
+    ExecutionPlan(List<ProcessNode> nodes, NodeKind[] kinds, int[][] successors, int[] joins, int[] joinCounts,
+                  int startIndex) {
+        this.nodes = nodes.toArray(new ProcessNode[0]);
+        this.kinds = kinds;
+        this.successors = successors;
+        this.joins = joins;
+        this.joinCounts = joinCounts;
+        this.startIndex = startIndex;
+        this.indexes = new HashMap<>(this.nodes.length * 2);
+        for (int i = 0; i < this.nodes.length; i++) {
+            // 节点ID重复时与按列表查找一致，使用第一个
+            if (this.nodes[i].getId() != null) {
+                indexes.putIfAbsent(this.nodes[i].getId(), i);
+            }
+        }
+    }
+
+    /**
+     * 节点数
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * 获取节点下标
+     *
+     * @param nodeId 节点ID
+     * @return 节点下标，不存在时返回-1
+     */
+    public int indexOf(String nodeId) {
+        Integer index = nodeId != null ? indexes.get(nodeId) : null;
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 开始节点下标，没有开始节点时返回-1
+     */
+    public int startIndex() {
+        return startIndex;
+    }
+
+    public ProcessNode node(int index) {
+        return nodes[index];
+    }
+
+    public String nodeId(int index) {
+        return nodes[index].getId();
+    }
+
+    public NodeKind kind(int index) {
+        return kinds[index];
+    }
+
+    public int successorCount(int index) {
+        return successors[index].length;
+    }
+
+    /**
+     * 获取第k个后续节点的下标
+     *
+     * @throws RuntimeException 后续节点不在流程定义中
+     */
+    public int successor(int index, int k) {
+        int successor = successors[index][k];
+        if (successor < 0) {
+            throw new RuntimeException("Node not found in process definition: "
+                    + nodes[index].getNextNodes().get(k));
+        }
+        return successor;
+    }
+
+    /**
+     * 获取第一个后续节点的下标
+     *
+     * @throws RuntimeException 节点没有后续节点
+     */
+    public int firstSuccessor(int index) {
+        if (successors[index].length == 0) {
+            throw new RuntimeException("Node has no next node: " + nodes[index].getId());
+        }
+        return successor(index, 0);
+    }
+
+    /**
+     * 获取指定ID的后续节点下标，用于网关按条件结果选择分支
+     *
+     * @return 后续节点下标，nodeId不是该节点的后续节点时返回-1
+     */
+    public int successorOf(int index, String nodeId) {
+        int target = indexOf(nodeId);
+        if (target < 0) {
+            return -1;
+        }
+        for (int successor : successors[index]) {
+            if (successor == target) {
+                return target;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 是否为分叉网关：有多个后续节点的并行网关
+     */
+    public boolean isFork(int index) {
+        return kinds[index] == NodeKind.PARALLEL_GATEWAY && successors[index].length > 1;
+    }
+
+    /**
+     * 分叉网关的所有分支汇聚到的网关下标，无法在编译时确定时返回-1
+     */
+    public int joinOf(int forkIndex) {
+        return joins[forkIndex];
+    }
+
+    /**
+     * 汇聚网关等待的分支数，不是汇聚网关时返回0
+     */
+    public int joinCount(int joinIndex) {
+        return joinCounts[joinIndex];
+    }
+
+    /**
+     * 序列化为二进制，节点本身不写入，读取时按下标与流程定义的节点列表对应
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + nodes.length * 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(nodes.length);
+            out.writeInt(startIndex);
+            for (int i = 0; i < nodes.length; i++) {
+                out.writeByte(kinds[i].ordinal());
+                out.writeInt(joins[i]);
+                out.writeInt(joinCounts[i]);
+                out.writeInt(successors[i].length);
+                for (int successor : successors[i]) {
+                    out.writeInt(successor);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize execution plan", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 从二进制读取执行计划
+     *
+     * @param data {@link #toBytes()}的结果
+     * @param nodes 流程定义的节点列表，顺序与编译时一致
+     * @return 执行计划，格式版本不同或与节点列表不一致时返回null，由调用方重新编译
+     */
+    public static ExecutionPlan fromBytes(byte[] data, List<ProcessNode> nodes) {
+        if (data == null || data.length == 0 || nodes == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readByte() != FORMAT_VERSION) {
+                return null;
+            }
+            int size = in.readInt();
+            if (size != nodes.size()) {
+                return null;
+            }
+            int startIndex = in.readInt();
+            NodeKind[] kinds = new NodeKind[size];
+            int[] joins = new int[size];
+            int[] joinCounts = new int[size];
+            int[][] successors = new int[size][];
+            NodeKind[] allKinds = NodeKind.values();
+            for (int i = 0; i < size; i++) {
+                kinds[i] = allKinds[in.readByte()];
+                joins[i] = in.readInt();
+                joinCounts[i] = in.readInt();
+                successors[i] = new int[in.readInt()];
+                List<String> nextNodes = nodes.get(i).getNextNodes();
+                if (nextNodes == null || nextNodes.size() != successors[i].length) {
+                    return null;
+                }
+                for (int k = 0; k < successors[i].length; k++) {
+                    successors[i][k] = in.readInt();
+                }
+            }
+            return new ExecutionPlan(nodes, kinds, successors, joins, joinCounts, startIndex);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.demotrade.plan;
+
+import com.example.demotrade.exception.ProcessDefinitionValidationException;
+import com.example.demotrade.expression.ConditionExpressionCompiler;
+import com.example.demotrade.model.ProcessDefinition;
+import com.example.demotrade.model.ProcessNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 执行计划编译器
+ * 将流程定义的节点列表编译为{@link ExecutionPlan}，同时检查流程结构：
+ * <ul>
+ *     <li>节点ID为空或重复、节点类型或网关类型不支持</li>
+ *     <li>开始节点不是恰好一个、没有结束节点</li>
+ *     <li>后续节点不存在，开始和任务节点不是恰好一个后续节点，网关没有后续节点，结束节点有后续节点</li>
+ *     <li>网关条件表达式语法错误</li>
+ *     <li>从开始节点不可达的节点、环</li>
+ *     <li>分叉网关的分支未汇聚到同一个并行网关、分支直接到达结束节点、多个分叉网关共用一个汇聚网关</li>
+ * </ul>
+ */
+public final class ExecutionPlanCompiler {
+
+    private final ProcessDefinition definition;
+
+    private final List<ProcessNode> nodes;
+
+    private final List<String> errors = new ArrayList<>();
+
+    private ExecutionPlanCompiler(ProcessDefinition definition) {
+        this.definition = definition;
+        this.nodes = definition.getNodes() != null ? definition.getNodes() : List.of();
+    }
+
+    /**
+     * 编译执行计划并校验流程结构，发布流程定义时使用
+     *
+     * @param definition 流程定义
+     * @return 执行计划
+     * @throws ProcessDefinitionValidationException 流程结构有错误
+     */
+    public static ExecutionPlan compile(ProcessDefinition definition) {
+        ExecutionPlanCompiler compiler = new ExecutionPlanCompiler(definition);
+        ExecutionPlan plan = compiler.build();
+        if (!compiler.errors.isEmpty()) {
+            throw new ProcessDefinitionValidationException(definition.getId(), compiler.errors);
+        }
+        return plan;
+    }
+
+    /**
+     * 编译执行计划但不拒绝结构错误，用于没有保存执行计划的流程定义（发布于执行计划引入之前，或尚未发布）；
+     * 有错误的节点在执行到时失败，与按节点列表查找时的行为一致
+     *
+     * @param definition 流程定义
+     * @return 执行计划
+     */
+    public static ExecutionPlan compileUnchecked(ProcessDefinition definition) {
+        return new ExecutionPlanCompiler(definition).build();
+    }
+
+    private ExecutionPlan build() {
+        int size = nodes.size();
+        Map<String, Integer> indexes = new HashMap<>(size * 2);
+        NodeKind[] kinds = new NodeKind[size];
+        int startIndex = -1;
+        boolean hasEnd = false;
+
+        for (int i = 0; i < size; i++) {
+            ProcessNode node = nodes.get(i);
+            if (node.getId() == null || node.getId().isEmpty()) {
+                errors.add("Node at position " + i + " has no id");
+            } else if (indexes.putIfAbsent(node.getId(), i) != null) {
+                errors.add("Duplicate node id: " + node.getId());
+            }
+            kinds[i] = NodeKind.of(node);
+            if (kinds[i] == NodeKind.UNSUPPORTED) {
+                errors.add("Unsupported node type of " + node.getId() + ": " + node.getType()
+                        + (node.getGatewayType() != null ? "/" + node.getGatewayType() : ""));
+            } else if (kinds[i] == NodeKind.START) {
+                if (startIndex >= 0) {
+                    errors.add("Multiple start nodes: " + nodes.get(startIndex).getId() + ", " + node.getId());
+                } else {
+                    startIndex = i;
+                }
+            } else if (kinds[i] == NodeKind.END) {
+                hasEnd = true;
+            }
+        }
+        if (startIndex < 0) {
+            errors.add("Start node not found");
+        }
+        if (!hasEnd) {
+            errors.add("End node not found");
+        }
+
+        int[][] successors = new int[size][];
+        for (int i = 0; i < size; i++) {
+            successors[i] = resolveSuccessors(nodes.get(i), kinds[i], indexes);
+        }
+
+        int[] joins = new int[size];
+        int[] joinCounts = new int[size];
+        Arrays.fill(joins, -1);
+        if (startIndex >= 0) {
+            checkReachable(startIndex, successors);
+        }
+        if (!hasCycle(successors)) {
+            resolveJoins(kinds, successors, joins, joinCounts);
+        }
+        return new ExecutionPlan(nodes, kinds, successors, joins, joinCounts, startIndex);
+    }
+
+    private int[] resolveSuccessors(ProcessNode node, NodeKind kind, Map<String, Integer> indexes) {
+        List<String> nextNodes = node.getNextNodes() != null ? node.getNextNodes() : List.of();
+        int[] successors = new int[nextNodes.size()];
+        for (int k = 0; k < successors.length; k++) {
+            Integer target = indexes.get(nextNodes.get(k));
+            if (target == null) {
+                errors.add("Node " + node.getId() + " references missing node: " + nextNodes.get(k));
+            }
+            successors[k] = target != null ? target : -1;
+        }
+
+        switch (kind) {
+            case START:
+            case TASK:
+                if (successors.length != 1) {
+                    errors.add("Node " + node.getId() + " must have exactly one next node, found "
+                            + successors.length);
+                }
+                break;
+            case EXCLUSIVE_GATEWAY:
+                if (successors.length == 0) {
+                    errors.add("Gateway " + node.getId() + " has no next node");
+                }
+                if (node.getCondition() != null && !node.getCondition().isEmpty()) {
+                    try {
+                        ConditionExpressionCompiler.compile(node.getCondition(), definition.getVariableSchema());
+                    } catch (IllegalArgumentException e) {
+                        errors.add("Gateway " + node.getId() + " has invalid condition: " + e.getMessage());
+                    }
+                }
+                break;
+            case PARALLEL_GATEWAY:
+                if (successors.length == 0) {
+                    errors.add("Gateway " + node.getId() + " has no next node");
+                }
+                break;
+            case END:
+                if (successors.length > 0) {
+                    errors.add("End node " + node.getId() + " has next nodes");
+                }
+                break;
+            default:
+                break;
+        }
+        return successors;
+    }
+
+    private void checkReachable(int startIndex, int[][] successors) {
+        boolean[] reached = new boolean[successors.length];
+        Deque<Integer> pending = new ArrayDeque<>();
+        reached[startIndex] = true;
+        pending.push(startIndex);
+        while (!pending.isEmpty()) {
+            for (int successor : successors[pending.pop()]) {
+                if (successor >= 0 && !reached[successor]) {
+                    reached[successor] = true;
+                    pending.push(successor);
+                }
+            }
+        }
+        List<String> unreachable = new ArrayList<>();
+        for (int i = 0; i < reached.length; i++) {
+            if (!reached[i]) {
+                unreachable.add(nodes.get(i).getId());
+            }
+        }
+        if (!unreachable.isEmpty()) {
+            errors.add("Nodes unreachable from start node: " + String.join(", ", unreachable));
+        }
+    }
+
+    /**
+     * 深度优先遍历检查环，引擎按无环流程执行，分支最多经过每个节点一次
+     */
+    private boolean hasCycle(int[][] successors) {
+        // 0-未访问，1-在当前路径上，2-已完成
+        byte[] states = new byte[successors.length];
+        int[] nextEdge = new int[successors.length];
+        Deque<Integer> path = new ArrayDeque<>();
+        for (int root = 0; root < successors.length; root++) {
+            if (states[root] != 0) {
+                continue;
+            }
+            states[root] = 1;
+            path.push(root);
+            while (!path.isEmpty()) {
+                int current = path.peek();
+                if (nextEdge[current] == successors[current].length) {
+                    states[current] = 2;
+                    path.pop();
+                    continue;
+                }
+                int successor = successors[current][nextEdge[current]++];
+                if (successor < 0 || states[successor] == 2) {
+                    continue;
+                }
+                if (states[successor] == 1) {
+                    errors.add("Cycle detected through node: " + nodes.get(successor).getId());
+                    return true;
+                }
+                states[successor] = 1;
+                path.push(successor);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 沿分叉网关的每个分支经过任务节点和排他网关的所有路径，到达的第一个并行网关即为汇聚网关
+     */
+    private void resolveJoins(NodeKind[] kinds, int[][] successors, int[] joins, int[] joinCounts) {
+        for (int fork = 0; fork < successors.length; fork++) {
+            if (kinds[fork] != NodeKind.PARALLEL_GATEWAY || successors[fork].length < 2) {
+                continue;
+            }
+            String forkId = nodes.get(fork).getId();
+            int join = -1;
+            boolean valid = true;
+            boolean[] visited = new boolean[successors.length];
+            Deque<Integer> pending = new ArrayDeque<>();
+            for (int branch : successors[fork]) {
+                if (branch >= 0 && !visited[branch]) {
+                    visited[branch] = true;
+                    pending.push(branch);
+                }
+            }
+            while (!pending.isEmpty()) {
+                int current = pending.pop();
+                NodeKind kind = kinds[current];
+                if (kind == NodeKind.PARALLEL_GATEWAY) {
+                    if (join >= 0 && join != current) {
+                        errors.add("Parallel branches of gateway " + forkId + " join at different gateways: "
+                                + nodes.get(join).getId() + ", " + nodes.get(current).getId());
+                        valid = false;
+                    }
+                    join = current;
+                    continue;
+                }
+                if (kind != NodeKind.TASK && kind != NodeKind.EXCLUSIVE_GATEWAY) {
+                    errors.add("Parallel branch of gateway " + forkId + " reaches " + kind + " node without join: "
+                            + nodes.get(current).getId());
+                    valid = false;
+                    continue;
+                }
+                for (int successor : successors[current]) {
+                    if (successor >= 0 && !visited[successor]) {
+                        visited[successor] = true;
+                        pending.push(successor);
+                    }
+                }
+            }
+            if (!valid || join < 0) {
+                continue;
+            }
+            if (joinCounts[join] > 0) {
+                errors.add("Join gateway " + nodes.get(join).getId() + " is shared by multiple forks");
+                continue;
+            }
+            joins[fork] = join;
+            joinCounts[join] = successors[fork].length;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demotrade.plan;
+
+import com.example.demotrade.model.ProcessNode;
+
+/**
+ * 执行计划中的节点类型，由节点类型和网关类型在编译时确定，执行时按枚举分派
+ */
+public enum NodeKind {
+    START,
+    TASK,
+    EXCLUSIVE_GATEWAY,
+    /**
+     * 并行网关，有多个后续节点时为分叉网关，否则为汇聚网关或直接通过
+     */
+    PARALLEL_GATEWAY,
+    END,
+    /**
+     * 不支持的节点类型，只出现在未经校验编译的计划中，执行到该节点时失败
+     */
+    UNSUPPORTED;
+
+    static NodeKind of(ProcessNode node) {
+        if (node.getType() == null) {
+            return UNSUPPORTED;
+        }
+        switch (node.getType()) {
+            case "START":
+                return START;
+            case "TASK":
+                return TASK;
+            case "END":
+                return END;
+            case "GATEWAY":
+                if (node.getGatewayType() == null || "EXCLUSIVE".equals(node.getGatewayType())) {
+                    return EXCLUSIVE_GATEWAY;
+                }
+                return "PARALLEL".equals(node.getGatewayType()) ? PARALLEL_GATEWAY : UNSUPPORTED;
+            default:
+                return UNSUPPORTED;
+        }
+    }
+}
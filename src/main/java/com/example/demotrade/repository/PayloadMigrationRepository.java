@@ -0,0 +1,108 @@
+package com.example.demotrade.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * 文本JSON列迁移为二进制列使用的仓库
+ */
+@Repository
+public class PayloadMigrationRepository {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 按ID顺序查询仍只有文本列的行
+     *
+     * @param column 迁移的列
+     * @param afterId 上一批最后一行的ID，为null时从头开始
+     * @param limit 行数
+     * @return 待迁移的行
+     */
+    public List<TextRow> findTextRows(PayloadColumn column, String afterId, int limit) {
+        String sql = "SELECT id, " + column.jsonColumn + " FROM " + column.table + " WHERE "
+                + column.jsonColumn + " IS NOT NULL AND " + column.dataColumn + " IS NULL AND id > ? "
+                + "ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new TextRow(rs.getString(1), rs.getString(2)),
+                afterId != null ? afterId : "", limit);
+    }
+
+    /**
+     * 写入二进制列并清空文本列，二进制列已有值的行不覆盖
+     *
+     * @param column 迁移的列
+     * @param ids 行ID
+     * @param data 与ids一一对应的二进制数据
+     * @return 更新的行数
+     */
+    public int replaceWithData(PayloadColumn column, List<String> ids, List<byte[]> data) {
+        String sql = "UPDATE " + column.table + " SET " + column.dataColumn + " = ?, " + column.jsonColumn
+                + " = NULL WHERE id = ? AND " + column.dataColumn + " IS NULL";
+        int updated = 0;
+        int[] counts = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setBytes(1, data.get(i));
+                ps.setString(2, ids.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return ids.size();
+            }
+        });
+        // 开启rewriteBatchedStatements后MySQL驱动对每行返回SUCCESS_NO_INFO，按行数计
+        for (int count : counts) {
+            updated += count > 0 ? count : count == Statement.SUCCESS_NO_INFO ? 1 : 0;
+        }
+        return updated;
+    }
+
+    /**
+     * 待迁移的行
+     */
+    public record TextRow(String id, String json) {
+    }
+
+    /**
+     * 可迁移的文本列及对应的二进制列
+     */
+    public enum PayloadColumn {
+
+        INSTANCE_VARIABLES("process_instance", "variables_json", "variables_data", false),
+
+        HISTORY_VARIABLES("process_instance_history", "variables_json", "variables_data", false),
+
+        DEFINITION_NODES("process_definition", "nodes_json", "nodes_data", true);
+
+        private final String table;
+
+        private final String jsonColumn;
+
+        private final String dataColumn;
+
+        private final boolean nodes;
+
+        PayloadColumn(String table, String jsonColumn, String dataColumn, boolean nodes) {
+            this.table = table;
+            this.jsonColumn = jsonColumn;
+            this.dataColumn = dataColumn;
+            this.nodes = nodes;
+        }
+
+        /**
+         * @return true表示流程节点列表，false表示流程变量
+         */
+        public boolean isNodes() {
+            return nodes;
+        }
+    }
+}
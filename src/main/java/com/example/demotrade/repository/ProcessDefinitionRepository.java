@@ -1,6 +1,7 @@
 package com.example.demotrade.repository;
 
 import com.example.demotrade.entity.ProcessDefinitionEntity;
+import com.example.demotrade.model.DefinitionStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -25,13 +26,14 @@ public interface ProcessDefinitionRepository extends JpaRepository<ProcessDefini
     Optional<ProcessDefinitionEntity> findByIdAndVersion(String processDefinitionId, Integer version);
     
     /**
-     * 查询指定流程定义ID的最新版本
+     * 查询指定流程定义ID指定状态的最新版本，只读取一行
      * 
      * @param processDefinitionId 流程定义ID
+     * @param status 流程定义状态
      * @return 最新版本的流程定义实体
      */
-    @Query("SELECT p FROM ProcessDefinitionEntity p WHERE p.id = :processDefinitionId AND p.status = 'PUBLISHED' ORDER BY p.version DESC")
-    Optional<ProcessDefinitionEntity> findLatestByProcessDefinitionId(@Param("processDefinitionId") String processDefinitionId);
+    Optional<ProcessDefinitionEntity> findFirstByIdAndStatusOrderByVersionDesc(String processDefinitionId,
+                                                                       DefinitionStatus status);
     
     /**
      * 查询指定流程定义ID的最大版本号
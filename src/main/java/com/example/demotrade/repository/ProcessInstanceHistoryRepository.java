@@ -0,0 +1,142 @@
+package com.example.demotrade.repository;
+
+import com.example.demotrade.entity.ProcessInstanceEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 流程实例历史仓库
+ * 操作按结束时间月份分区的process_instance_history表，表结构见db/migration/V2__create_process_instance_history.sql
+ * <p>
+ * 历史表中的variables_json或variables_data保存归档时合并后的全部流程变量
+ */
+@Repository
+public class ProcessInstanceHistoryRepository {
+
+    private static final String TABLE_NAME = "process_instance_history";
+
+    private static final String FUTURE_PARTITION = "p_future";
+
+    private static final DateTimeFormatter PARTITION_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private static final String INSERT_SQL = "INSERT INTO " + TABLE_NAME + " (id, process_definition_id, "
+            + "process_definition_version, business_id, current_node_id, status, variables_json, variables_data, "
+            + "tokens_json, start_time, end_time, create_time, update_time, error_message, version, archive_time) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_SQL = "SELECT id, process_definition_id, process_definition_version, "
+            + "business_id, current_node_id, status, variables_json, variables_data, tokens_json, start_time, "
+            + "end_time, create_time, update_time, error_message, version FROM " + TABLE_NAME + " ";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 批量写入归档的流程实例
+     *
+     * @param entities 流程实例实体列表，结束时间不能为空
+     * @param archiveTime 归档时间
+     */
+    public void batchInsert(List<ProcessInstanceEntity> entities, LocalDateTime archiveTime) {
+        if (entities == null || entities.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, entities, entities.size(), (ps, entity) -> {
+            ps.setString(1, entity.getId());
+            ps.setString(2, entity.getProcessDefinitionId());
+            ps.setObject(3, entity.getProcessDefinitionVersion());
+            ps.setString(4, entity.getBusinessId());
+            ps.setString(5, entity.getCurrentNodeId());
+            ps.setObject(6, ProcessInstanceRepositoryCustomImpl.statusCode(entity.getStatus()));
+            ps.setString(7, entity.getVariablesJson());
+            ps.setBytes(8, entity.getVariablesData());
+            ps.setString(9, entity.getTokensJson());
+            ps.setTimestamp(10, ProcessInstanceRepositoryCustomImpl.toTimestamp(entity.getStartTime()));
+            ps.setTimestamp(11, ProcessInstanceRepositoryCustomImpl.toTimestamp(entity.getEndTime()));
+            ps.setTimestamp(12, ProcessInstanceRepositoryCustomImpl.toTimestamp(entity.getCreateTime()));
+            ps.setTimestamp(13, ProcessInstanceRepositoryCustomImpl.toTimestamp(entity.getUpdateTime()));
+            ps.setString(14, entity.getErrorMessage());
+            ps.setLong(15, entity.getVersion() != null ? entity.getVersion() : 0L);
+            ps.setTimestamp(16, ProcessInstanceRepositoryCustomImpl.toTimestamp(archiveTime));
+        });
+    }
+
+    /**
+     * 根据ID查询归档的流程实例
+     *
+     * @param id 流程实例ID
+     * @return 流程实例实体
+     */
+    public Optional<ProcessInstanceEntity> findById(String id) {
+        return jdbcTemplate.query(SELECT_SQL + "WHERE id = ?",
+                (rs, rowNum) -> ProcessInstanceRepositoryCustomImpl.mapRow(rs), id).stream().findFirst();
+    }
+
+    /**
+     * 根据业务ID查询归档的流程实例
+     *
+     * @param businessId 业务ID
+     * @return 流程实例实体列表
+     */
+    public List<ProcessInstanceEntity> findByBusinessId(String businessId) {
+        return jdbcTemplate.query(SELECT_SQL + "WHERE business_id = ?",
+                (rs, rowNum) -> ProcessInstanceRepositoryCustomImpl.mapRow(rs), businessId);
+    }
+
+    /**
+     * 查询已有的月分区，不包含保存未来数据的p_future分区
+     *
+     * @return 按月份升序排列的分区月份
+     */
+    public List<YearMonth> findPartitionMonths() {
+        List<String> names = jdbcTemplate.queryForList("SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL "
+                + "ORDER BY PARTITION_ORDINAL_POSITION", String.class, TABLE_NAME);
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : names) {
+            if (FUTURE_PARTITION.equals(name)) {
+                continue;
+            }
+            try {
+                months.add(YearMonth.parse(name, PARTITION_FORMAT));
+            } catch (DateTimeParseException e) {
+                // 忽略手工创建的非月分区
+            }
+        }
+        return months;
+    }
+
+    /**
+     * 从p_future中拆分出指定月份的分区，月份必须晚于已有的全部月分区
+     * 第一个月分区同时容纳更早的数据
+     *
+     * @param month 分区月份
+     */
+    public void addMonthlyPartition(YearMonth month) {
+        jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO ("
+                + "PARTITION " + partitionName(month) + " VALUES LESS THAN (TO_DAYS('" + month.plusMonths(1).atDay(1) + "')), "
+                + "PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN MAXVALUE)");
+    }
+
+    /**
+     * 删除指定月份的分区及其中的全部数据
+     *
+     * @param month 分区月份
+     */
+    public void dropMonthlyPartition(YearMonth month) {
+        jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " DROP PARTITION " + partitionName(month));
+    }
+
+    private static String partitionName(YearMonth month) {
+        return month.format(PARTITION_FORMAT);
+    }
+}
@@ -1,11 +1,16 @@
 package com.example.demotrade.repository;
 
 import com.example.demotrade.entity.ProcessInstanceEntity;
+import com.example.demotrade.model.InstanceStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,7 +19,7 @@ import java.util.Optional;
  * 用于操作流程实例实体的数据访问层
  */
 @Repository
-public interface ProcessInstanceRepository extends JpaRepository<ProcessInstanceEntity, String> {
+public interface ProcessInstanceRepository extends JpaRepository<ProcessInstanceEntity, String>, ProcessInstanceRepositoryCustom {
     
     /**
      * 根据业务ID查询流程实例
@@ -38,7 +43,95 @@ public interface ProcessInstanceRepository extends JpaRepository<ProcessInstance
      * @param status 流程状态
      * @return 流程实例列表
      */
-    List<ProcessInstanceEntity> findByStatus(String status);
+    List<ProcessInstanceEntity> findByStatus(InstanceStatus status);
+    
+    /**
+     * 按(createTime, id)顺序查询状态属于指定集合的第一页流程实例，例如{@link InstanceStatus#NON_TERMINAL}
+     * 状态按编码以IN列表比较，仍使用idx_instance_status_create的范围扫描
+     * 
+     * @param statuses 流程状态集合
+     * @param limit 每页行数
+     * @return 流程实例列表
+     */
+    List<ProcessInstanceEntity> findByStatusInOrderByCreateTimeAscIdAsc(Collection<InstanceStatus> statuses,
+                                                                         Limit limit);
+    
+    /**
+     * 按(createTime, id)顺序查询状态属于指定集合、位于游标之后的一页流程实例
+     * 
+     * @param statuses 流程状态集合
+     * @param createTime 上一页最后一行的创建时间
+     * @param id 上一页最后一行的ID
+     * @param limit 每页行数
+     * @return 流程实例列表
+     */
+    @Query("SELECT p FROM ProcessInstanceEntity p WHERE p.status IN :statuses "
+            + "AND (p.createTime > :createTime OR (p.createTime = :createTime AND p.id > :id)) "
+            + "ORDER BY p.createTime ASC, p.id ASC")
+    List<ProcessInstanceEntity> findByStatusInAfter(@Param("statuses") Collection<InstanceStatus> statuses,
+                                                    @Param("createTime") LocalDateTime createTime,
+                                                    @Param("id") String id,
+                                                    Limit limit);
+    
+    /**
+     * 统计状态属于指定集合的流程实例数
+     * 
+     * @param statuses 流程状态集合
+     * @return 流程实例数
+     */
+    long countByStatusIn(Collection<InstanceStatus> statuses);
+    
+    /**
+     * 按(createTime, id)顺序查询指定状态的第一页流程实例
+     * 
+     * @param status 流程状态
+     * @param limit 每页行数
+     * @return 流程实例列表
+     */
+    List<ProcessInstanceEntity> findByStatusOrderByCreateTimeAscIdAsc(InstanceStatus status, Limit limit);
+    
+    /**
+     * 按(createTime, id)顺序查询指定状态、位于游标之后的一页流程实例
+     * 
+     * @param status 流程状态
+     * @param createTime 上一页最后一行的创建时间
+     * @param id 上一页最后一行的ID
+     * @param limit 每页行数
+     * @return 流程实例列表
+     */
+    @Query("SELECT p FROM ProcessInstanceEntity p WHERE p.status = :status "
+            + "AND (p.createTime > :createTime OR (p.createTime = :createTime AND p.id > :id)) "
+            + "ORDER BY p.createTime ASC, p.id ASC")
+    List<ProcessInstanceEntity> findByStatusAfter(@Param("status") InstanceStatus status,
+                                                  @Param("createTime") LocalDateTime createTime,
+                                                  @Param("id") String id,
+                                                  Limit limit);
+    
+    /**
+     * 按(createTime, id)顺序查询指定业务ID的第一页流程实例
+     * 
+     * @param businessId 业务ID
+     * @param limit 每页行数
+     * @return 流程实例列表
+     */
+    List<ProcessInstanceEntity> findByBusinessIdOrderByCreateTimeAscIdAsc(String businessId, Limit limit);
+    
+    /**
+     * 按(createTime, id)顺序查询指定业务ID、位于游标之后的一页流程实例
+     * 
+     * @param businessId 业务ID
+     * @param createTime 上一页最后一行的创建时间
+     * @param id 上一页最后一行的ID
+     * @param limit 每页行数
+     * @return 流程实例列表
+     */
+    @Query("SELECT p FROM ProcessInstanceEntity p WHERE p.businessId = :businessId "
+            + "AND (p.createTime > :createTime OR (p.createTime = :createTime AND p.id > :id)) "
+            + "ORDER BY p.createTime ASC, p.id ASC")
+    List<ProcessInstanceEntity> findByBusinessIdAfter(@Param("businessId") String businessId,
+                                                      @Param("createTime") LocalDateTime createTime,
+                                                      @Param("id") String id,
+                                                      Limit limit);
     
     /**
      * 根据业务ID和状态查询流程实例
@@ -47,17 +140,159 @@ public interface ProcessInstanceRepository extends JpaRepository<ProcessInstance
      * @param status 流程状态
      * @return 流程实例列表
      */
-    List<ProcessInstanceEntity> findByBusinessIdAndStatus(String businessId, String status);
+    List<ProcessInstanceEntity> findByBusinessIdAndStatus(String businessId, InstanceStatus status);
     
     /**
      * 查询指定流程定义ID和业务ID的最新流程实例
+     * 只读取一行，由索引idx_instance_definition_business_create提供顺序
      * 
      * @param processDefinitionId 流程定义ID
      * @param businessId 业务ID
      * @return 最新的流程实例
      */
-    @Query("SELECT p FROM ProcessInstanceEntity p WHERE p.processDefinitionId = :processDefinitionId AND p.businessId = :businessId ORDER BY p.createTime DESC")
-    Optional<ProcessInstanceEntity> findLatestByProcessDefinitionIdAndBusinessId(
-            @Param("processDefinitionId") String processDefinitionId,
-            @Param("businessId") String businessId);
-}
\ No newline at end of file
+    Optional<ProcessInstanceEntity> findFirstByProcessDefinitionIdAndBusinessIdOrderByCreateTimeDesc(
+            String processDefinitionId, String businessId);
+    
+    /**
+     * 只更新流程实例的更新时间，并将版本号加1
+     * 只修改变量时使用，与其它修改一样递增版本号，持有旧版本的更新和缓存写入不会覆盖新变量
+     * 
+     * @param id 流程实例ID
+     * @param updateTime 更新时间
+     * @return 更新的行数，实例不存在时为0
+     */
+    @Modifying
+    @Query("UPDATE ProcessInstanceEntity p SET p.updateTime = :updateTime, p.version = p.version + 1 "
+            + "WHERE p.id = :id")
+    int touch(@Param("id") String id, @Param("updateTime") LocalDateTime updateTime);
+    
+    /**
+     * 替换流程实例的初始变量，删除变量时以当前的全部变量替换，避免已删除的变量从初始变量中恢复
+     * 
+     * @param id 流程实例ID
+     * @param variablesJson 文本格式的变量，按二进制格式编码时为null
+     * @param variablesData 二进制格式的变量，按文本格式编码时为null
+     * @return 更新的行数，实例不存在时为0
+     */
+    @Modifying
+    @Query("UPDATE ProcessInstanceEntity p SET p.variablesJson = :variablesJson, p.variablesData = :variablesData "
+            + "WHERE p.id = :id")
+    int replaceInitialVariables(@Param("id") String id, @Param("variablesJson") String variablesJson,
+                                @Param("variablesData") byte[] variablesData);
+    
+    /**
+     * 记录分布式锁的fencing token，只有token不小于已记录的值时才更新
+     * 与实例的修改在同一事务中执行，行锁保证持有旧token的写入不会覆盖新持有者的写入
+     * 
+     * @param id 流程实例ID
+     * @param fencingToken 当前持有的fencing token
+     * @return 更新的行数，token已过期或实例不存在时为0
+     */
+    @Modifying
+    @Query("UPDATE ProcessInstanceEntity p SET p.fencingToken = :fencingToken "
+            + "WHERE p.id = :id AND p.fencingToken <= :fencingToken")
+    int fence(@Param("id") String id, @Param("fencingToken") Long fencingToken);
+    
+    /**
+     * 查询流程实例的当前状态，用于条件更新未命中时区分实例不存在和并发冲突
+     * 
+     * @param id 流程实例ID
+     * @return 流程状态
+     */
+    @Query("SELECT p.status FROM ProcessInstanceEntity p WHERE p.id = :id")
+    Optional<InstanceStatus> findStatusById(@Param("id") String id);
+    
+    /**
+     * 版本号一致且当前状态允许转换到目标状态时更新流程实例的可变字段，并将版本号加1
+     * 
+     * @param id 流程实例ID
+     * @param version 读取实例时的版本号
+     * @param fromStatuses 允许的当前状态，包含目标状态本身
+     * @param currentNodeId 当前节点ID
+     * @param status 流程状态
+     * @param tokensJson 分支令牌JSON
+     * @param endTime 结束时间
+     * @param errorMessage 错误信息
+     * @param updateTime 更新时间
+     * @return 更新的行数，版本号不一致、状态转换不允许或实例不存在时为0
+     */
+    @Modifying
+    @Query("UPDATE ProcessInstanceEntity p SET p.currentNodeId = :currentNodeId, p.status = :status, "
+            + "p.tokensJson = :tokensJson, p.endTime = :endTime, p.errorMessage = :errorMessage, "
+            + "p.updateTime = :updateTime, p.version = p.version + 1 "
+            + "WHERE p.id = :id AND p.version = :version AND p.status IN :fromStatuses")
+    int updateIfVersionMatches(@Param("id") String id,
+                               @Param("version") Long version,
+                               @Param("fromStatuses") Collection<InstanceStatus> fromStatuses,
+                               @Param("currentNodeId") String currentNodeId,
+                               @Param("status") InstanceStatus status,
+                               @Param("tokensJson") String tokensJson,
+                               @Param("endTime") LocalDateTime endTime,
+                               @Param("errorMessage") String errorMessage,
+                               @Param("updateTime") LocalDateTime updateTime);
+    
+    /**
+     * 当前状态属于指定状态之一时变更流程状态，并将版本号加1
+     * 
+     * @param id 流程实例ID
+     * @param fromStatuses 允许变更的当前状态
+     * @param toStatus 目标状态
+     * @param updateTime 更新时间
+     * @return 更新的行数，状态不满足或实例不存在时为0
+     */
+    @Modifying
+    @Query("UPDATE ProcessInstanceEntity p SET p.status = :toStatus, p.updateTime = :updateTime, "
+            + "p.version = p.version + 1 "
+            + "WHERE p.id = :id AND p.status IN :fromStatuses")
+    int transitionStatus(@Param("id") String id,
+                         @Param("fromStatuses") Collection<InstanceStatus> fromStatuses,
+                         @Param("toStatus") InstanceStatus toStatus,
+                         @Param("updateTime") LocalDateTime updateTime);
+    
+    /**
+     * 当前状态属于指定状态之一时终止流程实例，并将版本号加1
+     * 
+     * @param id 流程实例ID
+     * @param fromStatuses 允许终止的当前状态
+     * @param toStatus 终止状态
+     * @param errorMessage 错误信息
+     * @param endTime 结束时间
+     * @return 更新的行数，状态不满足或实例不存在时为0
+     */
+    @Modifying
+    @Query("UPDATE ProcessInstanceEntity p SET p.status = :toStatus, p.errorMessage = :errorMessage, "
+            + "p.endTime = :endTime, p.updateTime = :endTime, p.version = p.version + 1 "
+            + "WHERE p.id = :id AND p.status IN :fromStatuses")
+    int terminate(@Param("id") String id,
+                  @Param("fromStatuses") Collection<InstanceStatus> fromStatuses,
+                  @Param("toStatus") InstanceStatus toStatus,
+                  @Param("errorMessage") String errorMessage,
+                  @Param("endTime") LocalDateTime endTime);
+    
+    /**
+     * 查询可归档的流程实例ID
+     * 结束时间不早于创建时间，附加createTime条件使查询可以使用状态索引的范围扫描
+     * 
+     * @param statuses 可归档的状态
+     * @param endBefore 结束时间上限
+     * @param limit 最多返回的行数
+     * @return 流程实例ID列表
+     */
+    @Query("SELECT p.id FROM ProcessInstanceEntity p WHERE p.status IN :statuses "
+            + "AND p.createTime < :endBefore AND p.endTime < :endBefore")
+    List<String> findArchivableIds(@Param("statuses") Collection<InstanceStatus> statuses,
+                                   @Param("endBefore") LocalDateTime endBefore,
+                                   Limit limit);
+    
+    /**
+     * 删除指定状态的流程实例
+     * 
+     * @param ids 流程实例ID集合
+     * @param statuses 允许删除的状态
+     * @return 删除的行数
+     */
+    @Modifying
+    @Query("DELETE FROM ProcessInstanceEntity p WHERE p.id IN :ids AND p.status IN :statuses")
+    int deleteByIdsAndStatuses(@Param("ids") Collection<String> ids,
+                               @Param("statuses") Collection<InstanceStatus> statuses);
+}
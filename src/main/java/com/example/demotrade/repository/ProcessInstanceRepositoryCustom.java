@@ -0,0 +1,64 @@
+package com.example.demotrade.repository;
+
+import com.example.demotrade.entity.ProcessInstanceEntity;
+import com.example.demotrade.model.InstanceStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 流程实例仓库扩展接口
+ * 提供Spring Data JPA派生查询无法高效实现的JDBC操作
+ */
+public interface ProcessInstanceRepositoryCustom {
+
+    /**
+     * 批量插入流程实例
+     * 直接执行INSERT，不做JPA合并前的存在性查询，调用方需保证ID已分配且不重复
+     *
+     * @param entities 流程实例实体列表
+     * @param batchSize 每批提交的行数
+     * @return 插入的行数
+     */
+    int batchInsert(List<ProcessInstanceEntity> entities, int batchSize);
+
+    /**
+     * 流式查询指定状态的流程实例
+     * 使用游标逐批获取，内存占用与结果集大小无关；返回的Stream持有数据库连接，调用方必须关闭
+     *
+     * @param status 流程状态
+     * @param fetchSize 每次从数据库获取的行数
+     * @return 流程实例实体流
+     */
+    Stream<ProcessInstanceEntity> streamByStatus(InstanceStatus status, int fetchSize);
+
+    /**
+     * 流式查询指定业务ID的流程实例
+     * 返回的Stream持有数据库连接，调用方必须关闭
+     *
+     * @param businessId 业务ID
+     * @param fetchSize 每次从数据库获取的行数
+     * @return 流程实例实体流
+     */
+    Stream<ProcessInstanceEntity> streamByBusinessId(String businessId, int fetchSize);
+
+    /**
+     * 按ID批量查询流程实例，返回的实体不受JPA持久化上下文管理，修改不会被写回
+     *
+     * @param ids 流程实例ID集合
+     * @return 流程实例实体列表
+     */
+    List<ProcessInstanceEntity> findDetachedByIds(Collection<String> ids);
+
+    /**
+     * 批量执行带版本号条件的更新，每个实体对应一条UPDATE ... WHERE id = ? AND version = ? AND status IN (...)
+     * 更新当前节点、状态、分支令牌、结束时间、错误信息和更新时间，并将版本号加1；
+     * 当前状态必须允许转换到实体中的状态，见{@link InstanceStatus#sourcesOf}；
+     * 实体的fencingToken为持有的分布式锁token，已被更新的持有者推进时不更新，否则推进到该token；为null时不校验
+     *
+     * @param entities 流程实例实体列表，version为读取实例时的版本号
+     * @return 每个实体更新的行数，与entities顺序一致，0表示版本号不一致、fencing token已过期、状态转换不允许或实例不存在
+     */
+    int[] batchUpdateIfVersionMatches(List<ProcessInstanceEntity> entities);
+}
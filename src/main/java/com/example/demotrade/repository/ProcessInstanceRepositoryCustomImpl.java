@@ -0,0 +1,199 @@
+package com.example.demotrade.repository;
+
+import com.example.demotrade.entity.ProcessInstanceEntity;
+import com.example.demotrade.model.InstanceStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * 流程实例仓库扩展实现
+ */
+public class ProcessInstanceRepositoryCustomImpl implements ProcessInstanceRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO process_instance (id, process_definition_id, "
+            + "process_definition_version, business_id, current_node_id, status, variables_json, variables_data, "
+            + "tokens_json, start_time, end_time, create_time, update_time, error_message, version) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_SQL = "SELECT id, process_definition_id, process_definition_version, "
+            + "business_id, current_node_id, status, variables_json, variables_data, tokens_json, start_time, "
+            + "end_time, create_time, update_time, error_message, version FROM process_instance ";
+
+    /**
+     * 允许的当前状态以固定个数的占位符传入，不足时重复最后一个，所有实体共用同一条语句才能批量执行
+     */
+    private static final int STATUS_PLACEHOLDERS = InstanceStatus.values().length;
+
+    private static final String UPDATE_IF_VERSION_MATCHES_SQL = "UPDATE process_instance SET current_node_id = ?, "
+            + "status = ?, tokens_json = ?, end_time = ?, error_message = ?, update_time = ?, version = version + 1, "
+            + "fencing_token = GREATEST(fencing_token, ?) "
+            + "WHERE id = ? AND version = ? AND fencing_token <= ? AND status IN ("
+            + String.join(", ", Collections.nCopies(STATUS_PLACEHOLDERS, "?")) + ")";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int batchInsert(List<ProcessInstanceEntity> entities, int batchSize) {
+        if (entities == null || entities.isEmpty()) {
+            return 0;
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_SQL, entities, batchSize, (ps, entity) -> {
+            ps.setString(1, entity.getId());
+            ps.setString(2, entity.getProcessDefinitionId());
+            ps.setObject(3, entity.getProcessDefinitionVersion());
+            ps.setString(4, entity.getBusinessId());
+            ps.setString(5, entity.getCurrentNodeId());
+            ps.setObject(6, statusCode(entity.getStatus()));
+            ps.setString(7, entity.getVariablesJson());
+            ps.setBytes(8, entity.getVariablesData());
+            ps.setString(9, entity.getTokensJson());
+            ps.setTimestamp(10, toTimestamp(entity.getStartTime()));
+            ps.setTimestamp(11, toTimestamp(entity.getEndTime()));
+            ps.setTimestamp(12, toTimestamp(entity.getCreateTime()));
+            ps.setTimestamp(13, toTimestamp(entity.getUpdateTime()));
+            ps.setString(14, entity.getErrorMessage());
+            ps.setLong(15, entity.getVersion() != null ? entity.getVersion() : 0L);
+        });
+
+        // 开启rewriteBatchedStatements后MySQL驱动对每行返回SUCCESS_NO_INFO，按实体数计
+        int inserted = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                inserted += count > 0 ? count : 1;
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public int[] batchUpdateIfVersionMatches(List<ProcessInstanceEntity> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return new int[0];
+        }
+        // UPDATE语句即使开启rewriteBatchedStatements也会返回每条语句的实际更新行数
+        return jdbcTemplate.batchUpdate(UPDATE_IF_VERSION_MATCHES_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ProcessInstanceEntity entity = entities.get(i);
+                ps.setString(1, entity.getCurrentNodeId());
+                ps.setObject(2, statusCode(entity.getStatus()));
+                ps.setString(3, entity.getTokensJson());
+                ps.setTimestamp(4, toTimestamp(entity.getEndTime()));
+                ps.setString(5, entity.getErrorMessage());
+                ps.setTimestamp(6, toTimestamp(entity.getUpdateTime()));
+                // 只获取了本地锁时不推进也不校验已有的token
+                Long fencingToken = entity.getFencingToken();
+                ps.setLong(7, fencingToken != null ? fencingToken : 0L);
+                ps.setString(8, entity.getId());
+                ps.setLong(9, entity.getVersion());
+                ps.setLong(10, fencingToken != null ? fencingToken : Long.MAX_VALUE);
+                byte[] fromCodes = transitionSourceCodes(entity.getStatus());
+                for (int k = 0; k < STATUS_PLACEHOLDERS; k++) {
+                    ps.setByte(11 + k, fromCodes[Math.min(k, fromCodes.length - 1)]);
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entities.size();
+            }
+        });
+    }
+
+    @Override
+    public Stream<ProcessInstanceEntity> streamByStatus(InstanceStatus status, int fetchSize) {
+        return stream(SELECT_SQL + "WHERE status = ?", status.code(), fetchSize);
+    }
+
+    @Override
+    public Stream<ProcessInstanceEntity> streamByBusinessId(String businessId, int fetchSize) {
+        return stream(SELECT_SQL + "WHERE business_id = ?", businessId, fetchSize);
+    }
+
+    /**
+     * 以指定fetchSize执行查询，MySQL驱动需开启useCursorFetch才会按fetchSize分批获取
+     */
+    private Stream<ProcessInstanceEntity> stream(String sql, Object parameter, int fetchSize) {
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setObject(1, parameter);
+            return ps;
+        }, (rs, rowNum) -> mapRow(rs));
+    }
+
+    @Override
+    public List<ProcessInstanceEntity> findDetachedByIds(Collection<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        return jdbcTemplate.query(SELECT_SQL + "WHERE id IN (" + placeholders + ")",
+                (rs, rowNum) -> mapRow(rs), ids.toArray());
+    }
+
+    /**
+     * 将结果集的当前行映射为流程实例实体，process_instance_history的同名列也使用此方法映射
+     */
+    static ProcessInstanceEntity mapRow(ResultSet rs) throws SQLException {
+        ProcessInstanceEntity entity = new ProcessInstanceEntity();
+        entity.setId(rs.getString("id"));
+        entity.setProcessDefinitionId(rs.getString("process_definition_id"));
+        entity.setProcessDefinitionVersion(rs.getObject("process_definition_version", Integer.class));
+        entity.setBusinessId(rs.getString("business_id"));
+        entity.setCurrentNodeId(rs.getString("current_node_id"));
+        byte status = rs.getByte("status");
+        entity.setStatus(rs.wasNull() ? null : InstanceStatus.fromCode(status));
+        entity.setVariablesJson(rs.getString("variables_json"));
+        entity.setVariablesData(rs.getBytes("variables_data"));
+        entity.setTokensJson(rs.getString("tokens_json"));
+        entity.setStartTime(toLocalDateTime(rs.getTimestamp("start_time")));
+        entity.setEndTime(toLocalDateTime(rs.getTimestamp("end_time")));
+        entity.setCreateTime(toLocalDateTime(rs.getTimestamp("create_time")));
+        entity.setUpdateTime(toLocalDateTime(rs.getTimestamp("update_time")));
+        entity.setErrorMessage(rs.getString("error_message"));
+        entity.setVersion(rs.getLong("version"));
+        return entity;
+    }
+
+    static Byte statusCode(InstanceStatus status) {
+        return status != null ? status.code() : null;
+    }
+
+    /**
+     * 转换到目标状态时允许的当前状态编码，包含目标状态本身
+     */
+    private static byte[] transitionSourceCodes(InstanceStatus target) {
+        Set<InstanceStatus> sources = InstanceStatus.sourcesOf(target);
+        byte[] codes = new byte[sources.size() + 1];
+        int i = 0;
+        for (InstanceStatus source : sources) {
+            codes[i++] = source.code();
+        }
+        codes[i] = target.code();
+        return codes;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    static Timestamp toTimestamp(LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demotrade.repository;
+
+import com.example.demotrade.entity.ProcessTimerEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 流程节点定时器仓库接口
+ * 定时器的写入不在流程实例的事务中，删除方法自带事务
+ */
+@Repository
+public interface ProcessTimerRepository extends JpaRepository<ProcessTimerEntity, String> {
+    
+    /**
+     * 按(dueTime, id)顺序查询到期时间不晚于dueBefore的第一页定时器，已过期的定时器排在最前
+     * 
+     * @param dueBefore 到期时间上限
+     * @param limit 每页行数
+     * @return 定时器列表
+     */
+    List<ProcessTimerEntity> findByDueTimeLessThanEqualOrderByDueTimeAscIdAsc(LocalDateTime dueBefore, Limit limit);
+    
+    /**
+     * 按(dueTime, id)顺序查询到期时间不晚于dueBefore、位于游标之后的一页定时器
+     * 
+     * @param dueBefore 到期时间上限
+     * @param dueTime 上一页最后一行的到期时间
+     * @param id 上一页最后一行的ID
+     * @param limit 每页行数
+     * @return 定时器列表
+     */
+    @Query("SELECT t FROM ProcessTimerEntity t WHERE t.dueTime <= :dueBefore "
+            + "AND (t.dueTime > :dueTime OR (t.dueTime = :dueTime AND t.id > :id)) "
+            + "ORDER BY t.dueTime ASC, t.id ASC")
+    List<ProcessTimerEntity> findDueAfter(@Param("dueBefore") LocalDateTime dueBefore,
+                                          @Param("dueTime") LocalDateTime dueTime,
+                                          @Param("id") String id,
+                                          Limit limit);
+    
+    /**
+     * 查询流程实例的全部定时器
+     * 
+     * @param processInstanceId 流程实例ID
+     * @return 定时器列表
+     */
+    List<ProcessTimerEntity> findByProcessInstanceId(String processInstanceId);
+    
+    /**
+     * 删除定时器
+     * 
+     * @param id 定时器ID
+     * @return 删除的行数
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProcessTimerEntity t WHERE t.id = :id")
+    int deleteTimer(@Param("id") String id);
+    
+    /**
+     * 到期时间和重试次数未变时修改到期时间，用于认领到期的定时器和恢复推迟的定时器
+     * 
+     * @param id 定时器ID
+     * @param dueTime 当前的到期时间
+     * @param attempt 当前的重试次数
+     * @param newDueTime 新的到期时间
+     * @return 更新的行数，为0表示定时器已被其它节点认领、重新设置或取消
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProcessTimerEntity t SET t.dueTime = :newDueTime "
+            + "WHERE t.id = :id AND t.dueTime = :dueTime AND t.attempt = :attempt")
+    int moveDueTime(@Param("id") String id, @Param("dueTime") LocalDateTime dueTime,
+                    @Param("attempt") int attempt, @Param("newDueTime") LocalDateTime newDueTime);
+    
+    /**
+     * 到期时间未变时删除已触发的定时器，处理期间被重新设置的定时器保留
+     * 
+     * @param id 定时器ID
+     * @param dueTime 触发的定时器的到期时间
+     * @return 删除的行数
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProcessTimerEntity t WHERE t.id = :id AND t.dueTime = :dueTime")
+    int deleteFired(@Param("id") String id, @Param("dueTime") LocalDateTime dueTime);
+    
+    /**
+     * 删除流程实例的全部定时器
+     * 
+     * @param processInstanceId 流程实例ID
+     * @return 删除的行数
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProcessTimerEntity t WHERE t.processInstanceId = :processInstanceId")
+    int deleteByProcessInstanceId(@Param("processInstanceId") String processInstanceId);
+}
@@ -0,0 +1,68 @@
+package com.example.demotrade.repository;
+
+import com.example.demotrade.entity.ProcessVariableEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 流程变量仓库接口
+ * 用于操作流程变量实体的数据访问层
+ */
+@Repository
+public interface ProcessVariableRepository extends JpaRepository<ProcessVariableEntity, Long>, ProcessVariableRepositoryCustom {
+    
+    /**
+     * 查询流程实例的全部变量
+     * 
+     * @param processInstanceId 流程实例ID
+     * @return 流程变量列表
+     */
+    List<ProcessVariableEntity> findByProcessInstanceId(String processInstanceId);
+    
+    /**
+     * 查询流程实例的单个变量
+     * 
+     * @param processInstanceId 流程实例ID
+     * @param variableName 变量名称
+     * @return 流程变量
+     */
+    Optional<ProcessVariableEntity> findByProcessInstanceIdAndVariableName(String processInstanceId, String variableName);
+    
+    /**
+     * 批量查询多个流程实例的变量
+     * 
+     * @param processInstanceIds 流程实例ID集合
+     * @return 流程变量列表
+     */
+    List<ProcessVariableEntity> findByProcessInstanceIdIn(Collection<String> processInstanceIds);
+    
+    /**
+     * 删除流程实例的指定变量
+     * 
+     * @param processInstanceId 流程实例ID
+     * @param variableNames 变量名称集合
+     * @return 删除的行数
+     */
+    @Modifying
+    @Query("DELETE FROM ProcessVariableEntity v WHERE v.processInstanceId = :processInstanceId "
+            + "AND v.variableName IN :variableNames")
+    int deleteVariables(@Param("processInstanceId") String processInstanceId,
+                        @Param("variableNames") Collection<String> variableNames);
+    
+    /**
+     * 删除多个流程实例的全部变量
+     * 
+     * @param processInstanceIds 流程实例ID集合
+     * @return 删除的行数
+     */
+    @Modifying
+    @Query("DELETE FROM ProcessVariableEntity v WHERE v.processInstanceId IN :processInstanceIds")
+    int deleteByProcessInstanceIds(@Param("processInstanceIds") Collection<String> processInstanceIds);
+}
@@ -0,0 +1,20 @@
+package com.example.demotrade.repository;
+
+import com.example.demotrade.entity.ProcessVariableEntity;
+
+import java.util.List;
+
+/**
+ * 流程变量仓库扩展接口
+ */
+public interface ProcessVariableRepositoryCustom {
+
+    /**
+     * 批量插入或更新流程变量
+     * 依赖(process_instance_id, variable_name)唯一键，已存在的变量只更新值和类型
+     *
+     * @param variables 流程变量实体列表
+     * @return 处理的变量数
+     */
+    int upsertVariables(List<ProcessVariableEntity> variables);
+}
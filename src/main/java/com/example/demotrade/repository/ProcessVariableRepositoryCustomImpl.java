@@ -0,0 +1,41 @@
+package com.example.demotrade.repository;
+
+import com.example.demotrade.entity.ProcessVariableEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * 流程变量仓库扩展实现
+ */
+public class ProcessVariableRepositoryCustomImpl implements ProcessVariableRepositoryCustom {
+
+    private static final String UPSERT_SQL = "INSERT INTO process_variable (process_instance_id, variable_name, "
+            + "variable_value, variable_type, creator, modifier, gmt_create, gmt_modified) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE variable_value = VALUES(variable_value), variable_type = VALUES(variable_type), "
+            + "modifier = VALUES(modifier), gmt_modified = VALUES(gmt_modified)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int upsertVariables(List<ProcessVariableEntity> variables) {
+        if (variables == null || variables.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, variables, variables.size(), (ps, variable) -> {
+            ps.setString(1, variable.getProcessInstanceId());
+            ps.setString(2, variable.getVariableName());
+            ps.setString(3, variable.getVariableValue());
+            ps.setString(4, variable.getVariableType());
+            ps.setString(5, variable.getCreator());
+            ps.setString(6, variable.getModifier());
+            ps.setTimestamp(7, Timestamp.valueOf(variable.getGmtCreate()));
+            ps.setTimestamp(8, variable.getGmtModified() != null ? Timestamp.valueOf(variable.getGmtModified()) : null);
+        });
+        return variables.size();
+    }
+}
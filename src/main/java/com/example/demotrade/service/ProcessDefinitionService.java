@@ -10,6 +10,7 @@ public interface ProcessDefinitionService {
 
     /**
      * 保存流程定义
+     * 每次保存生成一个新版本，新版本的状态总是DRAFT，需要调用publishProcessDefinition发布
      * 
      * @param processDefinition 流程定义
      * @return 保存后的流程定义
@@ -34,11 +35,12 @@ public interface ProcessDefinitionService {
     ProcessDefinition getLatestProcessDefinition(String processDefinitionId);
 
     /**
-     * 发布流程定义
+     * 发布流程定义，发布时编译执行计划并与流程定义一起保存
      * 
      * @param processDefinitionId 流程定义ID
      * @param version 版本号
      * @return 发布后的流程定义
+     * @throws com.example.demotrade.exception.ProcessDefinitionValidationException 流程结构有错误
      */
     ProcessDefinition publishProcessDefinition(String processDefinitionId, Integer version);
 
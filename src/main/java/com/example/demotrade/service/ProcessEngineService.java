@@ -0,0 +1,595 @@
+package com.example.demotrade.service;
+
+import com.example.demotrade.exception.ProcessInstanceConflictException;
+import com.example.demotrade.expression.ConditionEvaluator;
+import com.example.demotrade.model.ExecutionToken;
+import com.example.demotrade.model.InstanceStatus;
+import com.example.demotrade.model.ProcessDefinition;
+import com.example.demotrade.model.ProcessInstance;
+import com.example.demotrade.model.ProcessNode;
+import com.example.demotrade.model.SlotVariables;
+import com.example.demotrade.model.VariableSchema;
+import com.example.demotrade.plan.ExecutionPlan;
+import com.example.demotrade.plan.NodeKind;
+import com.example.demotrade.timer.NodeTimer;
+import com.example.demotrade.timer.NodeTimerScheduler;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 流程引擎服务
+ * 负责驱动流程实例在流程定义的节点之间流转，提供同步接口以及基于虚拟线程的异步接口
+ * <p>
+ * 节点设置了timeout时，实例进入节点后开始计时，到期仍停留在该节点则置为失败，计时包含该节点的重试；
+ * 设置了retryCount时，节点执行失败后按retryInterval延迟重试，重试次数用完后置为失败。
+ * 暂停期间到期的超时和重试不再生效
+ */
+@Service
+public class ProcessEngineService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessEngineService.class);
+
+    @Autowired
+    private ProcessDefinitionService processDefinitionService;
+
+    @Autowired
+    private ProcessInstanceService processInstanceService;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ConditionEvaluator conditionEvaluator;
+
+    @Autowired
+    @Qualifier("processEngineExecutor")
+    private ExecutorService processEngineExecutor;
+
+    @Autowired
+    @Qualifier("parallelBranchExecutor")
+    private ExecutorService parallelBranchExecutor;
+
+    /**
+     * 关闭定时器时不存在，节点的超时和重试设置不生效
+     */
+    @Autowired(required = false)
+    private NodeTimerScheduler nodeTimerScheduler;
+
+    @PostConstruct
+    public void init() {
+        if (nodeTimerScheduler != null) {
+            nodeTimerScheduler.setHandler(this::onTimer);
+        }
+    }
+
+    /**
+     * 启动流程实例
+     *
+     * @param processDefinitionId 流程定义ID
+     * @param businessId 业务ID
+     * @param variables 初始流程变量
+     * @return 创建后的流程实例，当前节点为开始节点
+     */
+    public ProcessInstance startProcess(String processDefinitionId, String businessId, Map<String, Object> variables) {
+        ProcessDefinition definition = processDefinitionService.getLatestProcessDefinition(processDefinitionId);
+        if (definition == null) {
+            throw new RuntimeException("Published process definition not found: " + processDefinitionId);
+        }
+
+        int startIndex = definition.getExecutionPlan().startIndex();
+        if (startIndex < 0) {
+            throw new RuntimeException("Start node not found in process definition: " + processDefinitionId);
+        }
+
+        ProcessInstance instance = new ProcessInstance();
+        instance.setProcessDefinitionId(definition.getId());
+        instance.setProcessDefinitionVersion(definition.getVersion());
+        instance.setBusinessId(businessId);
+        instance.setCurrentNodeId(definition.getExecutionPlan().nodeId(startIndex));
+        instance.setStatus(InstanceStatus.RUNNING.name());
+        instance.setVariables(newVariables(definition, variables));
+
+        ProcessInstance created = processInstanceService.createProcessInstance(instance);
+        moveTimeout(created.getId(), null, definition.getExecutionPlan().node(startIndex));
+        return created;
+    }
+
+    /**
+     * 执行流程实例的当前节点，并推进到下一节点
+     *
+     * @param processInstanceId 流程实例ID
+     * @return 推进后的流程实例
+     */
+    public ProcessInstance executeNode(String processInstanceId) {
+        return executeCurrentNode(processInstanceId, 0);
+    }
+
+    /**
+     * 执行流程实例的当前节点，失败且未用完重试次数时设置重试定时器
+     *
+     * @param attempt 第几次重试，首次执行为0
+     */
+    private ProcessInstance executeCurrentNode(String processInstanceId, int attempt) {
+        ProcessInstance instance = getRunningInstance(processInstanceId);
+        ProcessDefinition definition = getDefinition(instance);
+        ExecutionPlan plan = definition.getExecutionPlan();
+        int index = indexOf(plan, instance.getCurrentNodeId());
+        // 声明了变量的流程按槽位保存变量，网关条件按槽位读取
+        wrapVariables(instance, definition.getVariableSchema());
+
+        // 结束节点没有后续节点，直接完成流程
+        if (plan.kind(index) == NodeKind.END) {
+            return completeProcess(processInstanceId);
+        }
+
+        int next;
+        try {
+            next = plan.isFork(index)
+                    ? forkAndJoin(instance, definition, index)
+                    : executeNode(definition, index, instance.getVariables());
+        } catch (RuntimeException e) {
+            // 先设置重试定时器再写入实例，进程在两者之间退出时重试仍会执行
+            instance.setErrorMessage(e.getMessage());
+            if (scheduleRetry(processInstanceId, plan.node(index), attempt)) {
+                logger.warn("执行流程节点失败，稍后重试, instanceId={}, nodeId={}, attempt={}",
+                        processInstanceId, plan.nodeId(index), attempt + 1, e);
+                return processInstanceService.updateProcessInstance(instance);
+            }
+            logger.error("执行流程节点失败, instanceId={}, nodeId={}", processInstanceId, plan.nodeId(index), e);
+            instance.setStatus(InstanceStatus.FAILED.name());
+            ProcessInstance failed = processInstanceService.updateProcessInstance(instance);
+            if (nodeTimerScheduler != null) {
+                nodeTimerScheduler.cancelAll(processInstanceId);
+            }
+            return failed;
+        }
+
+        instance.setCurrentNodeId(plan.nodeId(next));
+        instance.setErrorMessage(null);
+        ProcessInstance updated = processInstanceService.updateProcessInstance(instance);
+        moveTimeout(processInstanceId, plan.node(index), plan.node(next));
+        return updated;
+    }
+
+    /**
+     * 完成流程实例，要求当前节点为结束节点
+     *
+     * @param processInstanceId 流程实例ID
+     * @return 完成后的流程实例
+     */
+    public ProcessInstance completeProcess(String processInstanceId) {
+        ProcessInstance instance = getRunningInstance(processInstanceId);
+        ExecutionPlan plan = getDefinition(instance).getExecutionPlan();
+        int index = indexOf(plan, instance.getCurrentNodeId());
+        if (plan.kind(index) != NodeKind.END) {
+            throw new RuntimeException("Cannot complete process instance at non-end node: " + plan.nodeId(index));
+        }
+
+        instance.setStatus(InstanceStatus.COMPLETED.name());
+        instance.setEndTime(LocalDateTime.now());
+        ProcessInstance completed = processInstanceService.updateProcessInstance(instance);
+        moveTimeout(processInstanceId, plan.node(index), null);
+        return completed;
+    }
+
+    /**
+     * 暂停流程实例
+     *
+     * @param processInstanceId 流程实例ID
+     * @return 暂停后的流程实例
+     */
+    public ProcessInstance suspendProcess(String processInstanceId) {
+        return processInstanceService.suspendProcessInstance(processInstanceId);
+    }
+
+    /**
+     * 恢复流程实例，重新放入暂停期间推迟的定时器，已到期的超时和重试在下一个tick触发
+     *
+     * @param processInstanceId 流程实例ID
+     * @return 恢复后的流程实例
+     */
+    public ProcessInstance resumeProcess(String processInstanceId) {
+        ProcessInstance resumed = processInstanceService.resumeProcessInstance(processInstanceId);
+        if (nodeTimerScheduler != null) {
+            nodeTimerScheduler.rearm(processInstanceId);
+        }
+        return resumed;
+    }
+
+    /**
+     * 人工重试失败的流程实例，从失败时的节点重新执行，重试次数重新计算
+     * 失败时删除了实例的定时器，重新设置当前节点的超时定时器
+     *
+     * @param processInstanceId 流程实例ID
+     * @return 重新执行当前节点后的流程实例
+     */
+    public ProcessInstance retryProcess(String processInstanceId) {
+        ProcessInstance instance = processInstanceService.retryProcessInstance(processInstanceId);
+        ExecutionPlan plan = getDefinition(instance).getExecutionPlan();
+        moveTimeout(processInstanceId, null, plan.node(indexOf(plan, instance.getCurrentNodeId())));
+        return executeCurrentNode(processInstanceId, 0);
+    }
+
+    /**
+     * 更新流程实例变量
+     *
+     * @param processInstanceId 流程实例ID
+     * @param variables 变量映射
+     * @return 更新后的流程实例
+     */
+    public ProcessInstance updateProcessVariables(String processInstanceId, Map<String, Object> variables) {
+        return processInstanceService.updateProcessVariables(processInstanceId, variables);
+    }
+
+    /**
+     * 异步启动流程实例
+     */
+    public CompletableFuture<ProcessInstance> startProcessAsync(String processDefinitionId, String businessId,
+                                                                Map<String, Object> variables) {
+        return CompletableFuture.supplyAsync(() -> startProcess(processDefinitionId, businessId, variables),
+                processEngineExecutor);
+    }
+
+    /**
+     * 异步执行流程实例的当前节点，任务节点的阻塞调用在虚拟线程上执行
+     */
+    public CompletableFuture<ProcessInstance> executeNodeAsync(String processInstanceId) {
+        return CompletableFuture.supplyAsync(() -> executeNode(processInstanceId), processEngineExecutor);
+    }
+
+    /**
+     * 异步完成流程实例
+     */
+    public CompletableFuture<ProcessInstance> completeProcessAsync(String processInstanceId) {
+        return CompletableFuture.supplyAsync(() -> completeProcess(processInstanceId), processEngineExecutor);
+    }
+
+    /**
+     * 异步暂停流程实例
+     */
+    public CompletableFuture<ProcessInstance> suspendProcessAsync(String processInstanceId) {
+        return CompletableFuture.supplyAsync(() -> suspendProcess(processInstanceId), processEngineExecutor);
+    }
+
+    /**
+     * 异步恢复流程实例
+     */
+    public CompletableFuture<ProcessInstance> resumeProcessAsync(String processInstanceId) {
+        return CompletableFuture.supplyAsync(() -> resumeProcess(processInstanceId), processEngineExecutor);
+    }
+
+    /**
+     * 异步重试失败的流程实例
+     */
+    public CompletableFuture<ProcessInstance> retryProcessAsync(String processInstanceId) {
+        return CompletableFuture.supplyAsync(() -> retryProcess(processInstanceId), processEngineExecutor);
+    }
+
+    /**
+     * 执行单个节点，返回下一节点下标
+     *
+     * @param definition 流程定义
+     * @param index 当前节点在执行计划中的下标
+     * @param variables 流程变量，任务节点的返回结果会合并到其中
+     * @return 下一节点下标
+     */
+    private int executeNode(ProcessDefinition definition, int index, Map<String, Object> variables) {
+        ExecutionPlan plan = definition.getExecutionPlan();
+        switch (plan.kind(index)) {
+            case START:
+            case PARALLEL_GATEWAY:
+                return plan.firstSuccessor(index);
+            case TASK:
+                variables.putAll(invokeTask(plan.node(index), variables));
+                return plan.firstSuccessor(index);
+            case EXCLUSIVE_GATEWAY:
+                return evaluateGateway(definition, index, variables);
+            default:
+                throw new RuntimeException("Unsupported node type: " + plan.node(index).getType());
+        }
+    }
+
+    /**
+     * 并行网关分叉：为每个后续节点创建分支令牌并发执行，所有分支到达同一个汇聚网关后返回该网关下标
+     * 各分支基于分叉时的变量快照执行，分支产生的变量在汇聚时按后续节点顺序合并。
+     * 分支在parallelBranchExecutor上执行，调用方所在的processEngineExecutor只用于等待；
+     * 部分分支失败后重试时，上次已汇聚的分支使用保存在令牌中的结果，不再调用下游服务
+     *
+     * @return 汇聚网关节点下标
+     */
+    private int forkAndJoin(ProcessInstance instance, ProcessDefinition definition, int forkIndex) {
+        ExecutionPlan plan = definition.getExecutionPlan();
+        String forkNodeId = plan.nodeId(forkIndex);
+        int branchCount = plan.successorCount(forkIndex);
+        List<ExecutionToken> previous = instance.getTokens();
+        boolean retrying = previous != null && previous.size() == branchCount
+                && previous.stream().allMatch(token -> forkNodeId.equals(token.getForkNodeId()));
+        List<ExecutionToken> tokens = new ArrayList<>(branchCount);
+        List<CompletableFuture<Map<String, Object>>> branches = new ArrayList<>(branchCount);
+        for (int k = 0; k < branchCount; k++) {
+            int branchIndex = plan.successor(forkIndex, k);
+            if (retrying && "JOINED".equals(previous.get(k).getStatus()) && previous.get(k).getOutputs() != null) {
+                tokens.add(previous.get(k));
+                branches.add(CompletableFuture.completedFuture(previous.get(k).getOutputs()));
+                continue;
+            }
+            ExecutionToken token = new ExecutionToken(UUID.randomUUID().toString(), forkNodeId,
+                    plan.nodeId(branchIndex), "ACTIVE");
+            tokens.add(token);
+            Map<String, Object> branchVariables = instance.getVariables() instanceof SlotVariables slots
+                    ? slots.copy()
+                    : new HashMap<>(instance.getVariables());
+            branches.add(CompletableFuture.supplyAsync(
+                    () -> runBranch(definition, token, branchIndex, branchVariables), parallelBranchExecutor));
+        }
+        instance.setTokens(tokens);
+
+        // 等待所有分支结束，任一分支失败时在所有分支结束后抛出
+        try {
+            CompletableFuture.allOf(branches.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Parallel branch of gateway " + forkNodeId + " failed: " + cause.getMessage(), cause);
+        }
+
+        // 发布时已确定汇聚网关，未经校验的计划以第一个分支到达的网关为准
+        int joinIndex = plan.joinOf(forkIndex) >= 0
+                ? plan.joinOf(forkIndex)
+                : indexOf(plan, tokens.get(0).getCurrentNodeId());
+        String joinNodeId = plan.nodeId(joinIndex);
+        for (ExecutionToken token : tokens) {
+            if (!joinNodeId.equals(token.getCurrentNodeId())) {
+                throw new RuntimeException("Parallel branches of gateway " + forkNodeId
+                        + " joined at different gateways: " + joinNodeId + ", " + token.getCurrentNodeId());
+            }
+        }
+        for (CompletableFuture<Map<String, Object>> branch : branches) {
+            instance.getVariables().putAll(branch.join());
+        }
+        // 变量已合并到实例，不再保留分支结果
+        tokens.forEach(token -> token.setOutputs(null));
+        return joinIndex;
+    }
+
+    /**
+     * 执行单个并行分支，直到到达汇聚网关
+     * 分支内支持任务节点和排他网关，遇到并行网关即视为汇聚点
+     *
+     * @return 分支内任务节点产生的变量
+     */
+    private Map<String, Object> runBranch(ProcessDefinition definition, ExecutionToken token, int branchIndex,
+                                          Map<String, Object> variables) {
+        ExecutionPlan plan = definition.getExecutionPlan();
+        Map<String, Object> outputs = new HashMap<>();
+        int index = branchIndex;
+        try {
+            // 无环流程中分支最多经过全部节点一次
+            for (int step = 0; step < plan.size(); step++) {
+                switch (plan.kind(index)) {
+                    case PARALLEL_GATEWAY:
+                        token.setOutputs(outputs);
+                        token.setStatus("JOINED");
+                        return outputs;
+                    case TASK:
+                        Map<String, Object> result = invokeTask(plan.node(index), variables);
+                        variables.putAll(result);
+                        outputs.putAll(result);
+                        index = plan.firstSuccessor(index);
+                        break;
+                    case EXCLUSIVE_GATEWAY:
+                        index = evaluateGateway(definition, index, variables);
+                        break;
+                    default:
+                        throw new RuntimeException("Parallel branch reached " + plan.node(index).getType()
+                                + " node without join: " + plan.nodeId(index));
+                }
+                token.setCurrentNodeId(plan.nodeId(index));
+            }
+            throw new RuntimeException("Parallel branch did not reach a join gateway from node: " + token.getCurrentNodeId());
+        } catch (RuntimeException e) {
+            token.setStatus("FAILED");
+            throw e;
+        }
+    }
+
+    /**
+     * 调用任务节点对应的下游服务
+     *
+     * @return 服务返回的结果，将合并到流程变量中
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> invokeTask(ProcessNode node, Map<String, Object> variables) {
+        String url = "http://" + node.getServiceName() + "/" + node.getOperationName();
+        Map<String, Object> result = restTemplate.postForObject(url, variables, Map.class);
+        return result != null ? result : new HashMap<>();
+    }
+
+    /**
+     * 计算网关节点的条件表达式，选择后续节点
+     * 表达式结果为字符串时作为下一节点ID；为布尔值时true选择第一个后续节点，false选择第二个
+     *
+     * @return 下一节点下标
+     */
+    private int evaluateGateway(ProcessDefinition definition, int index, Map<String, Object> variables) {
+        ExecutionPlan plan = definition.getExecutionPlan();
+        ProcessNode node = plan.node(index);
+        if (node.getCondition() == null || node.getCondition().isEmpty()) {
+            return plan.firstSuccessor(index);
+        }
+
+        Object result = conditionEvaluator.evaluate(definition, node, variables);
+
+        if (result instanceof String nextNodeId) {
+            int next = plan.successorOf(index, nextNodeId);
+            if (next < 0) {
+                throw new RuntimeException("Gateway " + node.getId() + " routed to unknown node: " + nextNodeId);
+            }
+            return next;
+        }
+        if (result instanceof Boolean matched) {
+            if (matched) {
+                return plan.firstSuccessor(index);
+            }
+            if (plan.successorCount(index) < 2) {
+                throw new RuntimeException("Gateway " + node.getId() + " has no branch for false condition");
+            }
+            return plan.successor(index, 1);
+        }
+        throw new RuntimeException("Gateway " + node.getId() + " condition returned unsupported value: " + result);
+    }
+
+    /**
+     * 处理到期的节点定时器，实例已离开设置定时器时的节点或已结束时忽略；
+     * 实例已暂停时推迟处理，定时器保留到实例恢复
+     */
+    private CompletableFuture<Void> onTimer(NodeTimer timer) {
+        return CompletableFuture.runAsync(() -> {
+            ProcessInstance instance = processInstanceService.getProcessInstance(timer.processInstanceId());
+            if (instance == null || !timer.nodeId().equals(instance.getCurrentNodeId())) {
+                return;
+            }
+            InstanceStatus status = InstanceStatus.of(instance.getStatus());
+            if (status == InstanceStatus.SUSPENDED) {
+                nodeTimerScheduler.defer(timer);
+                return;
+            }
+            if (status != InstanceStatus.RUNNING) {
+                return;
+            }
+            if (timer.type() == NodeTimer.Type.RETRY) {
+                executeCurrentNode(timer.processInstanceId(), timer.attempt());
+                return;
+            }
+
+            instance.setStatus(InstanceStatus.FAILED.name());
+            instance.setErrorMessage("Node " + timer.nodeId() + " timed out");
+            try {
+                processInstanceService.updateProcessInstance(instance);
+            } catch (ProcessInstanceConflictException e) {
+                // 读取后实例被其它请求推进，以其它请求为准
+                logger.info("流程实例已被修改，忽略节点超时, instanceId={}, nodeId={}",
+                        timer.processInstanceId(), timer.nodeId());
+                return;
+            }
+            logger.warn("流程节点超时, instanceId={}, nodeId={}", timer.processInstanceId(), timer.nodeId());
+            nodeTimerScheduler.cancel(timer.processInstanceId(), NodeTimer.Type.RETRY);
+        }, processEngineExecutor);
+    }
+
+    /**
+     * 节点设置了重试次数且未用完时设置重试定时器
+     *
+     * @return 是否会重试
+     */
+    private boolean scheduleRetry(String processInstanceId, ProcessNode node, int attempt) {
+        if (nodeTimerScheduler == null || node.getRetryCount() == null || attempt >= node.getRetryCount()) {
+            return false;
+        }
+        long interval = node.getRetryInterval() != null ? Math.max(0, node.getRetryInterval()) : 0;
+        nodeTimerScheduler.schedule(new NodeTimer(processInstanceId, node.getId(), NodeTimer.Type.RETRY,
+                attempt + 1, LocalDateTime.now().plus(Duration.ofMillis(interval))));
+        return true;
+    }
+
+    /**
+     * 实例从from节点进入to节点后更新超时定时器：to节点设置了超时时覆盖原定时器，否则删除from节点的定时器
+     *
+     * @param from 离开的节点，启动时为null
+     * @param to 进入的节点，流程结束时为null
+     */
+    private void moveTimeout(String processInstanceId, ProcessNode from, ProcessNode to) {
+        if (nodeTimerScheduler == null) {
+            return;
+        }
+        if (to != null && to.getTimeout() != null && to.getTimeout() > 0) {
+            nodeTimerScheduler.schedule(new NodeTimer(processInstanceId, to.getId(), NodeTimer.Type.TIMEOUT, 0,
+                    LocalDateTime.now().plus(Duration.ofMillis(to.getTimeout()))));
+        } else if (from != null && from.getTimeout() != null && from.getTimeout() > 0) {
+            nodeTimerScheduler.cancel(processInstanceId, NodeTimer.Type.TIMEOUT);
+        }
+    }
+
+    /**
+     * 按槽位布局包装实例的变量
+     * 数值按声明类型保存后与加载时的类型可能不同，如Integer变为Long，加载时的快照同样转换，
+     * 避免未修改的变量在更新时被当作变化写入
+     */
+    private static void wrapVariables(ProcessInstance instance, VariableSchema schema) {
+        Map<String, Object> variables = SlotVariables.wrap(schema, instance.getVariables());
+        if (variables == instance.getVariables()) {
+            return;
+        }
+        instance.setVariables(variables);
+        if (instance.getPersistedVariables() != null) {
+            instance.setPersistedVariables(new HashMap<>(new SlotVariables(schema, instance.getPersistedVariables())));
+        }
+    }
+
+    /**
+     * 创建流程实例的变量，流程定义声明了变量时按槽位保存
+     */
+    private static Map<String, Object> newVariables(ProcessDefinition definition, Map<String, Object> variables) {
+        VariableSchema schema = definition.getVariableSchema();
+        if (schema != null) {
+            return new SlotVariables(schema, variables);
+        }
+        return variables != null ? new HashMap<>(variables) : new HashMap<>();
+    }
+
+    /**
+     * 获取运行中的流程实例
+     */
+    private ProcessInstance getRunningInstance(String processInstanceId) {
+        ProcessInstance instance = processInstanceService.getProcessInstance(processInstanceId);
+        if (instance == null) {
+            throw new RuntimeException("Process instance not found: " + processInstanceId);
+        }
+        if (InstanceStatus.of(instance.getStatus()) != InstanceStatus.RUNNING) {
+            throw new RuntimeException("Cannot execute process instance with status: " + instance.getStatus());
+        }
+        if (instance.getVariables() == null) {
+            instance.setVariables(new HashMap<>());
+        }
+        return instance;
+    }
+
+    /**
+     * 获取流程实例对应版本的流程定义
+     */
+    private ProcessDefinition getDefinition(ProcessInstance instance) {
+        ProcessDefinition definition = processDefinitionService.getProcessDefinition(
+                instance.getProcessDefinitionId(), instance.getProcessDefinitionVersion());
+        if (definition == null) {
+            throw new RuntimeException("Process definition not found: " + instance.getProcessDefinitionId()
+                    + " version " + instance.getProcessDefinitionVersion());
+        }
+        return definition;
+    }
+
+    /**
+     * 获取节点在执行计划中的下标
+     */
+    private int indexOf(ExecutionPlan plan, String nodeId) {
+        int index = plan.indexOf(nodeId);
+        if (index < 0) {
+            throw new RuntimeException("Node not found in process definition: " + nodeId);
+        }
+        return index;
+    }
+}
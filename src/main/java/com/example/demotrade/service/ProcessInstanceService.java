@@ -1,8 +1,14 @@
 package com.example.demotrade.service;
 
+import com.example.demotrade.model.InstanceStatus;
 import com.example.demotrade.model.ProcessInstance;
+
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /**
  * 流程实例服务接口
@@ -18,6 +24,15 @@ public interface ProcessInstanceService {
      */
     ProcessInstance createProcessInstance(ProcessInstance processInstance);
 
+    /**
+     * 批量创建流程实例
+     * 按配置的批大小分批执行JDBC批量插入，不做逐行存在性检查
+     * 
+     * @param processInstances 流程实例列表
+     * @return 创建后的流程实例列表，已分配ID和时间戳
+     */
+    List<ProcessInstance> createProcessInstances(List<ProcessInstance> processInstances);
+
     /**
      * 获取流程实例
      * 
@@ -34,6 +49,16 @@ public interface ProcessInstanceService {
      */
     ProcessInstance updateProcessInstance(ProcessInstance processInstance);
 
+    /**
+     * 异步更新流程实例
+     * 开启写入缓冲时与其它实例的变更合并为一个事务提交，返回的Future在事务提交后完成；
+     * 未开启时同步更新后返回已完成的Future
+     * 
+     * @param processInstance 流程实例
+     * @return 更新后的流程实例，版本冲突时以ProcessInstanceConflictException异常完成
+     */
+    CompletableFuture<ProcessInstance> updateProcessInstanceAsync(ProcessInstance processInstance);
+
     /**
      * 根据业务ID查询流程实例
      * 
@@ -51,7 +76,62 @@ public interface ProcessInstanceService {
     List<ProcessInstance> findByStatus(String status);
 
     /**
-     * 更新流程实例变量
+     * 按(创建时间, ID)顺序分页查询指定业务ID的流程实例
+     * 以上一页最后一行作为游标，查询代价与页码无关
+     * 
+     * @param businessId 业务ID
+     * @param afterCreateTime 上一页最后一行的创建时间，为null时查询第一页
+     * @param afterId 上一页最后一行的ID
+     * @param limit 每页行数
+     * @return 流程实例列表
+     */
+    List<ProcessInstance> findByBusinessId(String businessId, LocalDateTime afterCreateTime, String afterId, int limit);
+
+    /**
+     * 按(创建时间, ID)顺序分页查询指定状态的流程实例
+     * 以上一页最后一行作为游标，查询代价与页码无关
+     * 
+     * @param status 流程状态
+     * @param afterCreateTime 上一页最后一行的创建时间，为null时查询第一页
+     * @param afterId 上一页最后一行的ID
+     * @param limit 每页行数
+     * @return 流程实例列表
+     */
+    List<ProcessInstance> findByStatus(String status, LocalDateTime afterCreateTime, String afterId, int limit);
+
+    /**
+     * 按(创建时间, ID)顺序分页查询状态属于指定集合的流程实例，例如{@link InstanceStatus#NON_TERMINAL}
+     * 以上一页最后一行作为游标，查询代价与页码无关
+     * 
+     * @param statuses 流程状态集合
+     * @param afterCreateTime 上一页最后一行的创建时间，为null时查询第一页
+     * @param afterId 上一页最后一行的ID
+     * @param limit 每页行数
+     * @return 流程实例列表
+     */
+    List<ProcessInstance> findByStatuses(Set<InstanceStatus> statuses, LocalDateTime afterCreateTime, String afterId,
+                                         int limit);
+
+    /**
+     * 流式查询指定业务ID的流程实例
+     * 返回的Stream持有数据库连接，调用方必须在try-with-resources中使用
+     * 
+     * @param businessId 业务ID
+     * @return 流程实例流
+     */
+    Stream<ProcessInstance> streamByBusinessId(String businessId);
+
+    /**
+     * 流式查询指定状态的流程实例
+     * 返回的Stream持有数据库连接，调用方必须在try-with-resources中使用
+     * 
+     * @param status 流程状态
+     * @return 流程实例流
+     */
+    Stream<ProcessInstance> streamByStatus(String status);
+
+    /**
+     * 更新流程实例变量，与其它修改一样将版本号加1
      * 
      * @param processInstanceId 流程实例ID
      * @param variables 变量映射
@@ -75,6 +155,14 @@ public interface ProcessInstanceService {
      */
     ProcessInstance resumeProcessInstance(String processInstanceId);
 
+    /**
+     * 重试失败的流程实例，实例回到RUNNING状态，停留在失败时的节点
+     * 
+     * @param processInstanceId 流程实例ID
+     * @return 重试后的流程实例
+     */
+    ProcessInstance retryProcessInstance(String processInstanceId);
+
     /**
      * 终止流程实例
      * 
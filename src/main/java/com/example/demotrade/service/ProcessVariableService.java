@@ -0,0 +1,59 @@
+package com.example.demotrade.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 流程变量服务接口
+ * 流程变量按(流程实例ID, 变量名)逐行存储，只写入发生变化的变量
+ */
+public interface ProcessVariableService {
+
+    /**
+     * 保存流程变量，已存在的变量覆盖，未出现的变量保持不变
+     *
+     * @param processInstanceId 流程实例ID
+     * @param variables 需要写入的变量
+     */
+    void saveVariables(String processInstanceId, Map<String, Object> variables);
+
+    /**
+     * 批量保存多个流程实例的变量，以一次批量写入完成
+     *
+     * @param variablesByInstance 流程实例ID -> 需要写入的变量
+     */
+    void saveVariables(Map<String, Map<String, Object>> variablesByInstance);
+
+    /**
+     * 删除流程实例的指定变量
+     *
+     * @param processInstanceId 流程实例ID
+     * @param variableNames 需要删除的变量名称
+     */
+    void deleteVariables(String processInstanceId, Collection<String> variableNames);
+
+    /**
+     * 获取流程实例的全部变量
+     *
+     * @param processInstanceId 流程实例ID
+     * @return 变量映射，没有变量时返回空映射
+     */
+    Map<String, Object> getVariables(String processInstanceId);
+
+    /**
+     * 获取流程实例的单个变量，不加载其它变量
+     *
+     * @param processInstanceId 流程实例ID
+     * @param variableName 变量名称
+     * @return 变量值，不存在时返回null
+     */
+    Object getVariable(String processInstanceId, String variableName);
+
+    /**
+     * 批量获取多个流程实例的变量
+     *
+     * @param processInstanceIds 流程实例ID集合
+     * @return 流程实例ID -> 变量映射，没有变量的实例不包含在结果中
+     */
+    Map<String, Map<String, Object>> getVariables(Collection<String> processInstanceIds);
+}
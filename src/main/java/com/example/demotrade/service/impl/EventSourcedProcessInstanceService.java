@@ -0,0 +1,689 @@
+package com.example.demotrade.service.impl;
+
+import com.example.demotrade.eventlog.InstanceEvent;
+import com.example.demotrade.eventlog.SegmentedEventLog;
+import com.example.demotrade.eventlog.SnapshotStore;
+import com.example.demotrade.exception.ProcessInstanceConflictException;
+import com.example.demotrade.model.ExecutionToken;
+import com.example.demotrade.model.InstanceStatus;
+import com.example.demotrade.model.ProcessInstance;
+import com.example.demotrade.service.ProcessInstanceService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 基于事件日志的流程实例服务
+ * 每次状态变更以事件的形式追加到本地内存映射日志，实例的当前状态保存在内存中；
+ * 定期写入全部实例的快照并删除已被快照覆盖的日志段，启动时由最新快照加上之后的日志重建状态
+ * <p>
+ * 一次变更产生的事件作为一条日志记录写入，回放时整体生效。同一实例的变更持有按实例ID分段的锁，
+ * 追加日志不在ConcurrentHashMap的桶锁内进行，刷盘时不阻塞同一桶中其它实例的读写。
+ * <p>
+ * 结束超过archive-min-age的实例在快照时移出内存，写入本地归档文件，之后按ID查询不到。
+ * 开启后替代基于数据库的实现，实例状态只保存在本地目录中，不支持写入缓冲
+ */
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "demo-trade.event-log", name = "enabled", havingValue = "true")
+public class EventSourcedProcessInstanceService implements ProcessInstanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventSourcedProcessInstanceService.class);
+
+    private static final TypeReference<List<InstanceEvent>> EVENT_LIST_TYPE = new TypeReference<>() {
+    };
+
+    private static final Comparator<ProcessInstance> CREATE_ORDER = Comparator
+            .comparing(ProcessInstance::getCreateTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(ProcessInstance::getId);
+
+    private static final Comparator<OrderKey> ORDER_KEY_ORDER = Comparator
+            .comparing(OrderKey::createTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(OrderKey::id);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${demo-trade.event-log.directory:./data/event-log}")
+    private String directory;
+
+    @Value("${demo-trade.event-log.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${demo-trade.event-log.force-on-append:false}")
+    private boolean forceOnAppend;
+
+    @Value("${demo-trade.event-log.archive-min-age:P30D}")
+    private Duration archiveMinAge;
+
+    @Value("${demo-trade.instance-lock.stripes:1024}")
+    private int stripeCount;
+
+    /**
+     * 实例的当前状态，值在发布后不再修改，每次变更替换为新的对象
+     */
+    private final Map<String, ProcessInstance> instances = new ConcurrentHashMap<>();
+
+    /**
+     * 状态 -> 按(创建时间, ID)排序的该状态实例ID，按状态查询时只遍历对应状态的实例
+     */
+    private final Map<InstanceStatus, NavigableMap<OrderKey, String>> statusIndex = new EnumMap<>(InstanceStatus.class);
+
+    /**
+     * 业务ID -> 实例ID
+     */
+    private final Map<String, Set<String>> businessIndex = new ConcurrentHashMap<>();
+
+    /**
+     * 按实例ID分段的变更锁
+     */
+    private ReentrantLock[] stripes;
+
+    /**
+     * 变更持有读锁，写快照时持有写锁，保证快照与日志序号一致
+     */
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    private SegmentedEventLog eventLog;
+
+    private SnapshotStore snapshotStore;
+
+    @PostConstruct
+    public void recover() throws IOException {
+        // 分段数取2的幂，用位运算定位分段
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        for (InstanceStatus status : InstanceStatus.values()) {
+            statusIndex.put(status, new ConcurrentSkipListMap<>(ORDER_KEY_ORDER));
+        }
+
+        Path root = Paths.get(directory);
+        snapshotStore = new SnapshotStore(root, objectMapper);
+        eventLog = SegmentedEventLog.open(root, segmentSizeMb * 1024 * 1024, forceOnAppend);
+
+        long snapshotSequence = snapshotStore.loadLatest()
+                .map(snapshot -> {
+                    snapshot.getInstances().forEach(instance -> instances.put(instance.getId(), instance));
+                    return snapshot.getLastSequence();
+                })
+                .orElse(0L);
+        long[] replayed = new long[1];
+        eventLog.replay(snapshotSequence, (sequence, data) -> {
+            for (InstanceEvent event : readEvents(data)) {
+                instances.compute(event.getInstanceId(), (id, current) -> apply(current, event));
+            }
+            replayed[0]++;
+        });
+        instances.values().forEach(instance -> reindex(null, instance));
+        logger.info("流程实例状态恢复完成, instances={}, snapshotSequence={}, replayedRecords={}",
+                instances.size(), snapshotSequence, replayed[0]);
+    }
+
+    /**
+     * 写入快照并删除已被快照覆盖的日志段
+     * 结束超过archive-min-age的实例先写入归档文件，不再包含在快照中
+     */
+    @Scheduled(initialDelayString = "${demo-trade.event-log.snapshot-interval:PT5M}",
+            fixedDelayString = "${demo-trade.event-log.snapshot-interval:PT5M}")
+    public void snapshot() {
+        LocalDateTime archiveBefore = LocalDateTime.now().minus(archiveMinAge);
+        long lastSequence;
+        List<ProcessInstance> state = new ArrayList<>(instances.size());
+        List<ProcessInstance> archived = new ArrayList<>();
+        snapshotLock.writeLock().lock();
+        try {
+            lastSequence = eventLog.getLastSequence();
+            for (ProcessInstance instance : instances.values()) {
+                (isArchivable(instance, archiveBefore) ? archived : state).add(instance);
+            }
+            // 在写锁内移出内存，之后对这些实例的变更找不到实例，日志中不会出现快照里没有的实例的事件
+            for (ProcessInstance instance : archived) {
+                instances.remove(instance.getId());
+                reindex(instance, null);
+            }
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+
+        try {
+            eventLog.force();
+            if (!archived.isEmpty()) {
+                snapshotStore.archive(lastSequence, archived);
+            }
+            snapshotStore.write(lastSequence, state);
+            int deleted = eventLog.deleteSegmentsUpTo(lastSequence);
+            logger.info("流程实例快照完成, instances={}, archived={}, lastSequence={}, deletedSegments={}",
+                    state.size(), archived.size(), lastSequence, deleted);
+        } catch (IOException | RuntimeException e) {
+            logger.error("流程实例快照失败", e);
+            // 旧快照和日志中仍包含移出的实例，放回内存与重启后恢复的状态一致
+            for (ProcessInstance instance : archived) {
+                ReentrantLock lock = stripeOf(instance.getId());
+                lock.lock();
+                try {
+                    if (instances.putIfAbsent(instance.getId(), instance) == null) {
+                        reindex(null, instance);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        eventLog.close();
+    }
+
+    @Override
+    public ProcessInstance createProcessInstance(ProcessInstance processInstance) {
+        LocalDateTime now = LocalDateTime.now();
+        // 如果没有ID，生成一个新的UUID
+        if (processInstance.getId() == null || processInstance.getId().isEmpty()) {
+            processInstance.setId(UUID.randomUUID().toString());
+        }
+        processInstance.setCreateTime(now);
+        processInstance.setUpdateTime(now);
+        if (processInstance.getStartTime() == null) {
+            processInstance.setStartTime(now);
+        }
+        processInstance.setVersion(0L);
+
+        InstanceEvent event = new InstanceEvent(InstanceEvent.Type.CREATED, processInstance.getId(), 0L, now);
+        event.setInstance(processInstance.copy());
+        ProcessInstance created = mutate(processInstance.getId(), true, current -> {
+            if (current != null) {
+                throw new ProcessInstanceConflictException(processInstance.getId(), "Process instance already exists");
+            }
+            return List.of(event);
+        });
+        return view(created);
+    }
+
+    @Override
+    public List<ProcessInstance> createProcessInstances(List<ProcessInstance> processInstances) {
+        if (processInstances == null || processInstances.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<ProcessInstance> created = new ArrayList<>(processInstances.size());
+        for (ProcessInstance processInstance : processInstances) {
+            created.add(createProcessInstance(processInstance));
+        }
+        return created;
+    }
+
+    @Override
+    public ProcessInstance getProcessInstance(String processInstanceId) {
+        ProcessInstance current = instances.get(processInstanceId);
+        return current != null ? view(current) : null;
+    }
+
+    @Override
+    public ProcessInstance updateProcessInstance(ProcessInstance processInstance) {
+        if (processInstance.getVersion() == null) {
+            throw new IllegalArgumentException("Process instance version is required for update: " + processInstance.getId());
+        }
+
+        ProcessInstance updated = mutate(processInstance.getId(), false, current -> {
+            if (!Objects.equals(current.getVersion(), processInstance.getVersion())) {
+                throw new ProcessInstanceConflictException(processInstance.getId(),
+                        "Process instance was modified concurrently, expected version: " + processInstance.getVersion());
+            }
+            InstanceStatus from = InstanceStatus.of(current.getStatus());
+            InstanceStatus to = InstanceStatus.of(processInstance.getStatus());
+            if (from != null && from != to && !from.canTransitionTo(to)) {
+                throw new ProcessInstanceConflictException(processInstance.getId(),
+                        "Cannot change process instance status from " + from + " to " + to);
+            }
+            return diff(current, processInstance);
+        });
+
+        processInstance.setVersion(updated.getVersion());
+        processInstance.setUpdateTime(updated.getUpdateTime());
+        processInstance.setEndTime(updated.getEndTime());
+        processInstance.setPersistedVariables(new HashMap<>(updated.getVariables()));
+        return processInstance;
+    }
+
+    @Override
+    public CompletableFuture<ProcessInstance> updateProcessInstanceAsync(ProcessInstance processInstance) {
+        // 追加日志本身就是顺序写，不需要再合并提交
+        try {
+            return CompletableFuture.completedFuture(updateProcessInstance(processInstance));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public List<ProcessInstance> findByBusinessId(String businessId) {
+        return findByBusinessId(businessId, null, null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<ProcessInstance> findByStatus(String status) {
+        return findByStatus(status, null, null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<ProcessInstance> findByBusinessId(String businessId, LocalDateTime afterCreateTime, String afterId,
+                                                  int limit) {
+        Stream<ProcessInstance> candidates = businessIndex.getOrDefault(businessId, Set.of()).stream()
+                .map(instances::get)
+                .filter(instance -> instance != null && Objects.equals(businessId, instance.getBusinessId()));
+        return query(candidates, afterCreateTime, afterId, limit);
+    }
+
+    @Override
+    public List<ProcessInstance> findByStatus(String status, LocalDateTime afterCreateTime, String afterId, int limit) {
+        InstanceStatus target = InstanceStatus.of(status);
+        if (target == null) {
+            return new ArrayList<>();
+        }
+        return findByStatuses(EnumSet.of(target), afterCreateTime, afterId, limit);
+    }
+
+    @Override
+    public List<ProcessInstance> findByStatuses(Set<InstanceStatus> statuses, LocalDateTime afterCreateTime,
+                                                String afterId, int limit) {
+        OrderKey cursor = afterCreateTime != null ? new OrderKey(afterCreateTime, afterId != null ? afterId : "") : null;
+        // 每个状态的索引已按(创建时间, ID)排序，只取游标之后的前limit个
+        Stream<ProcessInstance> candidates = statuses.stream().flatMap(status -> {
+            NavigableMap<OrderKey, String> index = statusIndex.get(status);
+            return (cursor != null ? index.tailMap(cursor, false) : index).values().stream()
+                    .map(instances::get)
+                    .filter(instance -> instance != null && status.name().equals(instance.getStatus()))
+                    .limit(limit);
+        });
+        return query(candidates, afterCreateTime, afterId, limit);
+    }
+
+    /**
+     * 按索引逐个复制实例，不预先构建完整的列表；与数据库实现一样不保证顺序，遍历期间的修改可能可见
+     */
+    @Override
+    public Stream<ProcessInstance> streamByBusinessId(String businessId) {
+        return businessIndex.getOrDefault(businessId, Set.of()).stream()
+                .map(instances::get)
+                .filter(instance -> instance != null && Objects.equals(businessId, instance.getBusinessId()))
+                .map(this::view);
+    }
+
+    /**
+     * 按状态索引的创建时间顺序逐个复制实例，不预先构建完整的列表
+     */
+    @Override
+    public Stream<ProcessInstance> streamByStatus(String status) {
+        InstanceStatus target = InstanceStatus.of(status);
+        if (target == null) {
+            return Stream.empty();
+        }
+        return statusIndex.get(target).values().stream()
+                .map(instances::get)
+                .filter(instance -> instance != null && target.name().equals(instance.getStatus()))
+                .map(this::view);
+    }
+
+    @Override
+    public ProcessInstance updateProcessVariables(String processInstanceId, Map<String, Object> variables) {
+        return view(mutate(processInstanceId, false, current -> {
+            InstanceEvent event = new InstanceEvent(InstanceEvent.Type.VARIABLES_CHANGED, processInstanceId,
+                    current.getVersion() + 1, LocalDateTime.now());
+            event.setVariables(variables != null ? new HashMap<>(variables) : new HashMap<>());
+            return List.of(event);
+        }));
+    }
+
+    @Override
+    public ProcessInstance suspendProcessInstance(String processInstanceId) {
+        // 仅当状态为RUNNING时更新
+        return view(mutate(processInstanceId, false, current -> List.of(statusChange(current,
+                InstanceStatus.SUSPENDED, current.getErrorMessage(), null,
+                "Cannot suspend process instance with status: %s"))));
+    }
+
+    @Override
+    public ProcessInstance resumeProcessInstance(String processInstanceId) {
+        // 仅当状态为SUSPENDED时更新，FAILED只能通过重试回到RUNNING
+        return view(mutate(processInstanceId, false, current -> List.of(statusChange(current,
+                InstanceStatus.SUSPENDED, InstanceStatus.RUNNING, current.getErrorMessage(), null,
+                "Cannot resume process instance with status: %s"))));
+    }
+
+    @Override
+    public ProcessInstance retryProcessInstance(String processInstanceId) {
+        // 仅当状态为FAILED时更新
+        return view(mutate(processInstanceId, false, current -> List.of(statusChange(current,
+                InstanceStatus.FAILED, InstanceStatus.RUNNING, current.getErrorMessage(), null,
+                "Cannot retry process instance with status: %s"))));
+    }
+
+    @Override
+    public ProcessInstance terminateProcessInstance(String processInstanceId, String errorMessage) {
+        // 仅当实例尚未结束时更新状态和错误信息
+        return view(mutate(processInstanceId, false, current -> List.of(statusChange(current,
+                InstanceStatus.TERMINATED, errorMessage, LocalDateTime.now(),
+                "Cannot terminate process instance with status: %s"))));
+    }
+
+    /**
+     * 在实例上执行一次变更：由当前状态生成事件，追加到日志后再应用到内存状态
+     * 同一实例的变更持有分段锁串行执行，保证日志中的事件顺序与内存状态一致
+     *
+     * @param processInstanceId 流程实例ID
+     * @param create 是否为创建实例，只有创建时command会收到null
+     * @param command 由当前状态生成事件
+     * @return 变更后的实例状态
+     */
+    private ProcessInstance mutate(String processInstanceId, boolean create, EventCommand command) {
+        ReentrantLock lock = stripeOf(processInstanceId);
+        snapshotLock.readLock().lock();
+        lock.lock();
+        try {
+            ProcessInstance current = instances.get(processInstanceId);
+            if (current == null && !create) {
+                throw new RuntimeException("Process instance not found: " + processInstanceId);
+            }
+            List<InstanceEvent> events = command.handle(current);
+            eventLog.append(writeEvents(events));
+
+            ProcessInstance next = current;
+            for (InstanceEvent event : events) {
+                next = apply(next, event);
+            }
+            instances.put(processInstanceId, next);
+            reindex(current, next);
+            return next;
+        } finally {
+            lock.unlock();
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 实例变化后更新状态和业务ID索引，创建时previous为null，移出内存时next为null
+     * 创建时间和业务ID在创建后不再变化
+     */
+    private void reindex(ProcessInstance previous, ProcessInstance next) {
+        InstanceStatus from = previous != null ? InstanceStatus.of(previous.getStatus()) : null;
+        InstanceStatus to = next != null ? InstanceStatus.of(next.getStatus()) : null;
+        if (from != null && from != to) {
+            statusIndex.get(from).remove(orderKey(previous));
+        }
+        if (to != null && from != to) {
+            statusIndex.get(to).put(orderKey(next), next.getId());
+        }
+        if (previous == null && next.getBusinessId() != null) {
+            businessIndex.compute(next.getBusinessId(), (key, ids) -> {
+                Set<String> updated = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                updated.add(next.getId());
+                return updated;
+            });
+        } else if (next == null && previous.getBusinessId() != null) {
+            businessIndex.computeIfPresent(previous.getBusinessId(), (key, ids) -> {
+                ids.remove(previous.getId());
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * 已结束且结束时间早于archiveBefore的实例
+     */
+    private static boolean isArchivable(ProcessInstance instance, LocalDateTime archiveBefore) {
+        InstanceStatus status = InstanceStatus.of(instance.getStatus());
+        return status != null && status.isTerminal() && instance.getEndTime() != null
+                && instance.getEndTime().isBefore(archiveBefore);
+    }
+
+    private ReentrantLock stripeOf(String processInstanceId) {
+        int hash = processInstanceId.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static OrderKey orderKey(ProcessInstance instance) {
+        return new OrderKey(instance.getCreateTime(), instance.getId());
+    }
+
+    /**
+     * 将事件应用到实例状态上，返回新的实例对象，不修改原对象
+     * 变更时和启动回放时使用同一逻辑
+     */
+    private ProcessInstance apply(ProcessInstance current, InstanceEvent event) {
+        if (event.getType() == InstanceEvent.Type.CREATED) {
+            return event.getInstance().copy();
+        }
+        if (current == null) {
+            // 实例在快照中不存在又没有创建事件，说明日志已损坏
+            throw new IllegalStateException("Event for unknown process instance: " + event.getInstanceId());
+        }
+
+        ProcessInstance next = current.copy();
+        switch (event.getType()) {
+            case NODE_ENTERED:
+                next.setCurrentNodeId(event.getNodeId());
+                break;
+            case VARIABLES_CHANGED:
+                if (event.getVariables() != null) {
+                    next.getVariables().putAll(event.getVariables());
+                }
+                if (event.getRemovedVariables() != null) {
+                    event.getRemovedVariables().forEach(next.getVariables()::remove);
+                }
+                break;
+            case STATUS_CHANGED:
+                next.setStatus(event.getStatus());
+                next.setErrorMessage(event.getErrorMessage());
+                next.setEndTime(event.getEndTime());
+                break;
+            case TOKENS_CHANGED:
+                next.setTokens(copyTokens(event.getTokens()));
+                break;
+            default:
+                break;
+        }
+        next.setVersion(event.getVersion());
+        next.setUpdateTime(event.getTimestamp());
+        return next;
+    }
+
+    /**
+     * 比较当前状态和调用方修改后的实例，生成对应的事件
+     * 没有任何变化时仍写入一条状态事件，与数据库实现一样递增版本号
+     */
+    private List<InstanceEvent> diff(ProcessInstance current, ProcessInstance target) {
+        LocalDateTime now = LocalDateTime.now();
+        long version = current.getVersion() + 1;
+        List<InstanceEvent> events = new ArrayList<>();
+
+        if (!Objects.equals(current.getCurrentNodeId(), target.getCurrentNodeId())) {
+            InstanceEvent event = new InstanceEvent(InstanceEvent.Type.NODE_ENTERED, current.getId(), version, now);
+            event.setNodeId(target.getCurrentNodeId());
+            events.add(event);
+        }
+
+        Map<String, Object> changed = new HashMap<>();
+        if (target.getVariables() != null) {
+            for (Map.Entry<String, Object> entry : target.getVariables().entrySet()) {
+                if (!current.getVariables().containsKey(entry.getKey())
+                        || !Objects.equals(current.getVariables().get(entry.getKey()), entry.getValue())) {
+                    changed.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        // 与数据库实现一致，只删除调用方加载时存在、修改后不存在的变量
+        List<String> removed = new ArrayList<>();
+        if (target.getVariables() != null && target.getPersistedVariables() != null) {
+            for (String name : target.getPersistedVariables().keySet()) {
+                if (!target.getVariables().containsKey(name) && current.getVariables().containsKey(name)) {
+                    removed.add(name);
+                }
+            }
+        }
+        if (!changed.isEmpty() || !removed.isEmpty()) {
+            InstanceEvent event = new InstanceEvent(InstanceEvent.Type.VARIABLES_CHANGED, current.getId(), version, now);
+            event.setVariables(changed.isEmpty() ? null : changed);
+            event.setRemovedVariables(removed.isEmpty() ? null : removed);
+            events.add(event);
+        }
+
+        if (!Objects.equals(objectMapper.valueToTree(current.getTokens()), objectMapper.valueToTree(target.getTokens()))) {
+            InstanceEvent event = new InstanceEvent(InstanceEvent.Type.TOKENS_CHANGED, current.getId(), version, now);
+            event.setTokens(copyTokens(target.getTokens()));
+            events.add(event);
+        }
+
+        // 状态为COMPLETED或TERMINATED时设置结束时间
+        LocalDateTime endTime = target.getEndTime();
+        InstanceStatus targetStatus = InstanceStatus.of(target.getStatus());
+        if (targetStatus != null && targetStatus.isTerminal() && endTime == null) {
+            endTime = now;
+        }
+        if (events.isEmpty()
+                || !Objects.equals(current.getStatus(), target.getStatus())
+                || !Objects.equals(current.getErrorMessage(), target.getErrorMessage())
+                || !Objects.equals(current.getEndTime(), endTime)) {
+            InstanceEvent event = new InstanceEvent(InstanceEvent.Type.STATUS_CHANGED, current.getId(), version, now);
+            event.setStatus(target.getStatus());
+            event.setErrorMessage(target.getErrorMessage());
+            event.setEndTime(endTime);
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * 生成状态变更事件，当前状态不是指定的来源状态时抛出冲突异常
+     */
+    private InstanceEvent statusChange(ProcessInstance current, InstanceStatus fromStatus, InstanceStatus toStatus,
+                                       String errorMessage, LocalDateTime endTime, String conflictMessage) {
+        if (InstanceStatus.of(current.getStatus()) != fromStatus) {
+            throw new ProcessInstanceConflictException(current.getId(), String.format(conflictMessage, current.getStatus()));
+        }
+        return statusChange(current, toStatus, errorMessage, endTime, conflictMessage);
+    }
+
+    /**
+     * 生成状态变更事件，当前状态不允许转换到目标状态时抛出冲突异常
+     */
+    private InstanceEvent statusChange(ProcessInstance current, InstanceStatus toStatus, String errorMessage,
+                                       LocalDateTime endTime, String conflictMessage) {
+        if (!InstanceStatus.of(current.getStatus()).canTransitionTo(toStatus)) {
+            throw new ProcessInstanceConflictException(current.getId(), String.format(conflictMessage, current.getStatus()));
+        }
+        InstanceEvent event = new InstanceEvent(InstanceEvent.Type.STATUS_CHANGED, current.getId(),
+                current.getVersion() + 1, LocalDateTime.now());
+        event.setStatus(toStatus.name());
+        event.setErrorMessage(errorMessage);
+        event.setEndTime(endTime != null ? endTime : current.getEndTime());
+        return event;
+    }
+
+    /**
+     * 按(创建时间, ID)顺序返回游标之后的候选实例
+     */
+    private List<ProcessInstance> query(Stream<ProcessInstance> candidates, LocalDateTime afterCreateTime,
+                                        String afterId, int limit) {
+        Stream<ProcessInstance> matched = candidates;
+        if (afterCreateTime != null) {
+            ProcessInstance cursor = new ProcessInstance();
+            cursor.setCreateTime(afterCreateTime);
+            cursor.setId(afterId != null ? afterId : "");
+            matched = matched.filter(instance -> CREATE_ORDER.compare(instance, cursor) > 0);
+        }
+        return matched.sorted(CREATE_ORDER)
+                .limit(limit)
+                .map(this::view)
+                .collect(Collectors.toList());
+    }
+
+    private byte[] writeEvents(List<InstanceEvent> events) {
+        try {
+            return objectMapper.writeValueAsBytes(events);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize process instance events", e);
+        }
+    }
+
+    private List<InstanceEvent> readEvents(byte[] data) {
+        try {
+            return objectMapper.readValue(data, EVENT_LIST_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to deserialize process instance events", e);
+        }
+    }
+
+    /**
+     * 返回给调用方的副本，以当前变量作为加载时的快照
+     */
+    private ProcessInstance view(ProcessInstance state) {
+        ProcessInstance view = state.copy();
+        view.setPersistedVariables(new HashMap<>(view.getVariables()));
+        return view;
+    }
+
+    private static List<ExecutionToken> copyTokens(Collection<ExecutionToken> tokens) {
+        List<ExecutionToken> copies = new ArrayList<>();
+        if (tokens != null) {
+            for (ExecutionToken token : tokens) {
+                copies.add(token.copy());
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * 状态索引中的排序键
+     */
+    private record OrderKey(LocalDateTime createTime, String id) {
+    }
+
+    /**
+     * 由实例当前状态生成待写入的事件
+     */
+    @FunctionalInterface
+    private interface EventCommand {
+
+        List<InstanceEvent> handle(ProcessInstance current);
+    }
+}
@@ -1,8 +1,15 @@
 package com.example.demotrade.service.impl;
 
+import com.example.demotrade.cache.ProcessDefinitionCache;
+import com.example.demotrade.codec.EncodedPayload;
+import com.example.demotrade.codec.PayloadCodec;
 import com.example.demotrade.entity.ProcessDefinitionEntity;
+import com.example.demotrade.model.DefinitionStatus;
 import com.example.demotrade.model.ProcessDefinition;
-import com.example.demotrade.model.ProcessNode;
+import com.example.demotrade.model.VariableDeclaration;
+import com.example.demotrade.model.VariableSchema;
+import com.example.demotrade.plan.ExecutionPlan;
+import com.example.demotrade.plan.ExecutionPlanCompiler;
 import com.example.demotrade.repository.ProcessDefinitionRepository;
 import com.example.demotrade.service.ProcessDefinitionService;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -12,7 +19,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -27,54 +33,64 @@ public class ProcessDefinitionServiceImpl implements ProcessDefinitionService {
     @Autowired
     private ProcessDefinitionRepository processDefinitionRepository;
     
+    @Autowired
+    private PayloadCodec payloadCodec;
+    
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private ProcessDefinitionCache processDefinitionCache;
+    
     @Override
     public ProcessDefinition saveProcessDefinition(ProcessDefinition processDefinition) {
-        // 检查是否为新流程定义
+        // 检查是否为新流程定义；不修改传入的流程定义，它可能是从缓存中获取的已冻结定义
         boolean isNew = processDefinition.getId() == null || processDefinition.getId().isEmpty();
         
-        // 如果是新流程定义，生成ID和设置初始版本
-        if (isNew) {
-            processDefinition.setId(UUID.randomUUID().toString());
-            processDefinition.setVersion(1);
-            processDefinition.setStatus("DRAFT");
-        } else {
-            // 如果是更新现有流程定义，获取最大版本号并加1
-            Integer maxVersion = processDefinitionRepository.findMaxVersionByProcessDefinitionId(processDefinition.getId());
-            if (maxVersion != null) {
-                processDefinition.setVersion(maxVersion + 1);
-            } else {
-                processDefinition.setVersion(1);
-            }
-        }
+        // 如果是新流程定义，生成ID和设置初始版本；如果是更新现有流程定义，获取最大版本号并加1
+        String id = isNew ? UUID.randomUUID().toString() : processDefinition.getId();
+        Integer maxVersion = isNew ? null : processDefinitionRepository.findMaxVersionByProcessDefinitionId(id);
+        
+        // 变量声明不合法时拒绝保存，避免发布后才在执行时失败
+        VariableSchema.of(processDefinition.getVariables());
+        
+        // 转换为实体对象并保存
+        ProcessDefinitionEntity entity = convertToEntity(processDefinition);
+        entity.setId(id);
+        entity.setVersion(maxVersion != null ? maxVersion + 1 : 1);
+        // 新版本总是草稿，只能通过publishProcessDefinition校验流程结构并编译执行计划后发布，
+        // 不沿用调用方传入的状态，避免保存已发布的定义时跳过发布校验
+        entity.setStatus(DefinitionStatus.DRAFT);
         
         // 设置时间戳
         LocalDateTime now = LocalDateTime.now();
         if (isNew) {
-            processDefinition.setCreateTime(now);
+            entity.setCreateTime(now);
         }
-        processDefinition.setUpdateTime(now);
-        
-        // 转换为实体对象并保存
-        ProcessDefinitionEntity entity = convertToEntity(processDefinition);
+        entity.setUpdateTime(now);
         entity = processDefinitionRepository.save(entity);
         
+        // 新版本可能改变最新版本指针，失效缓存
+        processDefinitionCache.invalidate(entity.getId(), null);
+        
         // 转换回模型对象并返回
         return convertToModel(entity);
     }
 
     @Override
     public ProcessDefinition getProcessDefinition(String processDefinitionId, Integer version) {
-        Optional<ProcessDefinitionEntity> entityOpt = processDefinitionRepository.findByIdAndVersion(processDefinitionId, version);
-        return entityOpt.map(this::convertToModel).orElse(null);
+        return processDefinitionCache.get(processDefinitionId, version,
+                () -> loadProcessDefinition(processDefinitionId, version));
     }
 
     @Override
     public ProcessDefinition getLatestProcessDefinition(String processDefinitionId) {
-        Optional<ProcessDefinitionEntity> entityOpt = processDefinitionRepository.findLatestByProcessDefinitionId(processDefinitionId);
-        return entityOpt.map(this::convertToModel).orElse(null);
+        return processDefinitionCache.getLatest(processDefinitionId,
+                () -> processDefinitionRepository.findFirstByIdAndStatusOrderByVersionDesc(processDefinitionId,
+                                DefinitionStatus.PUBLISHED)
+                        .map(this::convertToModel)
+                        .orElse(null),
+                version -> loadProcessDefinition(processDefinitionId, version));
     }
 
     @Override
@@ -82,9 +98,13 @@ public class ProcessDefinitionServiceImpl implements ProcessDefinitionService {
         Optional<ProcessDefinitionEntity> entityOpt = processDefinitionRepository.findByIdAndVersion(processDefinitionId, version);
         if (entityOpt.isPresent()) {
             ProcessDefinitionEntity entity = entityOpt.get();
-            entity.setStatus("PUBLISHED");
+            changeStatus(entity, DefinitionStatus.PUBLISHED);
+            // 编译执行计划，流程结构有错误时拒绝发布
+            ExecutionPlan plan = ExecutionPlanCompiler.compile(convertToModel(entity));
+            entity.setExecutionPlan(plan.toBytes());
             entity.setUpdateTime(LocalDateTime.now());
             entity = processDefinitionRepository.save(entity);
+            processDefinitionCache.invalidate(processDefinitionId, version);
             return convertToModel(entity);
         }
         return null;
@@ -95,16 +115,36 @@ public class ProcessDefinitionServiceImpl implements ProcessDefinitionService {
         Optional<ProcessDefinitionEntity> entityOpt = processDefinitionRepository.findByIdAndVersion(processDefinitionId, version);
         if (entityOpt.isPresent()) {
             ProcessDefinitionEntity entity = entityOpt.get();
-            entity.setStatus("DEPRECATED");
+            changeStatus(entity, DefinitionStatus.DEPRECATED);
             entity.setUpdateTime(LocalDateTime.now());
             entity = processDefinitionRepository.save(entity);
+            processDefinitionCache.invalidate(processDefinitionId, version);
             return convertToModel(entity);
         }
         return null;
     }
     
     /**
-     * 将模型对象转换为实体对象
+     * 按状态转换表修改流程定义状态，状态不变时重复执行不报错
+     */
+    private static void changeStatus(ProcessDefinitionEntity entity, DefinitionStatus target) {
+        DefinitionStatus current = entity.getStatus();
+        if (current != null && current != target) {
+            current.checkTransition(entity.getId(), target);
+        }
+        entity.setStatus(target);
+    }
+    
+    /**
+     * 从数据库加载指定ID和版本的流程定义
+     */
+    private ProcessDefinition loadProcessDefinition(String processDefinitionId, Integer version) {
+        Optional<ProcessDefinitionEntity> entityOpt = processDefinitionRepository.findByIdAndVersion(processDefinitionId, version);
+        return entityOpt.map(this::convertToModel).orElse(null);
+    }
+    
+    /**
+     * 将模型对象转换为实体对象，状态由调用方设置
      */
     private ProcessDefinitionEntity convertToEntity(ProcessDefinition model) {
         ProcessDefinitionEntity entity = new ProcessDefinitionEntity();
@@ -112,15 +152,22 @@ public class ProcessDefinitionServiceImpl implements ProcessDefinitionService {
         entity.setName(model.getName());
         entity.setDescription(model.getDescription());
         entity.setVersion(model.getVersion());
-        entity.setStatus(model.getStatus());
         entity.setCreateTime(model.getCreateTime());
         entity.setUpdateTime(model.getUpdateTime());
         
-        // 将节点列表序列化为JSON字符串
-        try {
-            entity.setNodesJson(objectMapper.writeValueAsString(model.getNodes()));
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Failed to serialize process nodes", e);
+        // 按配置的格式编码节点列表
+        EncodedPayload nodes = payloadCodec.encodeNodes(model.getNodes());
+        entity.setNodesJson(nodes.json());
+        entity.setNodesData(nodes.data());
+        
+        // 变量声明很小，保存为文本
+        List<VariableDeclaration> variables = model.getVariables();
+        if (variables != null && !variables.isEmpty()) {
+            try {
+                entity.setVariablesJson(objectMapper.writeValueAsString(variables));
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Failed to serialize variable declarations", e);
+            }
         }
         
         return entity;
@@ -135,25 +182,25 @@ public class ProcessDefinitionServiceImpl implements ProcessDefinitionService {
         model.setName(entity.getName());
         model.setDescription(entity.getDescription());
         model.setVersion(entity.getVersion());
-        model.setStatus(entity.getStatus());
+        model.setStatus(entity.getStatus() != null ? entity.getStatus().name() : null);
         model.setCreateTime(entity.getCreateTime());
         model.setUpdateTime(entity.getUpdateTime());
         
-        // 将JSON字符串反序列化为节点列表
-        if (entity.getNodesJson() != null && !entity.getNodesJson().isEmpty()) {
+        // 解码节点列表，二进制列为空时读取迁移前的文本列
+        model.setNodes(payloadCodec.decodeNodes(entity.getNodesData(), entity.getNodesJson()));
+        
+        if (entity.getVariablesJson() != null) {
             try {
-                List<ProcessNode> nodes = objectMapper.readValue(
-                    entity.getNodesJson(), 
-                    new TypeReference<List<ProcessNode>>() {}
-                );
-                model.setNodes(nodes);
+                model.setVariables(objectMapper.readValue(entity.getVariablesJson(),
+                        new TypeReference<List<VariableDeclaration>>() {}));
             } catch (JsonProcessingException e) {
-                throw new RuntimeException("Failed to deserialize process nodes", e);
+                throw new RuntimeException("Failed to deserialize variable declarations", e);
             }
-        } else {
-            model.setNodes(new ArrayList<>());
         }
         
+        // 读取发布时编译的执行计划，与节点列表不一致时留空，首次使用时重新编译
+        model.setExecutionPlan(ExecutionPlan.fromBytes(entity.getExecutionPlan(), model.getNodes()));
+        
         return model;
     }
 }
\ No newline at end of file
@@ -1,27 +1,66 @@
 package com.example.demotrade.service.impl;
 
+import com.example.demotrade.cache.ProcessInstanceCache;
+import com.example.demotrade.codec.EncodedPayload;
+import com.example.demotrade.codec.PayloadCodec;
 import com.example.demotrade.entity.ProcessInstanceEntity;
+import com.example.demotrade.exception.ProcessInstanceConflictException;
+import com.example.demotrade.lock.InstanceLockManager;
+import com.example.demotrade.model.ExecutionToken;
+import com.example.demotrade.model.InstanceStatus;
 import com.example.demotrade.model.ProcessInstance;
+import com.example.demotrade.repository.ProcessInstanceHistoryRepository;
 import com.example.demotrade.repository.ProcessInstanceRepository;
 import com.example.demotrade.service.ProcessInstanceService;
+import com.example.demotrade.service.ProcessVariableService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 流程实例服务实现类
  * 实现流程实例的持久化操作
+ * <p>
+ * variablesJson只保存创建时的初始变量，之后变化的变量逐个写入process_variable表，
+ * 读取时以process_variable中的值覆盖初始变量；删除变量时删除对应的行，并以当前的全部变量替换初始变量
+ * <p>
+ * 开启归档后，按ID和业务ID查询时会继续查找process_instance_history中已归档的实例
+ * <p>
+ * 修改操作持有实例锁执行，事务在锁内提交；获取到分布式锁时先在同一事务中校验fencing token，
+ * 经过写入缓冲的修改同样持锁等待组提交完成，fencing token在批量UPDATE中校验
+ * <p>
+ * 按ID读取经过本地和Redis两级缓存，修改在实例锁内提交后写入新状态，其它节点的本地缓存通过发布订阅失效
  */
 @Service
 public class ProcessInstanceServiceImpl implements ProcessInstanceService {
@@ -29,157 +68,548 @@ public class ProcessInstanceServiceImpl implements ProcessInstanceService {
     @Autowired
     private ProcessInstanceRepository processInstanceRepository;
     
+    @Autowired
+    private ProcessVariableService processVariableService;
+    
+    @Autowired
+    private ProcessInstanceHistoryRepository historyRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private InstanceLockManager instanceLockManager;
+    
+    /**
+     * 关闭实例缓存时不存在
+     */
+    @Autowired(required = false)
+    private ProcessInstanceCache processInstanceCache;
+    
+    /**
+     * 开启demo-trade.instance.write-behind.enabled时存在
+     */
+    @Autowired(required = false)
+    private ProcessInstanceWriteBuffer writeBuffer;
+    
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private PayloadCodec payloadCodec;
+    
+    @Value("${demo-trade.instance.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${demo-trade.instance.fetch-size:500}")
+    private int fetchSize;
+    
+    @Value("${demo-trade.archive.enabled:false}")
+    private boolean archiveEnabled;
+    
     @Override
     public ProcessInstance createProcessInstance(ProcessInstance processInstance) {
-        // 如果没有ID，生成一个新的UUID
-        if (processInstance.getId() == null || processInstance.getId().isEmpty()) {
-            processInstance.setId(UUID.randomUUID().toString());
-        }
-        
-        // 设置时间戳
-        LocalDateTime now = LocalDateTime.now();
-        processInstance.setCreateTime(now);
-        processInstance.setUpdateTime(now);
-        if (processInstance.getStartTime() == null) {
-            processInstance.setStartTime(now);
-        }
+        prepareForCreate(processInstance, LocalDateTime.now());
         
         // 转换为实体对象并保存
         ProcessInstanceEntity entity = convertToEntity(processInstance);
+        setVariables(entity, processInstance.getVariables());
         entity = processInstanceRepository.save(entity);
         
-        // 转换回模型对象并返回
-        return convertToModel(entity);
+        // 转换回模型对象并返回，初始变量已在variablesJson中
+        ProcessInstance created = convertToModel(entity);
+        created.setVariables(copyVariables(processInstance.getVariables()));
+        created.setPersistedVariables(copyVariables(processInstance.getVariables()));
+        return created;
+    }
+
+    @Override
+    @Transactional
+    public List<ProcessInstance> createProcessInstances(List<ProcessInstance> processInstances) {
+        if (processInstances == null || processInstances.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<ProcessInstanceEntity> entities = new ArrayList<>(processInstances.size());
+        for (ProcessInstance processInstance : processInstances) {
+            prepareForCreate(processInstance, now);
+            ProcessInstanceEntity entity = convertToEntity(processInstance);
+            setVariables(entity, processInstance.getVariables());
+            entities.add(entity);
+            processInstance.setVersion(0L);
+            processInstance.setPersistedVariables(copyVariables(processInstance.getVariables()));
+        }
+        
+        // 直接批量插入，实例已持有完整状态，无需再从实体转换回模型
+        processInstanceRepository.batchInsert(entities, batchSize);
+        return processInstances;
     }
 
     @Override
     public ProcessInstance getProcessInstance(String processInstanceId) {
+        if (processInstanceCache != null) {
+            return processInstanceCache.get(processInstanceId, () -> loadProcessInstance(processInstanceId));
+        }
+        return loadProcessInstance(processInstanceId);
+    }
+    
+    /**
+     * 从数据库加载流程实例，不经过缓存
+     */
+    private ProcessInstance loadProcessInstance(String processInstanceId) {
         Optional<ProcessInstanceEntity> entityOpt = processInstanceRepository.findById(processInstanceId);
-        return entityOpt.map(this::convertToModel).orElse(null);
+        if (entityOpt.isPresent()) {
+            return convertToModel(entityOpt.get(), processVariableService.getVariables(processInstanceId));
+        }
+        
+        // 已归档实例的变量全部保存在历史表的variablesJson中
+        if (archiveEnabled) {
+            return historyRepository.findById(processInstanceId)
+                    .map(entity -> convertToModel(entity, Map.of()))
+                    .orElse(null);
+        }
+        return null;
     }
 
     @Override
     public ProcessInstance updateProcessInstance(ProcessInstance processInstance) {
-        // 检查实例是否存在
-        if (!processInstanceRepository.existsById(processInstance.getId())) {
-            throw new RuntimeException("Process instance not found: " + processInstance.getId());
+        prepareForUpdate(processInstance);
+        // 开启写入缓冲且不在外部事务中时，与其它实例的变更一起组提交
+        if (writeBuffer != null && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return updateBuffered(processInstance);
         }
         
-        // 更新时间戳
-        processInstance.setUpdateTime(LocalDateTime.now());
-        
-        // 如果状态是COMPLETED或TERMINATED，设置结束时间
-        if (("COMPLETED".equals(processInstance.getStatus()) || "TERMINATED".equals(processInstance.getStatus())) 
-                && processInstance.getEndTime() == null) {
-            processInstance.setEndTime(LocalDateTime.now());
+        return executeLocked(processInstance.getId(), () -> {
+            // 以一条带版本号条件的UPDATE写入，实例已被其它请求修改时不会覆盖
+            int updated = processInstanceRepository.updateIfVersionMatches(
+                    processInstance.getId(),
+                    processInstance.getVersion(),
+                    updatableStatuses(processInstance),
+                    processInstance.getCurrentNodeId(),
+                    InstanceStatus.of(processInstance.getStatus()),
+                    serializeTokens(processInstance.getTokens()),
+                    processInstance.getEndTime(),
+                    processInstance.getErrorMessage(),
+                    processInstance.getUpdateTime());
+            if (updated == 0) {
+                throw versionConflict(processInstance);
+            }
+            
+            // 只写入发生变化的变量，与实例更新在同一事务中，冲突时一起回滚
+            processVariableService.saveVariables(processInstance.getId(), changedVariables(processInstance));
+            Set<String> removed = removedVariables(processInstance);
+            if (!removed.isEmpty()) {
+                processVariableService.deleteVariables(processInstance.getId(), removed);
+                EncodedPayload payload = payloadCodec.encodeVariables(processInstance.getVariables());
+                processInstanceRepository.replaceInitialVariables(processInstance.getId(), payload.json(),
+                        payload.data());
+            }
+        }, () -> markPersisted(processInstance));
+    }
+
+    @Override
+    public CompletableFuture<ProcessInstance> updateProcessInstanceAsync(ProcessInstance processInstance) {
+        if (writeBuffer == null) {
+            try {
+                return CompletableFuture.completedFuture(updateProcessInstance(processInstance));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
         }
         
-        // 转换为实体对象并保存
-        ProcessInstanceEntity entity = convertToEntity(processInstance);
-        entity = processInstanceRepository.save(entity);
-        
-        // 转换回模型对象并返回
-        return convertToModel(entity);
+        prepareForUpdate(processInstance);
+        return CompletableFuture.supplyAsync(() -> updateBuffered(processInstance), writeBuffer.writers());
+    }
+    
+    /**
+     * 持有实例锁提交到写入缓冲并等待组提交完成，分布式锁的fencing token随变更在批量UPDATE中校验，
+     * 提交后在锁内把新状态写入缓存
+     */
+    private ProcessInstance updateBuffered(ProcessInstance processInstance) {
+        return instanceLockManager.execute(processInstance.getId(), token -> {
+            ProcessInstanceEntity state = convertToEntity(processInstance);
+            state.setVersion(processInstance.getVersion());
+            state.setFencingToken(token);
+            Set<String> removed = removedVariables(processInstance);
+            if (!removed.isEmpty()) {
+                setVariables(state, processInstance.getVariables());
+            }
+            boolean updated;
+            try {
+                updated = writeBuffer.submit(state, changedVariables(processInstance), removed).join();
+            } catch (CompletionException e) {
+                evictCached(processInstance.getId());
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            if (!updated) {
+                evictCached(processInstance.getId());
+                throw versionConflict(processInstance);
+            }
+            ProcessInstance persisted = markPersisted(processInstance);
+            writeThrough(persisted);
+            return persisted;
+        });
     }
 
     @Override
     public List<ProcessInstance> findByBusinessId(String businessId) {
-        List<ProcessInstanceEntity> entities = processInstanceRepository.findByBusinessId(businessId);
-        return entities.stream()
-                .map(this::convertToModel)
-                .collect(Collectors.toList());
+        List<ProcessInstance> instances = new ArrayList<>(
+                convertToModels(processInstanceRepository.findByBusinessId(businessId)));
+        if (archiveEnabled) {
+            historyRepository.findByBusinessId(businessId)
+                    .forEach(entity -> instances.add(convertToModel(entity, Map.of())));
+        }
+        return instances;
     }
 
     @Override
     public List<ProcessInstance> findByStatus(String status) {
-        List<ProcessInstanceEntity> entities = processInstanceRepository.findByStatus(status);
-        return entities.stream()
-                .map(this::convertToModel)
-                .collect(Collectors.toList());
+        return convertToModels(processInstanceRepository.findByStatus(InstanceStatus.of(status)));
+    }
+
+    @Override
+    public List<ProcessInstance> findByBusinessId(String businessId, LocalDateTime afterCreateTime, String afterId,
+                                                  int limit) {
+        List<ProcessInstanceEntity> entities = afterCreateTime == null
+                ? processInstanceRepository.findByBusinessIdOrderByCreateTimeAscIdAsc(businessId, Limit.of(limit))
+                : processInstanceRepository.findByBusinessIdAfter(businessId, afterCreateTime, afterId, Limit.of(limit));
+        return convertToModels(entities);
+    }
+
+    @Override
+    public List<ProcessInstance> findByStatus(String status, LocalDateTime afterCreateTime, String afterId,
+                                              int limit) {
+        InstanceStatus instanceStatus = InstanceStatus.of(status);
+        List<ProcessInstanceEntity> entities = afterCreateTime == null
+                ? processInstanceRepository.findByStatusOrderByCreateTimeAscIdAsc(instanceStatus, Limit.of(limit))
+                : processInstanceRepository.findByStatusAfter(instanceStatus, afterCreateTime, afterId,
+                        Limit.of(limit));
+        return convertToModels(entities);
+    }
+
+    @Override
+    public List<ProcessInstance> findByStatuses(Set<InstanceStatus> statuses, LocalDateTime afterCreateTime,
+                                                String afterId, int limit) {
+        List<ProcessInstanceEntity> entities = afterCreateTime == null
+                ? processInstanceRepository.findByStatusInOrderByCreateTimeAscIdAsc(statuses, Limit.of(limit))
+                : processInstanceRepository.findByStatusInAfter(statuses, afterCreateTime, afterId, Limit.of(limit));
+        return convertToModels(entities);
+    }
+
+    @Override
+    public Stream<ProcessInstance> streamByBusinessId(String businessId) {
+        return convertToModelStream(processInstanceRepository.streamByBusinessId(businessId, fetchSize));
+    }
+
+    @Override
+    public Stream<ProcessInstance> streamByStatus(String status) {
+        return convertToModelStream(processInstanceRepository.streamByStatus(InstanceStatus.of(status), fetchSize));
     }
 
     @Override
     public ProcessInstance updateProcessVariables(String processInstanceId, Map<String, Object> variables) {
-        // 获取当前实例
-        ProcessInstance instance = getProcessInstance(processInstanceId);
-        if (instance == null) {
-            throw new RuntimeException("Process instance not found: " + processInstanceId);
-        }
-        
-        // 更新变量
-        Map<String, Object> currentVars = instance.getVariables();
-        if (currentVars == null) {
-            currentVars = new HashMap<>();
-        }
-        currentVars.putAll(variables);
-        instance.setVariables(currentVars);
-        
-        // 更新实例
-        return updateProcessInstance(instance);
+        return executeLocked(processInstanceId, () -> {
+            // 只刷新更新时间和版本号，不加载和改写整个实例
+            if (processInstanceRepository.touch(processInstanceId, LocalDateTime.now()) == 0) {
+                throw new RuntimeException("Process instance not found: " + processInstanceId);
+            }
+            
+            // 只写入传入的变量
+            processVariableService.saveVariables(processInstanceId, variables);
+        }, () -> loadProcessInstance(processInstanceId));
     }
 
     @Override
     public ProcessInstance suspendProcessInstance(String processInstanceId) {
-        // 获取当前实例
-        ProcessInstance instance = getProcessInstance(processInstanceId);
-        if (instance == null) {
-            throw new RuntimeException("Process instance not found: " + processInstanceId);
-        }
-        
-        // 检查状态
-        if (!"RUNNING".equals(instance.getStatus())) {
-            throw new RuntimeException("Cannot suspend process instance with status: " + instance.getStatus());
-        }
-        
-        // 更新状态
-        instance.setStatus("SUSPENDED");
-        
-        // 更新实例
-        return updateProcessInstance(instance);
+        return executeLocked(processInstanceId, () -> {
+            // 仅当状态为RUNNING时更新
+            int updated = processInstanceRepository.transitionStatus(processInstanceId,
+                    InstanceStatus.sourcesOf(InstanceStatus.SUSPENDED), InstanceStatus.SUSPENDED, LocalDateTime.now());
+            if (updated == 0) {
+                throw conflictOrNotFound(processInstanceId, "Cannot suspend process instance with status: %s");
+            }
+        }, () -> loadProcessInstance(processInstanceId));
     }
 
     @Override
     public ProcessInstance resumeProcessInstance(String processInstanceId) {
-        // 获取当前实例
-        ProcessInstance instance = getProcessInstance(processInstanceId);
-        if (instance == null) {
-            throw new RuntimeException("Process instance not found: " + processInstanceId);
+        return executeLocked(processInstanceId, () -> {
+            // 仅当状态为SUSPENDED时更新
+            // FAILED也可以转换到RUNNING，但只能通过重试，恢复只接受SUSPENDED
+            int updated = processInstanceRepository.transitionStatus(processInstanceId,
+                    EnumSet.of(InstanceStatus.SUSPENDED), InstanceStatus.RUNNING, LocalDateTime.now());
+            if (updated == 0) {
+                throw conflictOrNotFound(processInstanceId, "Cannot resume process instance with status: %s");
+            }
+        }, () -> loadProcessInstance(processInstanceId));
+    }
+
+    @Override
+    public ProcessInstance retryProcessInstance(String processInstanceId) {
+        return executeLocked(processInstanceId, () -> {
+            // 仅当状态为FAILED时更新
+            int updated = processInstanceRepository.transitionStatus(processInstanceId,
+                    EnumSet.of(InstanceStatus.FAILED), InstanceStatus.RUNNING, LocalDateTime.now());
+            if (updated == 0) {
+                throw conflictOrNotFound(processInstanceId, "Cannot retry process instance with status: %s");
+            }
+        }, () -> loadProcessInstance(processInstanceId));
+    }
+
+    @Override
+    public ProcessInstance terminateProcessInstance(String processInstanceId, String errorMessage) {
+        return executeLocked(processInstanceId, () -> {
+            // 仅当实例尚未结束时更新状态和错误信息
+            int updated = processInstanceRepository.terminate(processInstanceId,
+                    InstanceStatus.sourcesOf(InstanceStatus.TERMINATED), InstanceStatus.TERMINATED, errorMessage,
+                    LocalDateTime.now());
+            if (updated == 0) {
+                throw conflictOrNotFound(processInstanceId, "Cannot terminate process instance with status: %s");
+            }
+        }, () -> loadProcessInstance(processInstanceId));
+    }
+    
+    /**
+     * 持有实例锁在事务中执行修改，事务在锁释放前提交，提交后在锁内把新状态写入缓存
+     * 持有分布式锁时先推进实例的fencing token，token已被更新的持有者推进时抛出冲突异常并回滚事务
+     *
+     * @param processInstanceId 流程实例ID
+     * @param mutation 在事务中执行的修改
+     * @param afterCommit 事务提交后返回实例的新状态
+     * @return 实例的新状态
+     */
+    private ProcessInstance executeLocked(String processInstanceId, Runnable mutation,
+                                          Supplier<ProcessInstance> afterCommit) {
+        return instanceLockManager.execute(processInstanceId, token -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (token != null && processInstanceRepository.fence(processInstanceId, token) == 0) {
+                        throw conflictOrNotFound(processInstanceId,
+                                "Distributed lock expired before write, fencing token " + token + " is stale");
+                    }
+                    mutation.run();
+                });
+            } catch (RuntimeException e) {
+                // 冲突说明缓存中的状态可能已经过期
+                evictCached(processInstanceId);
+                throw e;
+            }
+            ProcessInstance updated = afterCommit.get();
+            writeThrough(updated);
+            return updated;
+        });
+    }
+    
+    /**
+     * 把修改后的状态写入缓存
+     * 在外部事务中修改时无法确定是否会提交，改为在事务结束后失效缓存
+     */
+    private void writeThrough(ProcessInstance processInstance) {
+        if (processInstanceCache == null || processInstance == null) {
+            return;
         }
-        
-        // 检查状态
-        if (!"SUSPENDED".equals(instance.getStatus())) {
-            throw new RuntimeException("Cannot resume process instance with status: " + instance.getStatus());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            String processInstanceId = processInstance.getId();
+            Long version = processInstance.getVersion();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    // 提交后按版本失效，并发读取加载的旧状态不会在失效后写回缓存
+                    if (status == STATUS_COMMITTED && version != null) {
+                        processInstanceCache.evict(processInstanceId, version);
+                    } else {
+                        processInstanceCache.evict(processInstanceId);
+                    }
+                }
+            });
+            return;
+        }
+        processInstanceCache.put(processInstance);
+    }
+    
+    private void evictCached(String processInstanceId) {
+        if (processInstanceCache != null) {
+            processInstanceCache.evict(processInstanceId);
+        }
+    }
+    
+    /**
+     * 校验版本号并设置更新时间，状态为COMPLETED或TERMINATED时设置结束时间
+     */
+    private void prepareForUpdate(ProcessInstance processInstance) {
+        if (processInstance.getVersion() == null) {
+            throw new IllegalArgumentException("Process instance version is required for update: " + processInstance.getId());
         }
         
-        // 更新状态
-        instance.setStatus("RUNNING");
+        // 更新时间戳
+        processInstance.setUpdateTime(LocalDateTime.now());
         
-        // 更新实例
-        return updateProcessInstance(instance);
+        // 如果状态是COMPLETED或TERMINATED，设置结束时间
+        InstanceStatus status = InstanceStatus.of(processInstance.getStatus());
+        if (status != null && status.isTerminal() && processInstance.getEndTime() == null) {
+            processInstance.setEndTime(LocalDateTime.now());
+        }
     }
-
-    @Override
-    public ProcessInstance terminateProcessInstance(String processInstanceId, String errorMessage) {
-        // 获取当前实例
-        ProcessInstance instance = getProcessInstance(processInstanceId);
-        if (instance == null) {
-            throw new RuntimeException("Process instance not found: " + processInstanceId);
+    
+    /**
+     * 更新已持久化后版本号加1，并以当前变量作为新的快照
+     */
+    private ProcessInstance markPersisted(ProcessInstance processInstance) {
+        processInstance.setVersion(processInstance.getVersion() + 1);
+        processInstance.setPersistedVariables(copyVariables(processInstance.getVariables()));
+        return processInstance;
+    }
+    
+    /**
+     * 版本号条件更新允许的当前状态：可以转换到目标状态的状态以及目标状态本身
+     */
+    private static Set<InstanceStatus> updatableStatuses(ProcessInstance processInstance) {
+        InstanceStatus target = InstanceStatus.of(processInstance.getStatus());
+        Set<InstanceStatus> statuses = EnumSet.of(target);
+        statuses.addAll(InstanceStatus.sourcesOf(target));
+        return statuses;
+    }
+    
+    private RuntimeException versionConflict(ProcessInstance processInstance) {
+        return conflictOrNotFound(processInstance.getId(),
+                "Process instance was modified concurrently, expected version: " + processInstance.getVersion());
+    }
+    
+    /**
+     * 条件更新未命中时查询实例状态，实例不存在时返回普通异常，否则返回冲突异常
+     *
+     * @param processInstanceId 流程实例ID
+     * @param conflictMessage 冲突信息，可以包含一个%s占位符表示当前状态
+     */
+    private RuntimeException conflictOrNotFound(String processInstanceId, String conflictMessage) {
+        Optional<InstanceStatus> status = processInstanceRepository.findStatusById(processInstanceId);
+        if (status.isEmpty()) {
+            return new RuntimeException("Process instance not found: " + processInstanceId);
+        }
+        return new ProcessInstanceConflictException(processInstanceId, String.format(conflictMessage, status.get()));
+    }
+    
+    /**
+     * 为新建的流程实例分配ID并设置时间戳
+     */
+    private void prepareForCreate(ProcessInstance processInstance, LocalDateTime now) {
+        // 如果没有ID，生成一个新的UUID
+        if (processInstance.getId() == null || processInstance.getId().isEmpty()) {
+            processInstance.setId(UUID.randomUUID().toString());
         }
         
-        // 更新状态和错误信息
-        instance.setStatus("TERMINATED");
-        instance.setErrorMessage(errorMessage);
-        instance.setEndTime(LocalDateTime.now());
+        // 设置时间戳
+        processInstance.setCreateTime(now);
+        processInstance.setUpdateTime(now);
+        if (processInstance.getStartTime() == null) {
+            processInstance.setStartTime(now);
+        }
+    }
+    
+    /**
+     * 计算相对于加载时快照发生变化的变量
+     * 嵌套的Map或List需要整体替换才能被识别为变化，原地修改不会被写入
+     */
+    private Map<String, Object> changedVariables(ProcessInstance processInstance) {
+        Map<String, Object> current = processInstance.getVariables();
+        Map<String, Object> persisted = processInstance.getPersistedVariables();
+        if (current == null || current.isEmpty() || persisted == null) {
+            return current;
+        }
         
-        // 更新实例
-        return updateProcessInstance(instance);
+        Map<String, Object> changed = new HashMap<>();
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            if (!persisted.containsKey(entry.getKey())
+                    || !Objects.equals(persisted.get(entry.getKey()), entry.getValue())) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * 计算相对于加载时快照被删除的变量，没有加载时快照的实例不删除变量
+     */
+    private static Set<String> removedVariables(ProcessInstance processInstance) {
+        Map<String, Object> current = processInstance.getVariables();
+        Map<String, Object> persisted = processInstance.getPersistedVariables();
+        if (current == null || persisted == null) {
+            return Set.of();
+        }
+        Set<String> removed = new HashSet<>(persisted.keySet());
+        removed.removeAll(current.keySet());
+        return removed;
+    }
+    
+    private static Map<String, Object> copyVariables(Map<String, Object> variables) {
+        return variables != null ? new HashMap<>(variables) : new HashMap<>();
+    }
+    
+    /**
+     * 按配置的格式编码初始变量，写入variablesJson或variablesData
+     */
+    private void setVariables(ProcessInstanceEntity entity, Map<String, Object> variables) {
+        EncodedPayload payload = payloadCodec.encodeVariables(variables);
+        entity.setVariablesJson(payload.json());
+        entity.setVariablesData(payload.data());
+    }
+    
+    /**
+     * 批量转换实体对象，一次查询加载所有实例的变量
+     */
+    private List<ProcessInstance> convertToModels(List<ProcessInstanceEntity> entities) {
+        Map<String, Map<String, Object>> variables = processVariableService.getVariables(
+                entities.stream().map(ProcessInstanceEntity::getId).collect(Collectors.toList()));
+        return entities.stream()
+                .map(entity -> convertToModel(entity, variables.getOrDefault(entity.getId(), Map.of())))
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * 将实体流按fetchSize分组转换，每组只查询一次流程变量；关闭返回的流时关闭底层游标
+     */
+    private Stream<ProcessInstance> convertToModelStream(Stream<ProcessInstanceEntity> entities) {
+        Iterator<ProcessInstanceEntity> source = entities.iterator();
+        Iterator<ProcessInstance> models = new Iterator<>() {
+            private Iterator<ProcessInstance> chunk = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                if (!chunk.hasNext() && source.hasNext()) {
+                    List<ProcessInstanceEntity> batch = new ArrayList<>(fetchSize);
+                    while (source.hasNext() && batch.size() < fetchSize) {
+                        batch.add(source.next());
+                    }
+                    chunk = convertToModels(batch).iterator();
+                }
+                return chunk.hasNext();
+            }
+
+            @Override
+            public ProcessInstance next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return chunk.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(models, Spliterator.ORDERED), false)
+                .onClose(entities::close);
     }
     
     /**
-     * 将模型对象转换为实体对象
+     * 将实体对象转换为模型对象，并以process_variable中的变量覆盖初始变量
+     */
+    private ProcessInstance convertToModel(ProcessInstanceEntity entity, Map<String, Object> storedVariables) {
+        ProcessInstance model = convertToModel(entity);
+        model.getVariables().putAll(storedVariables);
+        model.setPersistedVariables(new HashMap<>(model.getVariables()));
+        return model;
+    }
+    
+    /**
+     * 将模型对象转换为实体对象，不包含变量
      */
     private ProcessInstanceEntity convertToEntity(ProcessInstance model) {
         ProcessInstanceEntity entity = new ProcessInstanceEntity();
@@ -188,23 +618,29 @@ public class ProcessInstanceServiceImpl implements ProcessInstanceService {
         entity.setProcessDefinitionVersion(model.getProcessDefinitionVersion());
         entity.setBusinessId(model.getBusinessId());
         entity.setCurrentNodeId(model.getCurrentNodeId());
-        entity.setStatus(model.getStatus());
+        entity.setStatus(InstanceStatus.of(model.getStatus()));
         entity.setStartTime(model.getStartTime());
         entity.setEndTime(model.getEndTime());
         entity.setCreateTime(model.getCreateTime());
         entity.setUpdateTime(model.getUpdateTime());
         entity.setErrorMessage(model.getErrorMessage());
+        entity.setTokensJson(serializeTokens(model.getTokens()));
         
-        // 将变量映射序列化为JSON字符串
+        return entity;
+    }
+    
+    /**
+     * 将分支令牌序列化为JSON字符串
+     */
+    private String serializeTokens(List<ExecutionToken> tokens) {
         try {
-            if (model.getVariables() != null && !model.getVariables().isEmpty()) {
-                entity.setVariablesJson(objectMapper.writeValueAsString(model.getVariables()));
+            if (tokens != null && !tokens.isEmpty()) {
+                return objectMapper.writeValueAsString(tokens);
             }
+            return null;
         } catch (JsonProcessingException e) {
-            throw new RuntimeException("Failed to serialize process variables", e);
+            throw new RuntimeException("Failed to serialize execution tokens", e);
         }
-        
-        return entity;
     }
     
     /**
@@ -217,26 +653,30 @@ public class ProcessInstanceServiceImpl implements ProcessInstanceService {
         model.setProcessDefinitionVersion(entity.getProcessDefinitionVersion());
         model.setBusinessId(entity.getBusinessId());
         model.setCurrentNodeId(entity.getCurrentNodeId());
-        model.setStatus(entity.getStatus());
+        model.setStatus(entity.getStatus() != null ? entity.getStatus().name() : null);
         model.setStartTime(entity.getStartTime());
         model.setEndTime(entity.getEndTime());
         model.setCreateTime(entity.getCreateTime());
         model.setUpdateTime(entity.getUpdateTime());
         model.setErrorMessage(entity.getErrorMessage());
+        model.setVersion(entity.getVersion());
+        
+        // 解码初始变量，二进制列为空时读取迁移前的文本列
+        model.setVariables(payloadCodec.decodeVariables(entity.getVariablesData(), entity.getVariablesJson()));
         
-        // 将JSON字符串反序列化为变量映射
-        if (entity.getVariablesJson() != null && !entity.getVariablesJson().isEmpty()) {
+        // 将JSON字符串反序列化为分支令牌
+        if (entity.getTokensJson() != null && !entity.getTokensJson().isEmpty()) {
             try {
-                Map<String, Object> variables = objectMapper.readValue(
-                    entity.getVariablesJson(), 
-                    new TypeReference<Map<String, Object>>() {}
+                List<ExecutionToken> tokens = objectMapper.readValue(
+                    entity.getTokensJson(), 
+                    new TypeReference<List<ExecutionToken>>() {}
                 );
-                model.setVariables(variables);
+                model.setTokens(tokens);
             } catch (JsonProcessingException e) {
-                throw new RuntimeException("Failed to deserialize process variables", e);
+                throw new RuntimeException("Failed to deserialize execution tokens", e);
             }
         } else {
-            model.setVariables(new HashMap<>());
+            model.setTokens(new ArrayList<>());
         }
         
         return model;
@@ -0,0 +1,235 @@
+package com.example.demotrade.service.impl;
+
+import com.example.demotrade.entity.ProcessInstanceEntity;
+import com.example.demotrade.repository.ProcessInstanceRepository;
+import com.example.demotrade.service.ProcessVariableService;
+import com.example.demotrade.util.ExecutorUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流程实例状态写入缓冲区
+ * 将多个流程实例的状态变更合并为一个事务批量提交（组提交），摊薄每次提交的刷盘开销
+ * <p>
+ * 后台线程在收到第一条变更后最多等待flush-interval，或攒够max-batch-size条后提交一批；
+ * 每条变更的Future在所在事务提交后完成，结果表示版本号和fencing token条件是否命中。
+ * 整批提交失败时逐条重新提交，只有自身无法写入的变更以异常完成
+ * <p>
+ * 调用方在实例锁内提交并等待结果，异步提交由writer线程池代为持锁等待
+ */
+@Component
+@ConditionalOnProperty(prefix = "demo-trade.instance.write-behind", name = "enabled", havingValue = "true")
+public class ProcessInstanceWriteBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessInstanceWriteBuffer.class);
+
+    @Autowired
+    private ProcessInstanceRepository processInstanceRepository;
+
+    @Autowired
+    private ProcessVariableService processVariableService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${demo-trade.instance.write-behind.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${demo-trade.instance.write-behind.flush-interval-ms:5}")
+    private long flushIntervalMs;
+
+    @Value("${demo-trade.instance.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${demo-trade.instance.write-behind.writer-fallback-threads:200}")
+    private int writerFallbackThreads;
+
+    private BlockingQueue<PendingChange> queue;
+
+    /**
+     * 异步提交时持有实例锁等待组提交完成，实例锁与线程绑定，不能在调用线程上获取后交给回调释放
+     */
+    private ExecutorService writers;
+
+    private Thread flusher;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        writers = ExecutorUtil.newVirtualThreadExecutor("instance-writer", writerFallbackThreads);
+        running = true;
+        flusher = new Thread(this::flushLoop, "instance-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        writers.shutdown();
+    }
+
+    /**
+     * 执行异步提交的线程池
+     */
+    public Executor writers() {
+        return writers;
+    }
+
+    /**
+     * 提交一条流程实例状态变更
+     * 队列已满时阻塞调用线程，形成背压
+     *
+     * @param state 新的实例状态，version为读取实例时的版本号，fencingToken为持有的分布式锁token
+     * @param changedVariables 发生变化的变量，版本号条件命中时才会写入
+     * @param removedVariables 被删除的变量，不为空时state中的变量为替换后的初始变量
+     * @return 事务提交后完成，true表示更新成功，false表示版本号不一致、fencing token已过期或实例不存在
+     */
+    public CompletableFuture<Boolean> submit(ProcessInstanceEntity state, Map<String, Object> changedVariables,
+                                             Set<String> removedVariables) {
+        PendingChange change = new PendingChange(state, changedVariables, removedVariables, new CompletableFuture<>());
+        try {
+            queue.put(change);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            change.future().completeExceptionally(e);
+        }
+        if (!running) {
+            // 与停止并发提交时，由调用线程自行写入，避免变更留在队列中
+            flush(drain(new ArrayList<>()));
+        }
+        return change.future();
+    }
+
+    private void flushLoop() {
+        List<PendingChange> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingChange first = queue.take();
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingChange next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            flush(batch);
+            batch = new ArrayList<>(maxBatchSize);
+        }
+        // 停止前提交剩余的变更
+        flush(drain(batch));
+    }
+
+    private List<PendingChange> drain(List<PendingChange> batch) {
+        queue.drainTo(batch);
+        return batch;
+    }
+
+    /**
+     * 在一个事务中提交一批变更，失败时逐条重新提交，避免一条无法写入的变更导致整批失败
+     */
+    private void flush(List<PendingChange> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            complete(batch, write(batch));
+            return;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                logger.error("写入流程实例状态失败, id={}", batch.get(0).state().getId(), e);
+                batch.get(0).future().completeExceptionally(e);
+                return;
+            }
+            logger.warn("批量写入流程实例状态失败，逐条重新写入, size={}", batch.size(), e);
+        }
+        for (PendingChange change : batch) {
+            try {
+                complete(List.of(change), write(List.of(change)));
+            } catch (RuntimeException e) {
+                logger.error("写入流程实例状态失败, id={}", change.state().getId(), e);
+                change.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中写入变更，版本号条件未命中的变更不写入变量
+     *
+     * @return 每条变更更新的行数
+     */
+    private int[] write(List<PendingChange> changes) {
+        return transactionTemplate.execute(status -> {
+            List<ProcessInstanceEntity> states = new ArrayList<>(changes.size());
+            for (PendingChange change : changes) {
+                states.add(change.state());
+            }
+            int[] updated = processInstanceRepository.batchUpdateIfVersionMatches(states);
+
+            Map<String, Map<String, Object>> variables = new LinkedHashMap<>();
+            for (int i = 0; i < changes.size(); i++) {
+                Map<String, Object> changed = changes.get(i).changedVariables();
+                if (updated[i] != 0 && changed != null && !changed.isEmpty()) {
+                    // 同一实例在一批中的多次变更按提交顺序合并
+                    variables.computeIfAbsent(changes.get(i).state().getId(), k -> new LinkedHashMap<>())
+                            .putAll(changed);
+                }
+            }
+            processVariableService.saveVariables(variables);
+            // 同一实例的变更在实例锁内逐条提交，删除不会与同一批中后续的写入冲突
+            for (int i = 0; i < changes.size(); i++) {
+                PendingChange change = changes.get(i);
+                if (updated[i] != 0 && change.removedVariables() != null && !change.removedVariables().isEmpty()) {
+                    ProcessInstanceEntity state = change.state();
+                    processVariableService.deleteVariables(state.getId(), change.removedVariables());
+                    processInstanceRepository.replaceInitialVariables(state.getId(), state.getVariablesJson(),
+                            state.getVariablesData());
+                }
+            }
+            return updated;
+        });
+    }
+
+    private static void complete(List<PendingChange> changes, int[] counts) {
+        for (int i = 0; i < changes.size(); i++) {
+            changes.get(i).future().complete(counts[i] != 0);
+        }
+    }
+
+    /**
+     * 待提交的变更
+     */
+    private record PendingChange(ProcessInstanceEntity state, Map<String, Object> changedVariables,
+                                 Set<String> removedVariables, CompletableFuture<Boolean> future) {
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.demotrade.service.impl;
+
+import com.example.demotrade.entity.ProcessVariableEntity;
+import com.example.demotrade.repository.ProcessVariableRepository;
+import com.example.demotrade.service.ProcessVariableService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流程变量服务实现类
+ * 变量值以JSON存储，读取时与原先整体反序列化变量映射得到的类型一致
+ */
+@Service
+public class ProcessVariableServiceImpl implements ProcessVariableService {
+
+    private static final String OPERATOR = "process-engine";
+
+    /**
+     * 批量查询时IN条件的最大ID数
+     */
+    private static final int QUERY_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private ProcessVariableRepository processVariableRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public void saveVariables(String processInstanceId, Map<String, Object> variables) {
+        if (variables == null || variables.isEmpty()) {
+            return;
+        }
+        
+        List<ProcessVariableEntity> entities = new ArrayList<>(variables.size());
+        addEntities(entities, processInstanceId, variables, LocalDateTime.now());
+        processVariableRepository.upsertVariables(entities);
+    }
+
+    @Override
+    public void saveVariables(Map<String, Map<String, Object>> variablesByInstance) {
+        if (variablesByInstance == null || variablesByInstance.isEmpty()) {
+            return;
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<ProcessVariableEntity> entities = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> entry : variablesByInstance.entrySet()) {
+            if (entry.getValue() != null) {
+                addEntities(entities, entry.getKey(), entry.getValue(), now);
+            }
+        }
+        processVariableRepository.upsertVariables(entities);
+    }
+
+    @Override
+    public void deleteVariables(String processInstanceId, Collection<String> variableNames) {
+        if (variableNames == null || variableNames.isEmpty()) {
+            return;
+        }
+        processVariableRepository.deleteVariables(processInstanceId, variableNames);
+    }
+
+    @Override
+    public Map<String, Object> getVariables(String processInstanceId) {
+        Map<String, Object> variables = new HashMap<>();
+        for (ProcessVariableEntity entity : processVariableRepository.findByProcessInstanceId(processInstanceId)) {
+            variables.put(entity.getVariableName(), deserialize(entity));
+        }
+        return variables;
+    }
+
+    @Override
+    public Object getVariable(String processInstanceId, String variableName) {
+        return processVariableRepository.findByProcessInstanceIdAndVariableName(processInstanceId, variableName)
+                .map(this::deserialize)
+                .orElse(null);
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> getVariables(Collection<String> processInstanceIds) {
+        Map<String, Map<String, Object>> result = new HashMap<>();
+        if (processInstanceIds == null || processInstanceIds.isEmpty()) {
+            return result;
+        }
+        
+        List<String> ids = new ArrayList<>(processInstanceIds);
+        for (int from = 0; from < ids.size(); from += QUERY_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + QUERY_CHUNK_SIZE, ids.size()));
+            for (ProcessVariableEntity entity : processVariableRepository.findByProcessInstanceIdIn(chunk)) {
+                result.computeIfAbsent(entity.getProcessInstanceId(), k -> new HashMap<>())
+                        .put(entity.getVariableName(), deserialize(entity));
+            }
+        }
+        return result;
+    }
+
+    private void addEntities(List<ProcessVariableEntity> entities, String processInstanceId,
+                             Map<String, Object> variables, LocalDateTime now) {
+        for (Map.Entry<String, Object> entry : variables.entrySet()) {
+            ProcessVariableEntity entity = new ProcessVariableEntity();
+            entity.setProcessInstanceId(processInstanceId);
+            entity.setVariableName(entry.getKey());
+            entity.setVariableValue(serialize(entry.getKey(), entry.getValue()));
+            entity.setVariableType(typeOf(entry.getValue()));
+            entity.setCreator(OPERATOR);
+            entity.setModifier(OPERATOR);
+            entity.setGmtCreate(now);
+            entity.setGmtModified(now);
+            entities.add(entity);
+        }
+    }
+
+    private String serialize(String name, Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize process variable: " + name, e);
+        }
+    }
+
+    private Object deserialize(ProcessVariableEntity entity) {
+        try {
+            return objectMapper.readValue(entity.getVariableValue(), Object.class);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to deserialize process variable: " + entity.getVariableName(), e);
+        }
+    }
+
+    private static String typeOf(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (value instanceof String) {
+            return "STRING";
+        }
+        if (value instanceof Number) {
+            return "NUMBER";
+        }
+        if (value instanceof Boolean) {
+            return "BOOLEAN";
+        }
+        if (value instanceof Collection || value.getClass().isArray()) {
+            return "LIST";
+        }
+        return "OBJECT";
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.demotrade.timer;
+
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮
+ * 第0层每格为一个tick，第L层每格覆盖2^(wheelBits*L)个tick；定时器按到期tick与当前tick
+ * 开始分叉的层级放入对应的格子，时钟进入高层格子时把其中的定时器重新放入低层（逐层下放）
+ * <p>
+ * 每个格子是双向链表，添加和取消都是O(1)；推进时钟时每个定时器最多下放levels次。
+ * 超出最高层范围的定时器放入最高层的下一格，到达时重新计算位置，不会提前也不会丢失
+ * <p>
+ * 非线程安全，由调用方串行访问
+ *
+ * @param <T> 定时器携带的数据
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final long tickMs;
+
+    private final int wheelBits;
+
+    private final int mask;
+
+    private final int levels;
+
+    /**
+     * buckets[level][slot]，每个格子是带哨兵节点的双向链表
+     */
+    private final Timeout<T>[][] buckets;
+
+    /**
+     * 已推进到的tick，等于System.currentTimeMillis() / tickMs
+     */
+    private long currentTick;
+
+    private int size;
+
+    /**
+     * @param tickMs 每格的毫秒数，即定时器的触发精度
+     * @param wheelBits 每层格数为2^wheelBits
+     * @param levels 层数
+     * @param startMs 起始时间（毫秒）
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HierarchicalTimingWheel(long tickMs, int wheelBits, int levels, long startMs) {
+        if (tickMs <= 0 || wheelBits <= 0 || levels <= 0 || (long) wheelBits * levels > 62) {
+            throw new IllegalArgumentException("Invalid timing wheel: tickMs=" + tickMs + ", wheelBits=" + wheelBits
+                    + ", levels=" + levels);
+        }
+        this.tickMs = tickMs;
+        this.wheelBits = wheelBits;
+        this.mask = (1 << wheelBits) - 1;
+        this.levels = levels;
+        this.buckets = new Timeout[levels][1 << wheelBits];
+        for (Timeout<T>[] level : buckets) {
+            for (int slot = 0; slot < level.length; slot++) {
+                Timeout<T> sentinel = new Timeout<>(0, null, null);
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                level[slot] = sentinel;
+            }
+        }
+        this.currentTick = startMs / tickMs;
+    }
+
+    /**
+     * 添加定时器，已到期的定时器在下一次推进时钟时触发
+     *
+     * @param deadlineMs 到期时间（毫秒）
+     * @param payload 定时器携带的数据
+     * @return 定时器句柄，用于取消
+     */
+    public Timeout<T> add(long deadlineMs, T payload) {
+        // 向上取整，定时器不会早于到期时间触发
+        long deadlineTick = Math.max(ceilDiv(deadlineMs, tickMs), currentTick + 1);
+        Timeout<T> timeout = new Timeout<>(deadlineTick, payload, this);
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * 取消定时器
+     *
+     * @return 定时器尚未触发且未被取消时返回true
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        if (timeout.wheel != this || timeout.next == null) {
+            return false;
+        }
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * 推进时钟到指定时间，依次触发到期的定时器
+     * 没有定时器时直接跳到目标时间
+     *
+     * @param nowMs 当前时间（毫秒）
+     * @param expired 接收到期定时器的数据
+     */
+    public void advance(long nowMs, Consumer<T> expired) {
+        long targetTick = nowMs / tickMs;
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                currentTick = targetTick;
+                return;
+            }
+            currentTick++;
+            // 进入高层的新格子时先把其中的定时器下放，下放后的位置都在当前tick之后或就是当前tick
+            for (int level = levels - 1; level > 0; level--) {
+                int shift = wheelBits * level;
+                if ((currentTick & ((1L << shift) - 1)) == 0) {
+                    cascade(buckets[level][(int) (currentTick >>> shift) & mask]);
+                }
+            }
+            Timeout<T> sentinel = buckets[0][(int) currentTick & mask];
+            while (sentinel.next != sentinel) {
+                Timeout<T> timeout = sentinel.next;
+                unlink(timeout);
+                size--;
+                expired.accept(timeout.payload);
+            }
+        }
+    }
+
+    /**
+     * 未触发的定时器数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 把格子中的定时器按当前tick重新放置
+     */
+    private void cascade(Timeout<T> sentinel) {
+        Timeout<T> timeout = sentinel.next;
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+        while (timeout != sentinel) {
+            Timeout<T> next = timeout.next;
+            place(timeout);
+            timeout = next;
+        }
+    }
+
+    /**
+     * 放入到期tick与当前tick开始分叉的最低层；超出最高层范围时放入最高层的下一格
+     */
+    private void place(Timeout<T> timeout) {
+        long deadlineTick = timeout.deadlineTick;
+        Timeout<T> sentinel = null;
+        if (deadlineTick <= currentTick) {
+            // 下放到当前tick的定时器在本次推进中触发
+            sentinel = buckets[0][(int) currentTick & mask];
+        } else {
+            for (int level = 0; level < levels; level++) {
+                int parentShift = wheelBits * (level + 1);
+                if ((deadlineTick >>> parentShift) == (currentTick >>> parentShift)) {
+                    sentinel = buckets[level][(int) (deadlineTick >>> (wheelBits * level)) & mask];
+                    break;
+                }
+            }
+            if (sentinel == null) {
+                int topShift = wheelBits * (levels - 1);
+                sentinel = buckets[levels - 1][(int) ((currentTick >>> topShift) + 1) & mask];
+            }
+        }
+        timeout.prev = sentinel.prev;
+        timeout.next = sentinel;
+        sentinel.prev.next = timeout;
+        sentinel.prev = timeout;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    /**
+     * 定时器句柄，同时是格子链表的节点
+     */
+    public static final class Timeout<T> {
+
+        private final long deadlineTick;
+
+        private final T payload;
+
+        private final HierarchicalTimingWheel<T> wheel;
+
+        private Timeout<T> prev;
+
+        private Timeout<T> next;
+
+        private Timeout(long deadlineTick, T payload, HierarchicalTimingWheel<T> wheel) {
+            this.deadlineTick = deadlineTick;
+            this.payload = payload;
+            this.wheel = wheel;
+        }
+
+        public T payload() {
+            return payload;
+        }
+
+        /**
+         * 是否仍在时间轮中等待触发
+         */
+        public boolean isPending() {
+            return next != null;
+        }
+    }
+}
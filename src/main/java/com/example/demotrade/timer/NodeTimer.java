@@ -0,0 +1,44 @@
+package com.example.demotrade.timer;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 流程节点定时器，每个流程实例每种类型最多一个，重新设置时覆盖原有定时器
+ *
+ * @param processInstanceId 流程实例ID
+ * @param nodeId 设置定时器时实例所在的节点，触发时实例已离开该节点则不处理
+ * @param type 定时器类型
+ * @param attempt 重试定时器表示第几次重试，超时定时器为0
+ * @param dueTime 到期时间，截断到毫秒，与数据库中保存的值一致
+ */
+public record NodeTimer(String processInstanceId, String nodeId, Type type, int attempt, LocalDateTime dueTime) {
+
+    public NodeTimer {
+        dueTime = dueTime.truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    /**
+     * 定时器的唯一键，同时作为数据库主键
+     */
+    public String key() {
+        return key(processInstanceId, type);
+    }
+
+    public static String key(String processInstanceId, Type type) {
+        return processInstanceId + ":" + type;
+    }
+
+    public enum Type {
+
+        /**
+         * 节点超时，到期时实例仍停留在该节点则置为失败
+         */
+        TIMEOUT,
+
+        /**
+         * 节点执行失败后的延迟重试
+         */
+        RETRY
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demotrade.timer;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 处理到期的流程节点定时器
+ */
+@FunctionalInterface
+public interface NodeTimerHandler {
+
+    /**
+     * 处理到期的定时器，不得阻塞时间轮线程
+     *
+     * @param timer 到期的定时器
+     * @return 处理完成后完成，之后删除数据库中的定时器；进程在完成前退出时定时器在重启后重新触发
+     */
+    CompletableFuture<?> onTimer(NodeTimer timer);
+}
@@ -0,0 +1,481 @@
+package com.example.demotrade.timer;
+
+import com.example.demotrade.cluster.InstanceOwnership;
+import com.example.demotrade.entity.ProcessTimerEntity;
+import com.example.demotrade.repository.ProcessTimerRepository;
+import com.example.demotrade.util.ExecutorUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流程节点定时器调度器
+ * 节点超时和延迟重试先写入process_timer表，再放入内存中的分层时间轮，由一个后台线程按tick推进时钟并触发；
+ * 大量定时器共用一个线程和一个时间轮，添加和取消都是O(1)
+ * <p>
+ * 内存中只保留horizon内到期的定时器，更晚到期的只在数据库中，由定期加载按(due_time, id)分页补充；
+ * 启动时以同样的方式加载，已过期的定时器排在最前，按每tick一页分散触发，避免重启后集中触发
+ * <p>
+ * 同一定时器可能被多个节点放入时间轮，触发前先认领：按(id, due_time, attempt)把到期时间条件更新为租约到期时间，
+ * 只有更新到一行的节点交给处理方，其它节点和已被重新设置或取消的定时器直接跳过。
+ * 定时器在处理完成后才从数据库删除，进程在处理期间退出时租约到期后重新触发，处理方需要能重复执行。
+ * 处理方暂时不能处理的定时器（如实例已暂停）通过{@link #defer}保留在数据库中，由{@link #rearm}重新放入时间轮。
+ * 开启集群分区时只加载归属于当前节点的实例的定时器；在非归属节点设置的定时器同时放入该节点的时间轮，
+ * 到期时由先认领的节点处理
+ * <p>
+ * 默认只在开启集群分区时开启，单节点部署需要节点超时和重试时显式开启
+ */
+@Component
+@ConditionalOnProperty(prefix = "demo-trade.timer", name = "enabled", havingValue = "true")
+public class NodeTimerScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(NodeTimerScheduler.class);
+
+    @Autowired
+    private ProcessTimerRepository processTimerRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 只在开启集群分区时存在
+     */
+    @Autowired(required = false)
+    private InstanceOwnership instanceOwnership;
+
+    @Value("${demo-trade.timer.tick:PT0.1S}")
+    private Duration tick;
+
+    @Value("${demo-trade.timer.wheel-bits:8}")
+    private int wheelBits;
+
+    @Value("${demo-trade.timer.levels:4}")
+    private int levels;
+
+    @Value("${demo-trade.timer.horizon:PT1H}")
+    private Duration horizon;
+
+    @Value("${demo-trade.timer.load-batch-size:1000}")
+    private int loadBatchSize;
+
+    @Value("${demo-trade.timer.claim-lease:PT5M}")
+    private Duration claimLease;
+
+    @Value("${demo-trade.timer.dispatch-fallback-threads:16}")
+    private int dispatchFallbackThreads;
+
+    /**
+     * 保护时间轮、pending、inFlight、deferred和rearmRequested
+     */
+    private final Object lock = new Object();
+
+    private HierarchicalTimingWheel<NodeTimer> wheel;
+
+    /**
+     * 定时器键 -> 时间轮中等待触发的定时器
+     */
+    private final Map<String, HierarchicalTimingWheel.Timeout<NodeTimer>> pending = new HashMap<>();
+
+    /**
+     * 已触发、处理尚未完成的定时器键，加载时跳过
+     */
+    private final Set<String> inFlight = new HashSet<>();
+
+    /**
+     * 处理方推迟处理的定时器键，处理完成后不从数据库删除
+     */
+    private final Set<String> deferred = new HashSet<>();
+
+    /**
+     * 处理期间被要求重新放入时间轮的定时器键，推迟处理时在处理完成后重新放入
+     */
+    private final Set<String> rearmRequested = new HashSet<>();
+
+    private volatile NodeTimerHandler handler;
+
+    /**
+     * 认领定时器并交给处理方，认领需要访问数据库，不在时间轮线程上执行
+     */
+    private Executor dispatchExecutor;
+
+    private Thread ticker;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        wheel = new HierarchicalTimingWheel<>(tick.toMillis(), wheelBits, levels, System.currentTimeMillis());
+        dispatchExecutor = ExecutorUtil.newVirtualThreadExecutor("node-timer", dispatchFallbackThreads);
+        Gauge.builder("demo-trade.timer.pending", this, NodeTimerScheduler::pendingCount)
+                .description("内存时间轮中等待触发的流程节点定时器数")
+                .register(meterRegistry);
+        if (instanceOwnership != null) {
+            instanceOwnership.addListener((previous, current) -> reload());
+        }
+    }
+
+    /**
+     * 所有Bean初始化完成、处理方已注册后开始加载和触发
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        refill();
+        ticker = new Thread(this::tickLoop, "node-timer-wheel");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        if (dispatchExecutor instanceof ExecutorService service) {
+            service.shutdown();
+        }
+    }
+
+    /**
+     * 注册到期定时器的处理方
+     */
+    public void setHandler(NodeTimerHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * 设置定时器，覆盖同一实例同一类型的原有定时器
+     *
+     * @param timer 定时器
+     */
+    public void schedule(NodeTimer timer) {
+        processTimerRepository.save(toEntity(timer));
+        synchronized (lock) {
+            HierarchicalTimingWheel.Timeout<NodeTimer> previous = pending.remove(timer.key());
+            if (previous != null) {
+                wheel.cancel(previous);
+            }
+            // 超出horizon的定时器由定期加载放入时间轮
+            if (!timer.dueTime().isAfter(LocalDateTime.now().plus(horizon))) {
+                pending.put(timer.key(), wheel.add(toEpochMilli(timer.dueTime()), timer));
+            }
+        }
+    }
+
+    /**
+     * 取消定时器
+     *
+     * @param processInstanceId 流程实例ID
+     * @param type 定时器类型
+     */
+    public void cancel(String processInstanceId, NodeTimer.Type type) {
+        String key = NodeTimer.key(processInstanceId, type);
+        removePending(key);
+        processTimerRepository.deleteTimer(key);
+    }
+
+    /**
+     * 取消流程实例的全部定时器，用于实例结束时
+     *
+     * @param processInstanceId 流程实例ID
+     */
+    public void cancelAll(String processInstanceId) {
+        for (NodeTimer.Type type : NodeTimer.Type.values()) {
+            removePending(NodeTimer.key(processInstanceId, type));
+        }
+        processTimerRepository.deleteByProcessInstanceId(processInstanceId);
+    }
+
+    /**
+     * 推迟处理已触发的定时器，处理完成后保留在数据库中，等待{@link #rearm}或下一次定期加载重新触发
+     * 只能在处理该定时器期间调用
+     *
+     * @param timer 正在处理的定时器
+     */
+    public void defer(NodeTimer timer) {
+        synchronized (lock) {
+            if (inFlight.contains(timer.key())) {
+                deferred.add(timer.key());
+            }
+        }
+    }
+
+    /**
+     * 把流程实例在数据库中的定时器重新放入时间轮，用于实例恢复后触发暂停期间推迟的定时器
+     * 已过期的定时器在下一个tick触发；正在处理的定时器被推迟时，在处理完成后重新放入
+     *
+     * @param processInstanceId 流程实例ID
+     * @return 放入时间轮的定时器数
+     */
+    public int rearm(String processInstanceId) {
+        List<ProcessTimerEntity> entities = processTimerRepository.findByProcessInstanceId(processInstanceId);
+        LocalDateTime dueBefore = LocalDateTime.now().plus(horizon);
+        int loaded = 0;
+        synchronized (lock) {
+            for (ProcessTimerEntity entity : entities) {
+                if (pending.containsKey(entity.getId())) {
+                    continue;
+                }
+                if (inFlight.contains(entity.getId())) {
+                    rearmRequested.add(entity.getId());
+                    continue;
+                }
+                // 超出horizon的定时器由定期加载放入时间轮
+                if (!entity.getDueTime().isAfter(dueBefore)) {
+                    NodeTimer timer = toTimer(entity);
+                    pending.put(timer.key(), wheel.add(toEpochMilli(timer.dueTime()), timer));
+                    loaded++;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 从数据库加载horizon内到期、尚未在时间轮中的定时器
+     * 定期执行，间隔必须小于horizon，否则定时器可能在被加载前到期
+     *
+     * @return 加载的定时器数
+     */
+    @Scheduled(initialDelayString = "${demo-trade.timer.refill-interval:PT10M}",
+            fixedDelayString = "${demo-trade.timer.refill-interval:PT10M}")
+    public int refill() {
+        if (!running) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime dueBefore = now.plus(horizon);
+        long nowMs = toEpochMilli(now);
+        int loaded = 0;
+        int overdue = 0;
+        List<ProcessTimerEntity> page = processTimerRepository.findByDueTimeLessThanEqualOrderByDueTimeAscIdAsc(
+                dueBefore, Limit.of(loadBatchSize));
+        while (!page.isEmpty()) {
+            synchronized (lock) {
+                for (ProcessTimerEntity entity : page) {
+                    if (pending.containsKey(entity.getId()) || inFlight.contains(entity.getId())) {
+                        continue;
+                    }
+                    if (instanceOwnership != null && !instanceOwnership.isLocallyOwned(entity.getProcessInstanceId())) {
+                        continue;
+                    }
+                    NodeTimer timer = toTimer(entity);
+                    long deadlineMs = toEpochMilli(timer.dueTime());
+                    if (deadlineMs <= nowMs) {
+                        // 已过期的定时器每页占一个tick
+                        deadlineMs = nowMs + tick.toMillis() * (overdue++ / loadBatchSize);
+                    }
+                    pending.put(timer.key(), wheel.add(deadlineMs, timer));
+                    loaded++;
+                }
+            }
+            if (page.size() < loadBatchSize) {
+                break;
+            }
+            ProcessTimerEntity last = page.get(page.size() - 1);
+            page = processTimerRepository.findDueAfter(dueBefore, last.getDueTime(), last.getId(),
+                    Limit.of(loadBatchSize));
+        }
+        if (loaded > 0) {
+            logger.info("加载流程节点定时器完成, loaded={}, overdue={}", loaded, overdue);
+        }
+        return loaded;
+    }
+
+    /**
+     * 时间轮中等待触发的定时器数
+     */
+    public int pendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * 推进时钟到指定时间并触发到期的定时器，由后台线程每个tick调用
+     *
+     * @param nowMs 当前时间（毫秒）
+     * @return 触发的定时器数
+     */
+    int advance(long nowMs) {
+        List<NodeTimer> expired = new ArrayList<>();
+        synchronized (lock) {
+            wheel.advance(nowMs, timer -> {
+                pending.remove(timer.key());
+                inFlight.add(timer.key());
+                expired.add(timer);
+            });
+        }
+        for (NodeTimer timer : expired) {
+            fire(timer);
+        }
+        return expired.size();
+    }
+
+    /**
+     * 集群成员变化后按新的归属重新加载
+     */
+    private void reload() {
+        synchronized (lock) {
+            for (HierarchicalTimingWheel.Timeout<NodeTimer> timeout : pending.values()) {
+                wheel.cancel(timeout);
+            }
+            pending.clear();
+        }
+        refill();
+    }
+
+    private void tickLoop() {
+        long tickMs = tick.toMillis();
+        while (running) {
+            try {
+                Thread.sleep(tickMs);
+                advance(System.currentTimeMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                logger.error("推进流程节点定时器失败", e);
+            }
+        }
+    }
+
+    /**
+     * 认领后交给处理方处理，完成后删除数据库中的定时器；处理期间被重新设置的定时器到期时间不同，不会被删除；
+     * 被推迟的定时器恢复原到期时间后保留
+     */
+    private void fire(NodeTimer timer) {
+        NodeTimerHandler current = handler;
+        if (current == null) {
+            // 保留在数据库中，注册处理方后由下一次加载重新触发
+            logger.warn("流程节点定时器没有处理方, key={}", timer.key());
+            release(timer);
+            return;
+        }
+        dispatchExecutor.execute(() -> {
+            LocalDateTime leaseUntil = LocalDateTime.now().plus(claimLease).truncatedTo(ChronoUnit.MILLIS);
+            if (!claim(timer, leaseUntil)) {
+                release(timer);
+                return;
+            }
+            CompletableFuture<?> future;
+            try {
+                future = current.onTimer(timer);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((result, e) -> complete(timer, leaseUntil, e));
+        });
+    }
+
+    /**
+     * 把数据库中的到期时间改为租约到期时间，进程在处理期间退出时租约到期后由任一节点重新触发
+     *
+     * @return 是否由当前节点处理；已被其它节点认领、重新设置或取消时返回false
+     */
+    private boolean claim(NodeTimer timer, LocalDateTime leaseUntil) {
+        try {
+            return processTimerRepository.moveDueTime(timer.key(), timer.dueTime(), timer.attempt(), leaseUntil) == 1;
+        } catch (RuntimeException e) {
+            // 保留在数据库中，由下一次加载重新触发
+            logger.warn("认领流程节点定时器失败, key={}", timer.key(), e);
+            return false;
+        }
+    }
+
+    private void release(NodeTimer timer) {
+        synchronized (lock) {
+            inFlight.remove(timer.key());
+            deferred.remove(timer.key());
+            rearmRequested.remove(timer.key());
+        }
+    }
+
+    private void complete(NodeTimer timer, LocalDateTime leaseUntil, Throwable error) {
+        if (error != null) {
+            logger.error("处理流程节点定时器失败, key={}", timer.key(), error);
+        }
+        boolean keep;
+        boolean rearm;
+        synchronized (lock) {
+            keep = deferred.remove(timer.key());
+            rearm = rearmRequested.remove(timer.key());
+        }
+        try {
+            if (keep) {
+                // 恢复原到期时间，实例恢复后立即触发
+                processTimerRepository.moveDueTime(timer.key(), leaseUntil, timer.attempt(), timer.dueTime());
+            } else {
+                processTimerRepository.deleteFired(timer.key(), leaseUntil);
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("更新已触发的流程节点定时器失败, key={}", timer.key(), ex);
+        } finally {
+            synchronized (lock) {
+                inFlight.remove(timer.key());
+                // 推迟期间实例已恢复，不等下一次定期加载
+                if (keep && rearm && !pending.containsKey(timer.key())) {
+                    pending.put(timer.key(), wheel.add(toEpochMilli(timer.dueTime()), timer));
+                }
+            }
+        }
+    }
+
+    private void removePending(String key) {
+        synchronized (lock) {
+            HierarchicalTimingWheel.Timeout<NodeTimer> timeout = pending.remove(key);
+            if (timeout != null) {
+                wheel.cancel(timeout);
+            }
+        }
+    }
+
+    private static ProcessTimerEntity toEntity(NodeTimer timer) {
+        ProcessTimerEntity entity = new ProcessTimerEntity();
+        entity.setId(timer.key());
+        entity.setProcessInstanceId(timer.processInstanceId());
+        entity.setNodeId(timer.nodeId());
+        entity.setTimerType(timer.type().name());
+        entity.setAttempt(timer.attempt());
+        entity.setDueTime(timer.dueTime());
+        entity.setCreateTime(LocalDateTime.now());
+        return entity;
+    }
+
+    private static NodeTimer toTimer(ProcessTimerEntity entity) {
+        return new NodeTimer(entity.getProcessInstanceId(), entity.getNodeId(),
+                NodeTimer.Type.valueOf(entity.getTimerType()), entity.getAttempt(), entity.getDueTime());
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
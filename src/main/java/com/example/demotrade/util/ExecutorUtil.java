@@ -0,0 +1,53 @@
+package com.example.demotrade.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程池工具类
+ * 运行在JDK 21及以上时使用虚拟线程，否则退化为有界的平台线程池
+ */
+public final class ExecutorUtil {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorUtil.class);
+
+    private ExecutorUtil() {
+    }
+
+    /**
+     * 创建每任务一个虚拟线程的执行器
+     *
+     * @param fallbackNamePrefix 退化为平台线程池时的线程名前缀
+     * @param fallbackThreads 退化为平台线程池时的线程数
+     * @return 执行器
+     */
+    public static ExecutorService newVirtualThreadExecutor(String fallbackNamePrefix, int fallbackThreads) {
+        try {
+            // 通过反射调用，保证在JDK 17上也能编译和运行
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.info("当前JDK不支持虚拟线程，使用{}个平台线程: {}", fallbackThreads, fallbackNamePrefix);
+            return Executors.newFixedThreadPool(fallbackThreads, namedThreadFactory(fallbackNamePrefix));
+        }
+    }
+
+    /**
+     * 创建带名称前缀的守护线程工厂
+     *
+     * @param namePrefix 线程名前缀
+     * @return 线程工厂
+     */
+    public static ThreadFactory namedThreadFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demotrade.util;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.RecordComponent;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 将结果行映射为记录
+ * 记录的每个组件按名称对应一列，列序号和取值类型在创建时解析，逐行映射时只按序号取值
+ */
+final class RecordRowMapper<T extends Record> {
+
+    private final Class<T> recordType;
+
+    private final Constructor<T> constructor;
+
+    private final String[] componentNames;
+
+    private final boolean[] primitives;
+
+    private final Class<?>[] valueTypes;
+
+    /**
+     * 组件 -> 列序号，从1开始
+     */
+    private final int[] columnIndexes;
+
+    RecordRowMapper(Class<T> recordType, ResultColumns columns) {
+        RecordComponent[] components = recordType.getRecordComponents();
+        if (components == null) {
+            throw new IllegalArgumentException(recordType.getName() + " is not a record");
+        }
+        Class<?>[] parameterTypes = new Class<?>[components.length];
+        this.componentNames = new String[components.length];
+        this.primitives = new boolean[components.length];
+        this.valueTypes = new Class<?>[components.length];
+        this.columnIndexes = new int[components.length];
+        for (int i = 0; i < components.length; i++) {
+            Class<?> type = components[i].getType();
+            int index = columns.indexOf(components[i].getName());
+            if (index < 0) {
+                throw new IllegalArgumentException("No column for record component " + recordType.getSimpleName()
+                        + "." + components[i].getName());
+            }
+            parameterTypes[i] = type;
+            componentNames[i] = components[i].getName();
+            primitives[i] = type.isPrimitive();
+            valueTypes[i] = type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+            columnIndexes[i] = index + 1;
+        }
+        try {
+            this.constructor = recordType.getDeclaredConstructor(parameterTypes);
+            this.constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("No canonical constructor for " + recordType.getName(), e);
+        }
+        this.recordType = recordType;
+    }
+
+    T map(ResultSet rs) throws SQLException {
+        Object[] args = new Object[columnIndexes.length];
+        for (int i = 0; i < columnIndexes.length; i++) {
+            Object value = rs.getObject(columnIndexes[i], valueTypes[i]);
+            if (value == null && primitives[i]) {
+                throw new IllegalStateException("Null value for primitive record component "
+                        + recordType.getSimpleName() + "." + componentNames[i]);
+            }
+            args[i] = value;
+        }
+        try {
+            return constructor.newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Failed to create " + recordType.getName(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create " + recordType.getName(), e);
+        }
+    }
+}
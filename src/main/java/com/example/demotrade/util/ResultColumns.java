@@ -0,0 +1,120 @@
+package com.example.demotrade.util;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 结果集列信息
+ * 每个存储过程的每个结果集读取一次元数据后缓存，逐行读取时按列序号取值，不再查询列名
+ */
+public final class ResultColumns {
+
+    private final String[] names;
+
+    private final String[] labels;
+
+    private final int[] sqlTypes;
+
+    /**
+     * 规范化后的列标签 -> 列序号，从0开始
+     */
+    private final Map<String, Integer> indexes;
+
+    /**
+     * 记录类型 -> 按本结果集列顺序解析好的映射器
+     */
+    private final Map<Class<?>, RecordRowMapper<?>> recordMappers = new ConcurrentHashMap<>();
+
+    private ResultColumns(String[] names, String[] labels, int[] sqlTypes) {
+        this.names = names;
+        this.labels = labels;
+        this.sqlTypes = sqlTypes;
+        this.indexes = new HashMap<>(labels.length * 2);
+        for (int i = 0; i < labels.length; i++) {
+            indexes.putIfAbsent(normalize(labels[i]), i);
+        }
+    }
+
+    static ResultColumns of(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] names = new String[columnCount];
+        String[] labels = new String[columnCount];
+        int[] sqlTypes = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            names[i] = metaData.getColumnName(i + 1);
+            labels[i] = metaData.getColumnLabel(i + 1);
+            sqlTypes[i] = metaData.getColumnType(i + 1);
+        }
+        return new ResultColumns(names, labels, sqlTypes);
+    }
+
+    /**
+     * 判断元数据与缓存的列信息是否一致，存储过程修改后列可能变化
+     */
+    boolean matches(ResultSetMetaData metaData) throws SQLException {
+        if (metaData.getColumnCount() != labels.length) {
+            return false;
+        }
+        for (int i = 0; i < labels.length; i++) {
+            if (!labels[i].equals(metaData.getColumnLabel(i + 1)) || sqlTypes[i] != metaData.getColumnType(i + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 列数
+     */
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * @param index 列序号，从0开始
+     * @return 列名
+     */
+    public String name(int index) {
+        return names[index];
+    }
+
+    /**
+     * @param index 列序号，从0开始
+     * @return 列标签，即SELECT中的别名
+     */
+    public String label(int index) {
+        return labels[index];
+    }
+
+    /**
+     * @param index 列序号，从0开始
+     * @return java.sql.Types中的类型
+     */
+    public int sqlType(int index) {
+        return sqlTypes[index];
+    }
+
+    /**
+     * 按列标签查找列序号，忽略大小写和下划线，userName与USER_NAME视为同一列
+     *
+     * @param label 列标签
+     * @return 列序号，从0开始；不存在时返回-1
+     */
+    public int indexOf(String label) {
+        Integer index = indexes.get(normalize(label));
+        return index != null ? index : -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends Record> RecordRowMapper<T> recordMapper(Class<T> recordType) {
+        return (RecordRowMapper<T>) recordMappers.computeIfAbsent(recordType, type -> new RecordRowMapper<>(recordType, this));
+    }
+
+    private static String normalize(String label) {
+        return label.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+}
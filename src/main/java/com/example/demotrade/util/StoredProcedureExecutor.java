@@ -0,0 +1,293 @@
+package com.example.demotrade.util;
+
+import com.alibaba.fastjson.JSONObject;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 存储过程异步执行器
+ * 从应用数据源获取连接，在虚拟线程上执行StoredProcedureUtil的调用，结果以CompletableFuture返回
+ * <p>
+ * 同时执行的调用总数不超过max-concurrency，应与连接池大小一致，避免线程在连接池上排队超时；
+ * 每个存储过程另有并发上限，防止单个慢存储过程占满连接。每次调用按query-timeout设置语句超时
+ * <p>
+ * 超出存储过程并发上限的调用在该存储过程的队列中等待，不提交到执行器，
+ * 退化为平台线程池时也不会有线程阻塞在单个存储过程上，其它存储过程的调用不受影响
+ */
+@Component
+public class StoredProcedureExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoredProcedureExecutor.class);
+
+    private static final String PROCEDURE_CONCURRENCY_PREFIX = "demo-trade.stored-procedure.executor.procedure-concurrency.";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StoredProcedureUtil storedProcedureUtil;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${demo-trade.stored-procedure.executor.query-timeout:PT30S}")
+    private Duration queryTimeout;
+
+    @Value("${demo-trade.stored-procedure.executor.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int maxConcurrency;
+
+    @Value("${demo-trade.stored-procedure.executor.per-procedure-concurrency:4}")
+    private int perProcedureConcurrency;
+
+    private ExecutorService executor;
+
+    private Semaphore connectionPermits;
+
+    /**
+     * 存储过程名称 -> 并发控制和指标
+     */
+    private final Map<String, ProcedureState> procedures = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        connectionPermits = new Semaphore(maxConcurrency, true);
+        executor = ExecutorUtil.newVirtualThreadExecutor("stored-procedure", maxConcurrency);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 异步执行存储过程，结果格式同StoredProcedureUtil.executeStoredProcedure
+     */
+    public CompletableFuture<List<JSONObject>> executeAsync(String procedureName, List<Object> inParams,
+                                                            List<Integer> outParamTypes) {
+        return submit(procedureName, queryTimeout, (util, connection) ->
+                util.executeStoredProcedure(connection, procedureName, inParams, outParamTypes));
+    }
+
+    /**
+     * 异步执行存储过程，每行读取为Object[]
+     */
+    public CompletableFuture<StoredProcedureUtil.ProcedureResult<Object[]>> executeForRowsAsync(
+            String procedureName, List<Object> inParams, List<StoredProcedureUtil.OutParameter> outParams) {
+        return submit(procedureName, queryTimeout, (util, connection) ->
+                util.executeForRows(connection, procedureName, inParams, outParams));
+    }
+
+    /**
+     * 异步执行存储过程，每行映射为指定的记录类型
+     */
+    public <T extends Record> CompletableFuture<StoredProcedureUtil.ProcedureResult<T>> executeForRecordsAsync(
+            String procedureName, List<Object> inParams, List<StoredProcedureUtil.OutParameter> outParams,
+            Class<T> recordType) {
+        return submit(procedureName, queryTimeout, (util, connection) ->
+                util.executeForRecords(connection, procedureName, inParams, outParams, recordType));
+    }
+
+    /**
+     * 异步批量执行存储过程，连接为自动提交模式时每个分块单独提交
+     */
+    public CompletableFuture<StoredProcedureUtil.BatchResult> executeBatchAsync(String procedureName,
+                                                                                List<List<Object>> paramSets) {
+        return submit(procedureName, queryTimeout, (util, connection) ->
+                util.executeBatch(connection, procedureName, paramSets));
+    }
+
+    /**
+     * 在执行器上以指定的超时执行一次存储过程调用
+     * 存储过程的并发数未达上限时提交到执行器，否则在存储过程的队列中等待，前一个调用结束后再提交；
+     * 在执行器上先获取连接许可，调用结束后归还连接
+     *
+     * @param procedureName 存储过程名称，用于并发控制和指标
+     * @param timeout 语句超时，精度为秒
+     * @param call 使用连接执行的调用
+     * @return 调用结果；超时时以SQLTimeoutException异常完成
+     */
+    public <T> CompletableFuture<T> submit(String procedureName, Duration timeout, ProcedureCall<T> call) {
+        ProcedureState state = procedures.computeIfAbsent(procedureName, this::newProcedureState);
+        int timeoutSeconds = (int) Math.max(0, (timeout.toMillis() + 999) / 1000);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        state.submit(new PendingCall(future, () -> {
+            try {
+                connectionPermits.acquire();
+                try {
+                    future.complete(execute(procedureName, state, timeoutSeconds, call));
+                } finally {
+                    connectionPermits.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.completeExceptionally(e);
+            } catch (CompletionException e) {
+                future.completeExceptionally(e.getCause());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }));
+        return future;
+    }
+
+    private <T> T execute(String procedureName, ProcedureState state, int timeoutSeconds, ProcedureCall<T> call) {
+        state.inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        String outcome = "success";
+        try (Connection connection = dataSource.getConnection()) {
+            return storedProcedureUtil.withQueryTimeout(timeoutSeconds,
+                    () -> call.call(storedProcedureUtil, connection));
+        } catch (SQLTimeoutException e) {
+            outcome = "timeout";
+            logger.warn("存储过程执行超时, procedure={}, timeout={}s", procedureName, timeoutSeconds);
+            throw new CompletionException(e);
+        } catch (SQLException | RuntimeException e) {
+            outcome = "failure";
+            throw new CompletionException(e);
+        } finally {
+            state.inFlight.decrementAndGet();
+            Timer.builder("demo-trade.stored-procedure.latency")
+                    .tag("procedure", procedureName)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private ProcedureState newProcedureState(String procedureName) {
+        int limit = environment.getProperty(PROCEDURE_CONCURRENCY_PREFIX + procedureName, Integer.class,
+                perProcedureConcurrency);
+        ProcedureState state = new ProcedureState(limit);
+        Gauge.builder("demo-trade.stored-procedure.in-flight", state.inFlight, AtomicInteger::get)
+                .tag("procedure", procedureName)
+                .register(meterRegistry);
+        Gauge.builder("demo-trade.stored-procedure.queued", state, ProcedureState::queued)
+                .tag("procedure", procedureName)
+                .register(meterRegistry);
+        return state;
+    }
+
+    /**
+     * 使用连接执行的存储过程调用
+     */
+    @FunctionalInterface
+    public interface ProcedureCall<T> {
+
+        T call(StoredProcedureUtil util, Connection connection) throws SQLException;
+    }
+
+    /**
+     * 等待提交到执行器的调用
+     */
+    private record PendingCall(CompletableFuture<?> future, Runnable task) {
+    }
+
+    /**
+     * 存储过程的并发控制和指标
+     * 已提交到执行器的调用数不超过limit，其余调用按提交顺序排队
+     */
+    private final class ProcedureState {
+
+        private final int limit;
+
+        private final Deque<PendingCall> waiting = new ArrayDeque<>();
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /**
+         * 已提交到执行器、尚未结束的调用数，由this保护
+         */
+        private int dispatched;
+
+        private ProcedureState(int limit) {
+            this.limit = limit;
+        }
+
+        void submit(PendingCall call) {
+            synchronized (this) {
+                if (dispatched >= limit) {
+                    waiting.addLast(call);
+                    return;
+                }
+                dispatched++;
+            }
+            if (!dispatch(call)) {
+                next();
+            }
+        }
+
+        synchronized int queued() {
+            return waiting.size();
+        }
+
+        /**
+         * 提交到执行器，执行器已关闭时以异常完成调用
+         *
+         * @return 是否已提交
+         */
+        private boolean dispatch(PendingCall call) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        call.task().run();
+                    } finally {
+                        next();
+                    }
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                call.future().completeExceptionally(e);
+                return false;
+            }
+        }
+
+        /**
+         * 调用结束后提交队列中的下一个调用，队列为空时归还并发许可
+         */
+        private void next() {
+            while (true) {
+                PendingCall call;
+                synchronized (this) {
+                    call = waiting.pollFirst();
+                    if (call == null) {
+                        dispatched--;
+                        return;
+                    }
+                }
+                if (dispatch(call)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,18 +1,69 @@
 package com.example.demotrade.util;
 
 import com.alibaba.fastjson.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * 存储过程调用工具类
+ * <p>
+ * 调用语句按(存储过程名称, 参数个数)缓存；CallableStatement每次调用后关闭，
+ * 复用由驱动的cacheCallableStmts提供，关闭的语句回到驱动在物理连接上的缓存，不在应用中按连接保存
+ * <p>
+ * 结果集列信息按(存储过程名称, 结果集序号)缓存，每个结果集只校验一次元数据，逐行读取时按列序号取值；
+ * executeForRows和executeForRecords将行读取为Object[]或记录，输出参数按名称返回
+ */
 @Component
 public class StoredProcedureUtil {
     private static final Logger logger = LoggerFactory.getLogger(StoredProcedureUtil.class);
 
+    /**
+     * (存储过程名称, 参数个数) -> 调用语句
+     */
+    private final Cache<CallKey, String> callSqlCache;
+
+    /**
+     * (存储过程名称, 结果集序号) -> 列信息
+     */
+    private final Cache<MetadataKey, ResultColumns> metadataCache;
+
+    @Value("${demo-trade.stored-procedure.streaming-fetch-size:-2147483648}")
+    private int streamingFetchSize = Integer.MIN_VALUE;
+
+    @Value("${demo-trade.stored-procedure.batch-size:500}")
+    private int batchSize = 500;
+
+    /**
+     * 当前线程上调用的查询超时秒数，未设置时不限制
+     */
+    private final ThreadLocal<Integer> queryTimeout = new ThreadLocal<>();
+
+    public StoredProcedureUtil(@Value("${demo-trade.stored-procedure.call-cache-size:1000}") long callCacheSize) {
+        this.callSqlCache = Caffeine.newBuilder()
+                .maximumSize(callCacheSize)
+                .build();
+        this.metadataCache = Caffeine.newBuilder()
+                .maximumSize(callCacheSize)
+                .build();
+    }
+
     /**
      * 执行存储过程并返回结果
      *
@@ -28,74 +79,560 @@ public class StoredProcedureUtil {
                                                   List<Object> inParams,
                                                   List<Integer> outParamTypes) throws SQLException {
         List<JSONObject> result = new ArrayList<>();
+        JSONObject outParams = executeStoredProcedure(connection, procedureName, inParams, outParamTypes, 0,
+                (resultSetIndex, row) -> result.add(row));
         
-        // 构建存储过程调用SQL
-        StringBuilder sql = new StringBuilder("{call " + procedureName + "(");
-        int totalParams = (inParams != null ? inParams.size() : 0) + (outParamTypes != null ? outParamTypes.size() : 0);
-        for (int i = 0; i < totalParams; i++) {
-            if (i > 0) {
-                sql.append(",");
-            }
-            sql.append("?");
+        // 输出参数排在结果集之前
+        if (!outParams.isEmpty()) {
+            result.add(0, outParams);
         }
-        sql.append(")}");
+        return result;
+    }
 
-        try (CallableStatement stmt = connection.prepareCall(sql.toString())) {
-            // 设置输入参数
-            int paramIndex = 1;
-            if (inParams != null) {
-                for (Object param : inParams) {
-                    stmt.setObject(paramIndex++, param);
-                }
+    /**
+     * 执行存储过程，逐行把结果集推送给回调，不在内存中保留结果
+     * 输出参数在全部结果集处理完后读取
+     * <p>
+     * MySQL驱动的CallableStatement不使用服务端游标，fetchSize为Integer.MIN_VALUE时才逐行流式读取，
+     * 此时在结果集处理完之前同一连接上不能执行其它语句
+     *
+     * @param connection 数据库连接
+     * @param procedureName 存储过程名称
+     * @param inParams 输入参数列表
+     * @param outParamTypes 输出参数类型列表
+     * @param fetchSize 每次从数据库获取的行数，为0时使用驱动默认值
+     * @param callback 行回调
+     * @return 输出参数，键为param_序号
+     * @throws SQLException SQL异常
+     */
+    public JSONObject executeStoredProcedure(Connection connection,
+                                             String procedureName,
+                                             List<Object> inParams,
+                                             List<Integer> outParamTypes,
+                                             int fetchSize,
+                                             RowCallback callback) throws SQLException {
+        Object[] outValues = execute(connection, procedureName, inParams, outParamTypes, fetchSize,
+                (resultSetIndex, rs, columns) -> {
+                    while (rs.next()) {
+                        callback.onRow(resultSetIndex, readRow(rs, columns));
+                    }
+                });
+        return toJson(outValues);
+    }
+
+    /**
+     * 执行存储过程，每行读取为按列序号排列的Object[]
+     *
+     * @param connection 数据库连接
+     * @param procedureName 存储过程名称
+     * @param inParams 输入参数列表
+     * @param outParams 输出参数列表
+     * @return 各结果集的行、列信息和按名称索引的输出参数
+     * @throws SQLException SQL异常
+     */
+    public ProcedureResult<Object[]> executeForRows(Connection connection,
+                                                    String procedureName,
+                                                    List<Object> inParams,
+                                                    List<OutParameter> outParams) throws SQLException {
+        return executeForResult(connection, procedureName, inParams, outParams, columns -> rs -> {
+            Object[] row = new Object[columns.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = rs.getObject(i + 1);
             }
+            return row;
+        });
+    }
 
-            // 注册输出参数
-            if (outParamTypes != null) {
-                for (Integer paramType : outParamTypes) {
-                    stmt.registerOutParameter(paramIndex++, paramType);
+    /**
+     * 执行存储过程，每行映射为指定的记录类型
+     * 记录组件按名称对应列标签，忽略大小写和下划线；所有结果集都必须包含记录的全部组件
+     *
+     * @param connection 数据库连接
+     * @param procedureName 存储过程名称
+     * @param inParams 输入参数列表
+     * @param outParams 输出参数列表
+     * @param recordType 记录类型
+     * @return 各结果集的行、列信息和按名称索引的输出参数
+     * @throws SQLException SQL异常
+     */
+    public <T extends Record> ProcedureResult<T> executeForRecords(Connection connection,
+                                                                   String procedureName,
+                                                                   List<Object> inParams,
+                                                                   List<OutParameter> outParams,
+                                                                   Class<T> recordType) throws SQLException {
+        return executeForResult(connection, procedureName, inParams, outParams,
+                columns -> columns.recordMapper(recordType)::map);
+    }
+
+    /**
+     * 以Stream的形式逐行读取存储过程的结果集，多个结果集的行依次拼接
+     * 返回的Stream持有CallableStatement，调用方必须在try-with-resources中使用；
+     * 输出参数在全部行读取完后传给outParamsConsumer，提前关闭Stream时不会读取
+     *
+     * @param connection 数据库连接
+     * @param procedureName 存储过程名称
+     * @param inParams 输入参数列表
+     * @param outParamTypes 输出参数类型列表
+     * @param outParamsConsumer 输出参数回调，可以为null
+     * @return 结果行流
+     * @throws SQLException SQL异常
+     */
+    public Stream<JSONObject> streamStoredProcedure(Connection connection,
+                                                    String procedureName,
+                                                    List<Object> inParams,
+                                                    List<Integer> outParamTypes,
+                                                    Consumer<JSONObject> outParamsConsumer) throws SQLException {
+        // Stream的生命周期由调用方控制，语句在Stream关闭时关闭
+        CallableStatement stmt = connection.prepareCall(callSql(procedureName, paramCount(inParams, outParamTypes)));
+        try {
+            bindParameters(stmt, inParams, outParamTypes);
+            stmt.setFetchSize(streamingFetchSize);
+            boolean hasResults = stmt.execute();
+            ResultSetSpliterator spliterator = new ResultSetSpliterator(procedureName, stmt, hasResults, () -> {
+                if (outParamsConsumer != null) {
+                    outParamsConsumer.accept(toJson(readOutValues(stmt, inParams, outParamTypes)));
                 }
+            });
+            return StreamSupport.stream(spliterator, false).onClose(() -> closeQuietly(stmt));
+        } catch (SQLException | RuntimeException e) {
+            logger.error("执行存储过程失败: {}", e.getMessage(), e);
+            closeQuietly(stmt);
+            throw e;
+        }
+    }
+
+    /**
+     * 以JDBC批处理多次执行同一个存储过程，按batch-size分块调用executeBatch
+     * 批处理不支持输出参数和结果集，适合只做写入的存储过程；不提交事务，由调用方控制
+     * <p>
+     * 单条失败不影响其它参数组：驱动在失败后继续执行时，失败项的更新数为Statement.EXECUTE_FAILED；
+     * 驱动在第一条失败处停止时，失败项之后的参数组重新分块执行
+     *
+     * @param connection 数据库连接
+     * @param procedureName 存储过程名称
+     * @param paramSets 输入参数组列表，每组参数个数必须相同
+     * @return 每组参数的更新数和失败原因
+     * @throws SQLException 批处理以外的SQL异常，如连接中断
+     */
+    public BatchResult executeBatch(Connection connection,
+                                    String procedureName,
+                                    List<List<Object>> paramSets) throws SQLException {
+        int[] updateCounts = new int[paramSets.size()];
+        Map<Integer, SQLException> failures = new TreeMap<>();
+        if (paramSets.isEmpty()) {
+            return new BatchResult(updateCounts, failures);
+        }
+        int paramCount = paramSets.get(0).size();
+        for (List<Object> params : paramSets) {
+            if (params.size() != paramCount) {
+                throw new IllegalArgumentException("All parameter sets of " + procedureName
+                        + " must have " + paramCount + " parameters");
             }
+        }
 
-            // 执行存储过程
-            boolean hasResults = stmt.execute();
+        String sql = callSql(procedureName, paramCount);
+        try (CallableStatement stmt = prepareCall(connection, sql)) {
+            int from = 0;
+            while (from < paramSets.size()) {
+                from = executeChunk(stmt, paramSets, from, Math.min(from + batchSize, paramSets.size()),
+                        updateCounts, failures);
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.error("批量执行存储过程失败: {}", e.getMessage(), e);
+            throw e;
+        }
+        if (!failures.isEmpty()) {
+            logger.warn("批量执行存储过程部分失败, procedure={}, total={}, failed={}",
+                    procedureName, paramSets.size(), failures.size());
+        }
+        return new BatchResult(updateCounts, failures);
+    }
 
-            // 获取输出参数值
-            if (outParamTypes != null) {
-                JSONObject outParams = new JSONObject();
-                paramIndex = (inParams != null ? inParams.size() : 0) + 1;
-                for (int i = 0; i < outParamTypes.size(); i++) {
-                    outParams.put("param_" + i, stmt.getObject(paramIndex++));
-                }
-                if (!outParams.isEmpty()) {
-                    result.add(outParams);
+    /**
+     * 执行[from, to)范围内的参数组
+     *
+     * @return 下一个待执行的参数组下标
+     */
+    private static int executeChunk(CallableStatement stmt, List<List<Object>> paramSets, int from, int to,
+                                    int[] updateCounts, Map<Integer, SQLException> failures) throws SQLException {
+        for (int i = from; i < to; i++) {
+            bindParameters(stmt, paramSets.get(i), null);
+            stmt.addBatch();
+        }
+        try {
+            int[] counts = stmt.executeBatch();
+            System.arraycopy(counts, 0, updateCounts, from, counts.length);
+            return to;
+        } catch (BatchUpdateException e) {
+            stmt.clearBatch();
+            int[] counts = e.getUpdateCounts() != null ? e.getUpdateCounts() : new int[0];
+            for (int i = 0; i < counts.length; i++) {
+                updateCounts[from + i] = counts[i];
+                if (counts[i] == Statement.EXECUTE_FAILED) {
+                    failures.put(from + i, e);
                 }
             }
+            int failed = from + counts.length;
+            if (failed >= to) {
+                return to;
+            }
+            // 驱动在第一条失败处停止，该条记为失败，之后的参数组重新执行
+            updateCounts[failed] = Statement.EXECUTE_FAILED;
+            failures.put(failed, e);
+            return failed + 1;
+        }
+    }
+
+    private <T> ProcedureResult<T> executeForResult(Connection connection,
+                                                    String procedureName,
+                                                    List<Object> inParams,
+                                                    List<OutParameter> outParams,
+                                                    Function<ResultColumns, RowReader<T>> readers) throws SQLException {
+        List<Integer> outParamTypes = new ArrayList<>(outParams != null ? outParams.size() : 0);
+        if (outParams != null) {
+            for (OutParameter outParam : outParams) {
+                outParamTypes.add(outParam.sqlType());
+            }
+        }
+
+        List<List<T>> resultSets = new ArrayList<>();
+        List<ResultColumns> resultColumns = new ArrayList<>();
+        Object[] outValues = execute(connection, procedureName, inParams, outParamTypes, 0,
+                (resultSetIndex, rs, columns) -> {
+                    RowReader<T> reader = readers.apply(columns);
+                    List<T> rows = new ArrayList<>();
+                    while (rs.next()) {
+                        rows.add(reader.read(rs));
+                    }
+                    resultSets.add(rows);
+                    resultColumns.add(columns);
+                });
+
+        Map<String, Object> namedOutValues = new LinkedHashMap<>();
+        for (int i = 0; i < outValues.length; i++) {
+            namedOutValues.put(outParams.get(i).name(), outValues[i]);
+        }
+        return new ProcedureResult<>(resultSets, resultColumns, namedOutValues);
+    }
+
+    /**
+     * 执行存储过程，依次把每个结果集交给handler处理，全部处理完后读取输出参数
+     *
+     * @return 输出参数值，按注册顺序排列
+     */
+    private Object[] execute(Connection connection,
+                             String procedureName,
+                             List<Object> inParams,
+                             List<Integer> outParamTypes,
+                             int fetchSize,
+                             ResultSetHandler handler) throws SQLException {
+        String sql = callSql(procedureName, paramCount(inParams, outParamTypes));
+        try (CallableStatement stmt = prepareCall(connection, sql)) {
+            bindParameters(stmt, inParams, outParamTypes);
+            stmt.setFetchSize(fetchSize);
 
             // 处理所有结果集
+            boolean hasResults = stmt.execute();
+            int resultSetIndex = 0;
             while (hasResults) {
-                ResultSet rs = stmt.getResultSet();
-                if (rs != null) {
-                    ResultSetMetaData metaData = rs.getMetaData();
-                    int columnCount = metaData.getColumnCount();
-                    
-                    while (rs.next()) {
-                        JSONObject row = new JSONObject();
-                        for (int i = 1; i <= columnCount; i++) {
-                            String columnName = metaData.getColumnName(i);
-                            Object value = rs.getObject(i);
-                            row.put(columnName, value);
-                        }
-                        result.add(row);
+                try (ResultSet rs = stmt.getResultSet()) {
+                    if (rs != null) {
+                        handler.handle(resultSetIndex, rs, columnsOf(procedureName, resultSetIndex, rs.getMetaData()));
                     }
                 }
+                resultSetIndex++;
                 hasResults = stmt.getMoreResults();
             }
 
-        } catch (SQLException e) {
+            return readOutValues(stmt, inParams, outParamTypes);
+        } catch (SQLException | RuntimeException e) {
             logger.error("执行存储过程失败: {}", e.getMessage(), e);
             throw e;
         }
+    }
 
-        return result;
+    /**
+     * 获取缓存的结果集列信息，元数据与缓存不一致时重新读取
+     */
+    ResultColumns columnsOf(String procedureName, int resultSetIndex, ResultSetMetaData metaData) throws SQLException {
+        MetadataKey key = new MetadataKey(procedureName, resultSetIndex);
+        ResultColumns columns = metadataCache.getIfPresent(key);
+        if (columns == null || !columns.matches(metaData)) {
+            columns = ResultColumns.of(metaData);
+            metadataCache.put(key, columns);
+        }
+        return columns;
+    }
+
+    /**
+     * 获取调用语句，形如{call name(?,?)}
+     */
+    String callSql(String procedureName, int paramCount) {
+        return callSqlCache.get(new CallKey(procedureName, paramCount), key -> {
+            StringBuilder sql = new StringBuilder(procedureName.length() + paramCount * 2 + 10);
+            sql.append("{call ").append(procedureName).append('(');
+            for (int i = 0; i < paramCount; i++) {
+                if (i > 0) {
+                    sql.append(',');
+                }
+                sql.append('?');
+            }
+            return sql.append(")}").toString();
+        });
+    }
+
+    /**
+     * 创建CallableStatement并设置当前线程上的查询超时，由调用方关闭
+     * 开启cacheCallableStmts时驱动从物理连接的缓存中取出已解析的语句
+     */
+    CallableStatement prepareCall(Connection connection, String sql) throws SQLException {
+        CallableStatement stmt = connection.prepareCall(sql);
+        // 驱动缓存的语句保留上一次调用的设置，每次都重新设置超时
+        Integer timeout = queryTimeout.get();
+        stmt.setQueryTimeout(timeout != null ? timeout : 0);
+        return stmt;
+    }
+
+    /**
+     * 在当前线程上以指定的查询超时执行调用，供StoredProcedureExecutor使用
+     *
+     * @param seconds 查询超时秒数，0表示不限制
+     */
+    <T> T withQueryTimeout(int seconds, SqlCallable<T> call) throws SQLException {
+        Integer previous = queryTimeout.get();
+        queryTimeout.set(seconds);
+        try {
+            return call.call();
+        } finally {
+            if (previous != null) {
+                queryTimeout.set(previous);
+            } else {
+                queryTimeout.remove();
+            }
+        }
+    }
+
+    private static int paramCount(List<Object> inParams, List<Integer> outParamTypes) {
+        return (inParams != null ? inParams.size() : 0) + (outParamTypes != null ? outParamTypes.size() : 0);
+    }
+
+    /**
+     * 设置输入参数并注册输出参数
+     */
+    private static void bindParameters(CallableStatement stmt, List<Object> inParams,
+                                       List<Integer> outParamTypes) throws SQLException {
+        int paramIndex = 1;
+        if (inParams != null) {
+            for (Object param : inParams) {
+                stmt.setObject(paramIndex++, param);
+            }
+        }
+        if (outParamTypes != null) {
+            for (Integer paramType : outParamTypes) {
+                stmt.registerOutParameter(paramIndex++, paramType);
+            }
+        }
+    }
+
+    private static Object[] readOutValues(CallableStatement stmt, List<Object> inParams,
+                                          List<Integer> outParamTypes) throws SQLException {
+        if (outParamTypes == null) {
+            return new Object[0];
+        }
+        Object[] outValues = new Object[outParamTypes.size()];
+        int paramIndex = (inParams != null ? inParams.size() : 0) + 1;
+        for (int i = 0; i < outValues.length; i++) {
+            outValues[i] = stmt.getObject(paramIndex++);
+        }
+        return outValues;
+    }
+
+    private static JSONObject toJson(Object[] outValues) {
+        JSONObject outParams = new JSONObject();
+        for (int i = 0; i < outValues.length; i++) {
+            outParams.put("param_" + i, outValues[i]);
+        }
+        return outParams;
+    }
+
+    private static JSONObject readRow(ResultSet rs, ResultColumns columns) throws SQLException {
+        int columnCount = columns.size();
+        JSONObject row = new JSONObject(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            row.put(columns.name(i), rs.getObject(i + 1));
+        }
+        return row;
+    }
+
+    private static void closeQuietly(Statement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            logger.warn("关闭存储过程语句失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 结果行回调
+     */
+    @FunctionalInterface
+    public interface RowCallback {
+
+        /**
+         * @param resultSetIndex 结果集序号，从0开始
+         * @param row 结果行
+         */
+        void onRow(int resultSetIndex, JSONObject row) throws SQLException;
+    }
+
+    /**
+     * 依次读取语句的所有结果集，每次只持有当前行
+     */
+    private final class ResultSetSpliterator extends Spliterators.AbstractSpliterator<JSONObject> {
+
+        private final String procedureName;
+
+        private final CallableStatement stmt;
+
+        private final SqlAction onExhausted;
+
+        private boolean hasResults;
+
+        private ResultSet rs;
+
+        private ResultColumns columns;
+
+        private int resultSetIndex;
+
+        private boolean exhausted;
+
+        ResultSetSpliterator(String procedureName, CallableStatement stmt, boolean hasResults, SqlAction onExhausted) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.procedureName = procedureName;
+            this.stmt = stmt;
+            this.hasResults = hasResults;
+            this.onExhausted = onExhausted;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super JSONObject> action) {
+            if (exhausted) {
+                return false;
+            }
+            try {
+                while (true) {
+                    if (rs == null) {
+                        if (!hasResults) {
+                            exhausted = true;
+                            onExhausted.run();
+                            return false;
+                        }
+                        rs = stmt.getResultSet();
+                        if (rs == null) {
+                            resultSetIndex++;
+                            hasResults = stmt.getMoreResults();
+                            continue;
+                        }
+                        columns = columnsOf(procedureName, resultSetIndex, rs.getMetaData());
+                    }
+                    if (rs.next()) {
+                        action.accept(readRow(rs, columns));
+                        return true;
+                    }
+                    rs.close();
+                    rs = null;
+                    resultSetIndex++;
+                    hasResults = stmt.getMoreResults();
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to read stored procedure result: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 输出参数
+     *
+     * @param name 参数名称，作为ProcedureResult.outParameters的键
+     * @param sqlType java.sql.Types中的类型
+     */
+    public record OutParameter(String name, int sqlType) {
+    }
+
+    /**
+     * 存储过程执行结果
+     *
+     * @param resultSets 各结果集的行
+     * @param columns 各结果集的列信息，与resultSets一一对应
+     * @param outParameters 参数名称 -> 输出参数值
+     */
+    public record ProcedureResult<T>(List<List<T>> resultSets, List<ResultColumns> columns,
+                                     Map<String, Object> outParameters) {
+
+        /**
+         * @return 第一个结果集的行，没有结果集时返回空列表
+         */
+        public List<T> rows() {
+            return resultSets.isEmpty() ? List.of() : resultSets.get(0);
+        }
+    }
+
+    /**
+     * 批量执行结果
+     *
+     * @param updateCounts 每组参数的更新数，与参数组一一对应，失败项为Statement.EXECUTE_FAILED
+     * @param failures 失败的参数组下标 -> 失败原因
+     */
+    public record BatchResult(int[] updateCounts, Map<Integer, SQLException> failures) {
+
+        /**
+         * @return 是否有参数组执行失败
+         */
+        public boolean hasFailures() {
+            return !failures.isEmpty();
+        }
+
+        /**
+         * @return 执行成功的参数组数
+         */
+        public int successCount() {
+            return updateCounts.length - failures.size();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResultSetHandler {
+
+        void handle(int resultSetIndex, ResultSet rs, ResultColumns columns) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface RowReader<T> {
+
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface SqlCallable<T> {
+
+        T call() throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface SqlAction {
+
+        void run() throws SQLException;
+    }
+
+    /**
+     * 列信息缓存键
+     */
+    private record MetadataKey(String procedureName, int resultSetIndex) {
+    }
+
+    /**
+     * 调用语句缓存键
+     */
+    private record CallKey(String procedureName, int paramCount) {
     }
-}
\ No newline at end of file
+}
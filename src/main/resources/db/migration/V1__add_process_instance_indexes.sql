@@ -0,0 +1,12 @@
+-- 流程实例表索引，与ProcessInstanceEntity上声明的索引一致
+-- 未开启ddl-auto的环境需手工执行
+
+-- findByStatus、按状态的游标分页和流式查询
+CREATE INDEX idx_instance_status_create ON process_instance (status, create_time, id);
+
+-- findByBusinessId、findByBusinessIdAndStatus、按业务ID的游标分页和流式查询
+-- 同一业务ID的实例很少，status不单独建索引
+CREATE INDEX idx_instance_business_create ON process_instance (business_id, create_time, id);
+
+-- findByProcessDefinitionId、按流程定义ID和业务ID查询最新实例
+CREATE INDEX idx_instance_definition_business_create ON process_instance (process_definition_id, business_id, create_time);
@@ -0,0 +1,24 @@
+-- 流程实例历史表，保存归档的已完成和已终止流程实例
+-- 按结束时间的月份分区，月分区由ProcessInstanceArchiver从p_future中拆分创建，超过保留期的月分区整体删除
+CREATE TABLE IF NOT EXISTS process_instance_history (
+    id VARCHAR(255) NOT NULL COMMENT '流程实例ID',
+    process_definition_id VARCHAR(255) COMMENT '流程定义ID',
+    process_definition_version INT COMMENT '流程定义版本',
+    business_id VARCHAR(255) COMMENT '业务ID',
+    current_node_id VARCHAR(255) COMMENT '当前节点ID',
+    status VARCHAR(255) COMMENT '流程状态',
+    variables_json TEXT COMMENT '归档时的全部流程变量',
+    tokens_json TEXT COMMENT '分支令牌',
+    start_time DATETIME(6) COMMENT '开始时间',
+    end_time DATETIME(6) NOT NULL COMMENT '结束时间',
+    create_time DATETIME(6) COMMENT '创建时间',
+    update_time DATETIME(6) COMMENT '更新时间',
+    error_message TEXT COMMENT '错误信息',
+    version BIGINT NOT NULL DEFAULT 0 COMMENT '归档时的版本号',
+    archive_time DATETIME(6) NOT NULL COMMENT '归档时间',
+    PRIMARY KEY (id, end_time),
+    KEY idx_history_business (business_id, create_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='流程实例历史表'
+PARTITION BY RANGE (TO_DAYS(end_time)) (
+    PARTITION p_future VALUES LESS THAN MAXVALUE
+);
@@ -0,0 +1,3 @@
+-- 流程实例分布式锁fencing token，与ProcessInstanceEntity.fencingToken一致
+-- 未开启ddl-auto的环境需手工执行
+ALTER TABLE process_instance ADD COLUMN fencing_token BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,5 @@
+-- 流程变量和流程节点的二进制列，与ProcessInstanceEntity.variablesData、ProcessDefinitionEntity.nodesData一致
+-- 格式见PayloadCodec，不为NULL时优先于对应的文本列；未开启ddl-auto的环境需手工执行
+ALTER TABLE process_instance ADD COLUMN variables_data LONGBLOB AFTER variables_json;
+ALTER TABLE process_instance_history ADD COLUMN variables_data LONGBLOB AFTER variables_json;
+ALTER TABLE process_definition ADD COLUMN nodes_data LONGBLOB AFTER nodes_json;
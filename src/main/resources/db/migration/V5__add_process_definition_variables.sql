@@ -0,0 +1,3 @@
+-- 流程定义的变量声明，与ProcessDefinitionEntity.variablesJson一致；为NULL表示未声明变量，实例变量按Map保存
+-- 未开启ddl-auto的环境需手工执行
+ALTER TABLE process_definition ADD COLUMN variables_json TEXT AFTER nodes_data;
@@ -0,0 +1,3 @@
+-- 发布时编译的执行计划，与ProcessDefinitionEntity.executionPlan一致，格式见ExecutionPlan.toBytes
+-- 为NULL的流程定义（迁移前发布或尚未发布）在执行时编译；未开启ddl-auto的环境需手工执行
+ALTER TABLE process_definition ADD COLUMN execution_plan BLOB AFTER variables_json;
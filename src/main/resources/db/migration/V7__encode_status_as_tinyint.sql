@@ -0,0 +1,30 @@
+-- 状态列由枚举名称改为TINYINT编码，编码与InstanceStatus、DefinitionStatus一致，已使用的编码不得修改
+-- 每行缩短为1字节，idx_instance_status_create的索引项随之变小；ddl-auto不会修改已有列的类型，需手工执行
+-- 先把名称改写为编码，再修改列类型，执行期间旧版本节点无法读写状态，需停机或在所有节点升级后执行
+UPDATE process_instance SET status = CASE status
+    WHEN 'RUNNING' THEN '1'
+    WHEN 'SUSPENDED' THEN '2'
+    WHEN 'COMPLETED' THEN '3'
+    WHEN 'TERMINATED' THEN '4'
+    WHEN 'FAILED' THEN '5'
+    END
+WHERE status IS NOT NULL;
+ALTER TABLE process_instance MODIFY COLUMN status TINYINT;
+
+UPDATE process_instance_history SET status = CASE status
+    WHEN 'RUNNING' THEN '1'
+    WHEN 'SUSPENDED' THEN '2'
+    WHEN 'COMPLETED' THEN '3'
+    WHEN 'TERMINATED' THEN '4'
+    WHEN 'FAILED' THEN '5'
+    END
+WHERE status IS NOT NULL;
+ALTER TABLE process_instance_history MODIFY COLUMN status TINYINT COMMENT '流程状态';
+
+UPDATE process_definition SET status = CASE status
+    WHEN 'DRAFT' THEN '1'
+    WHEN 'PUBLISHED' THEN '2'
+    WHEN 'DEPRECATED' THEN '3'
+    END
+WHERE status IS NOT NULL;
+ALTER TABLE process_definition MODIFY COLUMN status TINYINT;
@@ -0,0 +1,14 @@
+-- 流程节点定时器，与ProcessTimerEntity一致；未开启ddl-auto的环境需手工执行
+-- 启动时按(due_time, id)分页加载，已过期的定时器在最前面
+CREATE TABLE IF NOT EXISTS process_timer (
+    id VARCHAR(128) NOT NULL COMMENT '流程实例ID:定时器类型',
+    process_instance_id VARCHAR(64) NOT NULL COMMENT '流程实例ID',
+    node_id VARCHAR(255) COMMENT '设置定时器时所在的节点',
+    timer_type VARCHAR(16) NOT NULL COMMENT '定时器类型：TIMEOUT、RETRY',
+    attempt INT NOT NULL COMMENT '重试次数',
+    due_time DATETIME(6) NOT NULL COMMENT '到期时间',
+    create_time DATETIME(6) COMMENT '创建时间',
+    PRIMARY KEY (id),
+    KEY idx_timer_due (due_time, id),
+    KEY idx_timer_instance (process_instance_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='流程节点定时器';
@@ -51,7 +51,7 @@ CREATE TABLE IF NOT EXISTS process_instance (
 -- 流程变量表
 CREATE TABLE IF NOT EXISTS process_variable (
     id BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT '主键ID',
-    process_instance_id BIGINT NOT NULL COMMENT '流程实例ID',
+    process_instance_id VARCHAR(64) NOT NULL COMMENT '流程实例ID',
     variable_name VARCHAR(64) NOT NULL COMMENT '变量名称',
     variable_value TEXT NOT NULL COMMENT '变量值',
     variable_type VARCHAR(32) NOT NULL COMMENT '变量类型',
@@ -59,6 +59,5 @@ CREATE TABLE IF NOT EXISTS process_variable (
     modifier VARCHAR(64) COMMENT '修改人',
     gmt_create DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     gmt_modified DATETIME ON UPDATE CURRENT_TIMESTAMP COMMENT '修改时间',
-    UNIQUE KEY uk_instance_name (process_instance_id, variable_name),
-    FOREIGN KEY (process_instance_id) REFERENCES process_instance(id)
+    UNIQUE KEY uk_instance_name (process_instance_id, variable_name)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='流程变量表';
\ No newline at end of file
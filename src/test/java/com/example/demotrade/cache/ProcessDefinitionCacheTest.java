@@ -0,0 +1,176 @@
+package com.example.demotrade.cache;
+
+import com.example.demotrade.model.ProcessDefinition;
+import com.example.demotrade.model.ProcessNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 流程定义缓存的单元测试类
+ */
+public class ProcessDefinitionCacheTest {
+
+    private ProcessDefinitionCache cache;
+
+    private RTopic topic;
+
+    private MessageListener<String> listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        topic = mock(RTopic.class);
+        when(redissonClient.getTopic(anyString(), eq(StringCodec.INSTANCE))).thenReturn(topic);
+        when(topic.addListener(eq(String.class), any(MessageListener.class))).thenAnswer(invocation -> {
+            listener = invocation.getArgument(1);
+            return 1;
+        });
+
+        cache = new ProcessDefinitionCache();
+        ReflectionTestUtils.setField(cache, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maximumSize", 100L);
+        ReflectionTestUtils.setField(cache, "invalidationTopic", "test-topic");
+        cache.init();
+    }
+
+    /**
+     * 测试按版本缓存，重复读取只加载一次
+     */
+    @Test
+    public void testGetLoadsOnce() {
+        AtomicInteger loads = new AtomicInteger();
+
+        ProcessDefinition first = cache.get("process-001", 1, () -> {
+            loads.incrementAndGet();
+            return createDefinition("process-001", 1);
+        });
+        ProcessDefinition second = cache.get("process-001", 1, () -> {
+            loads.incrementAndGet();
+            return createDefinition("process-001", 1);
+        });
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertThrows(UnsupportedOperationException.class, () -> first.getNodes().add(new ProcessNode()));
+        assertThrows(UnsupportedOperationException.class, () -> first.getNodes().get(0).getNextNodes().add("x"));
+        assertThrows(UnsupportedOperationException.class, () -> first.setStatus("DEPRECATED"));
+        assertThrows(UnsupportedOperationException.class, () -> first.getNodes().get(0).setType("END"));
+
+        ProcessDefinition copy = first.copy();
+        copy.setStatus("DEPRECATED");
+        copy.getNodes().get(0).getNextNodes().add("x");
+        assertNotEquals("DEPRECATED", first.getStatus());
+        assertFalse(first.getNodes().get(0).getNextNodes().contains("x"));
+    }
+
+    /**
+     * 测试不存在的流程定义不会被缓存
+     */
+    @Test
+    public void testMissingDefinitionNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.get("process-001", 1, () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNull(cache.get("process-001", 1, () -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * 测试最新版本指针命中后按版本读取缓存
+     */
+    @Test
+    public void testGetLatestUsesPointer() {
+        AtomicInteger loads = new AtomicInteger();
+
+        ProcessDefinition latest = cache.getLatest("process-001", () -> {
+            loads.incrementAndGet();
+            return createDefinition("process-001", 2);
+        }, version -> fail("不应按版本加载"));
+        ProcessDefinition again = cache.getLatest("process-001",
+                () -> fail("不应重新加载最新版本"),
+                version -> fail("不应按版本加载"));
+
+        assertSame(latest, again);
+        assertEquals(1, loads.get());
+        assertSame(latest, cache.get("process-001", 2, () -> fail("不应重新加载")));
+    }
+
+    /**
+     * 测试本地失效并广播失效消息
+     */
+    @Test
+    public void testInvalidatePublishesMessage() {
+        cache.get("process-001", 1, () -> createDefinition("process-001", 1));
+
+        cache.invalidate("process-001", 1);
+
+        verify(topic).publish("process-001:1");
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("process-001", 1, () -> {
+            loads.incrementAndGet();
+            return createDefinition("process-001", 1);
+        });
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * 测试收到其他节点的失效消息后失效本地缓存
+     */
+    @Test
+    public void testRemoteInvalidation() {
+        cache.getLatest("process-001", () -> createDefinition("process-001", 1), version -> null);
+
+        listener.onMessage("test-topic", "process-001:1");
+
+        AtomicInteger loads = new AtomicInteger();
+        cache.getLatest("process-001", () -> {
+            loads.incrementAndGet();
+            return createDefinition("process-001", 2);
+        }, version -> null);
+        assertEquals(1, loads.get());
+    }
+
+    private ProcessDefinition createDefinition(String id, int version) {
+        ProcessDefinition definition = new ProcessDefinition();
+        definition.setId(id);
+        definition.setVersion(version);
+        definition.setStatus("PUBLISHED");
+
+        ProcessNode startNode = new ProcessNode();
+        startNode.setId("start");
+        startNode.setType("START");
+        startNode.getNextNodes().add("end");
+        definition.getNodes().add(startNode);
+
+        ProcessNode endNode = new ProcessNode();
+        endNode.setId("end");
+        endNode.setType("END");
+        definition.getNodes().add(endNode);
+        return definition;
+    }
+}
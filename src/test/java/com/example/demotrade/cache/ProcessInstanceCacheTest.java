@@ -0,0 +1,215 @@
+package com.example.demotrade.cache;
+
+import com.example.demotrade.model.ProcessInstance;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RBucket;
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 流程实例两级缓存的单元测试类
+ */
+public class ProcessInstanceCacheTest {
+
+    private ProcessInstanceCache cache;
+
+    private RTopic topic;
+
+    private MessageListener<String> listener;
+
+    private final Map<String, String> redis = new HashMap<>();
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        topic = mock(RTopic.class);
+        when(redissonClient.getTopic(anyString(), eq(StringCodec.INSTANCE))).thenReturn(topic);
+        when(topic.addListener(eq(String.class), any(MessageListener.class))).thenAnswer(invocation -> {
+            listener = invocation.getArgument(1);
+            return 1;
+        });
+        // 以Map模拟Redis中的字符串值
+        when(redissonClient.<String>getBucket(anyString(), eq(StringCodec.INSTANCE))).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            RBucket<String> bucket = mock(RBucket.class);
+            when(bucket.get()).thenAnswer(get -> redis.get(key));
+            when(bucket.delete()).thenAnswer(delete -> redis.remove(key) != null);
+            return bucket;
+        });
+        // 按脚本的语义比较版本号后写入
+        RScript script = mock(RScript.class);
+        when(redissonClient.getScript(StringCodec.INSTANCE)).thenReturn(script);
+        when(script.eval(anyString(), eq(RScript.Mode.READ_WRITE), anyString(), eq(RScript.ReturnType.INTEGER),
+                anyList(), any(), any(), any())).thenAnswer(invocation -> {
+                    String key = invocation.getArgument(0);
+                    String current = redis.get(key);
+                    if (current != null && objectMapper.readTree(current).path("version").asLong()
+                            > Long.parseLong(invocation.getArgument(6))) {
+                        return 0L;
+                    }
+                    redis.put(key, invocation.getArgument(5));
+                    return 1L;
+                });
+
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ProcessInstanceCache();
+        ReflectionTestUtils.setField(cache, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cache, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(cache, "l1MaximumSize", 100L);
+        ReflectionTestUtils.setField(cache, "l1Ttl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(cache, "ownedTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(cache, "l2Ttl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(cache, "invalidationTopic", "test-topic");
+        cache.init();
+    }
+
+    /**
+     * 测试L1命中时不访问数据库，返回的副本互不影响
+     */
+    @Test
+    public void testGetLoadsOnceAndReturnsCopies() {
+        AtomicInteger loads = new AtomicInteger();
+
+        ProcessInstance first = cache.get("instance-001", () -> {
+            loads.incrementAndGet();
+            return createInstance("instance-001", 1L);
+        });
+        first.getVariables().put("amount", 9999);
+        ProcessInstance second = cache.get("instance-001", () -> {
+            loads.incrementAndGet();
+            return createInstance("instance-001", 1L);
+        });
+
+        assertEquals(1, loads.get());
+        assertEquals(100, second.getVariables().get("amount"));
+        assertEquals(second.getVariables(), second.getPersistedVariables());
+        assertTrue(redis.containsKey("demo-trade:process-instance:instance-001"));
+    }
+
+    /**
+     * 测试其它节点的失效消息只淘汰L1，之后从L2读取并记录命中
+     */
+    @Test
+    public void testRemoteInvalidationFallsBackToL2() {
+        cache.get("instance-001", () -> createInstance("instance-001", 1L));
+
+        listener.onMessage("test-topic", "other-node|instance-001");
+        ProcessInstance fromL2 = cache.get("instance-001", () -> fail("must be served from L2"));
+
+        assertEquals(1L, fromL2.getVersion());
+        assertEquals(100, fromL2.getVariables().get("amount"));
+        // 第一次读取L2未命中，第二次命中
+        assertEquals(0.5, meterRegistry.get("demo-trade.instance-cache.l2.hit.ratio").gauge().value());
+    }
+
+    /**
+     * 测试修改后写入新状态并广播失效消息，自己发出的消息不会淘汰L1
+     */
+    @Test
+    public void testPutWritesThroughAndPublishes() {
+        cache.get("instance-001", () -> createInstance("instance-001", 1L));
+
+        cache.put(createInstance("instance-001", 2L));
+        verify(topic).publish(endsWith("|instance-001"));
+        redis.clear();
+
+        assertEquals(2L, cache.get("instance-001", () -> null).getVersion());
+    }
+
+    /**
+     * 测试读取期间提交的修改已写入L2时，读取加载的旧状态不覆盖L2
+     */
+    @Test
+    public void testLoadDoesNotOverwriteNewerL2() {
+        ProcessInstance stale = cache.get("instance-001", () -> {
+            // 加载旧状态之后、写入缓存之前，其它节点提交了新版本
+            redis.put("demo-trade:process-instance:instance-001",
+                    "{\"id\":\"instance-001\",\"status\":\"RUNNING\",\"version\":2}");
+            return createInstance("instance-001", 1L);
+        });
+        assertEquals(1L, stale.getVersion());
+
+        listener.onMessage("test-topic", "other-node|instance-001");
+
+        assertEquals(2L, cache.get("instance-001", () -> fail("must be served from L2")).getVersion());
+    }
+
+    /**
+     * 测试锁外晚到的旧版本不覆盖L2中的新版本
+     */
+    @Test
+    public void testPutDoesNotOverwriteNewerL2() {
+        cache.put(createInstance("instance-001", 3L));
+        cache.put(createInstance("instance-001", 2L));
+        listener.onMessage("test-topic", "other-node|instance-001");
+
+        assertEquals(3L, cache.get("instance-001", () -> fail("must be served from L2")).getVersion());
+    }
+
+    /**
+     * 测试按版本失效后，失效前开始的读取加载的旧状态不写入两级缓存
+     */
+    @Test
+    public void testStaleLoadAfterVersionedEviction() {
+        ProcessInstance stale = cache.get("instance-001", () -> {
+            // 加载旧状态之后、写入缓存之前，其它事务提交了新版本并失效缓存
+            cache.evict("instance-001", 2L);
+            return createInstance("instance-001", 1L);
+        });
+        assertEquals(1L, stale.getVersion());
+
+        assertEquals(2L, cache.get("instance-001", () -> createInstance("instance-001", 2L)).getVersion());
+        assertEquals(2L, cache.get("instance-001", () -> fail("must be served from L1")).getVersion());
+    }
+
+    /**
+     * 测试失效后重新从数据库加载
+     */
+    @Test
+    public void testEvict() {
+        cache.get("instance-001", () -> createInstance("instance-001", 1L));
+
+        cache.evict("instance-001");
+
+        assertFalse(redis.containsKey("demo-trade:process-instance:instance-001"));
+        assertEquals(3L, cache.get("instance-001", () -> createInstance("instance-001", 3L)).getVersion());
+    }
+
+    private ProcessInstance createInstance(String id, Long version) {
+        ProcessInstance instance = new ProcessInstance();
+        instance.setId(id);
+        instance.setStatus("RUNNING");
+        instance.setVersion(version);
+        instance.getVariables().put("amount", 100);
+        return instance;
+    }
+}
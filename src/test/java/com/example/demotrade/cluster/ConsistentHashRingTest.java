@@ -0,0 +1,68 @@
+package com.example.demotrade.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 一致性哈希环的单元测试类
+ */
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 30000;
+
+    /**
+     * 测试成员顺序不影响归属，键在成员间大致均匀分布
+     */
+    @Test
+    public void testDeterministicAndBalanced() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), 160);
+        ConsistentHashRing reordered = new ConsistentHashRing(List.of("node-c", "node-a", "node-b", "node-a"), 160);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            String key = "instance-" + i;
+            assertEquals(ring.ownerOf(key), reordered.ownerOf(key));
+            counts.merge(ring.ownerOf(key), 1, Integer::sum);
+        }
+
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > KEYS / 3 * 0.8 && count < KEYS / 3 * 1.2, "unbalanced: " + counts);
+        }
+    }
+
+    /**
+     * 测试成员加入时只有移动到新成员的键改变归属
+     */
+    @Test
+    public void testMinimalMovementOnJoin() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), 160);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("node-a", "node-b", "node-c", "node-d"), 160);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "instance-" + i;
+            if (!before.ownerOf(key).equals(after.ownerOf(key))) {
+                assertEquals("node-d", after.ownerOf(key));
+                moved++;
+            }
+        }
+        assertTrue(moved > KEYS / 4 * 0.8 && moved < KEYS / 4 * 1.2, "moved: " + moved);
+    }
+
+    /**
+     * 测试空环
+     */
+    @Test
+    public void testEmptyRing() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(), 160);
+
+        assertTrue(ring.isEmpty());
+        assertNull(ring.ownerOf("instance-1"));
+    }
+}
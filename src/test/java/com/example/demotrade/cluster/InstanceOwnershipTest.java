@@ -0,0 +1,81 @@
+package com.example.demotrade.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流程实例归属的单元测试类，使用静态成员模拟节点加入和离开
+ */
+public class InstanceOwnershipTest {
+
+    /**
+     * 测试成员加入和离开时重新分区并通知监听器
+     */
+    @Test
+    public void testRebalanceOnMembershipChange() {
+        StaticClusterMembership membership = new StaticClusterMembership("node-a", List.of("node-a"));
+        InstanceOwnership ownership = new InstanceOwnership(membership, 160);
+        List<List<String>> rebalances = new ArrayList<>();
+        ownership.addListener((previous, current) -> rebalances.add(current.getMembers()));
+
+        // 只有一个成员时拥有全部实例
+        assertTrue(ownership.isLocallyOwned("instance-1"));
+        assertTrue(ownership.isLocallyOwned("instance-2"));
+
+        membership.setMembers(List.of("node-a", "node-b"));
+        ownership.refresh();
+        int owned = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (ownership.isLocallyOwned("instance-" + i)) {
+                owned++;
+            } else {
+                assertEquals("node-b", ownership.ownerOf("instance-" + i));
+            }
+        }
+        assertTrue(owned > 0 && owned < 1000);
+
+        // 成员未变化时不重建
+        ownership.refresh();
+
+        membership.setMembers(List.of("node-a"));
+        ownership.refresh();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(ownership.isLocallyOwned("instance-" + i));
+        }
+
+        assertEquals(List.of(List.of("node-a", "node-b"), List.of("node-a")), rebalances);
+    }
+
+    /**
+     * 测试读取成员失败时保持原有分区
+     */
+    @Test
+    public void testKeepRingWhenMembershipUnavailable() {
+        StaticClusterMembership delegate = new StaticClusterMembership("node-a", List.of("node-a", "node-b"));
+        boolean[] failing = new boolean[1];
+        ClusterMembership membership = new ClusterMembership() {
+            @Override
+            public String getLocalMember() {
+                return delegate.getLocalMember();
+            }
+
+            @Override
+            public List<String> getMembers() {
+                if (failing[0]) {
+                    throw new IllegalStateException("registry unavailable");
+                }
+                return delegate.getMembers();
+            }
+        };
+        InstanceOwnership ownership = new InstanceOwnership(membership, 160);
+
+        failing[0] = true;
+        ownership.refresh();
+
+        assertEquals(List.of("node-a", "node-b"), ownership.getRing().getMembers());
+    }
+}
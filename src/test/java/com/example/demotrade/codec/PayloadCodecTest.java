@@ -0,0 +1,79 @@
+package com.example.demotrade.codec;
+
+import com.example.demotrade.model.ProcessNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流程变量和流程节点编解码器的测试类
+ */
+public class PayloadCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 测试Smile编码只写入二进制列，小数据不压缩，大数据使用LZ4压缩
+     */
+    @Test
+    void testSmileRoundTrip() throws Exception {
+        PayloadCodec codec = new PayloadCodec(objectMapper, PayloadFormat.SMILE, true, 512);
+
+        Map<String, Object> small = Map.of("amount", 1000, "approved", true, "customerId", "CUST-001");
+        EncodedPayload smallPayload = codec.encodeVariables(small);
+        assertNull(smallPayload.json());
+        assertEquals(1, smallPayload.data()[0]);
+        assertEquals(small, codec.decodeVariables(smallPayload.data(), null));
+
+        Map<String, Object> large = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            large.put("item" + i, "商品描述-" + (i % 5));
+        }
+        EncodedPayload largePayload = codec.encodeVariables(large);
+        assertEquals((byte) 0x81, largePayload.data()[0]);
+        assertTrue(largePayload.data().length < objectMapper.writeValueAsBytes(large).length);
+        assertEquals(large, codec.decodeVariables(largePayload.data(), null));
+    }
+
+    /**
+     * 测试迁移前的文本列仍可读取，JSON格式只写入文本列
+     */
+    @Test
+    void testLegacyJson() {
+        PayloadCodec codec = new PayloadCodec(objectMapper, PayloadFormat.JSON, true, 512);
+
+        EncodedPayload payload = codec.encodeVariables(Map.of("amount", 1000));
+        assertEquals("{\"amount\":1000}", payload.json());
+        assertNull(payload.data());
+        assertEquals(Map.of("amount", 1000), codec.decodeVariables(null, "{\"amount\":1000}"));
+        assertTrue(codec.decodeVariables(null, null).isEmpty());
+        assertNull(codec.encodeVariables(Map.of()).json());
+    }
+
+    /**
+     * 测试节点列表编码和文本列转码
+     */
+    @Test
+    void testNodes() {
+        PayloadCodec codec = new PayloadCodec(objectMapper, PayloadFormat.SMILE, false, 512);
+        ProcessNode node = new ProcessNode();
+        node.setId("task1");
+        node.setName("审批");
+        node.setType("TASK");
+        node.setNextNodes(List.of("end"));
+
+        List<ProcessNode> decoded = codec.decodeNodes(codec.encodeNodes(List.of(node)).data(), null);
+        assertEquals(1, decoded.size());
+        assertEquals("审批", decoded.get(0).getName());
+        assertEquals(List.of("end"), decoded.get(0).getNextNodes());
+
+        byte[] transcoded = codec.transcode("[{\"id\":\"start\",\"type\":\"START\"}]", true);
+        assertEquals("START", codec.decodeNodes(transcoded, null).get(0).getType());
+        assertThrows(IllegalStateException.class, () -> codec.decodeNodes(new byte[]{9, 0}, null));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demotrade.codec;
+
+import com.example.demotrade.repository.PayloadMigrationRepository;
+import com.example.demotrade.repository.PayloadMigrationRepository.PayloadColumn;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文本列后台迁移的测试类
+ * 使用H2内存数据库验证JDBC语句
+ */
+public class PayloadMigratorTest {
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private PayloadCodec payloadCodec;
+
+    private PayloadMigrator migrator;
+
+    @BeforeEach
+    public void setup() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName("payload-" + UUID.randomUUID() + ";MODE=MySQL")
+                .addScript("classpath:test-process-instance-schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        PayloadMigrationRepository repository = new PayloadMigrationRepository();
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        payloadCodec = new PayloadCodec(new ObjectMapper(), PayloadFormat.SMILE, true, 512);
+
+        migrator = new PayloadMigrator();
+        ReflectionTestUtils.setField(migrator, "migrationRepository", repository);
+        ReflectionTestUtils.setField(migrator, "payloadCodec", payloadCodec);
+        ReflectionTestUtils.setField(migrator, "batchSize", 2);
+        ReflectionTestUtils.setField(migrator, "maxBatchesPerRun", 10);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    /**
+     * 测试分批迁移文本行，无法解析的行跳过且不阻塞后续行
+     */
+    @Test
+    public void testMigrate() {
+        insert("instance-1", "{\"amount\":1000}");
+        insert("instance-2", "not json");
+        insert("instance-3", "{\"approved\":true}");
+        insert("instance-4", null);
+        insert("instance-5", "{\"customerId\":\"CUST-001\"}");
+
+        assertEquals(3, migrator.migrate(PayloadColumn.INSTANCE_VARIABLES));
+
+        assertEquals(Map.of("amount", 1000), read("instance-1"));
+        assertEquals(Map.of("customerId", "CUST-001"), read("instance-5"));
+        assertNull(jdbcTemplate.queryForObject("SELECT variables_json FROM process_instance WHERE id = 'instance-3'",
+                String.class));
+        assertEquals("not json", jdbcTemplate.queryForObject(
+                "SELECT variables_json FROM process_instance WHERE id = 'instance-2'", String.class));
+
+        // 已迁移的行不再处理
+        assertEquals(0, migrator.migrate(PayloadColumn.INSTANCE_VARIABLES));
+    }
+
+    private void insert(String id, String variablesJson) {
+        jdbcTemplate.update("INSERT INTO process_instance (id, status, variables_json) VALUES (?, 1, ?)",
+                id, variablesJson);
+    }
+
+    private Map<String, Object> read(String id) {
+        return jdbcTemplate.queryForObject("SELECT variables_data, variables_json FROM process_instance WHERE id = ?",
+                (rs, rowNum) -> payloadCodec.decodeVariables(rs.getBytes(1), rs.getString(2)), id);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.demotrade.eventlog;
+
+import com.example.demotrade.model.ProcessInstance;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分段事件日志和快照存储的单元测试类
+ */
+public class SegmentedEventLogTest {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 测试追加写满后切换日志段，重新打开后按序号回放
+     */
+    @Test
+    public void testAppendRollAndReplayAfterReopen() throws IOException {
+        try (SegmentedEventLog log = SegmentedEventLog.open(directory, SEGMENT_SIZE, false)) {
+            for (int i = 1; i <= 20; i++) {
+                assertEquals(i, log.append(("event-" + i).getBytes(StandardCharsets.UTF_8)));
+            }
+            assertTrue(log.getSegmentCount() > 1);
+        }
+
+        try (SegmentedEventLog log = SegmentedEventLog.open(directory, SEGMENT_SIZE, false)) {
+            assertEquals(20, log.getLastSequence());
+
+            List<String> replayed = new ArrayList<>();
+            log.replay(15, (sequence, data) -> replayed.add(sequence + ":" + new String(data, StandardCharsets.UTF_8)));
+            assertEquals(List.of("16:event-16", "17:event-17", "18:event-18", "19:event-19", "20:event-20"), replayed);
+
+            // 重新打开后继续使用之前的序号
+            assertEquals(21, log.append("event-21".getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * 测试删除已被快照覆盖的日志段，当前写入的段不会被删除
+     */
+    @Test
+    public void testDeleteSegmentsUpTo() throws IOException {
+        try (SegmentedEventLog log = SegmentedEventLog.open(directory, SEGMENT_SIZE, false)) {
+            for (int i = 1; i <= 20; i++) {
+                log.append(("event-" + i).getBytes(StandardCharsets.UTF_8));
+            }
+            int segments = log.getSegmentCount();
+
+            assertEquals(segments - 1, log.deleteSegmentsUpTo(log.getLastSequence()));
+            assertEquals(1, log.getSegmentCount());
+
+            List<Long> replayed = new ArrayList<>();
+            log.replay(0, (sequence, data) -> replayed.add(sequence));
+            assertFalse(replayed.isEmpty());
+            assertEquals(20L, replayed.get(replayed.size() - 1));
+        }
+    }
+
+    /**
+     * 测试未写完的记录在重新打开时被丢弃
+     */
+    @Test
+    public void testTornRecordIsDiscardedOnRecovery() throws IOException {
+        try (SegmentedEventLog log = SegmentedEventLog.open(directory, SEGMENT_SIZE, false)) {
+            log.append("first".getBytes(StandardCharsets.UTF_8));
+            log.append("second".getBytes(StandardCharsets.UTF_8));
+        }
+
+        // 破坏第二条记录的数据，使其CRC校验失败
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        int secondRecord = EventLogSegment.HEADER_SIZE + "first".length();
+        bytes[secondRecord + EventLogSegment.HEADER_SIZE] ^= 0x7f;
+        Files.write(segment, bytes);
+
+        try (SegmentedEventLog log = SegmentedEventLog.open(directory, SEGMENT_SIZE, false)) {
+            assertEquals(1, log.getLastSequence());
+            assertEquals(2, log.append("again".getBytes(StandardCharsets.UTF_8)));
+
+            List<String> replayed = new ArrayList<>();
+            log.replay(0, (sequence, data) -> replayed.add(new String(data, StandardCharsets.UTF_8)));
+            assertEquals(List.of("first", "again"), replayed);
+        }
+    }
+
+    /**
+     * 测试写入快照后只保留最新的快照
+     */
+    @Test
+    public void testSnapshotKeepsLatestOnly() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        SnapshotStore store = new SnapshotStore(directory, objectMapper);
+        assertTrue(store.loadLatest().isEmpty());
+
+        ProcessInstance instance = new ProcessInstance();
+        instance.setId("instance-1");
+        instance.setStatus("RUNNING");
+        instance.setVariables(Map.of("amount", 100));
+        instance.setCreateTime(LocalDateTime.of(2024, 1, 1, 12, 0));
+        instance.setVersion(3L);
+
+        store.write(5, List.of(instance));
+        store.write(9, List.of(instance));
+
+        SnapshotStore.Snapshot snapshot = store.loadLatest().orElseThrow();
+        assertEquals(9, snapshot.getLastSequence());
+        assertEquals(1, snapshot.getInstances().size());
+        assertEquals("instance-1", snapshot.getInstances().get(0).getId());
+        assertEquals(100, snapshot.getInstances().get(0).getVariables().get("amount"));
+        assertEquals(3L, snapshot.getInstances().get(0).getVersion());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demotrade.expression;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.expression.MapAccessor;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网关条件求值的JMH基准测试
+ * 对比编译后表达式与每次解析SpEL、预解析SpEL的求值开销
+ * <p>
+ * 运行方式：mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath com.example.demotrade.expression.ConditionExpressionBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionExpressionBenchmark {
+
+    private static final String NUMERIC_CONDITION = "amount > 1000 && amount <= 50000";
+
+    private static final String ROUTING_CONDITION = "approved == true ? 'task2' : 'task3'";
+
+    private final SpelExpressionParser spelParser = new SpelExpressionParser();
+
+    private Map<String, Object> variables;
+
+    private ConditionExpression compiledNumeric;
+
+    private ConditionExpression compiledRouting;
+
+    private Expression spelNumeric;
+
+    private Expression spelRouting;
+
+    private StandardEvaluationContext spelContext;
+
+    @Setup
+    public void setup() {
+        variables = new HashMap<>();
+        variables.put("amount", 2500);
+        variables.put("approved", true);
+        variables.put("customerId", "CUST-001");
+
+        compiledNumeric = ConditionExpressionCompiler.compile(NUMERIC_CONDITION);
+        compiledRouting = ConditionExpressionCompiler.compile(ROUTING_CONDITION);
+
+        spelNumeric = spelParser.parseExpression(NUMERIC_CONDITION);
+        spelRouting = spelParser.parseExpression(ROUTING_CONDITION);
+        spelContext = new StandardEvaluationContext(variables);
+        spelContext.addPropertyAccessor(new MapAccessor());
+    }
+
+    @Benchmark
+    public boolean compiledNumericComparison() {
+        return compiledNumeric.test(variables);
+    }
+
+    @Benchmark
+    public Object compiledTernaryRouting() {
+        return compiledRouting.evaluate(variables);
+    }
+
+    @Benchmark
+    public Object spelParsedNumericComparison() {
+        return spelNumeric.getValue(spelContext);
+    }
+
+    @Benchmark
+    public Object spelParsedTernaryRouting() {
+        return spelRouting.getValue(spelContext);
+    }
+
+    @Benchmark
+    public Object spelParseEachTimeTernaryRouting() {
+        StandardEvaluationContext context = new StandardEvaluationContext(variables);
+        context.addPropertyAccessor(new MapAccessor());
+        return spelParser.parseExpression(ROUTING_CONDITION).getValue(context);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ConditionExpressionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.demotrade.expression;
+
+import com.example.demotrade.model.SlotVariables;
+import com.example.demotrade.model.VariableDeclaration;
+import com.example.demotrade.model.VariableSchema;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 条件表达式编译器的单元测试类
+ */
+public class ConditionExpressionCompilerTest {
+
+    /**
+     * 测试数值比较，兼容不同的数值类型
+     */
+    @Test
+    public void testNumericComparison() {
+        ConditionExpression expression = ConditionExpressionCompiler.compile("amount > 1000");
+
+        assertTrue(expression.test(Map.of("amount", 2500)));
+        assertTrue(expression.test(Map.of("amount", 1000.5d)));
+        assertTrue(expression.test(Map.of("amount", 5000L)));
+        assertFalse(expression.test(Map.of("amount", 1000)));
+        assertFalse(expression.test(Map.of()));
+    }
+
+    /**
+     * 测试long和BigDecimal按原始类型精确比较，缺失的数值参与的比较均为false
+     */
+    @Test
+    public void testExactComparison() {
+        // 两个值转换为double后相等
+        Map<String, Object> longs = Map.of("a", 9007199254740993L, "b", 9007199254740992L);
+        assertTrue(ConditionExpressionCompiler.compile("a != b").test(longs));
+        assertTrue(ConditionExpressionCompiler.compile("a > b").test(longs));
+        assertFalse(ConditionExpressionCompiler.compile("a == 9007199254740992").test(longs));
+        assertTrue(ConditionExpressionCompiler.compile("a == 9007199254740993").test(longs));
+
+        Map<String, Object> decimals = Map.of(
+                "a", new BigDecimal("0.10000000000000000001"), "b", new BigDecimal("0.1"));
+        assertTrue(ConditionExpressionCompiler.compile("a > b").test(decimals));
+        assertFalse(ConditionExpressionCompiler.compile("a == 0.1").test(decimals));
+        assertTrue(ConditionExpressionCompiler.compile("b == 0.1").test(decimals));
+        assertTrue(ConditionExpressionCompiler.compile("b == 0.10d").test(decimals));
+
+        assertFalse(ConditionExpressionCompiler.compile("missing != 1").test(Map.of()));
+        assertFalse(ConditionExpressionCompiler.compile("missing != 1").test(Map.of("missing", Double.NaN)));
+    }
+
+    /**
+     * 测试三元表达式返回节点ID
+     */
+    @Test
+    public void testTernaryRouting() {
+        ConditionExpression expression = ConditionExpressionCompiler.compile("approved == true ? 'task2' : 'task3'");
+
+        assertEquals("task2", expression.evaluate(Map.of("approved", true)));
+        assertEquals("task3", expression.evaluate(Map.of("approved", false)));
+        assertEquals("task3", expression.evaluate(Map.of()));
+    }
+
+    /**
+     * 测试逻辑运算、算术运算和运算符优先级
+     */
+    @Test
+    public void testLogicalAndArithmetic() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("amount", 2000);
+        variables.put("fee", 50);
+        variables.put("level", "VIP");
+
+        assertTrue(ConditionExpressionCompiler.compile("amount + fee * 2 == 2100").test(variables));
+        assertTrue(ConditionExpressionCompiler.compile("(amount - fee) / 2 >= 975").test(variables));
+        assertTrue(ConditionExpressionCompiler.compile("level == 'VIP' && amount >= 2000").test(variables));
+        assertTrue(ConditionExpressionCompiler.compile("level != \"VIP\" || !(amount < 100)").test(variables));
+        assertTrue(ConditionExpressionCompiler.compile("not (level == 'NORMAL') and amount > -1").test(variables));
+        assertFalse(ConditionExpressionCompiler.compile("missing == 'VIP'").test(variables));
+        assertTrue(ConditionExpressionCompiler.compile("missing == null").test(variables));
+    }
+
+    /**
+     * 测试访问嵌套Map中的变量
+     */
+    @Test
+    public void testNestedVariable() {
+        Map<String, Object> variables = Map.of("order", Map.of("amount", 3000, "currency", "CNY"));
+
+        assertTrue(ConditionExpressionCompiler.compile("order.amount > 1000 && order.currency == 'CNY'").test(variables));
+        assertFalse(ConditionExpressionCompiler.compile("order.missing.amount > 1000").test(variables));
+    }
+
+    /**
+     * 测试绑定槽位后按槽位读取，类型与声明不一致的值和未声明的变量仍按Map读取
+     */
+    @Test
+    public void testSlotBoundVariables() {
+        VariableSchema schema = VariableSchema.of(List.of(new VariableDeclaration("amount", "LONG"),
+                new VariableDeclaration("approved", "BOOLEAN"), new VariableDeclaration("level", "STRING")));
+        ConditionExpression expression = ConditionExpressionCompiler.compile(
+                "approved && amount + fee > 1000 && level == 'VIP'", schema);
+
+        SlotVariables variables = new SlotVariables(schema);
+        variables.setLong(schema.slotOf("amount"), 990L);
+        variables.setBoolean(schema.slotOf("approved"), true);
+        variables.put("level", "VIP");
+        variables.put("fee", 20);
+        assertTrue(expression.test(variables));
+
+        variables.put("amount", 900.5d);
+        assertFalse(expression.test(variables));
+        variables.put("amount", 1000.5d);
+        assertTrue(expression.test(variables));
+
+        // 未按槽位保存的变量结果相同
+        assertTrue(expression.test(new HashMap<>(variables)));
+        variables.put("approved", null);
+        assertFalse(expression.test(variables));
+    }
+
+    /**
+     * 测试字符串比较和拼接
+     */
+    @Test
+    public void testStringOperations() {
+        Map<String, Object> variables = Map.of("code", "B", "prefix", "task");
+
+        assertTrue(ConditionExpressionCompiler.compile("code > 'A'").test(variables));
+        assertEquals("task2", ConditionExpressionCompiler.compile("prefix + '2'").evaluate(variables));
+    }
+
+    /**
+     * 测试语法错误
+     */
+    @Test
+    public void testSyntaxError() {
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpressionCompiler.compile("amount >"));
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpressionCompiler.compile("(amount > 1"));
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpressionCompiler.compile("a ? 'x'"));
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpressionCompiler.compile("'open"));
+        assertThrows(IllegalArgumentException.class, () -> ConditionExpressionCompiler.compile(" "));
+    }
+}
@@ -53,8 +53,9 @@ public class ProcessFlowIntegrationTest {
         processDefinitionId = "test-process-" + UUID.randomUUID().toString().substring(0, 8);
         testProcessDefinition = createTestProcessDefinition(processDefinitionId);
         
-        // 保存流程定义
-        processDefinitionService.saveProcessDefinition(testProcessDefinition);
+        // 保存并发布流程定义
+        ProcessDefinition saved = processDefinitionService.saveProcessDefinition(testProcessDefinition);
+        processDefinitionService.publishProcessDefinition(saved.getId(), saved.getVersion());
         
         // 模拟外部服务调用结果
         Map<String, Object> approvalResult = new HashMap<>();
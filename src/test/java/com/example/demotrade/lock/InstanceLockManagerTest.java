@@ -0,0 +1,111 @@
+package com.example.demotrade.lock;
+
+import com.example.demotrade.exception.ProcessInstanceConflictException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.redisson.api.RFencedLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 流程实例锁的单元测试类
+ */
+public class InstanceLockManagerTest {
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RFencedLock fencedLock;
+
+    @InjectMocks
+    private InstanceLockManager instanceLockManager;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(instanceLockManager, "stripeCount", 16);
+        ReflectionTestUtils.setField(instanceLockManager, "waitTime", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(instanceLockManager, "leaseTime", Duration.ofSeconds(30));
+        instanceLockManager.init();
+    }
+
+    /**
+     * 测试未开启分布式锁时只使用本地锁，同一实例的修改串行执行且不访问Redis
+     */
+    @Test
+    public void testLocalLockSerializesMutations() throws Exception {
+        int[] counter = new int[1];
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        instanceLockManager.executeWithoutResult("instance-001", token -> {
+                            assertNull(token);
+                            counter[0]++;
+                        });
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(8000, counter[0]);
+        verifyNoInteractions(redissonClient);
+    }
+
+    /**
+     * 测试开启分布式锁时把fencing token传给操作，操作结束后释放锁
+     */
+    @Test
+    public void testDistributedLockPassesFencingToken() {
+        ReflectionTestUtils.setField(instanceLockManager, "distributed", true);
+        when(redissonClient.getFencedLock("demo-trade:process-instance:lock:instance-001")).thenReturn(fencedLock);
+        when(fencedLock.tryLockAndGetToken(anyLong(), eq(30000L), eq(TimeUnit.MILLISECONDS))).thenReturn(42L);
+        when(fencedLock.isHeldByCurrentThread()).thenReturn(true);
+
+        Long token = instanceLockManager.execute("instance-001", t -> t);
+
+        assertEquals(42L, token);
+        verify(fencedLock).unlock();
+    }
+
+    /**
+     * 测试分布式锁等待超时时抛出冲突异常，不执行操作
+     */
+    @Test
+    public void testDistributedLockTimeout() {
+        ReflectionTestUtils.setField(instanceLockManager, "distributed", true);
+        when(redissonClient.getFencedLock("demo-trade:process-instance:lock:instance-001")).thenReturn(fencedLock);
+        when(fencedLock.tryLockAndGetToken(anyLong(), anyLong(), eq(TimeUnit.MILLISECONDS))).thenReturn(null);
+
+        assertThrows(ProcessInstanceConflictException.class,
+                () -> instanceLockManager.executeWithoutResult("instance-001", token -> fail("must not run")));
+        verify(fencedLock, never()).unlock();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.demotrade.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流程实例状态的单元测试类
+ * 用于测试状态编码和状态转换表
+ */
+public class InstanceStatusTest {
+
+    /**
+     * 测试编码与状态一一对应
+     */
+    @Test
+    public void testCodeRoundTrip() {
+        for (InstanceStatus status : InstanceStatus.values()) {
+            assertSame(status, InstanceStatus.fromCode(status.code()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> InstanceStatus.fromCode(0));
+        assertThrows(IllegalArgumentException.class, () -> InstanceStatus.of("UNKNOWN"));
+        assertNull(InstanceStatus.of(null));
+    }
+
+    /**
+     * 测试状态转换表，已结束的状态不能再转换
+     */
+    @Test
+    public void testTransitions() {
+        assertTrue(InstanceStatus.RUNNING.canTransitionTo(InstanceStatus.SUSPENDED));
+        assertTrue(InstanceStatus.SUSPENDED.canTransitionTo(InstanceStatus.RUNNING));
+        assertTrue(InstanceStatus.FAILED.canTransitionTo(InstanceStatus.TERMINATED));
+        assertFalse(InstanceStatus.SUSPENDED.canTransitionTo(InstanceStatus.COMPLETED));
+        assertTrue(InstanceStatus.FAILED.canTransitionTo(InstanceStatus.RUNNING));
+        assertFalse(InstanceStatus.FAILED.canTransitionTo(InstanceStatus.SUSPENDED));
+        for (InstanceStatus terminal : InstanceStatus.TERMINAL) {
+            assertTrue(terminal.isTerminal());
+            for (InstanceStatus target : InstanceStatus.values()) {
+                assertFalse(terminal.canTransitionTo(target));
+            }
+        }
+    }
+
+    /**
+     * 测试按目标状态反查允许的当前状态
+     */
+    @Test
+    public void testSourcesOf() {
+        assertEquals(Set.of(InstanceStatus.RUNNING, InstanceStatus.SUSPENDED, InstanceStatus.FAILED),
+                InstanceStatus.sourcesOf(InstanceStatus.TERMINATED));
+        assertEquals(Set.of(InstanceStatus.SUSPENDED, InstanceStatus.FAILED),
+                InstanceStatus.sourcesOf(InstanceStatus.RUNNING));
+        assertEquals(Set.of(InstanceStatus.RUNNING), InstanceStatus.sourcesOf(InstanceStatus.COMPLETED));
+    }
+}
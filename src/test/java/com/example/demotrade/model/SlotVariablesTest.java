@@ -0,0 +1,167 @@
+package com.example.demotrade.model;
+
+import com.example.demotrade.codec.EncodedPayload;
+import com.example.demotrade.codec.PayloadCodec;
+import com.example.demotrade.codec.PayloadFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按槽位保存的流程变量的单元测试类
+ */
+public class SlotVariablesTest {
+
+    private final VariableSchema schema = VariableSchema.of(List.of(
+            new VariableDeclaration("count", "INT"),
+            new VariableDeclaration("amount", "LONG"),
+            new VariableDeclaration("rate", "DOUBLE"),
+            new VariableDeclaration("approved", "BOOLEAN"),
+            new VariableDeclaration("level", "STRING")));
+
+    /**
+     * 测试声明的变量按槽位保存，读取结果与HashMap一致
+     */
+    @Test
+    public void testBehavesLikeMap() {
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("count", 3);
+        expected.put("amount", 2000L);
+        expected.put("rate", 0.05d);
+        expected.put("approved", true);
+        expected.put("level", "VIP");
+        expected.put("comment", "undeclared");
+
+        SlotVariables variables = new SlotVariables(schema, expected);
+
+        assertEquals(expected, variables);
+        assertEquals(expected, new HashMap<>(variables));
+        assertEquals(6, variables.size());
+        assertEquals(Integer.valueOf(3), variables.get("count"));
+        assertEquals(2000L, variables.getLong(schema.slotOf("amount")));
+        assertEquals(0.05d, variables.getDouble(schema.slotOf("rate")));
+        assertTrue(variables.getBoolean(schema.slotOf("approved")));
+
+        assertEquals(2000L, variables.remove("amount"));
+        assertFalse(variables.containsKey("amount"));
+        assertFalse(variables.isSet(schema.slotOf("amount")));
+        assertEquals(5, variables.size());
+    }
+
+    /**
+     * 测试声明类型不接受或为null的值保存在溢出Map中，类型不变
+     */
+    @Test
+    public void testMismatchedTypeOverflows() {
+        SlotVariables variables = new SlotVariables(schema);
+        int slot = schema.slotOf("amount");
+
+        variables.put("amount", "2000");
+        assertFalse(variables.isSet(slot));
+        assertEquals("2000", variables.get("amount"));
+
+        assertEquals("2000", variables.put("amount", 3000L));
+        assertTrue(variables.isSet(slot));
+        assertEquals(1, variables.size());
+
+        assertEquals(3000L, variables.put("amount", null));
+        assertTrue(variables.containsKey("amount"));
+        assertNull(variables.get("amount"));
+        assertEquals(1, variables.size());
+
+        variables.put("amount", 1.5d);
+        assertFalse(variables.isSet(slot));
+        variables.put("count", 5_000_000_000L);
+        assertFalse(variables.isSet(schema.slotOf("count")));
+        assertEquals(5_000_000_000L, variables.get("count"));
+
+        variables.setLong(slot, 42L);
+        assertEquals(42L, variables.get("amount"));
+        assertThrows(IllegalArgumentException.class, () -> variables.setDouble(slot, 1.0));
+    }
+
+    /**
+     * 测试数值槽位接受其它数值类型，按声明类型读取
+     */
+    @Test
+    public void testNumericCoercion() {
+        SlotVariables variables = new SlotVariables(schema);
+
+        variables.put("amount", 2000);
+        variables.put("count", 7L);
+        variables.put("rate", 100);
+
+        assertTrue(variables.isSet(schema.slotOf("amount")));
+        assertEquals(2000L, variables.get("amount"));
+        assertEquals(Integer.valueOf(7), variables.get("count"));
+        assertEquals(100.0d, variables.get("rate"));
+        assertEquals(100.0d, variables.getDouble(schema.slotOf("rate")));
+    }
+
+    /**
+     * 测试经过编解码读回的变量仍按槽位保存，Smile和JSON把较小的整数读为Integer
+     */
+    @Test
+    public void testDecodedVariablesUseSlots() {
+        Map<String, Object> original = new HashMap<>();
+        original.put("count", 3);
+        original.put("amount", 2000L);
+        original.put("rate", 5);
+        original.put("approved", true);
+        original.put("level", "VIP");
+        for (PayloadFormat format : PayloadFormat.values()) {
+            PayloadCodec codec = new PayloadCodec(new ObjectMapper(), format, true, 512);
+            EncodedPayload payload = codec.encodeVariables(original);
+
+            SlotVariables variables = new SlotVariables(schema, codec.decodeVariables(payload.data(), payload.json()));
+
+            for (int slot = 0; slot < schema.size(); slot++) {
+                assertTrue(variables.isSet(slot), format + " " + schema.name(slot));
+            }
+            assertEquals(2000L, variables.getLong(schema.slotOf("amount")));
+            assertEquals(5.0d, variables.getDouble(schema.slotOf("rate")));
+        }
+    }
+
+    /**
+     * 测试复制后互不影响，迭代器删除同时作用于槽位和溢出Map
+     */
+    @Test
+    public void testCopyAndIteratorRemove() {
+        SlotVariables variables = new SlotVariables(schema, Map.of("amount", 100L, "comment", "x"));
+        SlotVariables copy = variables.copy();
+        copy.put("amount", 200L);
+        copy.put("extra", 1);
+
+        assertEquals(100L, variables.get("amount"));
+        assertFalse(variables.containsKey("extra"));
+
+        Iterator<Map.Entry<String, Object>> iterator = copy.entrySet().iterator();
+        while (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        assertTrue(copy.isEmpty());
+        assertEquals(2, variables.size());
+    }
+
+    /**
+     * 测试不合法的变量声明
+     */
+    @Test
+    public void testInvalidDeclarations() {
+        assertNull(VariableSchema.of(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> VariableSchema.of(List.of(
+                new VariableDeclaration("amount", "LONG"), new VariableDeclaration("amount", "INT"))));
+        assertThrows(IllegalArgumentException.class, () -> VariableSchema.of(List.of(
+                new VariableDeclaration("order.amount", "LONG"))));
+        assertThrows(IllegalArgumentException.class, () -> VariableSchema.of(List.of(
+                new VariableDeclaration("amount", "DECIMAL"))));
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.demotrade.plan;
+
+import com.example.demotrade.exception.ProcessDefinitionValidationException;
+import com.example.demotrade.model.ProcessDefinition;
+import com.example.demotrade.model.ProcessNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 执行计划编译器的单元测试类
+ */
+public class ExecutionPlanCompilerTest {
+
+    /**
+     * 测试编译并行流程：节点下标、类型、后续节点、汇聚网关和分支数，以及序列化后读取
+     */
+    @Test
+    public void testCompileParallelProcess() {
+        ProcessDefinition definition = definition(
+                node("start", "START", null, "fork"),
+                node("fork", "GATEWAY", "PARALLEL", "risk", "limit", "join"),
+                node("risk", "TASK", null, "check"),
+                node("check", "GATEWAY", null, "join", "reject"),
+                node("reject", "TASK", null, "join"),
+                node("limit", "TASK", null, "join"),
+                node("join", "GATEWAY", "PARALLEL", "end"),
+                node("end", "END", null));
+
+        ExecutionPlan plan = ExecutionPlanCompiler.compile(definition);
+
+        int fork = plan.indexOf("fork");
+        int join = plan.indexOf("join");
+        assertEquals(0, plan.startIndex());
+        assertTrue(plan.isFork(fork));
+        assertFalse(plan.isFork(join));
+        assertEquals(NodeKind.EXCLUSIVE_GATEWAY, plan.kind(plan.indexOf("check")));
+        assertEquals(plan.indexOf("limit"), plan.successor(fork, 1));
+        assertEquals(join, plan.joinOf(fork));
+        assertEquals(3, plan.joinCount(join));
+        assertEquals(plan.indexOf("reject"), plan.successorOf(plan.indexOf("check"), "reject"));
+        assertEquals(-1, plan.successorOf(plan.indexOf("check"), "end"));
+
+        ExecutionPlan loaded = ExecutionPlan.fromBytes(plan.toBytes(), definition.getNodes());
+        assertNotNull(loaded);
+        assertEquals(join, loaded.joinOf(fork));
+        assertEquals(3, loaded.joinCount(join));
+        assertEquals(plan.firstSuccessor(plan.indexOf("limit")), loaded.firstSuccessor(plan.indexOf("limit")));
+        assertNull(ExecutionPlan.fromBytes(plan.toBytes(), definition.getNodes().subList(0, 3)));
+    }
+
+    /**
+     * 测试结构错误在编译时全部报告
+     */
+    @Test
+    public void testRejectStructuralErrors() {
+        ProcessDefinition definition = definition(
+                node("start", "START", null, "task1"),
+                node("task1", "TASK", null, "task2"),
+                node("task2", "TASK", null, "task1"),
+                node("orphan", "TASK", null, "missing"),
+                node("gateway", "GATEWAY", null, "end"),
+                node("end", "END", null));
+        definition.getNodes().get(4).setCondition("amount >");
+
+        ProcessDefinitionValidationException exception = assertThrows(ProcessDefinitionValidationException.class,
+                () -> ExecutionPlanCompiler.compile(definition));
+
+        List<String> errors = exception.getErrors();
+        assertTrue(errors.contains("Node orphan references missing node: missing"));
+        assertTrue(errors.contains("Nodes unreachable from start node: orphan, gateway, end"));
+        assertTrue(errors.contains("Cycle detected through node: task1"));
+        assertTrue(errors.stream().anyMatch(error -> error.startsWith("Gateway gateway has invalid condition")));
+
+        // 未经校验的计划仍可编译，执行到错误节点时失败
+        ExecutionPlan plan = ExecutionPlanCompiler.compileUnchecked(definition);
+        RuntimeException failure = assertThrows(RuntimeException.class,
+                () -> plan.firstSuccessor(plan.indexOf("orphan")));
+        assertEquals("Node not found in process definition: missing", failure.getMessage());
+    }
+
+    /**
+     * 测试分叉网关的分支汇聚到不同网关或直接结束时拒绝
+     */
+    @Test
+    public void testRejectUnbalancedFork() {
+        ProcessDefinition definition = definition(
+                node("start", "START", null, "fork"),
+                node("fork", "GATEWAY", "PARALLEL", "a", "b", "c"),
+                node("a", "TASK", null, "join1"),
+                node("b", "TASK", null, "join2"),
+                node("c", "TASK", null, "end"),
+                node("join1", "GATEWAY", "PARALLEL", "end"),
+                node("join2", "GATEWAY", "PARALLEL", "end"),
+                node("end", "END", null));
+
+        ProcessDefinitionValidationException exception = assertThrows(ProcessDefinitionValidationException.class,
+                () -> ExecutionPlanCompiler.compile(definition));
+
+        assertTrue(exception.getErrors().stream()
+                .anyMatch(error -> error.startsWith("Parallel branches of gateway fork join at different gateways")));
+        assertTrue(exception.getErrors().contains("Parallel branch of gateway fork reaches END node without join: end"));
+    }
+
+    private static ProcessDefinition definition(ProcessNode... nodes) {
+        ProcessDefinition definition = new ProcessDefinition();
+        definition.setId("process-001");
+        definition.setVersion(1);
+        definition.setNodes(new ArrayList<>(List.of(nodes)));
+        return definition;
+    }
+
+    private static ProcessNode node(String id, String type, String gatewayType, String... nextNodes) {
+        ProcessNode node = new ProcessNode();
+        node.setId(id);
+        node.setType(type);
+        node.setGatewayType(gatewayType);
+        node.setNextNodes(new ArrayList<>(List.of(nextNodes)));
+        return node;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.demotrade.repository;
+
+import com.example.demotrade.entity.ProcessInstanceEntity;
+import com.example.demotrade.model.InstanceStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流程实例历史仓库的单元测试类
+ * 使用H2内存数据库验证JDBC语句
+ */
+public class ProcessInstanceHistoryRepositoryTest {
+
+    private EmbeddedDatabase database;
+
+    private ProcessInstanceHistoryRepository repository;
+
+    @BeforeEach
+    public void setup() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName("history-" + UUID.randomUUID() + ";MODE=MySQL")
+                .addScript("classpath:test-process-instance-history-schema.sql")
+                .build();
+        repository = new ProcessInstanceHistoryRepository();
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", new JdbcTemplate(database));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    /**
+     * 测试写入归档实例后按ID和业务ID查询
+     */
+    @Test
+    public void testInsertAndFind() {
+        repository.batchInsert(List.of(
+                createEntity("instance-1", "order-1", InstanceStatus.COMPLETED),
+                createEntity("instance-2", "order-1", InstanceStatus.TERMINATED),
+                createEntity("instance-3", "order-2", InstanceStatus.COMPLETED)), LocalDateTime.now());
+
+        Optional<ProcessInstanceEntity> found = repository.findById("instance-2");
+        assertTrue(found.isPresent());
+        assertEquals(InstanceStatus.TERMINATED, found.get().getStatus());
+        assertEquals("{\"amount\":1000,\"approved\":true}", found.get().getVariablesJson());
+        assertEquals(3L, found.get().getVersion());
+        assertNotNull(found.get().getEndTime());
+
+        assertEquals(2, repository.findByBusinessId("order-1").size());
+        assertFalse(repository.findById("missing").isPresent());
+    }
+
+    private ProcessInstanceEntity createEntity(String id, String businessId, InstanceStatus status) {
+        LocalDateTime now = LocalDateTime.now();
+        ProcessInstanceEntity entity = new ProcessInstanceEntity();
+        entity.setId(id);
+        entity.setProcessDefinitionId("process-001");
+        entity.setProcessDefinitionVersion(1);
+        entity.setBusinessId(businessId);
+        entity.setCurrentNodeId("end");
+        entity.setStatus(status);
+        entity.setVariablesJson("{\"amount\":1000,\"approved\":true}");
+        entity.setStartTime(now.minusDays(40));
+        entity.setEndTime(now.minusDays(35));
+        entity.setCreateTime(now.minusDays(40));
+        entity.setUpdateTime(now.minusDays(35));
+        entity.setVersion(3L);
+        return entity;
+    }
+}
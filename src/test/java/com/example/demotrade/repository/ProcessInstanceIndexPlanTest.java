@@ -0,0 +1,112 @@
+package com.example.demotrade.repository;
+
+import com.example.demotrade.entity.ProcessInstanceEntity;
+import com.example.demotrade.model.InstanceStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流程实例索引的执行计划测试类
+ * 在H2内存数据库中执行索引迁移脚本，检查各仓库查询的EXPLAIN结果使用了对应索引
+ */
+public class ProcessInstanceIndexPlanTest {
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setup() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName("index-plan-" + UUID.randomUUID() + ";MODE=MySQL")
+                .addScript("classpath:test-process-instance-schema.sql")
+                .addScript("classpath:db/migration/V1__add_process_instance_indexes.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+
+        ProcessInstanceRepositoryCustomImpl repository = new ProcessInstanceRepositoryCustomImpl();
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        repository.batchInsert(createEntities(1000), 200);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    /**
+     * 测试按状态查询和按状态游标分页
+     */
+    @Test
+    public void testStatusQueries() {
+        assertUsesIndex("idx_instance_status_create",
+                "SELECT * FROM process_instance WHERE status = 1");
+        assertUsesIndex("idx_instance_status_create",
+                "SELECT * FROM process_instance WHERE status = 1 "
+                        + "AND (create_time > TIMESTAMP '2024-01-01 00:00:00' "
+                        + "OR (create_time = TIMESTAMP '2024-01-01 00:00:00' AND id > 'instance-1')) "
+                        + "ORDER BY create_time, id LIMIT 100");
+    }
+
+    /**
+     * 测试按业务ID查询、按业务ID和状态查询、按业务ID游标分页
+     */
+    @Test
+    public void testBusinessIdQueries() {
+        assertUsesIndex("idx_instance_business_create",
+                "SELECT * FROM process_instance WHERE business_id = 'order-1' ORDER BY create_time, id LIMIT 100");
+        assertUsesIndex("idx_instance_business_create",
+                "SELECT * FROM process_instance WHERE business_id = 'order-1' AND status = 1");
+    }
+
+    /**
+     * 测试按流程定义ID查询和最新实例查询
+     */
+    @Test
+    public void testProcessDefinitionQueries() {
+        assertUsesIndex("idx_instance_definition_business_create",
+                "SELECT * FROM process_instance WHERE process_definition_id = 'process-1'");
+        assertUsesIndex("idx_instance_definition_business_create",
+                "SELECT * FROM process_instance WHERE process_definition_id = 'process-1' "
+                        + "AND business_id = 'order-1' ORDER BY create_time DESC LIMIT 1");
+    }
+
+    private void assertUsesIndex(String indexName, String sql) {
+        String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class));
+        assertTrue(plan.toLowerCase().contains(indexName), "Expected index " + indexName + " in plan:\n" + plan);
+    }
+
+    private List<ProcessInstanceEntity> createEntities(int count) {
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<ProcessInstanceEntity> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ProcessInstanceEntity entity = new ProcessInstanceEntity();
+            entity.setId("instance-" + i);
+            entity.setProcessDefinitionId("process-" + (i % 10));
+            entity.setProcessDefinitionVersion(1);
+            entity.setBusinessId("order-" + (i % 200));
+            entity.setCurrentNodeId("task1");
+            entity.setStatus(i % 4 == 0 ? InstanceStatus.RUNNING : InstanceStatus.COMPLETED);
+            entity.setStartTime(base.plusMinutes(i));
+            entity.setCreateTime(base.plusMinutes(i));
+            entity.setUpdateTime(base.plusMinutes(i));
+            entities.add(entity);
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.demotrade.repository;
+
+import com.example.demotrade.entity.ProcessInstanceEntity;
+import com.example.demotrade.model.InstanceStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流程实例仓库扩展实现的单元测试类
+ * 使用H2内存数据库验证JDBC语句
+ */
+public class ProcessInstanceRepositoryCustomImplTest {
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private ProcessInstanceRepositoryCustomImpl repository;
+
+    @BeforeEach
+    public void setup() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName("repository-" + UUID.randomUUID() + ";MODE=MySQL")
+                .addScript("classpath:test-process-instance-schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        repository = new ProcessInstanceRepositoryCustomImpl();
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    /**
+     * 测试分批插入流程实例
+     */
+    @Test
+    public void testBatchInsert() {
+        List<ProcessInstanceEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            entities.add(createEntity("instance-" + i, "order-" + i));
+        }
+
+        int inserted = repository.batchInsert(entities, 10);
+
+        assertEquals(25, inserted);
+        assertEquals(25, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM process_instance", Integer.class));
+        assertEquals("order-7", jdbcTemplate.queryForObject(
+                "SELECT business_id FROM process_instance WHERE id = ?", String.class, "instance-7"));
+    }
+
+    /**
+     * 测试空列表不执行插入
+     */
+    @Test
+    public void testBatchInsertEmpty() {
+        assertEquals(0, repository.batchInsert(new ArrayList<>(), 10));
+    }
+
+    /**
+     * 测试按状态和业务ID流式查询，实体字段完整映射
+     */
+    @Test
+    public void testStreamQueries() {
+        List<ProcessInstanceEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            ProcessInstanceEntity entity = createEntity("instance-" + i, "order-" + (i % 5));
+            entity.setStatus(i < 20 ? InstanceStatus.RUNNING : InstanceStatus.COMPLETED);
+            entities.add(entity);
+        }
+        repository.batchInsert(entities, 10);
+
+        try (Stream<ProcessInstanceEntity> stream = repository.streamByStatus(InstanceStatus.RUNNING, 7)) {
+            assertEquals(20, stream.count());
+        }
+
+        try (Stream<ProcessInstanceEntity> stream = repository.streamByBusinessId("order-3", 2)) {
+            List<ProcessInstanceEntity> result = stream.collect(Collectors.toList());
+            assertEquals(5, result.size());
+            ProcessInstanceEntity first = result.stream()
+                    .filter(entity -> "instance-3".equals(entity.getId()))
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals("process-001", first.getProcessDefinitionId());
+            assertEquals(1, first.getProcessDefinitionVersion());
+            assertEquals("{\"amount\":1000}", first.getVariablesJson());
+            assertEquals(0L, first.getVersion());
+            assertNotNull(first.getCreateTime());
+        }
+    }
+
+    /**
+     * 测试按ID批量查询
+     */
+    @Test
+    public void testFindDetachedByIds() {
+        repository.batchInsert(List.of(createEntity("instance-1", "order-1"), createEntity("instance-2", "order-2"),
+                createEntity("instance-3", "order-3")), 10);
+
+        List<ProcessInstanceEntity> result = repository.findDetachedByIds(List.of("instance-1", "instance-3", "missing"));
+
+        assertEquals(2, result.size());
+        assertTrue(repository.findDetachedByIds(new ArrayList<>()).isEmpty());
+    }
+
+    /**
+     * 测试批量条件更新，版本号不一致的行不被修改
+     */
+    @Test
+    public void testBatchUpdateIfVersionMatches() {
+        repository.batchInsert(List.of(createEntity("instance-1", "order-1"), createEntity("instance-2", "order-2")), 10);
+
+        ProcessInstanceEntity first = createEntity("instance-1", "order-1");
+        first.setCurrentNodeId("task2");
+        first.setVersion(0L);
+        ProcessInstanceEntity stale = createEntity("instance-2", "order-2");
+        stale.setCurrentNodeId("task2");
+        stale.setVersion(5L);
+
+        int[] counts = repository.batchUpdateIfVersionMatches(List.of(first, stale));
+
+        assertArrayEquals(new int[]{1, 0}, counts);
+        assertEquals("task2", jdbcTemplate.queryForObject(
+                "SELECT current_node_id FROM process_instance WHERE id = ?", String.class, "instance-1"));
+        assertEquals(1L, jdbcTemplate.queryForObject(
+                "SELECT version FROM process_instance WHERE id = ?", Long.class, "instance-1"));
+        assertEquals("start", jdbcTemplate.queryForObject(
+                "SELECT current_node_id FROM process_instance WHERE id = ?", String.class, "instance-2"));
+    }
+
+    /**
+     * 测试批量条件更新推进fencing token，token已被更新的持有者推进时不更新
+     */
+    @Test
+    public void testBatchUpdateChecksFencingToken() {
+        repository.batchInsert(List.of(createEntity("instance-1", "order-1")), 10);
+
+        ProcessInstanceEntity current = createEntity("instance-1", "order-1");
+        current.setVersion(0L);
+        current.setFencingToken(7L);
+        assertArrayEquals(new int[]{1}, repository.batchUpdateIfVersionMatches(List.of(current)));
+        assertEquals(7L, jdbcTemplate.queryForObject(
+                "SELECT fencing_token FROM process_instance WHERE id = ?", Long.class, "instance-1"));
+
+        ProcessInstanceEntity stale = createEntity("instance-1", "order-1");
+        stale.setCurrentNodeId("task2");
+        stale.setVersion(1L);
+        stale.setFencingToken(6L);
+        assertArrayEquals(new int[]{0}, repository.batchUpdateIfVersionMatches(List.of(stale)));
+
+        // 只获取了本地锁的写入不改变token
+        ProcessInstanceEntity local = createEntity("instance-1", "order-1");
+        local.setCurrentNodeId("task2");
+        local.setVersion(1L);
+        local.setFencingToken(null);
+        assertArrayEquals(new int[]{1}, repository.batchUpdateIfVersionMatches(List.of(local)));
+        assertEquals(7L, jdbcTemplate.queryForObject(
+                "SELECT fencing_token FROM process_instance WHERE id = ?", Long.class, "instance-1"));
+    }
+
+    /**
+     * 测试批量条件更新，当前状态不允许转换到目标状态的行不被修改
+     */
+    @Test
+    public void testBatchUpdateRejectsIllegalTransition() {
+        ProcessInstanceEntity completed = createEntity("instance-1", "order-1");
+        completed.setStatus(InstanceStatus.COMPLETED);
+        repository.batchInsert(List.of(completed, createEntity("instance-2", "order-2")), 10);
+
+        ProcessInstanceEntity reopen = createEntity("instance-1", "order-1");
+        reopen.setVersion(0L);
+        ProcessInstanceEntity finish = createEntity("instance-2", "order-2");
+        finish.setStatus(InstanceStatus.COMPLETED);
+        finish.setVersion(0L);
+
+        int[] counts = repository.batchUpdateIfVersionMatches(List.of(reopen, finish));
+
+        assertArrayEquals(new int[]{0, 1}, counts);
+        assertEquals(InstanceStatus.COMPLETED.code(), jdbcTemplate.queryForObject(
+                "SELECT status FROM process_instance WHERE id = ?", Byte.class, "instance-1"));
+        assertEquals(InstanceStatus.COMPLETED.code(), jdbcTemplate.queryForObject(
+                "SELECT status FROM process_instance WHERE id = ?", Byte.class, "instance-2"));
+    }
+
+    private ProcessInstanceEntity createEntity(String id, String businessId) {
+        LocalDateTime now = LocalDateTime.now();
+        ProcessInstanceEntity entity = new ProcessInstanceEntity();
+        entity.setId(id);
+        entity.setProcessDefinitionId("process-001");
+        entity.setProcessDefinitionVersion(1);
+        entity.setBusinessId(businessId);
+        entity.setCurrentNodeId("start");
+        entity.setStatus(InstanceStatus.RUNNING);
+        entity.setVariablesJson("{\"amount\":1000}");
+        entity.setStartTime(now);
+        entity.setCreateTime(now);
+        entity.setUpdateTime(now);
+        return entity;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.demotrade.repository;
+
+import com.example.demotrade.entity.ProcessVariableEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流程变量仓库扩展实现的单元测试类
+ * 使用H2内存数据库验证JDBC语句
+ */
+public class ProcessVariableRepositoryCustomImplTest {
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private ProcessVariableRepositoryCustomImpl repository;
+
+    @BeforeEach
+    public void setup() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName("repository-" + UUID.randomUUID() + ";MODE=MySQL")
+                .addScript("classpath:test-process-variable-schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        repository = new ProcessVariableRepositoryCustomImpl();
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    /**
+     * 测试新变量插入、已有变量只更新值
+     */
+    @Test
+    public void testUpsertVariables() {
+        repository.upsertVariables(List.of(
+                createEntity("instance-1", "amount", "1000"),
+                createEntity("instance-1", "approved", "false")));
+
+        repository.upsertVariables(List.of(
+                createEntity("instance-1", "approved", "true"),
+                createEntity("instance-1", "level", "\"VIP\"")));
+
+        assertEquals(3, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM process_variable WHERE process_instance_id = ?", Integer.class, "instance-1"));
+        assertEquals("1000", queryValue("instance-1", "amount"));
+        assertEquals("true", queryValue("instance-1", "approved"));
+        assertEquals("\"VIP\"", queryValue("instance-1", "level"));
+    }
+
+    /**
+     * 测试不同流程实例的同名变量互不影响
+     */
+    @Test
+    public void testUpsertVariablesPerInstance() {
+        repository.upsertVariables(List.of(
+                createEntity("instance-1", "amount", "1000"),
+                createEntity("instance-2", "amount", "2000")));
+
+        assertEquals("1000", queryValue("instance-1", "amount"));
+        assertEquals("2000", queryValue("instance-2", "amount"));
+    }
+
+    /**
+     * 测试空列表不执行写入
+     */
+    @Test
+    public void testUpsertVariablesEmpty() {
+        assertEquals(0, repository.upsertVariables(new ArrayList<>()));
+    }
+
+    private String queryValue(String processInstanceId, String variableName) {
+        return jdbcTemplate.queryForObject(
+                "SELECT variable_value FROM process_variable WHERE process_instance_id = ? AND variable_name = ?",
+                String.class, processInstanceId, variableName);
+    }
+
+    private ProcessVariableEntity createEntity(String processInstanceId, String name, String value) {
+        LocalDateTime now = LocalDateTime.now();
+        ProcessVariableEntity entity = new ProcessVariableEntity();
+        entity.setProcessInstanceId(processInstanceId);
+        entity.setVariableName(name);
+        entity.setVariableValue(value);
+        entity.setVariableType("OBJECT");
+        entity.setCreator("test");
+        entity.setModifier("test");
+        entity.setGmtCreate(now);
+        entity.setGmtModified(now);
+        return entity;
+    }
+}
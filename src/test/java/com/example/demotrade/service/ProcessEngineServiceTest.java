@@ -1,23 +1,37 @@
 package com.example.demotrade.service;
 
+import com.example.demotrade.expression.ConditionEvaluator;
 import com.example.demotrade.model.ProcessDefinition;
 import com.example.demotrade.model.ProcessInstance;
 import com.example.demotrade.model.ProcessNode;
+import com.example.demotrade.timer.NodeTimer;
+import com.example.demotrade.timer.NodeTimerScheduler;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -35,6 +49,9 @@ public class ProcessEngineServiceTest {
     @Mock
     private RestTemplate restTemplate;
     
+    @Mock
+    private NodeTimerScheduler nodeTimerScheduler;
+    
     @InjectMocks
     private ProcessEngineService processEngineService;
     
@@ -181,6 +198,328 @@ public class ProcessEngineServiceTest {
         assertEquals("COMPLETED", result.getStatus());
     }
     
+    /**
+     * 测试排他网关根据编译后的条件表达式选择分支
+     */
+    @Test
+    public void testExclusiveGatewayRouting() {
+        ReflectionTestUtils.setField(processEngineService, "conditionEvaluator", new ConditionEvaluator(100));
+        
+        // 模拟流程实例停留在网关节点，审批未通过
+        ProcessInstance instance = new ProcessInstance();
+        instance.setId("instance-001");
+        instance.setProcessDefinitionId("process-001");
+        instance.setProcessDefinitionVersion(1);
+        instance.setStatus("RUNNING");
+        instance.setCurrentNodeId("gateway1");
+        instance.getVariables().put("approved", false);
+        
+        when(processInstanceService.getProcessInstance("instance-001")).thenReturn(instance);
+        when(processDefinitionService.getProcessDefinition("process-001", 1))
+                .thenReturn(createTestProcessDefinition("process-001"));
+        when(processInstanceService.updateProcessInstance(any(ProcessInstance.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        
+        // 执行测试
+        ProcessInstance result = processEngineService.executeNode("instance-001");
+        
+        // 验证流程进入拒绝处理节点
+        assertEquals("task3", result.getCurrentNodeId());
+        assertEquals("RUNNING", result.getStatus());
+    }
+    
+    /**
+     * 测试并行网关分叉后并发执行所有分支并在汇聚网关合并变量
+     * 节点执行线程池只有一个线程，分叉节点占用它等待分支时，分支仍在单独的线程池中执行
+     */
+    @Test
+    public void testParallelGatewayForkAndJoin() throws Exception {
+        ExecutorService engineExecutor = Executors.newFixedThreadPool(1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        ReflectionTestUtils.setField(processEngineService, "processEngineExecutor", engineExecutor);
+        ReflectionTestUtils.setField(processEngineService, "parallelBranchExecutor", executor);
+        try {
+            // 模拟流程实例停留在分叉网关
+            ProcessInstance instance = new ProcessInstance();
+            instance.setId("instance-002");
+            instance.setProcessDefinitionId("process-002");
+            instance.setProcessDefinitionVersion(1);
+            instance.setStatus("RUNNING");
+            instance.setCurrentNodeId("fork");
+            instance.getVariables().put("amount", 5000);
+            when(processInstanceService.getProcessInstance("instance-002")).thenReturn(instance);
+            when(processDefinitionService.getProcessDefinition("process-002", 1))
+                    .thenReturn(createParallelProcessDefinition("process-002"));
+
+            // 模拟三个独立检查服务
+            when(restTemplate.postForObject(eq("http://risk-service/check"), any(), any()))
+                    .thenReturn(Map.of("riskPassed", true));
+            when(restTemplate.postForObject(eq("http://limit-service/check"), any(), any()))
+                    .thenReturn(Map.of("limitPassed", true));
+            when(restTemplate.postForObject(eq("http://compliance-service/check"), any(), any()))
+                    .thenReturn(Map.of("compliancePassed", true));
+            when(processInstanceService.updateProcessInstance(any(ProcessInstance.class)))
+                    .thenAnswer(invocation -> invocation.getArgument(0));
+
+            // 执行测试
+            ProcessInstance result = processEngineService.executeNodeAsync("instance-002").get(5, TimeUnit.SECONDS);
+
+            // 验证所有分支汇聚并合并了变量
+            assertEquals("RUNNING", result.getStatus());
+            assertEquals("join", result.getCurrentNodeId());
+            assertEquals(true, result.getVariables().get("riskPassed"));
+            assertEquals(true, result.getVariables().get("limitPassed"));
+            assertEquals(true, result.getVariables().get("compliancePassed"));
+            assertEquals(3, result.getTokens().size());
+            assertTrue(result.getTokens().stream().allMatch(token -> "JOINED".equals(token.getStatus())));
+            assertTrue(result.getTokens().stream().allMatch(token -> token.getOutputs() == null));
+        } finally {
+            engineExecutor.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 测试并行分支失败时流程实例标记为失败并记录失败分支
+     */
+    @Test
+    public void testParallelGatewayBranchFailure() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        ReflectionTestUtils.setField(processEngineService, "parallelBranchExecutor", executor);
+        try {
+            ProcessInstance instance = new ProcessInstance();
+            instance.setId("instance-003");
+            instance.setProcessDefinitionId("process-002");
+            instance.setProcessDefinitionVersion(1);
+            instance.setStatus("RUNNING");
+            instance.setCurrentNodeId("fork");
+            when(processInstanceService.getProcessInstance("instance-003")).thenReturn(instance);
+            when(processDefinitionService.getProcessDefinition("process-002", 1))
+                    .thenReturn(createParallelProcessDefinition("process-002"));
+
+            when(restTemplate.postForObject(anyString(), any(), any())).thenReturn(Map.of("passed", true));
+            when(restTemplate.postForObject(eq("http://limit-service/check"), any(), any()))
+                    .thenThrow(new RuntimeException("limit service unavailable"));
+            when(processInstanceService.updateProcessInstance(any(ProcessInstance.class)))
+                    .thenAnswer(invocation -> invocation.getArgument(0));
+
+            ProcessInstance result = processEngineService.executeNode("instance-003");
+
+            assertEquals("FAILED", result.getStatus());
+            assertEquals("fork", result.getCurrentNodeId());
+            assertTrue(result.getTokens().stream()
+                    .anyMatch(token -> "FAILED".equals(token.getStatus()) && "limit".equals(token.getCurrentNodeId())));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * 测试部分分支失败后重试时只重新执行未汇聚的分支，已汇聚分支的结果在汇聚时合并
+     */
+    @Test
+    public void testParallelRetryRunsOnlyUnjoinedBranches() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        ReflectionTestUtils.setField(processEngineService, "parallelBranchExecutor", executor);
+        try {
+            ProcessDefinition definition = createParallelProcessDefinition("process-002");
+            definition.getNodes().get(0).setRetryCount(1);
+            ProcessInstance instance = new ProcessInstance();
+            instance.setId("instance-003");
+            instance.setProcessDefinitionId("process-002");
+            instance.setProcessDefinitionVersion(1);
+            instance.setStatus("RUNNING");
+            instance.setCurrentNodeId("fork");
+            when(processDefinitionService.getProcessDefinition("process-002", 1)).thenReturn(definition);
+            when(processInstanceService.updateProcessInstance(any(ProcessInstance.class)))
+                    .thenAnswer(invocation -> invocation.<ProcessInstance>getArgument(0).copy());
+            when(restTemplate.postForObject(eq("http://risk-service/check"), any(), any()))
+                    .thenReturn(Map.of("riskPassed", true));
+            when(restTemplate.postForObject(eq("http://compliance-service/check"), any(), any()))
+                    .thenReturn(Map.of("compliancePassed", true));
+            when(restTemplate.postForObject(eq("http://limit-service/check"), any(), any()))
+                    .thenThrow(new RuntimeException("limit service unavailable"))
+                    .thenReturn(Map.of("limitPassed", true));
+
+            when(processInstanceService.getProcessInstance("instance-003")).thenReturn(instance);
+            ProcessInstance failed = processEngineService.executeNode("instance-003");
+            assertEquals("fork", failed.getCurrentNodeId());
+            when(processInstanceService.getProcessInstance("instance-003")).thenReturn(failed);
+            ProcessInstance result = processEngineService.executeNode("instance-003");
+
+            assertEquals("join", result.getCurrentNodeId());
+            assertEquals(true, result.getVariables().get("riskPassed"));
+            assertEquals(true, result.getVariables().get("limitPassed"));
+            assertEquals(true, result.getVariables().get("compliancePassed"));
+            verify(restTemplate, times(1)).postForObject(eq("http://risk-service/check"), any(), any());
+            verify(restTemplate, times(1)).postForObject(eq("http://compliance-service/check"), any(), any());
+            verify(restTemplate, times(2)).postForObject(eq("http://limit-service/check"), any(), any());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 测试任务节点失败且设置了重试次数时保持运行状态并设置重试定时器
+     */
+    @Test
+    public void testTaskFailureSchedulesRetry() {
+        ProcessDefinition definition = createTestProcessDefinition("process-001");
+        ProcessNode task = definition.getNodes().stream()
+                .filter(node -> "task1".equals(node.getId()))
+                .findFirst()
+                .orElseThrow();
+        task.setRetryCount(2);
+        task.setRetryInterval(5000L);
+        when(processDefinitionService.getProcessDefinition("process-001", 1)).thenReturn(definition);
+        when(processInstanceService.getProcessInstance("instance-001")).thenReturn(createRunningInstance("task1"));
+        when(restTemplate.postForObject(anyString(), any(), any()))
+                .thenThrow(new RuntimeException("approval service unavailable"));
+        when(processInstanceService.updateProcessInstance(any(ProcessInstance.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        ProcessInstance result = processEngineService.executeNode("instance-001");
+
+        assertEquals("RUNNING", result.getStatus());
+        assertEquals("task1", result.getCurrentNodeId());
+        assertEquals("approval service unavailable", result.getErrorMessage());
+        verify(nodeTimerScheduler).schedule(argThat(timer -> timer.type() == NodeTimer.Type.RETRY
+                && timer.attempt() == 1 && "task1".equals(timer.nodeId())));
+    }
+
+    /**
+     * 测试进入设置了超时的节点时设置超时定时器
+     */
+    @Test
+    public void testNodeTimeoutScheduledOnEntry() {
+        ProcessDefinition definition = createTestProcessDefinition("process-001");
+        definition.getNodes().stream()
+                .filter(node -> "gateway1".equals(node.getId()))
+                .findFirst()
+                .orElseThrow()
+                .setTimeout(60000L);
+        when(processDefinitionService.getProcessDefinition("process-001", 1)).thenReturn(definition);
+        when(processInstanceService.getProcessInstance("instance-001")).thenReturn(createRunningInstance("task1"));
+        when(restTemplate.postForObject(anyString(), any(), any())).thenReturn(Map.of("approved", true));
+        when(processInstanceService.updateProcessInstance(any(ProcessInstance.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        ProcessInstance result = processEngineService.executeNode("instance-001");
+
+        assertEquals("gateway1", result.getCurrentNodeId());
+        verify(nodeTimerScheduler).schedule(argThat(timer -> timer.type() == NodeTimer.Type.TIMEOUT
+                && "gateway1".equals(timer.nodeId()) && "instance-001".equals(timer.processInstanceId())));
+    }
+    
+    /**
+     * 测试重试失败的流程实例时重新设置超时定时器并从失败的节点重新执行
+     */
+    @Test
+    public void testRetryFailedProcess() {
+        ProcessDefinition definition = createTestProcessDefinition("process-001");
+        definition.getNodes().stream()
+                .filter(node -> "task1".equals(node.getId()))
+                .findFirst()
+                .orElseThrow()
+                .setTimeout(60000L);
+        when(processDefinitionService.getProcessDefinition("process-001", 1)).thenReturn(definition);
+        when(processInstanceService.retryProcessInstance("instance-001")).thenReturn(createRunningInstance("task1"));
+        when(processInstanceService.getProcessInstance("instance-001")).thenReturn(createRunningInstance("task1"));
+        when(restTemplate.postForObject(anyString(), any(), any())).thenReturn(Map.of("approved", true));
+        when(processInstanceService.updateProcessInstance(any(ProcessInstance.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        ProcessInstance result = processEngineService.retryProcess("instance-001");
+
+        assertEquals("gateway1", result.getCurrentNodeId());
+        verify(processInstanceService).retryProcessInstance("instance-001");
+        verify(nodeTimerScheduler).schedule(argThat(timer -> timer.type() == NodeTimer.Type.TIMEOUT
+                && "task1".equals(timer.nodeId())));
+    }
+    
+    /**
+     * 测试实例暂停时到期的定时器被推迟，恢复时重新放入时间轮
+     */
+    @Test
+    public void testTimerDeferredWhileSuspended() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ReflectionTestUtils.setField(processEngineService, "processEngineExecutor", executor);
+        ProcessInstance suspended = createRunningInstance("task1");
+        suspended.setStatus("SUSPENDED");
+        when(processInstanceService.getProcessInstance("instance-001")).thenReturn(suspended);
+        when(processInstanceService.resumeProcessInstance("instance-001")).thenReturn(createRunningInstance("task1"));
+        NodeTimer timer = new NodeTimer("instance-001", "task1", NodeTimer.Type.RETRY, 1, LocalDateTime.now());
+
+        try {
+            ReflectionTestUtils.<CompletableFuture<Void>>invokeMethod(processEngineService, "onTimer", timer).join();
+        } finally {
+            executor.shutdownNow();
+        }
+        processEngineService.resumeProcess("instance-001");
+
+        verify(nodeTimerScheduler).defer(timer);
+        verify(processInstanceService, never()).updateProcessInstance(any(ProcessInstance.class));
+        verify(nodeTimerScheduler).rearm("instance-001");
+    }
+    
+    private ProcessInstance createRunningInstance(String currentNodeId) {
+        ProcessInstance instance = new ProcessInstance();
+        instance.setId("instance-001");
+        instance.setProcessDefinitionId("process-001");
+        instance.setProcessDefinitionVersion(1);
+        instance.setStatus("RUNNING");
+        instance.setCurrentNodeId(currentNodeId);
+        instance.setVariables(new HashMap<>(Map.of("amount", 2000)));
+        return instance;
+    }
+    
+    /**
+     * 创建包含并行网关的流程定义：风险、额度、合规检查并行执行后汇聚
+     */
+    private ProcessDefinition createParallelProcessDefinition(String processDefinitionId) {
+        ProcessDefinition definition = new ProcessDefinition();
+        definition.setId(processDefinitionId);
+        definition.setName("并行检查流程");
+        definition.setVersion(1);
+        definition.setStatus("PUBLISHED");
+        
+        List<ProcessNode> nodes = new ArrayList<>();
+        
+        ProcessNode forkNode = new ProcessNode();
+        forkNode.setId("fork");
+        forkNode.setType("GATEWAY");
+        forkNode.setGatewayType("PARALLEL");
+        forkNode.getNextNodes().add("risk");
+        forkNode.getNextNodes().add("limit");
+        forkNode.getNextNodes().add("compliance");
+        nodes.add(forkNode);
+        
+        for (String check : List.of("risk", "limit", "compliance")) {
+            ProcessNode checkNode = new ProcessNode();
+            checkNode.setId(check);
+            checkNode.setType("TASK");
+            checkNode.setServiceName(check + "-service");
+            checkNode.setOperationName("check");
+            checkNode.getNextNodes().add("join");
+            nodes.add(checkNode);
+        }
+        
+        ProcessNode joinNode = new ProcessNode();
+        joinNode.setId("join");
+        joinNode.setType("GATEWAY");
+        joinNode.setGatewayType("PARALLEL");
+        joinNode.getNextNodes().add("end");
+        nodes.add(joinNode);
+        
+        ProcessNode endNode = new ProcessNode();
+        endNode.setId("end");
+        endNode.setType("END");
+        nodes.add(endNode);
+        
+        definition.setNodes(nodes);
+        return definition;
+    }
+    
     /**
      * 创建测试用的流程定义
      */
@@ -0,0 +1,186 @@
+package com.example.demotrade.service.impl;
+
+import com.example.demotrade.exception.ProcessInstanceConflictException;
+import com.example.demotrade.model.InstanceStatus;
+import com.example.demotrade.model.ProcessInstance;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 基于事件日志的流程实例服务测试类
+ */
+public class EventSourcedProcessInstanceServiceTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * 测试重启后由快照和之后的日志恢复实例状态
+     */
+    @Test
+    public void testRecoverFromSnapshotAndTail() throws IOException {
+        EventSourcedProcessInstanceService service = open();
+        ProcessInstance instance = new ProcessInstance();
+        instance.setProcessDefinitionId("def-1");
+        instance.setBusinessId("order-1");
+        instance.setCurrentNodeId("start");
+        instance.setStatus("RUNNING");
+        instance.setVariables(new HashMap<>(Map.of("amount", 100, "remark", "urgent")));
+        String id = service.createProcessInstance(instance).getId();
+
+        ProcessInstance loaded = service.getProcessInstance(id);
+        loaded.setCurrentNodeId("task1");
+        loaded.getVariables().put("approved", true);
+        loaded.getVariables().remove("remark");
+        service.updateProcessInstance(loaded);
+        service.snapshot();
+
+        // 快照之后的变更只存在于日志中
+        service.suspendProcessInstance(id);
+        service.updateProcessVariables(id, Map.of("amount", 200));
+        service.close();
+
+        EventSourcedProcessInstanceService recovered = open();
+        ProcessInstance restored = recovered.getProcessInstance(id);
+        assertEquals("task1", restored.getCurrentNodeId());
+        assertEquals("SUSPENDED", restored.getStatus());
+        assertEquals(200, restored.getVariables().get("amount"));
+        assertEquals(true, restored.getVariables().get("approved"));
+        assertFalse(restored.getVariables().containsKey("remark"));
+        assertEquals(3L, restored.getVersion());
+        assertEquals(1, recovered.findByBusinessId("order-1").size());
+        recovered.close();
+    }
+
+    /**
+     * 测试版本号不一致和状态不允许时抛出冲突异常，且不写入日志
+     */
+    @Test
+    public void testConflicts() throws IOException {
+        EventSourcedProcessInstanceService service = open();
+        ProcessInstance instance = new ProcessInstance();
+        instance.setStatus("RUNNING");
+        String id = service.createProcessInstance(instance).getId();
+
+        ProcessInstance first = service.getProcessInstance(id);
+        ProcessInstance second = service.getProcessInstance(id);
+        first.setCurrentNodeId("task1");
+        service.updateProcessInstance(first);
+        second.setCurrentNodeId("task2");
+        assertThrows(ProcessInstanceConflictException.class, () -> service.updateProcessInstance(second));
+        assertThrows(ProcessInstanceConflictException.class, () -> service.resumeProcessInstance(id));
+        assertThrows(ProcessInstanceConflictException.class, () -> service.retryProcessInstance(id));
+        assertThrows(RuntimeException.class, () -> service.suspendProcessInstance("missing"));
+
+        // 失败的实例只能重试，不能恢复
+        ProcessInstance failed = service.getProcessInstance(id);
+        failed.setStatus("FAILED");
+        service.updateProcessInstance(failed);
+        assertThrows(ProcessInstanceConflictException.class, () -> service.resumeProcessInstance(id));
+        assertEquals("RUNNING", service.retryProcessInstance(id).getStatus());
+        service.close();
+
+        EventSourcedProcessInstanceService recovered = open();
+        assertEquals("task1", recovered.getProcessInstance(id).getCurrentNodeId());
+        assertEquals(3L, recovered.getProcessInstance(id).getVersion());
+        recovered.close();
+    }
+
+    /**
+     * 测试快照时移出结束超过保留时长的实例并写入归档文件，重启后不再恢复
+     */
+    @Test
+    public void testArchiveEndedInstancesOnSnapshot() throws Exception {
+        EventSourcedProcessInstanceService service = open();
+        String running = create(service, "order-1");
+        String terminated = create(service, "order-1");
+        service.terminateProcessInstance(terminated, "cancelled");
+        ReflectionTestUtils.setField(service, "archiveMinAge", Duration.ZERO);
+        Thread.sleep(10);
+
+        service.snapshot();
+
+        assertNull(service.getProcessInstance(terminated));
+        assertTrue(service.findByStatus("TERMINATED").isEmpty());
+        assertEquals(List.of(running), ids(service.findByBusinessId("order-1")));
+        assertThrows(RuntimeException.class, () -> service.updateProcessVariables(terminated, Map.of("a", 1)));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.filter(file -> file.getFileName().toString().startsWith("archive-")).count());
+        }
+        service.close();
+
+        EventSourcedProcessInstanceService recovered = open();
+        assertNull(recovered.getProcessInstance(terminated));
+        assertEquals(List.of(running), ids(recovered.findByBusinessId("order-1")));
+        recovered.close();
+    }
+
+    /**
+     * 测试按状态分页查询只返回游标之后的实例，状态变化后按新状态查询
+     */
+    @Test
+    public void testQueryByStatusWithCursor() throws Exception {
+        EventSourcedProcessInstanceService service = open();
+        List<String> created = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            created.add(create(service, "order-" + i));
+            Thread.sleep(2);
+        }
+        service.suspendProcessInstance(created.get(1));
+
+        List<ProcessInstance> firstPage = service.findByStatus("RUNNING", null, null, 2);
+        assertEquals(List.of(created.get(0), created.get(2)), ids(firstPage));
+        ProcessInstance last = firstPage.get(1);
+        assertEquals(List.of(created.get(3)),
+                ids(service.findByStatus("RUNNING", last.getCreateTime(), last.getId(), 2)));
+        assertEquals(created, ids(service.findByStatuses(EnumSet.of(InstanceStatus.RUNNING, InstanceStatus.SUSPENDED),
+                null, null, 10)));
+        assertEquals(List.of(created.get(1)), ids(service.findByStatus("SUSPENDED")));
+        try (Stream<ProcessInstance> running = service.streamByStatus("RUNNING");
+             Stream<ProcessInstance> byBusinessId = service.streamByBusinessId("order-1")) {
+            assertEquals(List.of(created.get(0), created.get(2), created.get(3)),
+                    running.map(ProcessInstance::getId).collect(Collectors.toList()));
+            assertEquals(List.of(created.get(1)), byBusinessId.map(ProcessInstance::getId).collect(Collectors.toList()));
+        }
+        service.close();
+    }
+
+    private String create(EventSourcedProcessInstanceService service, String businessId) {
+        ProcessInstance instance = new ProcessInstance();
+        instance.setBusinessId(businessId);
+        instance.setStatus("RUNNING");
+        return service.createProcessInstance(instance).getId();
+    }
+
+    private static List<String> ids(List<ProcessInstance> instances) {
+        return instances.stream().map(ProcessInstance::getId).collect(Collectors.toList());
+    }
+
+    private EventSourcedProcessInstanceService open() throws IOException {
+        EventSourcedProcessInstanceService service = new EventSourcedProcessInstanceService();
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper().registerModule(new JavaTimeModule()));
+        ReflectionTestUtils.setField(service, "directory", directory.toString());
+        ReflectionTestUtils.setField(service, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(service, "archiveMinAge", Duration.ofDays(30));
+        ReflectionTestUtils.setField(service, "stripeCount", 16);
+        service.recover();
+        return service;
+    }
+}
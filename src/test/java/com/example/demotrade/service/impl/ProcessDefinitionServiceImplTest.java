@@ -0,0 +1,109 @@
+package com.example.demotrade.service.impl;
+
+import com.example.demotrade.cache.ProcessDefinitionCache;
+import com.example.demotrade.codec.PayloadCodec;
+import com.example.demotrade.codec.PayloadFormat;
+import com.example.demotrade.entity.ProcessDefinitionEntity;
+import com.example.demotrade.model.DefinitionStatus;
+import com.example.demotrade.model.ProcessDefinition;
+import com.example.demotrade.model.ProcessNode;
+import com.example.demotrade.repository.ProcessDefinitionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 流程定义服务实现的单元测试类
+ * 用于测试新版本的状态和发布时的校验
+ */
+public class ProcessDefinitionServiceImplTest {
+
+    @Mock
+    private ProcessDefinitionRepository processDefinitionRepository;
+
+    @Mock
+    private ProcessDefinitionCache processDefinitionCache;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private PayloadCodec payloadCodec = new PayloadCodec(new ObjectMapper(), PayloadFormat.SMILE, true, 512);
+
+    @InjectMocks
+    private ProcessDefinitionServiceImpl processDefinitionService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(processDefinitionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    /**
+     * 测试保存已发布的流程定义时生成草稿版本，不带执行计划，不修改传入的定义
+     */
+    @Test
+    public void testSaveAlwaysCreatesDraft() {
+        when(processDefinitionRepository.findMaxVersionByProcessDefinitionId("process-001")).thenReturn(2);
+        ProcessDefinition definition = createDefinition("process-001");
+        definition.setStatus(DefinitionStatus.PUBLISHED.name());
+        // 从缓存中获取的定义已冻结，保存时不修改传入的定义
+        definition.freeze();
+
+        ProcessDefinition saved = processDefinitionService.saveProcessDefinition(definition);
+
+        ArgumentCaptor<ProcessDefinitionEntity> captor = ArgumentCaptor.forClass(ProcessDefinitionEntity.class);
+        verify(processDefinitionRepository).save(captor.capture());
+        assertEquals(DefinitionStatus.DRAFT, captor.getValue().getStatus());
+        assertNull(captor.getValue().getExecutionPlan());
+        assertEquals(3, saved.getVersion());
+        assertEquals(DefinitionStatus.DRAFT.name(), saved.getStatus());
+        assertEquals(DefinitionStatus.PUBLISHED.name(), definition.getStatus());
+    }
+
+    /**
+     * 测试发布时编译执行计划
+     */
+    @Test
+    public void testPublishCompilesPlan() {
+        ProcessDefinition saved = processDefinitionService.saveProcessDefinition(createDefinition(null));
+        ArgumentCaptor<ProcessDefinitionEntity> captor = ArgumentCaptor.forClass(ProcessDefinitionEntity.class);
+        verify(processDefinitionRepository).save(captor.capture());
+        when(processDefinitionRepository.findByIdAndVersion(saved.getId(), 1))
+                .thenReturn(Optional.of(captor.getValue()));
+
+        ProcessDefinition published = processDefinitionService.publishProcessDefinition(saved.getId(), 1);
+
+        assertEquals(DefinitionStatus.PUBLISHED.name(), published.getStatus());
+        assertNotNull(published.getExecutionPlan());
+    }
+
+    private ProcessDefinition createDefinition(String id) {
+        ProcessDefinition definition = new ProcessDefinition();
+        definition.setId(id);
+        definition.setName("审批流程");
+
+        ProcessNode start = new ProcessNode();
+        start.setId("start");
+        start.setType("START");
+        start.getNextNodes().add("end");
+        ProcessNode end = new ProcessNode();
+        end.setId("end");
+        end.setType("END");
+        definition.setNodes(List.of(start, end));
+        return definition;
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.demotrade.service.impl;
+
+import com.example.demotrade.codec.PayloadCodec;
+import com.example.demotrade.codec.PayloadFormat;
+import com.example.demotrade.entity.ProcessInstanceEntity;
+import com.example.demotrade.exception.ProcessInstanceConflictException;
+import com.example.demotrade.lock.InstanceLockManager;
+import com.example.demotrade.model.InstanceStatus;
+import com.example.demotrade.model.ProcessInstance;
+import com.example.demotrade.repository.ProcessInstanceRepository;
+import com.example.demotrade.service.ProcessVariableService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 流程实例服务实现的单元测试类
+ * 用于测试带版本号和状态条件的更新
+ */
+public class ProcessInstanceServiceImplTest {
+
+    @Mock
+    private ProcessInstanceRepository processInstanceRepository;
+
+    @Mock
+    private ProcessVariableService processVariableService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private InstanceLockManager instanceLockManager;
+
+    private Long fencingToken;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private PayloadCodec payloadCodec = new PayloadCodec(new ObjectMapper(), PayloadFormat.SMILE, true, 512);
+
+    @InjectMocks
+    private ProcessInstanceServiceImpl processInstanceService;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        doAnswer(invocation -> invocation.<Function<Long, Object>>getArgument(1).apply(fencingToken))
+                .when(instanceLockManager).execute(anyString(), any());
+    }
+
+    /**
+     * 测试版本号一致时更新成功，版本号加1且只写入变化的变量
+     */
+    @Test
+    public void testUpdateWithMatchingVersion() {
+        ProcessInstance instance = createLoadedInstance(3L);
+        instance.getVariables().put("approved", true);
+        instance.setCurrentNodeId("task2");
+
+        when(processInstanceRepository.updateIfVersionMatches(eq("instance-001"), eq(3L),
+                eq(Set.of(InstanceStatus.RUNNING, InstanceStatus.SUSPENDED, InstanceStatus.FAILED)),
+                eq("task2"), eq(InstanceStatus.RUNNING),
+                any(), any(), any(), any())).thenReturn(1);
+
+        ProcessInstance result = processInstanceService.updateProcessInstance(instance);
+
+        assertEquals(4L, result.getVersion());
+        verify(processVariableService).saveVariables("instance-001", Map.of("approved", true));
+    }
+
+    /**
+     * 测试删除的变量在同一事务中删除对应的行，并以当前变量替换初始变量
+     */
+    @Test
+    public void testUpdateRemovesVariables() {
+        ProcessInstance instance = createLoadedInstance(3L);
+        instance.getVariables().remove("amount");
+        instance.getVariables().put("approved", true);
+        when(processInstanceRepository.updateIfVersionMatches(eq("instance-001"), eq(3L), any(), any(), any(),
+                any(), any(), any(), any())).thenReturn(1);
+
+        processInstanceService.updateProcessInstance(instance);
+
+        verify(processVariableService).saveVariables("instance-001", Map.of("approved", true));
+        verify(processVariableService).deleteVariables("instance-001", Set.of("amount"));
+        verify(processInstanceRepository).replaceInitialVariables(eq("instance-001"), any(), any());
+    }
+
+    /**
+     * 测试只修改变量时刷新更新时间和版本号，返回重新加载的实例
+     */
+    @Test
+    public void testUpdateProcessVariables() {
+        when(processInstanceRepository.touch(eq("instance-001"), any())).thenReturn(1);
+        ProcessInstanceEntity entity = new ProcessInstanceEntity();
+        entity.setId("instance-001");
+        entity.setStatus(InstanceStatus.RUNNING);
+        entity.setVersion(4L);
+        when(processInstanceRepository.findById("instance-001")).thenReturn(Optional.of(entity));
+        when(processVariableService.getVariables("instance-001")).thenReturn(Map.of("amount", 3000));
+
+        ProcessInstance result = processInstanceService.updateProcessVariables("instance-001", Map.of("amount", 3000));
+
+        assertEquals(4L, result.getVersion());
+        assertEquals(3000, result.getVariables().get("amount"));
+        verify(processVariableService).saveVariables("instance-001", Map.of("amount", 3000));
+    }
+
+    /**
+     * 测试版本号不一致时抛出冲突异常，不写入变量
+     */
+    @Test
+    public void testUpdateWithStaleVersion() {
+        ProcessInstance instance = createLoadedInstance(3L);
+        instance.getVariables().put("approved", true);
+
+        when(processInstanceRepository.updateIfVersionMatches(anyString(), any(), any(), any(), any(), any(),
+                any(), any(), any())).thenReturn(0);
+        when(processInstanceRepository.findStatusById("instance-001")).thenReturn(Optional.of(InstanceStatus.RUNNING));
+
+        ProcessInstanceConflictException exception = assertThrows(ProcessInstanceConflictException.class,
+                () -> processInstanceService.updateProcessInstance(instance));
+
+        assertEquals("instance-001", exception.getProcessInstanceId());
+        verify(processVariableService, never()).saveVariables(anyString(), anyMap());
+    }
+
+    /**
+     * 测试状态不满足时暂停失败，异常信息包含当前状态
+     */
+    @Test
+    public void testSuspendWithWrongStatus() {
+        when(processInstanceRepository.transitionStatus(eq("instance-001"), any(), eq(InstanceStatus.SUSPENDED),
+                any())).thenReturn(0);
+        when(processInstanceRepository.findStatusById("instance-001"))
+                .thenReturn(Optional.of(InstanceStatus.COMPLETED));
+
+        ProcessInstanceConflictException exception = assertThrows(ProcessInstanceConflictException.class,
+                () -> processInstanceService.suspendProcessInstance("instance-001"));
+
+        assertEquals("Cannot suspend process instance with status: COMPLETED", exception.getMessage());
+    }
+
+    /**
+     * 测试实例不存在时返回普通异常而不是冲突异常
+     */
+    @Test
+    public void testTerminateNotFound() {
+        when(processInstanceRepository.terminate(eq("missing"), any(), eq(InstanceStatus.TERMINATED), any(), any()))
+                .thenReturn(0);
+        when(processInstanceRepository.findStatusById("missing")).thenReturn(Optional.empty());
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> processInstanceService.terminateProcessInstance("missing", "cancelled"));
+
+        assertFalse(exception instanceof ProcessInstanceConflictException);
+        assertEquals("Process instance not found: missing", exception.getMessage());
+    }
+
+    /**
+     * 测试分布式锁的fencing token已被其它节点推进时不执行修改
+     */
+    @Test
+    public void testStaleFencingToken() {
+        fencingToken = 7L;
+        when(processInstanceRepository.fence("instance-001", 7L)).thenReturn(0);
+        when(processInstanceRepository.findStatusById("instance-001")).thenReturn(Optional.of(InstanceStatus.RUNNING));
+
+        ProcessInstanceConflictException exception = assertThrows(ProcessInstanceConflictException.class,
+                () -> processInstanceService.suspendProcessInstance("instance-001"));
+
+        assertEquals("Distributed lock expired before write, fencing token 7 is stale", exception.getMessage());
+        verify(processInstanceRepository, never()).transitionStatus(anyString(), any(), any(), any());
+    }
+
+    private ProcessInstance createLoadedInstance(Long version) {
+        ProcessInstance instance = new ProcessInstance();
+        instance.setId("instance-001");
+        instance.setProcessDefinitionId("process-001");
+        instance.setProcessDefinitionVersion(1);
+        instance.setCurrentNodeId("task1");
+        instance.setStatus("RUNNING");
+        instance.setVersion(version);
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("amount", 2000);
+        instance.setVariables(variables);
+        instance.setPersistedVariables(new HashMap<>(variables));
+        return instance;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.demotrade.service.impl;
+
+import com.example.demotrade.entity.ProcessInstanceEntity;
+import com.example.demotrade.model.InstanceStatus;
+import com.example.demotrade.repository.ProcessInstanceRepository;
+import com.example.demotrade.service.ProcessVariableService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 流程实例写入缓冲区的单元测试类
+ */
+public class ProcessInstanceWriteBufferTest {
+
+    @Mock
+    private ProcessInstanceRepository processInstanceRepository;
+
+    @Mock
+    private ProcessVariableService processVariableService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private ProcessInstanceWriteBuffer writeBuffer;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionTemplate.execute(any())).thenAnswer(
+                invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        ReflectionTestUtils.setField(writeBuffer, "maxBatchSize", 3);
+        ReflectionTestUtils.setField(writeBuffer, "flushIntervalMs", 200L);
+        ReflectionTestUtils.setField(writeBuffer, "queueCapacity", 100);
+        ReflectionTestUtils.setField(writeBuffer, "writerFallbackThreads", 1);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        writeBuffer.stop();
+    }
+
+    /**
+     * 测试多条变更合并为一批提交，版本冲突的变更不写入变量
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGroupCommit() {
+        when(processInstanceRepository.batchUpdateIfVersionMatches(anyList())).thenReturn(new int[]{1, 0, 1});
+        writeBuffer.start();
+
+        CompletableFuture<Boolean> first = writeBuffer.submit(createState("instance-1"), Map.of("amount", 1), Set.of());
+        CompletableFuture<Boolean> second = writeBuffer.submit(createState("instance-2"), Map.of("amount", 2), Set.of());
+        CompletableFuture<Boolean> third = writeBuffer.submit(createState("instance-3"), Map.of("amount", 3), Set.of());
+
+        assertTrue(first.join());
+        assertFalse(second.join());
+        assertTrue(third.join());
+
+        ArgumentCaptor<List<ProcessInstanceEntity>> states = ArgumentCaptor.forClass(List.class);
+        verify(processInstanceRepository, times(1)).batchUpdateIfVersionMatches(states.capture());
+        assertEquals(3, states.getValue().size());
+        verify(processVariableService).saveVariables(Map.of(
+                "instance-1", Map.of("amount", 1),
+                "instance-3", Map.of("amount", 3)));
+    }
+
+    /**
+     * 测试事务失败时整批变更以异常完成
+     */
+    @Test
+    public void testFlushFailure() {
+        when(processInstanceRepository.batchUpdateIfVersionMatches(anyList()))
+                .thenThrow(new RuntimeException("database unavailable"));
+        writeBuffer.start();
+
+        CompletableFuture<Boolean> future = writeBuffer.submit(createState("instance-1"), Map.of(), Set.of());
+
+        assertThrows(RuntimeException.class, future::join);
+    }
+
+    /**
+     * 测试整批提交失败时逐条重新提交，只有无法写入的变更以异常完成
+     */
+    @Test
+    public void testFlushFailureRetriesRowByRow() {
+        when(processInstanceRepository.batchUpdateIfVersionMatches(anyList())).thenAnswer(invocation -> {
+            List<ProcessInstanceEntity> states = invocation.getArgument(0);
+            if (states.stream().anyMatch(state -> "instance-2".equals(state.getId()))) {
+                throw new RuntimeException("data too long");
+            }
+            // instance-3的版本号已不一致
+            return states.stream().mapToInt(state -> "instance-1".equals(state.getId()) ? 1 : 0).toArray();
+        });
+        writeBuffer.start();
+
+        CompletableFuture<Boolean> first = writeBuffer.submit(createState("instance-1"), Map.of(), Set.of());
+        CompletableFuture<Boolean> second = writeBuffer.submit(createState("instance-2"), Map.of(), Set.of());
+        CompletableFuture<Boolean> third = writeBuffer.submit(createState("instance-3"), Map.of(), Set.of());
+
+        assertTrue(first.join());
+        assertThrows(RuntimeException.class, second::join);
+        assertFalse(third.join());
+        verify(processInstanceRepository, times(4)).batchUpdateIfVersionMatches(anyList());
+    }
+
+    private ProcessInstanceEntity createState(String id) {
+        ProcessInstanceEntity state = new ProcessInstanceEntity();
+        state.setId(id);
+        state.setCurrentNodeId("task2");
+        state.setStatus(InstanceStatus.RUNNING);
+        state.setVersion(1L);
+        return state;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demotrade.timer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分层时间轮的单元测试类
+ * 用于测试跨层下放、超出范围的定时器和取消
+ */
+public class HierarchicalTimingWheelTest {
+
+    /**
+     * 测试随机到期时间的定时器都在到期后的第一次推进中触发，不会提前
+     * 每层4格共3层只覆盖64个tick，更晚到期的定时器需要多次重新放置
+     */
+    @Test
+    public void testFiresAtDeadlineAcrossLevels() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(10, 2, 3, 1000);
+        Random random = new Random(42);
+        Map<Long, Integer> remaining = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            long deadline = 1000 + random.nextInt(20000);
+            wheel.add(deadline, deadline);
+            remaining.merge(deadline, 1, Integer::sum);
+        }
+
+        long now = 1000;
+        while (now < 22000) {
+            long previous = now;
+            now += 1 + random.nextInt(50);
+            long current = now;
+            wheel.advance(current, deadline -> {
+                // 按tick向上取整：在(previous, current]之间到期的定时器在本次触发
+                assertTrue(deadline > previous - 10 && deadline <= current,
+                        "deadline " + deadline + " fired in (" + previous + ", " + current + "]");
+                remaining.merge(deadline, -1, Integer::sum);
+            });
+        }
+
+        assertEquals(0, wheel.size());
+        assertTrue(remaining.values().stream().allMatch(count -> count == 0));
+    }
+
+    /**
+     * 测试已取消的定时器不触发，重复取消返回false
+     */
+    @Test
+    public void testCancel() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 4, 2, 0);
+        HierarchicalTimingWheel.Timeout<String> cancelled = wheel.add(500, "cancelled");
+        wheel.add(500, "kept");
+
+        assertTrue(wheel.cancel(cancelled));
+        assertFalse(wheel.cancel(cancelled));
+        assertFalse(cancelled.isPending());
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(1000, fired::add);
+        assertEquals(List.of("kept"), fired);
+    }
+
+    /**
+     * 测试添加时已过期的定时器在下一个tick触发
+     */
+    @Test
+    public void testOverdueFiresOnNextTick() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(100, 8, 4, 10_000);
+        wheel.add(5_000, "overdue");
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(10_050, fired::add);
+        assertTrue(fired.isEmpty());
+        wheel.advance(10_100, fired::add);
+        assertEquals(List.of("overdue"), fired);
+    }
+}
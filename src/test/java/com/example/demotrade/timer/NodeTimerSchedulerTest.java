@@ -0,0 +1,250 @@
+package com.example.demotrade.timer;
+
+import com.example.demotrade.cluster.InstanceOwnership;
+import com.example.demotrade.entity.ProcessTimerEntity;
+import com.example.demotrade.repository.ProcessTimerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 流程节点定时器调度器的单元测试类
+ * 手动推进时钟，不启动后台线程
+ */
+public class NodeTimerSchedulerTest {
+
+    @Mock
+    private ProcessTimerRepository processTimerRepository;
+
+    @InjectMocks
+    private NodeTimerScheduler scheduler;
+
+    private final List<NodeTimer> fired = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(scheduler, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(scheduler, "tick", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(scheduler, "wheelBits", 8);
+        ReflectionTestUtils.setField(scheduler, "levels", 4);
+        ReflectionTestUtils.setField(scheduler, "horizon", Duration.ofHours(1));
+        ReflectionTestUtils.setField(scheduler, "loadBatchSize", 2);
+        ReflectionTestUtils.setField(scheduler, "claimLease", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(scheduler, "dispatchFallbackThreads", 1);
+        ReflectionTestUtils.setField(scheduler, "running", true);
+        scheduler.init();
+        ReflectionTestUtils.setField(scheduler, "dispatchExecutor", (Executor) Runnable::run);
+        when(processTimerRepository.moveDueTime(any(), any(), anyInt(), any())).thenReturn(1);
+        scheduler.setHandler(timer -> {
+            fired.add(timer);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * 测试到期触发后删除数据库中的定时器，重新设置的定时器覆盖原定时器
+     */
+    @Test
+    public void testScheduleReplaceAndFire() {
+        LocalDateTime now = LocalDateTime.now();
+        scheduler.schedule(new NodeTimer("instance-1", "task1", NodeTimer.Type.TIMEOUT, 0, now.plusSeconds(1)));
+        NodeTimer replaced = new NodeTimer("instance-1", "task2", NodeTimer.Type.TIMEOUT, 0, now.plusSeconds(2));
+        scheduler.schedule(replaced);
+        assertEquals(1, scheduler.pendingCount());
+
+        scheduler.advance(toEpochMilli(now.plusSeconds(3)));
+
+        assertEquals(List.of(replaced), fired);
+        assertEquals(0, scheduler.pendingCount());
+        verify(processTimerRepository).moveDueTime(eq("instance-1:TIMEOUT"), eq(replaced.dueTime()), eq(0), any());
+        verify(processTimerRepository).deleteFired(eq("instance-1:TIMEOUT"), any());
+    }
+
+    /**
+     * 测试定时器已被其它节点认领或已被重新设置时不交给处理方
+     */
+    @Test
+    public void testSkipWhenClaimFails() {
+        LocalDateTime now = LocalDateTime.now();
+        NodeTimer timer = new NodeTimer("instance-1", "task1", NodeTimer.Type.RETRY, 1, now.plusSeconds(1));
+        when(processTimerRepository.moveDueTime(eq(timer.key()), eq(timer.dueTime()), eq(1), any())).thenReturn(0);
+
+        scheduler.schedule(timer);
+        scheduler.advance(toEpochMilli(now.plusSeconds(2)));
+
+        assertTrue(fired.isEmpty());
+        verify(processTimerRepository, never()).deleteFired(any(), any());
+        // 释放后数据库中的定时器可以重新加载
+        ProcessTimerEntity entity = createEntity("instance-1", timer.dueTime());
+        entity.setId(timer.key());
+        when(processTimerRepository.findByProcessInstanceId("instance-1")).thenReturn(List.of(entity));
+        assertEquals(1, scheduler.rearm("instance-1"));
+    }
+
+    /**
+     * 测试在非归属节点设置的定时器也放入本节点的时间轮，不等待归属节点加载
+     */
+    @Test
+    public void testScheduleOnNonOwner() {
+        InstanceOwnership instanceOwnership = mock(InstanceOwnership.class);
+        ReflectionTestUtils.setField(scheduler, "instanceOwnership", instanceOwnership);
+        when(instanceOwnership.isLocallyOwned("instance-1")).thenReturn(false);
+        LocalDateTime now = LocalDateTime.now();
+        NodeTimer timer = new NodeTimer("instance-1", "task1", NodeTimer.Type.RETRY, 1, now.plusSeconds(1));
+
+        scheduler.schedule(timer);
+        scheduler.advance(toEpochMilli(now.plusSeconds(2)));
+
+        assertEquals(List.of(timer), fired);
+        verify(processTimerRepository).deleteFired(eq("instance-1:RETRY"), any());
+    }
+
+    /**
+     * 测试取消的定时器不触发，超出horizon的定时器只写入数据库
+     */
+    @Test
+    public void testCancelAndBeyondHorizon() {
+        LocalDateTime now = LocalDateTime.now();
+        scheduler.schedule(new NodeTimer("instance-1", "task1", NodeTimer.Type.RETRY, 1, now.plusSeconds(1)));
+        scheduler.schedule(new NodeTimer("instance-2", "task1", NodeTimer.Type.TIMEOUT, 0, now.plusHours(2)));
+        assertEquals(1, scheduler.pendingCount());
+
+        scheduler.cancel("instance-1", NodeTimer.Type.RETRY);
+        scheduler.advance(toEpochMilli(now.plusSeconds(5)));
+
+        assertTrue(fired.isEmpty());
+        verify(processTimerRepository).deleteTimer("instance-1:RETRY");
+        verify(processTimerRepository, never()).deleteFired(any(), any());
+    }
+
+    /**
+     * 测试按页加载已过期的定时器，每页分散到一个tick触发
+     */
+    @Test
+    public void testRefillOverdueInPages() {
+        LocalDateTime dueTime = LocalDateTime.now();
+        ProcessTimerEntity first = createEntity("instance-1", dueTime.minusMinutes(3));
+        ProcessTimerEntity second = createEntity("instance-2", dueTime.minusMinutes(2));
+        ProcessTimerEntity third = createEntity("instance-3", dueTime.minusMinutes(1));
+        when(processTimerRepository.findByDueTimeLessThanEqualOrderByDueTimeAscIdAsc(any(), any()))
+                .thenReturn(List.of(first, second));
+        when(processTimerRepository.findDueAfter(any(), eq(second.getDueTime()), eq(second.getId()), any()))
+                .thenReturn(List.of(third));
+
+        // 在加载前取时间，逐tick推进时不会一次越过两页的触发时间
+        long now = System.currentTimeMillis();
+        assertEquals(3, scheduler.refill());
+        // 已在时间轮中的定时器不重复加载
+        when(processTimerRepository.findDueAfter(any(), any(), any(), any())).thenReturn(List.of());
+        assertEquals(0, scheduler.refill());
+
+        // 逐个tick推进，第一页在同一个tick触发，第二页在下一个tick触发
+        while (fired.isEmpty()) {
+            scheduler.advance(now);
+            now += 100;
+        }
+        assertEquals(2, fired.size());
+        scheduler.advance(now);
+        assertEquals(3, fired.size());
+        assertEquals("instance-3", fired.get(2).processInstanceId());
+    }
+
+    /**
+     * 测试推迟处理的定时器保留在数据库中，重新放入时间轮后再次触发
+     */
+    @Test
+    public void testDeferAndRearm() {
+        scheduler.setHandler(timer -> {
+            fired.add(timer);
+            scheduler.defer(timer);
+            return CompletableFuture.completedFuture(null);
+        });
+        LocalDateTime now = LocalDateTime.now();
+        NodeTimer timer = new NodeTimer("instance-1", "task1", NodeTimer.Type.RETRY, 1, now.plusSeconds(1));
+        scheduler.schedule(timer);
+        scheduler.advance(toEpochMilli(now.plusSeconds(2)));
+
+        assertEquals(List.of(timer), fired);
+        verify(processTimerRepository, never()).deleteFired(any(), any());
+        // 恢复原到期时间
+        verify(processTimerRepository).moveDueTime(eq(timer.key()), any(), eq(1), eq(timer.dueTime()));
+
+        ProcessTimerEntity entity = createEntity("instance-1", timer.dueTime());
+        entity.setId(timer.key());
+        entity.setTimerType(NodeTimer.Type.RETRY.name());
+        entity.setAttempt(1);
+        when(processTimerRepository.findByProcessInstanceId("instance-1")).thenReturn(List.of(entity));
+        assertEquals(1, scheduler.rearm("instance-1"));
+        scheduler.setHandler(next -> {
+            fired.add(next);
+            return CompletableFuture.completedFuture(null);
+        });
+        scheduler.advance(toEpochMilli(now.plusSeconds(3)));
+
+        assertEquals(List.of(timer, timer), fired);
+        verify(processTimerRepository).deleteFired(eq("instance-1:RETRY"), any());
+    }
+
+    /**
+     * 测试推迟处理期间被要求重新放入时间轮的定时器，在处理完成后重新放入
+     */
+    @Test
+    public void testRearmWhileDeferring() {
+        LocalDateTime now = LocalDateTime.now();
+        NodeTimer timer = new NodeTimer("instance-1", "task1", NodeTimer.Type.TIMEOUT, 0, now.plusSeconds(1));
+        when(processTimerRepository.findByProcessInstanceId("instance-1"))
+                .thenReturn(List.of(createEntity("instance-1", timer.dueTime())));
+        CompletableFuture<Void> handling = new CompletableFuture<>();
+        scheduler.setHandler(next -> {
+            fired.add(next);
+            return handling;
+        });
+        scheduler.schedule(timer);
+        scheduler.advance(toEpochMilli(now.plusSeconds(2)));
+
+        // 处理方读取到暂停状态后实例恢复
+        assertEquals(0, scheduler.rearm("instance-1"));
+        scheduler.defer(timer);
+        handling.complete(null);
+
+        assertEquals(1, scheduler.pendingCount());
+        verify(processTimerRepository, never()).deleteFired(any(), any());
+    }
+
+    private ProcessTimerEntity createEntity(String processInstanceId, LocalDateTime dueTime) {
+        ProcessTimerEntity entity = new ProcessTimerEntity();
+        entity.setId(NodeTimer.key(processInstanceId, NodeTimer.Type.TIMEOUT));
+        entity.setProcessInstanceId(processInstanceId);
+        entity.setNodeId("task1");
+        entity.setTimerType(NodeTimer.Type.TIMEOUT.name());
+        entity.setAttempt(0);
+        entity.setDueTime(dueTime);
+        return entity;
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.demotrade.util;
+
+import com.alibaba.fastjson.JSONObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 存储过程异步执行器的测试类
+ */
+public class StoredProcedureExecutorTest {
+
+    private static final AtomicInteger RUNNING = new AtomicInteger();
+
+    private static final AtomicInteger MAX_RUNNING = new AtomicInteger();
+
+    private static volatile CountDownLatch release = new CountDownLatch(0);
+
+    private EmbeddedDatabase dataSource;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StoredProcedureExecutor executor;
+
+    /**
+     * H2中以Java静态方法注册的测试存储过程，阻塞到release打开后返回name:age
+     */
+    public static String slowUserInfo(String name, Integer age) throws InterruptedException {
+        MAX_RUNNING.accumulateAndGet(RUNNING.incrementAndGet(), Math::max);
+        try {
+            release.await(5, TimeUnit.SECONDS);
+            return name + ":" + age;
+        } finally {
+            RUNNING.decrementAndGet();
+        }
+    }
+
+    /**
+     * 不阻塞的测试存储过程
+     */
+    public static String fastUserInfo(String name, Integer age) {
+        return name + ":" + age;
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE ALIAS SLOW_USER_INFO FOR \"" + StoredProcedureExecutorTest.class.getName() + ".slowUserInfo\"");
+            stmt.execute("CREATE ALIAS FAST_USER_INFO FOR \"" + StoredProcedureExecutorTest.class.getName() + ".fastUserInfo\"");
+        }
+        RUNNING.set(0);
+        MAX_RUNNING.set(0);
+        meterRegistry = new SimpleMeterRegistry();
+        executor = newExecutor(dataSource,
+                new MockEnvironment().withProperty("demo-trade.stored-procedure.executor.procedure-concurrency.SLOW_USER_INFO", "2"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+        dataSource.shutdown();
+    }
+
+    private StoredProcedureExecutor newExecutor(DataSource dataSource, MockEnvironment environment) {
+        StoredProcedureExecutor executor = new StoredProcedureExecutor();
+        ReflectionTestUtils.setField(executor, "dataSource", dataSource);
+        ReflectionTestUtils.setField(executor, "storedProcedureUtil", new StoredProcedureUtil(100));
+        ReflectionTestUtils.setField(executor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(executor, "environment", environment);
+        ReflectionTestUtils.setField(executor, "queryTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(executor, "maxConcurrency", 8);
+        ReflectionTestUtils.setField(executor, "perProcedureConcurrency", 4);
+        executor.init();
+        return executor;
+    }
+
+    /**
+     * 测试异步执行返回结果并记录耗时
+     */
+    @Test
+    void testExecuteAsync() throws Exception {
+        List<JSONObject> result = executor.executeAsync("SLOW_USER_INFO", List.of("张三", 25), List.of())
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, result.size());
+        assertTrue(result.get(0).values().contains("张三:25"));
+        assertEquals(1, meterRegistry.get("demo-trade.stored-procedure.latency")
+                .tag("procedure", "SLOW_USER_INFO").tag("outcome", "success").timer().count());
+    }
+
+    /**
+     * 测试同一存储过程的并发数不超过配置的上限
+     */
+    @Test
+    void testPerProcedureConcurrencyLimit() throws Exception {
+        release = new CountDownLatch(1);
+        List<CompletableFuture<List<JSONObject>>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(executor.executeAsync("SLOW_USER_INFO", List.of("用户" + i, i), List.of()));
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (RUNNING.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(2, RUNNING.get());
+        assertEquals(2.0, meterRegistry.get("demo-trade.stored-procedure.in-flight")
+                .tag("procedure", "SLOW_USER_INFO").gauge().value());
+
+        release.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        assertEquals(2, MAX_RUNNING.get());
+    }
+
+    /**
+     * 测试平台线程池中同一存储过程的调用超出线程数时，其它存储过程的调用仍能执行
+     */
+    @Test
+    void testSlowProcedureDoesNotStarveOthers() throws Exception {
+        // 模拟JDK 17上退化的平台线程池
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        ReflectionTestUtils.setField(executor, "executor", pool);
+        release = new CountDownLatch(1);
+        List<CompletableFuture<List<JSONObject>>> slow = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            slow.add(executor.executeAsync("SLOW_USER_INFO", List.of("用户" + i, i), List.of()));
+        }
+        // 等两个慢调用占满该存储过程的并发数，线程池只剩一个空闲线程
+        long deadline = System.currentTimeMillis() + 5000;
+        while (RUNNING.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        List<JSONObject> fast = executor.executeAsync("FAST_USER_INFO", List.of("张三", 25), List.of())
+                .get(3, TimeUnit.SECONDS);
+
+        assertTrue(fast.get(0).values().contains("张三:25"));
+        assertEquals(2, RUNNING.get());
+        assertEquals(4.0, meterRegistry.get("demo-trade.stored-procedure.queued")
+                .tag("procedure", "SLOW_USER_INFO").gauge().value());
+        release.countDown();
+        CompletableFuture.allOf(slow.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        assertEquals(2, MAX_RUNNING.get());
+        pool.shutdown();
+    }
+
+    /**
+     * 测试每次调用都设置语句超时，超时以SQLTimeoutException完成
+     */
+    @Test
+    void testQueryTimeout() throws SQLException {
+        DataSource mockDataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        CallableStatement stmt = mock(CallableStatement.class);
+        when(mockDataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareCall(anyString())).thenReturn(stmt);
+        when(stmt.execute()).thenThrow(new SQLTimeoutException("Statement cancelled due to timeout"));
+        StoredProcedureExecutor mockExecutor = newExecutor(mockDataSource, new MockEnvironment());
+
+        CompletableFuture<List<JSONObject>> future = mockExecutor.submit("SLOW_USER_INFO", Duration.ofMillis(1500),
+                (util, conn) -> util.executeStoredProcedure(conn, "SLOW_USER_INFO", List.of("张三", 25), List.of()));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SQLTimeoutException.class, e.getCause());
+        verify(stmt).setQueryTimeout(2);
+        verify(connection).close();
+        assertEquals(1, meterRegistry.get("demo-trade.stored-procedure.latency")
+                .tag("outcome", "timeout").timer().count());
+        mockExecutor.shutdown();
+    }
+}
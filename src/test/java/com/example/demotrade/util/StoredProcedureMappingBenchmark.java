@@ -0,0 +1,150 @@
+package com.example.demotrade.util;
+
+import com.alibaba.fastjson.JSONObject;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 存储过程结果行映射的JMH基准测试
+ * 对比逐格查询列名的JSONObject读取与缓存列信息后读取为JSONObject、Object[]、记录的开销
+ * <p>
+ * 运行方式：mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath com.example.demotrade.util.StoredProcedureMappingBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoredProcedureMappingBenchmark {
+
+    private static final int ROW_COUNT = 1000;
+
+    private static final String PROCEDURE_NAME = "LIST_ORDERS";
+
+    public record OrderRow(long orderId, String orderNo, String customerId, BigDecimal amount, String status,
+                           int itemCount) {
+    }
+
+    private EmbeddedDatabase dataSource;
+
+    private Connection connection;
+
+    private StoredProcedureUtil storedProcedureUtil;
+
+    /**
+     * H2中以Java静态方法注册的测试存储过程，返回count个订单
+     */
+    public static ResultSet listOrders(Integer count) {
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.addColumn("ORDER_ID", Types.BIGINT, 19, 0);
+        rs.addColumn("ORDER_NO", Types.VARCHAR, 32, 0);
+        rs.addColumn("CUSTOMER_ID", Types.VARCHAR, 32, 0);
+        rs.addColumn("AMOUNT", Types.DECIMAL, 18, 2);
+        rs.addColumn("STATUS", Types.VARCHAR, 16, 0);
+        rs.addColumn("ITEM_COUNT", Types.INTEGER, 10, 0);
+        int rows = count != null ? count : 0;
+        for (long i = 1; i <= rows; i++) {
+            rs.addRow(i, "ORD-" + i, "CUST-" + (i % 100), BigDecimal.valueOf(i * 100, 2), "RUNNING", (int) (i % 10));
+        }
+        return rs;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        connection = dataSource.getConnection();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE ALIAS " + PROCEDURE_NAME + " FOR \""
+                    + StoredProcedureMappingBenchmark.class.getName() + ".listOrders\"");
+        }
+        storedProcedureUtil = new StoredProcedureUtil(100);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+        dataSource.shutdown();
+    }
+
+    /**
+     * 改造前的读取方式：每行一个JSONObject，每个单元格查询一次列名
+     */
+    @Benchmark
+    public List<JSONObject> jsonObjectPerCellMetadata() throws SQLException {
+        List<JSONObject> result = new ArrayList<>();
+        try (CallableStatement stmt = connection.prepareCall("{call " + PROCEDURE_NAME + "(?)}")) {
+            stmt.setObject(1, ROW_COUNT);
+            boolean hasResults = stmt.execute();
+            while (hasResults) {
+                ResultSet rs = stmt.getResultSet();
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                while (rs.next()) {
+                    JSONObject row = new JSONObject();
+                    for (int i = 1; i <= columnCount; i++) {
+                        row.put(metaData.getColumnName(i), rs.getObject(i));
+                    }
+                    result.add(row);
+                }
+                hasResults = stmt.getMoreResults();
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<JSONObject> jsonObjectCachedMetadata() throws SQLException {
+        return storedProcedureUtil.executeStoredProcedure(connection, PROCEDURE_NAME, List.of(ROW_COUNT), List.of());
+    }
+
+    @Benchmark
+    public List<Object[]> rowArrays() throws SQLException {
+        return storedProcedureUtil.executeForRows(connection, PROCEDURE_NAME, List.of(ROW_COUNT), List.of()).rows();
+    }
+
+    @Benchmark
+    public List<OrderRow> records() throws SQLException {
+        return storedProcedureUtil.executeForRecords(connection, PROCEDURE_NAME, List.of(ROW_COUNT), List.of(),
+                OrderRow.class).rows();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StoredProcedureMappingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
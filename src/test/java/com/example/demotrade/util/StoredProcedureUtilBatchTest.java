@@ -0,0 +1,119 @@
+package com.example.demotrade.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.BatchUpdateException;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 存储过程批量执行的测试类
+ */
+public class StoredProcedureUtilBatchTest {
+
+    private EmbeddedDatabase dataSource;
+
+    private StoredProcedureUtil storedProcedureUtil;
+
+    /**
+     * H2中以Java静态方法注册的测试存储过程，写入一条交易
+     */
+    public static void addTrade(Connection connection, String tradeId, Integer amount) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO trade (id, amount) VALUES (?, ?)")) {
+            stmt.setString(1, tradeId);
+            stmt.setInt(2, amount);
+            stmt.executeUpdate();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE trade (id VARCHAR(32) PRIMARY KEY, amount INT NOT NULL)");
+            stmt.execute("CREATE ALIAS ADD_TRADE FOR \"" + StoredProcedureUtilBatchTest.class.getName() + ".addTrade\"");
+        }
+        storedProcedureUtil = new StoredProcedureUtil(100);
+        ReflectionTestUtils.setField(storedProcedureUtil, "batchSize", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    /**
+     * 测试分块执行，单条失败不影响其它参数组
+     */
+    @Test
+    void testExecuteBatch() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            StoredProcedureUtil.BatchResult result = storedProcedureUtil.executeBatch(connection, "ADD_TRADE", List.of(
+                    List.of("T1", 100), List.of("T2", 200), List.of("T1", 300), List.of("T3", 400), List.of("T4", 500)));
+
+            assertEquals(5, result.updateCounts().length);
+            assertTrue(result.hasFailures());
+            assertEquals(Set.of(2), result.failures().keySet());
+            assertEquals(Statement.EXECUTE_FAILED, result.updateCounts()[2]);
+            assertEquals(4, result.successCount());
+
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*), SUM(amount) FROM trade")) {
+                rs.next();
+                assertEquals(4, rs.getInt(1));
+                assertEquals(1200, rs.getInt(2));
+            }
+        }
+    }
+
+    /**
+     * 测试驱动在第一条失败处停止时，之后的参数组重新执行
+     */
+    @Test
+    void testDriverStopsAtFirstFailure() throws SQLException {
+        Connection connection = mock(Connection.class);
+        CallableStatement stmt = mock(CallableStatement.class);
+        when(connection.prepareCall(anyString())).thenReturn(stmt);
+        BatchUpdateException failure = new BatchUpdateException("Duplicate entry", new int[]{1});
+        when(stmt.executeBatch()).thenThrow(failure).thenReturn(new int[]{1, 1});
+        ReflectionTestUtils.setField(storedProcedureUtil, "batchSize", 3);
+
+        StoredProcedureUtil.BatchResult result = storedProcedureUtil.executeBatch(connection, "ADD_TRADE", List.of(
+                List.of("T1", 100), List.of("T1", 200), List.of("T2", 300), List.of("T3", 400)));
+
+        assertArrayEquals(new int[]{1, Statement.EXECUTE_FAILED, 1, 1}, result.updateCounts());
+        assertSame(failure, result.failures().get(1));
+        verify(stmt).clearBatch();
+        verify(stmt, times(5)).addBatch();
+    }
+
+    /**
+     * 测试参数个数不一致时拒绝执行
+     */
+    @Test
+    void testParameterCountMismatch() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            assertThrows(IllegalArgumentException.class, () -> storedProcedureUtil.executeBatch(
+                    connection, "ADD_TRADE", List.of(List.of("T1", 100), List.of("T2"))));
+        }
+    }
+}
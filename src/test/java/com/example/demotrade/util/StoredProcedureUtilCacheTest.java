@@ -0,0 +1,124 @@
+package com.example.demotrade.util;
+
+import com.alibaba.fastjson.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+/**
+ * 存储过程调用语句缓存和CallableStatement关闭的测试类
+ */
+public class StoredProcedureUtilCacheTest {
+
+    private EmbeddedDatabase dataSource;
+
+    private StoredProcedureUtil storedProcedureUtil;
+
+    /**
+     * H2中以Java静态方法注册的测试存储过程，返回单行结果
+     */
+    public static String getUserInfo(String name, Integer age) {
+        return name + ":" + age;
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE ALIAS GET_USER_INFO FOR \"" + StoredProcedureUtilCacheTest.class.getName() + ".getUserInfo\"");
+        }
+        storedProcedureUtil = new StoredProcedureUtil(100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    /**
+     * 测试调用语句按名称和参数个数缓存
+     */
+    @Test
+    void testCallSqlCached() {
+        String sql = storedProcedureUtil.callSql("GET_USER_INFO", 3);
+
+        assertEquals("{call GET_USER_INFO(?,?,?)}", sql);
+        assertSame(sql, storedProcedureUtil.callSql("GET_USER_INFO", 3));
+        assertEquals("{call GET_USER_INFO()}", storedProcedureUtil.callSql("GET_USER_INFO", 0));
+    }
+
+    /**
+     * 测试每次调用后关闭语句，应用中不按连接保留CallableStatement
+     */
+    @Test
+    void testStatementClosedAfterCall() throws SQLException {
+        try (Connection connection = spy(dataSource.getConnection())) {
+            List<CallableStatement> statements = new ArrayList<>();
+            doAnswer(invocation -> {
+                CallableStatement stmt = (CallableStatement) invocation.callRealMethod();
+                statements.add(stmt);
+                return stmt;
+            }).when(connection).prepareCall(anyString());
+
+            storedProcedureUtil.executeStoredProcedure(connection, "GET_USER_INFO", List.of("用户", 20), List.of());
+            storedProcedureUtil.executeStoredProcedure(connection, "GET_USER_INFO", List.of("用户", 21), List.of());
+
+            assertEquals(2, statements.size());
+            for (CallableStatement stmt : statements) {
+                assertTrue(stmt.isClosed());
+            }
+        }
+    }
+
+    /**
+     * 测试执行失败时同样关闭语句
+     */
+    @Test
+    void testStatementClosedOnFailure() throws SQLException {
+        try (Connection connection = spy(dataSource.getConnection())) {
+            List<CallableStatement> statements = new ArrayList<>();
+            doAnswer(invocation -> {
+                CallableStatement stmt = (CallableStatement) invocation.callRealMethod();
+                statements.add(stmt);
+                return stmt;
+            }).when(connection).prepareCall(anyString());
+
+            assertThrows(SQLException.class, () -> storedProcedureUtil.executeStoredProcedure(
+                    connection, "NOT_EXISTS", List.of("用户"), List.of()));
+            statements.forEach(stmt -> assertDoesNotThrow(() -> assertTrue(stmt.isClosed())));
+        }
+    }
+
+    /**
+     * 测试同一连接上重复执行
+     */
+    @Test
+    void testRepeatedExecution() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            for (int i = 0; i < 3; i++) {
+                List<JSONObject> result = storedProcedureUtil.executeStoredProcedure(
+                        connection, "GET_USER_INFO", List.of("用户" + i, 20 + i), List.of());
+                assertEquals(1, result.size());
+                assertTrue(result.get(0).values().contains("用户" + i + ":" + (20 + i)));
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.demotrade.util;
+
+import org.h2.tools.SimpleResultSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 存储过程结果按列信息缓存映射为Object[]和记录的测试类
+ */
+public class StoredProcedureUtilMappingTest {
+
+    private EmbeddedDatabase dataSource;
+
+    private StoredProcedureUtil storedProcedureUtil;
+
+    record UserRow(long userId, String userName, Integer age) {
+    }
+
+    /**
+     * H2中以Java静态方法注册的测试存储过程，返回count个用户
+     */
+    public static ResultSet listUsers(Integer count) {
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.addColumn("USER_ID", Types.BIGINT, 19, 0);
+        rs.addColumn("USER_NAME", Types.VARCHAR, 64, 0);
+        rs.addColumn("AGE", Types.INTEGER, 10, 0);
+        // H2在准备语句时以null参数调用以获取列信息
+        int rows = count != null ? count : 0;
+        for (long i = 1; i <= rows; i++) {
+            rs.addRow(i, "用户" + i, i % 2 == 0 ? null : 20 + (int) i);
+        }
+        return rs;
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE ALIAS LIST_USERS FOR \"" + StoredProcedureUtilMappingTest.class.getName() + ".listUsers\"");
+        }
+        storedProcedureUtil = new StoredProcedureUtil(100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    /**
+     * 测试行读取为按列序号排列的数组，列信息在多次调用间复用
+     */
+    @Test
+    void testExecuteForRows() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            StoredProcedureUtil.ProcedureResult<Object[]> first =
+                    storedProcedureUtil.executeForRows(connection, "LIST_USERS", List.of(3), List.of());
+            StoredProcedureUtil.ProcedureResult<Object[]> second =
+                    storedProcedureUtil.executeForRows(connection, "LIST_USERS", List.of(1), List.of());
+
+            ResultColumns columns = first.columns().get(0);
+            assertEquals(3, columns.size());
+            assertEquals(1, columns.indexOf("userName"));
+            assertEquals(-1, columns.indexOf("missing"));
+            assertSame(columns, second.columns().get(0));
+
+            List<Object[]> rows = first.rows();
+            assertEquals(3, rows.size());
+            assertEquals("用户2", rows.get(1)[columns.indexOf("USER_NAME")]);
+            assertNull(rows.get(1)[columns.indexOf("AGE")]);
+            assertTrue(first.outParameters().isEmpty());
+        }
+    }
+
+    /**
+     * 测试行按列标签映射为记录，缺少对应列时失败
+     */
+    @Test
+    void testExecuteForRecords() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            List<UserRow> users = storedProcedureUtil.executeForRecords(
+                    connection, "LIST_USERS", List.of(2), List.of(), UserRow.class).rows();
+
+            assertEquals(List.of(new UserRow(1L, "用户1", 21), new UserRow(2L, "用户2", null)), users);
+
+            record Missing(String email) {
+            }
+            assertThrows(IllegalArgumentException.class, () -> storedProcedureUtil.executeForRecords(
+                    connection, "LIST_USERS", List.of(1), List.of(), Missing.class));
+        }
+    }
+
+    /**
+     * 测试输出参数按名称返回
+     */
+    @Test
+    void testNamedOutParameters() throws SQLException {
+        Connection connection = mock(Connection.class);
+        CallableStatement stmt = mock(CallableStatement.class);
+        when(connection.prepareCall(anyString())).thenReturn(stmt);
+        when(stmt.execute()).thenReturn(false);
+        when(stmt.getObject(2)).thenReturn(5);
+        when(stmt.getObject(3)).thenReturn("OK");
+
+        StoredProcedureUtil.ProcedureResult<Object[]> result = storedProcedureUtil.executeForRows(connection,
+                "COUNT_USERS", List.of("北京"),
+                List.of(new StoredProcedureUtil.OutParameter("total", Types.INTEGER),
+                        new StoredProcedureUtil.OutParameter("status", Types.VARCHAR)));
+
+        verify(connection).prepareCall("{call COUNT_USERS(?,?,?)}");
+        verify(stmt).registerOutParameter(2, Types.INTEGER);
+        assertTrue(result.resultSets().isEmpty());
+        assertEquals(List.of("total", "status"), List.copyOf(result.outParameters().keySet()));
+        assertEquals(5, result.outParameters().get("total"));
+        assertEquals("OK", result.outParameters().get("status"));
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.demotrade.util;
+
+import com.alibaba.fastjson.JSONObject;
+import org.h2.tools.SimpleResultSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 存储过程结果逐行回调和流式读取的测试类
+ */
+public class StoredProcedureUtilStreamingTest {
+
+    private EmbeddedDatabase dataSource;
+
+    private StoredProcedureUtil storedProcedureUtil;
+
+    /**
+     * H2中以Java静态方法注册的测试存储过程，返回1到count共count行
+     */
+    public static ResultSet listRows(Integer count) {
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.addColumn("ID", Types.BIGINT, 19, 0);
+        // H2在准备语句时以null参数调用以获取列信息
+        int rows = count != null ? count : 0;
+        for (long i = 1; i <= rows; i++) {
+            rs.addRow(i);
+        }
+        return rs;
+    }
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        try (Connection connection = dataSource.getConnection(); Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE ALIAS LIST_ROWS FOR \"" + StoredProcedureUtilStreamingTest.class.getName() + ".listRows\"");
+        }
+        storedProcedureUtil = new StoredProcedureUtil(100);
+        // H2不支持负数fetchSize
+        ReflectionTestUtils.setField(storedProcedureUtil, "streamingFetchSize", 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    /**
+     * 测试逐行回调收到全部行，并返回输出参数
+     */
+    @Test
+    void testRowCallback() throws SQLException {
+        List<Object> ids = new ArrayList<>();
+        AtomicInteger maxResultSetIndex = new AtomicInteger(-1);
+        try (Connection connection = dataSource.getConnection()) {
+            JSONObject outParams = storedProcedureUtil.executeStoredProcedure(connection, "LIST_ROWS", List.of(100),
+                    List.of(), 10, (resultSetIndex, row) -> {
+                        maxResultSetIndex.accumulateAndGet(resultSetIndex, Math::max);
+                        ids.add(row.get("ID"));
+                    });
+
+            assertTrue(outParams.isEmpty());
+            assertEquals(100, ids.size());
+            assertEquals(1L, ((Number) ids.get(0)).longValue());
+            assertEquals(100L, ((Number) ids.get(99)).longValue());
+            assertEquals(0, maxResultSetIndex.get());
+
+            // 缓存的语句在回调调用后仍可用于普通调用
+            List<JSONObject> result = storedProcedureUtil.executeStoredProcedure(
+                    connection, "LIST_ROWS", List.of(3), List.of());
+            assertEquals(3, result.size());
+        }
+    }
+
+    /**
+     * 测试Stream按需读取，读取完后传递输出参数，关闭时释放语句
+     */
+    @Test
+    void testStream() throws SQLException {
+        AtomicReference<JSONObject> outParams = new AtomicReference<>();
+        try (Connection connection = dataSource.getConnection()) {
+            try (Stream<JSONObject> rows = storedProcedureUtil.streamStoredProcedure(
+                    connection, "LIST_ROWS", List.of(50), List.of(), outParams::set)) {
+                Iterator<JSONObject> iterator = rows.iterator();
+                assertEquals(1L, ((Number) iterator.next().get("ID")).longValue());
+                assertNull(outParams.get());
+
+                int count = 1;
+                while (iterator.hasNext()) {
+                    iterator.next();
+                    count++;
+                }
+                assertEquals(50, count);
+                assertNotNull(outParams.get());
+            }
+        }
+    }
+
+    /**
+     * 测试提前关闭Stream时不读取输出参数
+     */
+    @Test
+    void testStreamClosedEarly() throws SQLException {
+        AtomicReference<JSONObject> outParams = new AtomicReference<>();
+        try (Connection connection = dataSource.getConnection()) {
+            try (Stream<JSONObject> rows = storedProcedureUtil.streamStoredProcedure(
+                    connection, "LIST_ROWS", List.of(50), List.of(), outParams::set)) {
+                assertEquals(5, rows.limit(5).count());
+            }
+            assertNull(outParams.get());
+        }
+    }
+}
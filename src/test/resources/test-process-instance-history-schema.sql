@@ -0,0 +1,20 @@
+-- 流程实例历史表，H2不支持MySQL分区语法，测试中不分区
+CREATE TABLE IF NOT EXISTS process_instance_history (
+    id VARCHAR(255) NOT NULL,
+    process_definition_id VARCHAR(255),
+    process_definition_version INT,
+    business_id VARCHAR(255),
+    current_node_id VARCHAR(255),
+    status TINYINT,
+    variables_json TEXT,
+    variables_data BLOB,
+    tokens_json TEXT,
+    start_time TIMESTAMP,
+    end_time TIMESTAMP NOT NULL,
+    create_time TIMESTAMP,
+    update_time TIMESTAMP,
+    error_message TEXT,
+    version BIGINT NOT NULL DEFAULT 0,
+    archive_time TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, end_time)
+);
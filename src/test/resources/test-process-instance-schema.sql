@@ -0,0 +1,19 @@
+-- 与JPA实体映射一致的流程实例表
+CREATE TABLE IF NOT EXISTS process_instance (
+    id VARCHAR(255) PRIMARY KEY,
+    process_definition_id VARCHAR(255),
+    process_definition_version INT,
+    business_id VARCHAR(255),
+    current_node_id VARCHAR(255),
+    status TINYINT,
+    variables_json TEXT,
+    variables_data BLOB,
+    tokens_json TEXT,
+    start_time TIMESTAMP,
+    end_time TIMESTAMP,
+    create_time TIMESTAMP,
+    update_time TIMESTAMP,
+    error_message TEXT,
+    version BIGINT NOT NULL DEFAULT 0,
+    fencing_token BIGINT NOT NULL DEFAULT 0
+);
@@ -0,0 +1,13 @@
+-- 与JPA实体映射一致的流程变量表
+CREATE TABLE IF NOT EXISTS process_variable (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    process_instance_id VARCHAR(64) NOT NULL,
+    variable_name VARCHAR(64) NOT NULL,
+    variable_value TEXT NOT NULL,
+    variable_type VARCHAR(32) NOT NULL,
+    creator VARCHAR(64) NOT NULL,
+    modifier VARCHAR(64),
+    gmt_create TIMESTAMP NOT NULL,
+    gmt_modified TIMESTAMP,
+    CONSTRAINT uk_instance_name UNIQUE (process_instance_id, variable_name)
+);